@@ -1121,6 +1121,25 @@ public interface CoreSession extends AutoCloseable {
      */
     IterableQueryResult queryAndFetch(String query, String queryType, Object... params) throws ClientException;
 
+    /**
+     * Executes the given NXQL query and returns a resumable cursor on its results.
+     * <p>
+     * The query may have a single {@code ORDER BY} key, otherwise the results are ordered by {@code ecm:uuid}. Rows
+     * are fetched in batches of the given size using keyset pagination: each batch only reads the rows after the last
+     * one seen, ordered by the key and {@code ecm:uuid}, so iterating deep into the results has the same cost as
+     * reading the first rows. Documents where the key is null are not returned. A {@code LIMIT} or {@code OFFSET} in
+     * the query applies to the whole iteration, including when it is resumed from a position.
+     *
+     * @param query the NXQL query to execute
+     * @param position the position returned by a previous {@link QueryCursor#getPosition}, or {@code null} to start
+     *            from the beginning
+     * @param batchSize the number of rows to fetch from the backend at a time
+     * @param params optional query-type-specific parameters
+     * @return the cursor, which must be closed
+     * @since 7.2
+     */
+    QueryCursor queryCursor(String query, String position, int batchSize, Object... params) throws ClientException;
+
     /** -------------------------- Security API --------------------------- * */
 
     /**
@@ -0,0 +1,41 @@
+/*
+ * Copyright (c) 2015 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.ecm.core.api;
+
+import java.io.Serializable;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * A resumable cursor on the results of a query, returned by {@link CoreSession#queryCursor}.
+ * <p>
+ * Rows are fetched from the backend in bounded batches as the iteration progresses. At any point, {@link #getPosition}
+ * returns an opaque token that can be passed to a later {@link CoreSession#queryCursor} call, possibly in another
+ * session or transaction, to continue the iteration after the last returned row.
+ *
+ * @since 7.2
+ */
+public interface QueryCursor extends Iterator<Map<String, Serializable>> {
+
+    /**
+     * Gets the position after the last row returned by {@link #next}.
+     *
+     * @return the position token, or {@code null} if no row has been returned yet and no initial position was given
+     */
+    String getPosition();
+
+    /**
+     * Releases the resources held by the cursor.
+     */
+    void close();
+
+}
@@ -17,6 +17,8 @@
  */
 package org.nuxeo.ecm.core.cache;
 
+import java.io.Closeable;
+import java.io.IOException;
 import java.lang.reflect.InvocationTargetException;
 import java.util.HashMap;
 import java.util.Map;
@@ -34,6 +36,22 @@ import org.nuxeo.ecm.core.api.NuxeoException;
 @XObject("cache")
 public class CacheDescriptor {
 
+    /**
+     * Option enabling a bounded in-memory cache in front of a remote cache, for implementations supporting it.
+     *
+     * @since 7.2
+     */
+    public static final String OPTION_NEAR_CACHE = "nearCache";
+
+    /**
+     * Option for the maximum number of entries of the near cache.
+     *
+     * @since 7.2
+     */
+    public static final String OPTION_NEAR_CACHE_MAX_SIZE = "nearCacheMaxSize";
+
+    public static final int DEFAULT_NEAR_CACHE_MAX_SIZE = 1000;
+
     @XNode("@name")
     public String name;
 
@@ -75,6 +93,35 @@ public class CacheDescriptor {
         this.implClass = implClass;
     }
 
+    /**
+     * Gets the value of an option.
+     *
+     * @return the value, or {@code null} if the option is not set
+     * @since 7.2
+     */
+    public String getOption(String name) {
+        return options.get(name);
+    }
+
+    /**
+     * Checks if a near cache is configured, see {@link #OPTION_NEAR_CACHE}.
+     *
+     * @since 7.2
+     */
+    public boolean isNearCache() {
+        return Boolean.parseBoolean(options.get(OPTION_NEAR_CACHE));
+    }
+
+    /**
+     * Gets the maximum number of entries of the near cache, see {@link #OPTION_NEAR_CACHE_MAX_SIZE}.
+     *
+     * @since 7.2
+     */
+    public int getNearCacheMaxSize() {
+        String value = options.get(OPTION_NEAR_CACHE_MAX_SIZE);
+        return value == null ? DEFAULT_NEAR_CACHE_MAX_SIZE : Integer.parseInt(value);
+    }
+
     @Override
     public String toString() {
         return name + ": " + implClass + ": " + ttl + ": " + options;
@@ -94,6 +141,13 @@ public class CacheDescriptor {
         if (cacheChecker == null) {
             return;
         }
+        if (cacheChecker.cache instanceof Closeable) {
+            try {
+                ((Closeable) cacheChecker.cache).close();
+            } catch (IOException e) {
+                throw new NuxeoException("Failed to close cache " + name, e);
+            }
+        }
         cacheChecker.cache = null;
         cacheChecker = null;
     }
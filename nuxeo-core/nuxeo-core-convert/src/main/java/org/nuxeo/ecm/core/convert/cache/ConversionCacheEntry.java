@@ -16,6 +16,7 @@ import java.io.File;
 import java.io.IOException;
 import java.util.Date;
 
+import org.apache.commons.io.FileUtils;
 import org.nuxeo.ecm.core.api.blobholder.BlobHolder;
 import org.nuxeo.ecm.core.convert.api.ConversionService;
 
@@ -36,7 +37,7 @@ public class ConversionCacheEntry {
 
     protected String persistPath;
 
-    protected long sizeInKB = 0;
+    protected long sizeInBytes = 0;
 
     public ConversionCacheEntry(BlobHolder bh) {
         this.bh = bh;
@@ -52,7 +53,7 @@ public class ConversionCacheEntry {
             CachableBlobHolder cbh = (CachableBlobHolder) bh;
             persistPath = cbh.persist(basePath);
             if (persistPath != null) {
-                sizeInKB = new File(persistPath).length() / 1024;
+                sizeInBytes = getSize(new File(persistPath));
                 persisted = true;
             }
         }
@@ -60,9 +61,28 @@ public class ConversionCacheEntry {
         return persisted;
     }
 
+    /**
+     * Computes the size of a persisted file, or of the files of a persisted directory.
+     *
+     * @since 7.2
+     */
+    protected static long getSize(File file) {
+        if (!file.isDirectory()) {
+            return file.length();
+        }
+        long size = 0;
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                size += getSize(child);
+            }
+        }
+        return size;
+    }
+
     public void remove() {
         if (persisted && persistPath != null) {
-            new File(persistPath).delete();
+            FileUtils.deleteQuietly(new File(persistPath));
         }
     }
 
@@ -82,7 +102,23 @@ public class ConversionCacheEntry {
     }
 
     public long getDiskSpaceUsageInKB() {
-        return sizeInKB;
+        return sizeInBytes / 1024;
+    }
+
+    /**
+     * @since 7.2
+     */
+    public long getDiskSpaceUsageInBytes() {
+        return sizeInBytes;
+    }
+
+    /**
+     * Gets the path of the persisted file or directory, or {@code null} if the entry was not persisted.
+     *
+     * @since 7.2
+     */
+    public String getPersistPath() {
+        return persistPath;
     }
 
     public Date getLastAccessedTime() {
@@ -15,11 +15,17 @@ package org.nuxeo.ecm.core.convert.cache;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import org.apache.commons.codec.binary.Base64;
@@ -27,20 +33,81 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.nuxeo.common.utils.Path;
 import org.nuxeo.ecm.core.api.blobholder.BlobHolder;
+import org.nuxeo.ecm.core.convert.api.ConversionException;
 import org.nuxeo.ecm.core.convert.api.ConversionService;
 import org.nuxeo.ecm.core.convert.service.ConversionServiceImpl;
+import org.nuxeo.runtime.metrics.MetricsService;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.SharedMetricRegistries;
 
 /**
  * Manager for the cache system of the {@link ConversionService}.
+ * <p>
+ * Entries are indexed in access order, so that the least recently used ones can be evicted without walking the cache,
+ * and the disk space they use is accounted for as they are added and removed. Concurrent conversions of the same
+ * cache key are only done once, see {@link #getOrConvert}.
  *
  * @author tiry
  */
 public class ConversionCacheHolder {
 
-    protected static final Map<String, ConversionCacheEntry> cache = new HashMap<>();
+    /**
+     * Cache entries, in access order. As lookups reorder entries, all accesses need the write lock.
+     */
+    protected static final Map<String, ConversionCacheEntry> cache = new LinkedHashMap<>(16, 0.75f, true);
 
     protected static final ReentrantReadWriteLock cacheLock = new ReentrantReadWriteLock();
 
+    /**
+     * Disk space used by the cache entries, guarded by {@link #cacheLock}.
+     *
+     * @since 7.2
+     */
+    protected static long cacheSizeInBytes = 0;
+
+    /**
+     * Conversions currently running, by cache key.
+     *
+     * @since 7.2
+     */
+    protected static final ConcurrentMap<String, FutureTask<BlobHolder>> inFlight = new ConcurrentHashMap<>();
+
+    protected static final MetricRegistry registry = SharedMetricRegistries.getOrCreate(MetricsService.class.getName());
+
+    protected static final Counter hitCount = registry.counter(MetricRegistry.name("nuxeo", "conversion", "cache",
+            "hit"));
+
+    protected static final Counter missCount = registry.counter(MetricRegistry.name("nuxeo", "conversion", "cache",
+            "miss"));
+
+    protected static final Counter sharedCount = registry.counter(MetricRegistry.name("nuxeo", "conversion", "cache",
+            "shared"));
+
+    protected static final Counter evictedCount = registry.counter(MetricRegistry.name("nuxeo", "conversion",
+            "cache", "evicted"));
+
+    static {
+        String inFlightName = MetricRegistry.name("nuxeo", "conversion", "cache", "inflight");
+        registry.remove(inFlightName);
+        registry.register(inFlightName, new Gauge<Integer>() {
+            @Override
+            public Integer getValue() {
+                return Integer.valueOf(inFlight.size());
+            }
+        });
+        String sizeName = MetricRegistry.name("nuxeo", "conversion", "cache", "size");
+        registry.remove(sizeName);
+        registry.register(sizeName, new Gauge<Long>() {
+            @Override
+            public Long getValue() {
+                return Long.valueOf(getCacheSizeInBytes());
+            }
+        });
+    }
+
     private static final Log log = LogFactory.getLog(ConversionCacheHolder.class);
 
     public static int nbSubPathPart = 5;
@@ -58,7 +125,35 @@ public class ConversionCacheHolder {
     }
 
     public static int getNbCacheEntries() {
-        return cache.keySet().size();
+        cacheLock.readLock().lock();
+        try {
+            return cache.size();
+        } finally {
+            cacheLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Gets the disk space used by the cache entries.
+     *
+     * @since 7.2
+     */
+    public static long getCacheSizeInBytes() {
+        cacheLock.readLock().lock();
+        try {
+            return cacheSizeInBytes;
+        } finally {
+            cacheLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Gets the number of conversions currently running for the cache.
+     *
+     * @since 7.2
+     */
+    public static int getNbInFlightConversions() {
+        return inFlight.size();
     }
 
     protected static List<String> getSubPathFromKey(String key) {
@@ -98,27 +193,43 @@ public class ConversionCacheHolder {
     }
 
     public static void addToCache(String key, BlobHolder result) {
-        cacheLock.writeLock().lock();
-        try {
-            doAddToCache(key, result);
-        } finally {
-            cacheLock.writeLock().unlock();
-        }
-    }
-
-    protected static void doAddToCache(String key, BlobHolder result) {
+        // persist outside of the lock, the disk write may be long
         ConversionCacheEntry cce = new ConversionCacheEntry(result);
         boolean persisted = false;
-
         try {
             persisted = cce.persist(getCacheEntryPath(key));
         } catch (IOException e) {
             log.error("Error while trying to persist cache entry", e);
         }
+        if (!persisted) {
+            return;
+        }
+        cacheLock.writeLock().lock();
+        try {
+            doAddToCache(key, cce);
+            long limit = ConversionServiceImpl.getMaxCacheSizeInKB() * 1024L;
+            if (limit > 0 && cacheSizeInBytes > limit) {
+                // keep the entry just added, the GC will get rid of it if it alone is too big
+                doEvict(cacheSizeInBytes - limit, 1);
+            }
+        } finally {
+            cacheLock.writeLock().unlock();
+        }
+    }
 
-        if (persisted) {
-            cache.put(key, cce);
+    /**
+     * @since 7.2
+     */
+    protected static void doAddToCache(String key, ConversionCacheEntry cce) {
+        ConversionCacheEntry previous = cache.put(key, cce);
+        if (previous != null) {
+            cacheSizeInBytes -= previous.getDiskSpaceUsageInBytes();
+            // the same result is persisted at the same place, don't delete it
+            if (previous.getPersistPath() != null && !previous.getPersistPath().equals(cce.getPersistPath())) {
+                previous.remove();
+            }
         }
+        cacheSizeInBytes += cce.getDiskSpaceUsageInBytes();
     }
 
     public static void removeFromCache(String key) {
@@ -132,19 +243,59 @@ public class ConversionCacheHolder {
     }
 
     protected static void doRemoveFromCache(String key) {
-        if (cache.containsKey(key)) {
-            ConversionCacheEntry cce = cache.get(key);
+        ConversionCacheEntry cce = cache.remove(key);
+        if (cce != null) {
             cce.remove();
-            cache.remove(key);
+            cacheSizeInBytes -= cce.getDiskSpaceUsageInBytes();
         }
     }
 
+    /**
+     * Evicts the least recently used entries until the given disk space is freed.
+     *
+     * @param bytes the disk space to free
+     * @return the disk space actually freed
+     * @since 7.2
+     */
+    public static long evict(long bytes) {
+        cacheLock.writeLock().lock();
+        try {
+            return doEvict(bytes, 0);
+        } finally {
+            cacheLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Evicts the least recently used entries, until more than the given disk space is freed or only {@code keep}
+     * entries are left.
+     */
+    protected static long doEvict(long bytes, int keep) {
+        long freed = 0;
+        int evicted = 0;
+        Iterator<ConversionCacheEntry> it = cache.values().iterator();
+        while (it.hasNext() && cache.size() > keep) {
+            ConversionCacheEntry cce = it.next();
+            it.remove();
+            cce.remove();
+            long size = cce.getDiskSpaceUsageInBytes();
+            cacheSizeInBytes -= size;
+            freed += size;
+            evicted++;
+            if (freed > bytes) {
+                break;
+            }
+        }
+        evictedCount.inc(evicted);
+        return freed;
+    }
+
     public static ConversionCacheEntry getCacheEntry(String key) {
-        cacheLock.readLock().lock();
+        cacheLock.writeLock().lock();
         try {
             return doGetCacheEntry(key);
         } finally {
-            cacheLock.readLock().unlock();
+            cacheLock.writeLock().unlock();
         }
     }
 
@@ -153,11 +304,11 @@ public class ConversionCacheHolder {
     }
 
     public static BlobHolder getFromCache(String key) {
-        cacheLock.readLock().lock();
+        cacheLock.writeLock().lock();
         try {
             return doGetFromCache(key);
         } finally {
-            cacheLock.readLock().unlock();
+            cacheLock.writeLock().unlock();
         }
     }
 
@@ -169,11 +320,91 @@ public class ConversionCacheHolder {
             } else {
                 cacheHits += 1;
             }
+            hitCount.inc();
             return cacheEntry.restore();
         }
         return null;
     }
 
+    /**
+     * Gets a conversion result from the cache, or computes and caches it.
+     * <p>
+     * Only one conversion runs for a given cache key: concurrent callers wait for it to complete and then read its
+     * result from the cache, or get its failure. If the result could not be cached, they run their own conversion.
+     * The cache is checked again once the key is won, so a conversion that completed meanwhile isn't run twice.
+     *
+     * @param key the cache key, see {@link CacheKeyGenerator}
+     * @param conversion the conversion to run on cache miss
+     * @since 7.2
+     */
+    public static BlobHolder getOrConvert(final String key, final Callable<BlobHolder> conversion)
+            throws ConversionException {
+        BlobHolder cached = getFromCache(key);
+        if (cached != null) {
+            return cached;
+        }
+        FutureTask<BlobHolder> task = new FutureTask<>(new Callable<BlobHolder>() {
+            @Override
+            public BlobHolder call() throws Exception {
+                // another caller may have cached the result between our cache miss and winning the key
+                BlobHolder cached = getFromCache(key);
+                if (cached != null) {
+                    return cached;
+                }
+                missCount.inc();
+                BlobHolder result = conversion.call();
+                if (result != null) {
+                    addToCache(key, result);
+                }
+                return result;
+            }
+        });
+        FutureTask<BlobHolder> running = inFlight.putIfAbsent(key, task);
+        if (running == null) {
+            try {
+                task.run();
+            } finally {
+                inFlight.remove(key, task);
+            }
+            return getResult(task);
+        }
+        sharedCount.inc();
+        getResult(running);
+        cached = getFromCache(key);
+        if (cached != null) {
+            return cached;
+        }
+        return call(conversion);
+    }
+
+    protected static BlobHolder getResult(FutureTask<BlobHolder> task) throws ConversionException {
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ConversionException("Interrupted while waiting for conversion", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new ConversionException("Conversion failed", cause);
+        }
+    }
+
+    protected static BlobHolder call(Callable<BlobHolder> conversion) throws ConversionException {
+        try {
+            return conversion.call();
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new ConversionException("Conversion failed", e);
+        }
+    }
+
     public static Set<String> getCacheKeys() {
         cacheLock.readLock().lock();
         try {
@@ -190,6 +421,7 @@ public class ConversionCacheHolder {
         cacheLock.writeLock().lock();
         try {
             cache.clear();
+            cacheSizeInBytes = 0;
             new File(ConversionServiceImpl.getCacheBasePath()).delete();
         } finally {
             cacheLock.writeLock().unlock();
@@ -17,6 +17,7 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -160,8 +161,8 @@ public class ConversionServiceImpl extends DefaultComponent implements Conversio
     }
 
     @Override
-    public BlobHolder convert(String converterName, BlobHolder blobHolder, Map<String, Serializable> parameters)
-            throws ConversionException {
+    public BlobHolder convert(String converterName, final BlobHolder blobHolder,
+            final Map<String, Serializable> parameters) throws ConversionException {
 
         // exist if not registered
         ConverterCheckResult check = isConverterAvailable(converterName);
@@ -175,22 +176,19 @@ public class ConversionServiceImpl extends DefaultComponent implements Conversio
             throw new ConversionException("Converter " + converterName + " can not be found");
         }
 
-        String cacheKey = CacheKeyGenerator.computeKey(converterName, blobHolder, parameters);
-
-        BlobHolder cachedResult = ConversionCacheHolder.getFromCache(cacheKey);
-
-        if (cachedResult != null) {
-            return cachedResult;
-        } else {
-            Converter converter = desc.getConverterInstance();
-
-            BlobHolder result = converter.convert(blobHolder, parameters);
+        final Converter converter = desc.getConverterInstance();
+        if (!config.isCacheEnabled()) {
+            return converter.convert(blobHolder, parameters);
+        }
 
-            if (config.isCacheEnabled()) {
-                ConversionCacheHolder.addToCache(cacheKey, result);
+        String cacheKey = CacheKeyGenerator.computeKey(converterName, blobHolder, parameters);
+        // concurrent conversions of the same blob with the same parameters are only done once
+        return ConversionCacheHolder.getOrConvert(cacheKey, new Callable<BlobHolder>() {
+            @Override
+            public BlobHolder call() {
+                return converter.convert(blobHolder, parameters);
             }
-            return result;
-        }
+        });
     }
 
     @Override
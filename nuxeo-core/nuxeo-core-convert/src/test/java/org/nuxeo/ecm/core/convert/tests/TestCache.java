@@ -18,6 +18,14 @@ import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -29,6 +37,7 @@ import org.nuxeo.ecm.core.api.blobholder.SimpleBlobHolder;
 import org.nuxeo.ecm.core.convert.api.ConversionService;
 import org.nuxeo.ecm.core.convert.cache.ConversionCacheGCManager;
 import org.nuxeo.ecm.core.convert.cache.ConversionCacheHolder;
+import org.nuxeo.ecm.core.convert.cache.SimpleCachableBlobHolder;
 import org.nuxeo.ecm.core.convert.extension.Converter;
 import org.nuxeo.ecm.core.convert.service.ConversionServiceImpl;
 import org.nuxeo.runtime.api.Framework;
@@ -87,4 +96,48 @@ public class TestCache {
         assertEquals(0, cacheSize1 - cacheSize3);
     }
 
+    @Test
+    public void testConcurrentConversionsAreDoneOnce() throws Exception {
+        File file = FileUtils.getResourceFileFromContext("test-data/hello.doc");
+        final Blob blob = Blobs.createBlob(file, "application/msword", null, "hello.doc");
+        final AtomicInteger conversions = new AtomicInteger();
+        final CountDownLatch start = new CountDownLatch(1);
+        final Callable<BlobHolder> conversion = new Callable<BlobHolder>() {
+            @Override
+            public BlobHolder call() throws Exception {
+                conversions.incrementAndGet();
+                Thread.sleep(500);
+                return new SimpleCachableBlobHolder(blob);
+            }
+        };
+        long size1 = ConversionCacheHolder.getCacheSizeInBytes();
+
+        int n = 5;
+        ExecutorService executor = Executors.newFixedThreadPool(n);
+        try {
+            List<Future<BlobHolder>> results = new ArrayList<>();
+            for (int i = 0; i < n; i++) {
+                results.add(executor.submit(new Callable<BlobHolder>() {
+                    @Override
+                    public BlobHolder call() throws Exception {
+                        start.await();
+                        return ConversionCacheHolder.getOrConvert("singleFlightKey", conversion);
+                    }
+                }));
+            }
+            start.countDown();
+            for (Future<BlobHolder> result : results) {
+                assertNotNull(result.get().getBlob());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(1, conversions.get());
+        assertEquals(0, ConversionCacheHolder.getNbInFlightConversions());
+        assertEquals(file.length(), ConversionCacheHolder.getCacheSizeInBytes() - size1);
+
+        ConversionCacheHolder.removeFromCache("singleFlightKey");
+        assertEquals(size1, ConversionCacheHolder.getCacheSizeInBytes());
+    }
+
 }
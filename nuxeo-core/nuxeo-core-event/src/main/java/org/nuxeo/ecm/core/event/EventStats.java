@@ -25,4 +25,12 @@ public interface EventStats {
 
     void logSyncExec(EventListenerDescriptor desc, long delta);
 
+    /**
+     * Logs the execution of a post-commit listener on a batch of bundles.
+     *
+     * @param bundles the number of bundles passed to the listener
+     * @since 7.2
+     */
+    void logBatchExec(EventListenerDescriptor desc, int bundles, long delta);
+
 }
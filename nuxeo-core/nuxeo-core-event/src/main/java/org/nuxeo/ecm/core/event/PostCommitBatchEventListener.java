@@ -0,0 +1,37 @@
+/*
+ * Copyright (c) 2015 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.ecm.core.event;
+
+import java.util.List;
+
+import org.nuxeo.ecm.core.api.ClientException;
+
+/**
+ * Post-commit listener that can process several event bundles at once.
+ * <p>
+ * In bulk mode, when several bundles are batched (see
+ * {@link org.nuxeo.ecm.core.event.impl.PostCommitEventExecutor#BULK_BATCH_SIZE_PROP BULK_BATCH_SIZE_PROP}), the
+ * bundles are passed to {@link #handleEvents} in a single transaction instead of being passed one by one to
+ * {@link #handleEvent}. The bundles are reconnected to a session shared by all the bundles.
+ *
+ * @since 7.2
+ */
+public interface PostCommitBatchEventListener extends PostCommitEventListener {
+
+    /**
+     * Handles a batch of event bundles, in the order in which they were fired.
+     *
+     * @param bundles the reconnected bundles, filtered for this listener
+     */
+    void handleEvents(List<EventBundle> bundles) throws ClientException;
+
+}
@@ -91,6 +91,12 @@ public class EventServiceImpl implements EventService, EventServiceAdmin, Synchr
 
     protected boolean bulkModeEnabled = false;
 
+    /**
+     * Bundles waiting to be passed together to the listeners in bulk mode. They are only held in memory, so they are
+     * lost if the JVM stops before they are flushed.
+     */
+    protected final List<EventBundle> bulkBundles = new ArrayList<EventBundle>();
+
     public EventServiceImpl() {
         listenerDescriptors = new EventListenerList();
         postCommitExec = new PostCommitEventExecutor();
@@ -102,6 +108,7 @@ public class EventServiceImpl implements EventService, EventServiceAdmin, Synchr
     }
 
     public void shutdown(long timeoutMillis) throws InterruptedException {
+        flushBulkBundles();
         postCommitExec.shutdown(timeoutMillis);
         Set<AsyncWaitHook> notTerminated = new HashSet<AsyncWaitHook>();
         for (AsyncWaitHook hook : asyncWaitHooks) {
@@ -140,6 +147,7 @@ public class EventServiceImpl implements EventService, EventServiceAdmin, Synchr
 
     @Override
     public void waitForAsyncCompletion(long timeout) {
+        flushBulkBundles();
         Set<AsyncWaitHook> notCompleted = new HashSet<AsyncWaitHook>();
         for (AsyncWaitHook hook : asyncWaitHooks) {
             if (!hook.waitForAsyncCompletion()) {
@@ -263,16 +271,25 @@ public class EventServiceImpl implements EventService, EventServiceAdmin, Synchr
 
         if (bulkModeEnabled) {
             // run all listeners synchronously in one transaction
-            List<EventListenerDescriptor> listeners = new ArrayList<EventListenerDescriptor>();
-            if (!blockSyncPostCommitProcessing) {
-                listeners = postCommitSync;
-            }
-            if (!blockAsyncProcessing) {
-                listeners.addAll(postCommitAsync);
+            List<EventListenerDescriptor> listeners = getBulkListeners();
+            if (listeners.isEmpty()) {
+                return;
             }
-            if (!listeners.isEmpty()) {
+            int batchSize = postCommitExec.getBulkBatchSize();
+            if (batchSize <= 1) {
                 postCommitExec.runBulk(listeners, event);
+                return;
             }
+            List<EventBundle> bundles;
+            synchronized (bulkBundles) {
+                bulkBundles.add(event);
+                if (bulkBundles.size() < batchSize) {
+                    return;
+                }
+                bundles = new ArrayList<EventBundle>(bulkBundles);
+                bulkBundles.clear();
+            }
+            postCommitExec.runBulk(listeners, bundles);
             return;
         }
 
@@ -303,6 +320,37 @@ public class EventServiceImpl implements EventService, EventServiceAdmin, Synchr
         }
     }
 
+    protected List<EventListenerDescriptor> getBulkListeners() {
+        List<EventListenerDescriptor> listeners = new ArrayList<EventListenerDescriptor>();
+        if (!blockSyncPostCommitProcessing) {
+            listeners = listenerDescriptors.getEnabledSyncPostCommitListenersDescriptors();
+        }
+        if (!blockAsyncProcessing) {
+            listeners.addAll(listenerDescriptors.getEnabledAsyncPostCommitListenersDescriptors());
+        }
+        return listeners;
+    }
+
+    /**
+     * Passes to the listeners the bundles still waiting for a complete batch in bulk mode.
+     *
+     * @since 7.2
+     */
+    public void flushBulkBundles() {
+        List<EventBundle> bundles;
+        synchronized (bulkBundles) {
+            if (bulkBundles.isEmpty()) {
+                return;
+            }
+            bundles = new ArrayList<EventBundle>(bulkBundles);
+            bulkBundles.clear();
+        }
+        List<EventListenerDescriptor> listeners = getBulkListeners();
+        if (!listeners.isEmpty()) {
+            postCommitExec.runBulk(listeners, bundles);
+        }
+    }
+
     @Override
     public void fireEventBundleSync(EventBundle event) throws ClientException {
         for (EventListenerDescriptor desc : listenerDescriptors.getEnabledSyncPostCommitListenersDescriptors()) {
@@ -418,6 +466,9 @@ public class EventServiceImpl implements EventService, EventServiceAdmin, Synchr
 
     @Override
     public void setBulkModeEnabled(boolean bulkModeEnabled) {
+        if (!bulkModeEnabled) {
+            flushBulkBundles();
+        }
         this.bulkModeEnabled = bulkModeEnabled;
     }
 
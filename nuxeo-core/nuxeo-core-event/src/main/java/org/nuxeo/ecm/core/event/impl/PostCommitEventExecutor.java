@@ -12,7 +12,10 @@
  */
 package org.nuxeo.ecm.core.event.impl;
 
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
@@ -25,11 +28,20 @@ import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicInteger;
 
+import javax.security.auth.login.LoginContext;
+import javax.security.auth.login.LoginException;
+
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.nuxeo.ecm.core.api.ClientException;
+import org.nuxeo.ecm.core.api.CoreInstance;
+import org.nuxeo.ecm.core.api.CoreSession;
+import org.nuxeo.ecm.core.api.DocumentModel;
+import org.nuxeo.ecm.core.api.DocumentRef;
 import org.nuxeo.ecm.core.event.EventBundle;
 import org.nuxeo.ecm.core.event.EventStats;
+import org.nuxeo.ecm.core.event.PostCommitBatchEventListener;
+import org.nuxeo.ecm.core.event.PostCommitEventListener;
 import org.nuxeo.ecm.core.event.ReconnectedEventBundle;
 import org.nuxeo.runtime.api.Framework;
 import org.nuxeo.runtime.transaction.TransactionHelper;
@@ -56,6 +68,19 @@ public class PostCommitEventExecutor {
 
     public static final String BULK_TIMEOUT_PROP = "org.nuxeo.ecm.core.event.tx.BulkExecutor.timeout";
 
+    /**
+     * Number of bundles passed together to the listeners in bulk mode. The default of 1 runs the listeners after each
+     * commit.
+     * <p>
+     * With a greater value, committed bundles are only kept in memory until the batch is complete or flushed. They are
+     * lost if the JVM stops before that, so the listeners never see the corresponding events.
+     *
+     * @since 7.2
+     */
+    public static final String BULK_BATCH_SIZE_PROP = "org.nuxeo.ecm.core.event.tx.BulkExecutor.batchSize";
+
+    public static final String DEFAULT_BULK_BATCH_SIZE = "1";
+
     private static final long KEEP_ALIVE_TIME_SECOND = 10;
 
     private static final int MAX_POOL_SIZE = 100;
@@ -125,8 +150,56 @@ public class PostCommitEventExecutor {
     }
 
     public void runBulk(List<EventListenerDescriptor> listeners, EventBundle event) {
+        run(listeners, event, getBulkTimeoutMs(), true);
+    }
+
+    /**
+     * Lets the listeners process several bundles in bulk mode, in a single transaction.
+     *
+     * @since 7.2
+     */
+    public void runBulk(List<EventListenerDescriptor> listeners, List<EventBundle> bundles) {
+        if (bundles.size() == 1) {
+            runBulk(listeners, bundles.get(0));
+            return;
+        }
+        if (!acceptSome(listeners, bundles)) {
+            if (log.isDebugEnabled()) {
+                log.debug("Events postcommit execution has nothing to do");
+            }
+            return;
+        }
+        long timeoutMillis = getBulkTimeoutMs();
+        if (log.isDebugEnabled()) {
+            log.debug(String.format("Events postcommit execution starting with timeout %sms in bulk mode for %s"
+                    + " bundles", Long.valueOf(timeoutMillis), Integer.valueOf(bundles.size())));
+        }
+        execute(new EventBundleBatchRunner(listeners, bundles), timeoutMillis, true);
+    }
+
+    protected long getBulkTimeoutMs() {
         String timeoutSeconds = Framework.getProperty(BULK_TIMEOUT_PROP, DEFAULT_BULK_TIMEOUT_S);
-        run(listeners, event, Long.parseLong(timeoutSeconds) * 1000, true);
+        return Long.parseLong(timeoutSeconds) * 1000;
+    }
+
+    /**
+     * Gets the number of bundles to pass together to the listeners in bulk mode.
+     *
+     * @since 7.2
+     */
+    public int getBulkBatchSize() {
+        return Integer.parseInt(Framework.getProperty(BULK_BATCH_SIZE_PROP, DEFAULT_BULK_BATCH_SIZE));
+    }
+
+    protected boolean acceptSome(List<EventListenerDescriptor> listeners, List<EventBundle> bundles) {
+        for (EventListenerDescriptor listener : listeners) {
+            for (EventBundle bundle : bundles) {
+                if (listener.acceptBundle(bundle)) {
+                    return true;
+                }
+            }
+        }
+        return false;
     }
 
     public void run(List<EventListenerDescriptor> listeners, EventBundle bundle, long timeoutMillis, boolean bulk) {
@@ -152,6 +225,10 @@ public class PostCommitEventExecutor {
 
         Callable<Boolean> callable = !bulk ? new EventBundleRunner(listeners, bundle) : new EventBundleBulkRunner(
                 listeners, bundle);
+        execute(callable, timeoutMillis, bulk);
+    }
+
+    protected void execute(Callable<Boolean> callable, long timeoutMillis, boolean bulk) {
         FutureTask<Boolean> futureTask = new FutureTask<Boolean>(callable);
         try {
             executor.execute(futureTask);
@@ -310,6 +387,7 @@ public class PostCommitEventExecutor {
                 log.debug("Events postcommit bulk execution starting in thread: " + Thread.currentThread().getName());
             }
             long t0 = System.currentTimeMillis();
+            EventStats stats = Framework.getLocalService(EventStats.class);
 
             boolean ok = false;
             boolean interrupt = false;
@@ -347,6 +425,9 @@ public class PostCommitEventExecutor {
                                         + listener.getName(), e);
                         return Boolean.FALSE; // report error
                     } finally {
+                        if (stats != null) {
+                            stats.logAsyncExec(listener, System.currentTimeMillis() - t1);
+                        }
                         if (log.isDebugEnabled()) {
                             log.debug("Events postcommit bulk execution end for listener: " + listener.getName()
                                     + " in " + (System.currentTimeMillis() - t1) + "ms");
@@ -379,4 +460,221 @@ public class PostCommitEventExecutor {
             return Boolean.TRUE; // no error to report
         }
     }
+
+    /**
+     * Lets the listeners process several event bundles in bulk mode.
+     * <p>
+     * A single transaction is started for all the listeners and bundles, and the bundles are reconnected to sessions
+     * shared by all the listeners. For each listener, a document referenced by several bundles is fetched only once.
+     * Listeners implementing {@link PostCommitBatchEventListener} receive all their bundles in one call.
+     * <p>
+     * In case of exception in a listener, the transaction is rolled back and processing stops.
+     * <p>
+     * In case of timeout, the transaction is rolled back and processing stops.
+     *
+     * @since 7.2
+     */
+    protected static class EventBundleBatchRunner implements Callable<Boolean> {
+
+        protected final List<EventListenerDescriptor> listeners;
+
+        protected final List<EventBundle> bundles;
+
+        public EventBundleBatchRunner(List<EventListenerDescriptor> listeners, List<EventBundle> bundles) {
+            this.listeners = listeners;
+            this.bundles = bundles;
+        }
+
+        @Override
+        public Boolean call() {
+            if (log.isDebugEnabled()) {
+                log.debug("Events postcommit batch execution starting in thread: " + Thread.currentThread().getName());
+            }
+            long t0 = System.currentTimeMillis();
+            EventStats stats = Framework.getLocalService(EventStats.class);
+
+            boolean ok = false;
+            boolean interrupt = false;
+            SharedSessions sessions = new SharedSessions();
+            // transaction timeout is managed by the FutureTask
+            boolean tx = TransactionHelper.startTransaction();
+            try {
+                for (EventListenerDescriptor listener : listeners) {
+                    // documents are cached per listener, as a listener may change them
+                    Map<DocumentRef, DocumentModel> documents = new HashMap<DocumentRef, DocumentModel>();
+                    List<EventBundle> filtered = new ArrayList<EventBundle>(bundles.size());
+                    for (EventBundle bundle : bundles) {
+                        EventBundle f = listener.filterBundle(bundle);
+                        if (!f.isEmpty()) {
+                            filtered.add(new SharedSessionEventBundle(f, listener.getName(), sessions, documents));
+                        }
+                    }
+                    if (filtered.isEmpty()) {
+                        continue;
+                    }
+                    if (log.isDebugEnabled()) {
+                        log.debug("Events postcommit batch execution start for listener: " + listener.getName()
+                                + " with " + filtered.size() + " bundles");
+                    }
+                    long t1 = System.currentTimeMillis();
+                    try {
+                        PostCommitEventListener pcl = listener.asPostCommitListener();
+                        if (pcl instanceof PostCommitBatchEventListener) {
+                            ((PostCommitBatchEventListener) pcl).handleEvents(filtered);
+                        } else {
+                            for (EventBundle bundle : filtered) {
+                                pcl.handleEvent(bundle);
+                            }
+                        }
+                        if (Thread.currentThread().isInterrupted()) {
+                            log.error("Events postcommit batch execution interrupted for listener: "
+                                    + listener.getName() + ", will rollback and abort batch processing");
+                            interrupt = true;
+                        }
+                    } catch (ClientException e) {
+                        log.error(
+                                "Events postcommit batch execution encountered exception for listener: "
+                                        + listener.getName(), e);
+                        return Boolean.FALSE; // report error
+                    } catch (RuntimeException e) {
+                        log.error(
+                                "Events postcommit batch execution encountered exception for listener: "
+                                        + listener.getName(), e);
+                        return Boolean.FALSE; // report error
+                    } finally {
+                        for (EventBundle bundle : filtered) {
+                            ((ReconnectedEventBundle) bundle).disconnect();
+                        }
+                        if (stats != null) {
+                            stats.logBatchExec(listener, filtered.size(), System.currentTimeMillis() - t1);
+                        }
+                        if (log.isDebugEnabled()) {
+                            log.debug("Events postcommit batch execution end for listener: " + listener.getName()
+                                    + " in " + (System.currentTimeMillis() - t1) + "ms");
+                        }
+                    }
+                    if (interrupt) {
+                        break;
+                    }
+                }
+                ok = !interrupt;
+            } finally {
+                try {
+                    sessions.close();
+                } finally {
+                    if (tx) {
+                        if (!ok) {
+                            TransactionHelper.setTransactionRollbackOnly();
+                            log.error("Rolling back transaction");
+                        }
+                        TransactionHelper.commitOrRollbackTransaction();
+                    }
+                }
+                if (log.isDebugEnabled()) {
+                    log.debug("Events postcommit batch execution finished in " + (System.currentTimeMillis() - t0)
+                            + "ms");
+                }
+            }
+            return Boolean.TRUE; // no error to report
+        }
+    }
+
+    /**
+     * System sessions shared by the bundles of a batch, opened on first use.
+     *
+     * @since 7.2
+     */
+    protected static class SharedSessions {
+
+        protected LoginContext loginContext;
+
+        protected final Map<String, CoreSession> sessions = new HashMap<String, CoreSession>();
+
+        public CoreSession getSession(String repoName) {
+            CoreSession session = sessions.get(repoName);
+            if (session == null) {
+                if (loginContext == null) {
+                    try {
+                        loginContext = Framework.login();
+                    } catch (LoginException e) {
+                        log.error("Cannot log in", e);
+                        return null;
+                    }
+                }
+                try {
+                    session = CoreInstance.openCoreSessionSystem(repoName);
+                } catch (ClientException e) {
+                    log.error("Error while openning core session on repo " + repoName, e);
+                    return null;
+                }
+                sessions.put(repoName, session);
+            }
+            return session;
+        }
+
+        public void close() {
+            try {
+                for (CoreSession session : sessions.values()) {
+                    session.close();
+                }
+                sessions.clear();
+            } finally {
+                if (loginContext != null) {
+                    try {
+                        loginContext.logout();
+                    } catch (LoginException e) {
+                        log.error("Cannot log out", e);
+                    } finally {
+                        loginContext = null;
+                    }
+                }
+            }
+        }
+
+    }
+
+    /**
+     * Event bundle reconnected to sessions shared with other bundles, and reusing the documents already fetched.
+     * <p>
+     * The sessions are closed by the caller, not on {@link #disconnect}.
+     *
+     * @since 7.2
+     */
+    protected static class SharedSessionEventBundle extends ReconnectedEventBundleImpl {
+
+        private static final long serialVersionUID = 1L;
+
+        protected final transient SharedSessions sessions;
+
+        protected final transient Map<DocumentRef, DocumentModel> documents;
+
+        public SharedSessionEventBundle(EventBundle sourceEventBundle, String listenerName, SharedSessions sessions,
+                Map<DocumentRef, DocumentModel> documents) {
+            super(sourceEventBundle, listenerName);
+            this.sessions = sessions;
+            this.documents = documents;
+        }
+
+        @Override
+        protected CoreSession getReconnectedCoreSession(String repoName) {
+            return sessions.getSession(repoName);
+        }
+
+        @Override
+        protected DocumentModel refetchDocument(CoreSession session, DocumentRef ref) throws ClientException {
+            if (documents.containsKey(ref)) {
+                return documents.get(ref);
+            }
+            DocumentModel doc = super.refetchDocument(session, ref);
+            documents.put(ref, doc);
+            return doc;
+        }
+
+        @Override
+        public void disconnect() {
+            reconnectedEvents = null;
+        }
+
+    }
+
 }
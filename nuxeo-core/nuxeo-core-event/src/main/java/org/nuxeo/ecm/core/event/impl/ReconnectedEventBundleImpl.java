@@ -116,8 +116,9 @@ public class ReconnectedEventBundleImpl implements ReconnectedEventBundle {
                         DocumentRef ref = oldDoc.getRef();
                         if (ref != null) {
                             try {
-                                if (session.exists(oldDoc.getRef())) {
-                                    newArg = session.getDocument(oldDoc.getRef());
+                                DocumentModel doc = refetchDocument(session, ref);
+                                if (doc != null) {
+                                    newArg = doc;
                                 } else {
                                     // probably deleted doc
                                     newArg = new DeletedDocumentModel(oldDoc);
@@ -147,8 +148,9 @@ public class ReconnectedEventBundleImpl implements ReconnectedEventBundle {
                         DocumentModel oldDoc = (DocumentModel) propValue;
                         DocumentRef oldRef = oldDoc.getRef();
                         try {
-                            if (session.exists(oldRef)) {
-                                propValue = session.getDocument(oldRef);
+                            DocumentModel doc = refetchDocument(session, oldRef);
+                            if (doc != null) {
+                                propValue = doc;
                             } else {
                                 log.warn("Listener " + (listenerName == null ? "" : "'" + listenerName + "' ")
                                         + "cannot refetch missing document: " + oldRef + " ("
@@ -169,6 +171,16 @@ public class ReconnectedEventBundleImpl implements ReconnectedEventBundle {
         return reconnectedEvents;
     }
 
+    /**
+     * Fetches again a document from the reconnected session.
+     *
+     * @return the document, or {@code null} if it does not exist anymore
+     * @since 7.2
+     */
+    protected DocumentModel refetchDocument(CoreSession session, DocumentRef ref) throws ClientException {
+        return session.exists(ref) ? session.getDocument(ref) : null;
+    }
+
     protected boolean refetchDocumentModel(CoreSession session, Object eventProperty) {
         if (eventProperty instanceof DocumentModel && session != null) {
             DocumentModel doc = (DocumentModel) eventProperty;
@@ -496,6 +496,16 @@ public abstract class AbstractWork implements Work {
         return isTree;
     }
 
+    /**
+     * Not coalesced by default, as the parameters of a work aren't known here.
+     *
+     * @since 7.2
+     */
+    @Override
+    public String getCoalescingKey() {
+        return null;
+    }
+
     /**
      * Releases the transaction resources by committing the existing transaction (if any). This is recommended before
      * running a long process.
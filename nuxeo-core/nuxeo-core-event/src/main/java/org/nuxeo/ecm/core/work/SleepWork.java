@@ -90,6 +90,14 @@ public class SleepWork extends AbstractWork {
         return category;
     }
 
+    @Override
+    public String getCoalescingKey() {
+        if (docId == null || isTree) {
+            return null;
+        }
+        return durationMillis + "/" + repositoryName + '/' + docId;
+    }
+
     @Override
     public String getTitle() {
         return "Sleep " + durationMillis + " ms";
@@ -22,11 +22,16 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
 import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
@@ -61,6 +66,7 @@ import org.nuxeo.runtime.model.DefaultComponent;
 import org.nuxeo.runtime.transaction.TransactionHelper;
 
 import com.codahale.metrics.Counter;
+import com.codahale.metrics.Meter;
 import com.codahale.metrics.MetricRegistry;
 import com.codahale.metrics.SharedMetricRegistries;
 import com.codahale.metrics.Timer;
@@ -87,6 +93,15 @@ public class WorkManagerImpl extends DefaultComponent implements WorkManager {
 
     protected static final String THREAD_PREFIX = "Nuxeo-Work-";
 
+    /**
+     * Number of threads of the pool shared by the queues configured as {@link WorkQueueDescriptor#shared}.
+     *
+     * @since 7.2
+     */
+    public static final String SHARED_THREADS_PROP = "org.nuxeo.work.shared.maxThreads";
+
+    public static final String DEFAULT_SHARED_THREADS = "4";
+
     protected final MetricRegistry registry = SharedMetricRegistries.getOrCreate(MetricsService.class.getName());
 
     // @GuardedBy("itself")
@@ -99,6 +114,14 @@ public class WorkManagerImpl extends DefaultComponent implements WorkManager {
 
     protected WorkQueuing queuing = newWorkQueuing(MemoryWorkQueuing.class);
 
+    /** The shared pool, created when a shared queue is activated. */
+    // @GuardedBy("this")
+    protected SharedWorkScheduler sharedScheduler;
+
+    /** Timer queuing coalesced work instances, created when first needed. */
+    // @GuardedBy("this")
+    protected ScheduledExecutorService coalescer;
+
     @Override
     public void activate(ComponentContext context) {
         Framework.addListener(new ShutdownListener());
@@ -165,6 +188,10 @@ public class WorkManagerImpl extends DefaultComponent implements WorkManager {
             executor.prestartAllCoreThreads();
             executors.put(id, executor);
         }
+        executor.configure(workQueueDescriptor);
+        if (workQueueDescriptor.shared) {
+            getSharedScheduler().register(executor);
+        }
         NuxeoBlockingQueue queue = (NuxeoBlockingQueue) executor.getQueue();
         // get merged contrib
         // set active state
@@ -172,6 +199,38 @@ public class WorkManagerImpl extends DefaultComponent implements WorkManager {
         log.info("Activated work queue " + workQueueDescriptor.id + what);
     }
 
+    protected synchronized SharedWorkScheduler getSharedScheduler() {
+        if (sharedScheduler == null) {
+            int nThreads = Integer.parseInt(Framework.getProperty(SHARED_THREADS_PROP, DEFAULT_SHARED_THREADS));
+            sharedScheduler = new SharedWorkScheduler();
+            sharedScheduler.start(nThreads);
+        }
+        return sharedScheduler;
+    }
+
+    protected synchronized ScheduledExecutorService getCoalescer() {
+        if (coalescer == null) {
+            ThreadFactory threadFactory = new NamedThreadFactory(THREAD_PREFIX + "coalescer-");
+            coalescer = Executors.newSingleThreadScheduledExecutor(threadFactory);
+        }
+        return coalescer;
+    }
+
+    protected synchronized void stopCoalescer() {
+        if (coalescer != null) {
+            // pending work instances have been queued by shutdownAndSuspend
+            coalescer.shutdownNow();
+            coalescer = null;
+        }
+    }
+
+    protected synchronized void stopSharedScheduler() {
+        if (sharedScheduler != null) {
+            sharedScheduler.stop();
+            sharedScheduler = null;
+        }
+    }
+
     public void deactivateQueue(WorkQueueDescriptor workQueueDescriptor) {
         if (WorkQueueDescriptor.ALL_QUEUES.equals(workQueueDescriptor.id)) {
             return;
@@ -347,7 +406,10 @@ public class WorkManagerImpl extends DefaultComponent implements WorkManager {
     }
 
     protected synchronized void removeExecutor(String queueId) {
-        executors.remove(queueId);
+        WorkThreadPoolExecutor executor = executors.remove(queueId);
+        if (executor != null && sharedScheduler != null) {
+            sharedScheduler.unregister(executor);
+        }
     }
 
     @Override
@@ -355,7 +417,10 @@ public class WorkManagerImpl extends DefaultComponent implements WorkManager {
         List<WorkThreadPoolExecutor> executorList = new ArrayList<>(executors.values());
         executors.clear();
         started = false;
-        return shutdownExecutors(executorList, timeout, unit);
+        boolean terminated = shutdownExecutors(executorList, timeout, unit);
+        stopSharedScheduler();
+        stopCoalescer();
+        return terminated;
     }
 
     protected class ShutdownListener implements RuntimeServiceListener {
@@ -514,6 +579,125 @@ public class WorkManagerImpl extends DefaultComponent implements WorkManager {
 
     }
 
+    /**
+     * A pool of threads shared between queues, which run the work instances of the busiest queues when their own
+     * threads don't keep up.
+     * <p>
+     * An idle thread picks among the registered queues that have scheduled work instances the one with the highest
+     * priority, then the highest weighted backlog, and runs one work instance of this queue through its executor.
+     *
+     * @since 7.2
+     */
+    protected class SharedWorkScheduler implements Runnable {
+
+        protected static final long IDLE_WAIT_MILLIS = 100;
+
+        protected final List<WorkThreadPoolExecutor> members = new CopyOnWriteArrayList<>();
+
+        protected final List<Thread> threads = new ArrayList<>();
+
+        protected final ReentrantLock lock = new ReentrantLock();
+
+        protected final Condition available = lock.newCondition();
+
+        protected volatile boolean stopped;
+
+        protected void start(int nThreads) {
+            ThreadFactory threadFactory = new NamedThreadFactory(THREAD_PREFIX + "shared-");
+            for (int i = 0; i < nThreads; i++) {
+                Thread thread = threadFactory.newThread(this);
+                thread.setDaemon(true);
+                threads.add(thread);
+                thread.start();
+            }
+            log.info("Started shared work pool with " + nThreads + " threads");
+        }
+
+        protected void stop() {
+            stopped = true;
+            lock.lock();
+            try {
+                available.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        protected void register(WorkThreadPoolExecutor executor) {
+            if (!members.contains(executor)) {
+                members.add(executor);
+            }
+        }
+
+        protected void unregister(WorkThreadPoolExecutor executor) {
+            members.remove(executor);
+        }
+
+        /**
+         * Called when a work instance is scheduled in a shared queue.
+         */
+        protected void signal() {
+            lock.lock();
+            try {
+                available.signal();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public void run() {
+            while (!stopped) {
+                WorkThreadPoolExecutor executor = pick();
+                boolean ran = false;
+                if (executor != null) {
+                    try {
+                        ran = executor.runShared();
+                    } catch (RuntimeException | Error e) {
+                        log.error("Uncaught error running work from queue " + executor.queueId, e);
+                        ran = true;
+                    }
+                }
+                if (!ran) {
+                    awaitAvailable();
+                }
+            }
+        }
+
+        protected WorkThreadPoolExecutor pick() {
+            WorkThreadPoolExecutor best = null;
+            long bestScore = 0;
+            for (WorkThreadPoolExecutor executor : members) {
+                long backlog = executor.scheduledCount.getCount();
+                if (!executor.shared || backlog <= 0 || executor.isShutdown() || !executor.hasSharedSlot()) {
+                    continue;
+                }
+                long score = backlog * executor.weight;
+                if (best == null || executor.priority > best.priority
+                        || (executor.priority == best.priority && score > bestScore)) {
+                    best = executor;
+                    bestScore = score;
+                }
+            }
+            return best;
+        }
+
+        protected void awaitAvailable() {
+            lock.lock();
+            try {
+                if (!stopped) {
+                    available.await(IDLE_WAIT_MILLIS, TimeUnit.MILLISECONDS);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                stopped = true;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+    }
+
     /**
      * A {@link ThreadPoolExecutor} that keeps available the list of running tasks.
      * <p>
@@ -531,10 +715,22 @@ public class WorkManagerImpl extends DefaultComponent implements WorkManager {
         protected final WorkCompletionSynchronizer completionSynchronizer;
 
         /**
-         * List of running Work instances, in order to be able to interrupt them if requested.
+         * Set of running Work instances, in order to be able to interrupt them if requested.
          */
-        // @GuardedBy("itself")
-        protected final List<Work> running;
+        protected final Set<Work> running;
+
+        // shared pool configuration
+
+        protected volatile boolean shared;
+
+        protected volatile int weight = 1;
+
+        protected volatile int priority;
+
+        protected volatile int maxSharedThreads = -1;
+
+        /** Number of work instances of this queue run by the shared pool. */
+        protected final AtomicInteger sharedRunning = new AtomicInteger();
 
         // metrics
 
@@ -548,18 +744,89 @@ public class WorkManagerImpl extends DefaultComponent implements WorkManager {
 
         protected final Timer workTimer;
 
+        protected final Timer waitTimer;
+
+        protected final Meter completedRate;
+
+        protected final Counter sharedCount;
+
+        protected final Counter coalescedCount;
+
+        /** Delay before queuing coalesced work instances, or 0 if coalescing is disabled. */
+        protected volatile long coalesceDelay;
+
+        /** Work instances waiting to be queued, by coalescing key. */
+        protected final ConcurrentMap<String, Work> pending = new ConcurrentHashMap<>();
+
         protected WorkThreadPoolExecutor(String queueId, int corePoolSize, int maximumPoolSize, long keepAliveTime,
                 TimeUnit unit, ThreadFactory threadFactory) {
             super(corePoolSize, maximumPoolSize, keepAliveTime, unit, queuing.initScheduleQueue(queueId), threadFactory);
             this.queueId = queueId;
             completionSynchronizer = new WorkCompletionSynchronizer(queueId);
-            running = new LinkedList<Work>();
+            running = Collections.newSetFromMap(new ConcurrentHashMap<Work, Boolean>());
             // init metrics
             scheduledCount = registry.counter(MetricRegistry.name("nuxeo", "works", queueId, "scheduled", "count"));
             scheduledMax = registry.counter(MetricRegistry.name("nuxeo", "works", queueId, "scheduled", "max"));
             runningCount = registry.counter(MetricRegistry.name("nuxeo", "works", queueId, "running"));
             completedCount = registry.counter(MetricRegistry.name("nuxeo", "works", queueId, "completed"));
             workTimer = registry.timer(MetricRegistry.name("nuxeo", "works", queueId, "total"));
+            waitTimer = registry.timer(MetricRegistry.name("nuxeo", "works", queueId, "wait"));
+            completedRate = registry.meter(MetricRegistry.name("nuxeo", "works", queueId, "throughput"));
+            sharedCount = registry.counter(MetricRegistry.name("nuxeo", "works", queueId, "shared"));
+            coalescedCount = registry.counter(MetricRegistry.name("nuxeo", "works", queueId, "coalesced"));
+        }
+
+        protected void configure(WorkQueueDescriptor descriptor) {
+            shared = descriptor.shared;
+            weight = Math.max(1, descriptor.weight);
+            priority = descriptor.priority;
+            maxSharedThreads = descriptor.maxSharedThreads;
+            coalesceDelay = descriptor.coalesceDelayMillis;
+        }
+
+        protected boolean hasSharedSlot() {
+            return maxSharedThreads < 0 || sharedRunning.get() < maxSharedThreads;
+        }
+
+        /**
+         * Runs one scheduled work instance of this queue in the calling thread of the shared pool.
+         *
+         * @return {@code false} if there was nothing to run or no shared slot available
+         */
+        protected boolean runShared() {
+            if (isShutdown()) {
+                return false;
+            }
+            // claim a slot
+            for (;;) {
+                int n = sharedRunning.get();
+                if (maxSharedThreads >= 0 && n >= maxSharedThreads) {
+                    return false;
+                }
+                if (sharedRunning.compareAndSet(n, n + 1)) {
+                    break;
+                }
+            }
+            try {
+                Runnable r = getQueue().poll();
+                if (r == null) {
+                    return false;
+                }
+                sharedCount.inc();
+                Throwable thrown = null;
+                beforeExecute(Thread.currentThread(), r);
+                try {
+                    r.run();
+                } catch (RuntimeException | Error e) {
+                    thrown = e;
+                    throw e;
+                } finally {
+                    afterExecute(r, thrown);
+                }
+                return true;
+            } finally {
+                sharedRunning.decrementAndGet();
+            }
         }
 
         public int getScheduledOrRunningSize() {
@@ -578,15 +845,29 @@ public class WorkManagerImpl extends DefaultComponent implements WorkManager {
          * @see #execute(Runnable)
          */
         public void execute(Work work) {
+            signalScheduled();
+            submitOrComplete(work);
+        }
+
+        protected void signalScheduled() {
             scheduledCount.inc();
             if (scheduledCount.getCount() > scheduledMax.getCount()) {
                 scheduledMax.inc();
             }
             completionSynchronizer.signalSchedule();
+        }
+
+        protected void submitOrComplete(Work work) {
             boolean ok = false;
             try {
                 submit(work);
                 ok = true;
+                if (shared) {
+                    SharedWorkScheduler scheduler = sharedScheduler;
+                    if (scheduler != null) {
+                        scheduler.signal();
+                    }
+                }
             } finally {
                 if (!ok) {
                     completionSynchronizer.signalCompletion();
@@ -594,6 +875,65 @@ public class WorkManagerImpl extends DefaultComponent implements WorkManager {
             }
         }
 
+        /**
+         * Executes the given task after the coalescing delay, unless another task with the same key is scheduled
+         * meanwhile, in which case only the last one is executed.
+         * <p>
+         * The window is fixed: it starts when the first task of a key is held and isn't extended by the next ones, so
+         * that a key scheduled continuously is still executed at least once per delay.
+         *
+         * @param work the work to execute
+         * @param key the coalescing key
+         * @since 7.2
+         */
+        public void executeCoalesced(Work work, final String key) {
+            Work previous = pending.put(key, work);
+            if (previous != null) {
+                // the queuing of the previous one is already planned and will take this one instead
+                previous.setWorkInstanceState(State.CANCELED);
+                coalescedCount.inc();
+                if (log.isDebugEnabled()) {
+                    log.debug("Coalesced work: " + previous + " into: " + work);
+                }
+                return;
+            }
+            signalScheduled();
+            getCoalescer().schedule(new Runnable() {
+                @Override
+                public void run() {
+                    queuePending(key);
+                }
+            }, coalesceDelay, TimeUnit.MILLISECONDS);
+        }
+
+        protected void queuePending(String key) {
+            Work work = pending.remove(key);
+            if (work != null) {
+                submitOrComplete(work);
+            }
+        }
+
+        protected void queueAllPending() {
+            for (String key : new ArrayList<>(pending.keySet())) {
+                queuePending(key);
+            }
+        }
+
+        /**
+         * Gets the work instance with the given id that is held for coalescing, not yet in the scheduled queue.
+         *
+         * @return the work, or {@code null} if none is held with this id
+         * @since 7.2
+         */
+        public Work getPending(String workId) {
+            for (Work work : pending.values()) {
+                if (work.getId().equals(workId)) {
+                    return work;
+                }
+            }
+            return null;
+        }
+
         /**
          * go through the queue instead of using super.execute which may skip the queue and hand off to a thread
          * directly
@@ -615,9 +955,7 @@ public class WorkManagerImpl extends DefaultComponent implements WorkManager {
             Work work = WorkHolder.getWork(r);
             work.setWorkInstanceState(State.RUNNING);
             queuing.workRunning(queueId, work);
-            synchronized (running) {
-                running.add(work);
-            }
+            running.add(work);
             // metrics
             scheduledCount.dec();
             runningCount.inc();
@@ -627,9 +965,7 @@ public class WorkManagerImpl extends DefaultComponent implements WorkManager {
         protected void afterExecute(Runnable r, Throwable t) {
             try {
                 Work work = WorkHolder.getWork(r);
-                synchronized (running) {
-                    running.remove(work);
-                }
+                running.remove(work);
                 State state;
                 if (t == null) {
                     if (work.isWorkInstanceSuspended()) {
@@ -645,7 +981,11 @@ public class WorkManagerImpl extends DefaultComponent implements WorkManager {
                 // metrics
                 runningCount.dec();
                 completedCount.inc();
+                completedRate.mark();
                 workTimer.update(work.getCompletionTime() - work.getStartTime(), TimeUnit.MILLISECONDS);
+                if (work.getStartTime() > 0) {
+                    waitTimer.update(work.getStartTime() - work.getSchedulingTime(), TimeUnit.MILLISECONDS);
+                }
             } finally {
                 completionSynchronizer.signalCompletion();
             }
@@ -670,14 +1010,14 @@ public class WorkManagerImpl extends DefaultComponent implements WorkManager {
             // shutdown the executor
             // if a new task is scheduled it will be rejected -> discarded
             shutdown();
+            // queue the coalesced work instances so that they are suspended with the others
+            queueAllPending();
             // request all scheduled work instances to suspend (cancel)
             int n = queuing.setSuspending(queueId);
             completionSynchronizer.scheduledOrRunning.addAndGet(-n);
             // request all running work instances to suspend (stop)
-            synchronized (running) {
-                for (Work work : running) {
-                    work.setWorkInstanceSuspending();
-                }
+            for (Work work : running) {
+                work.setWorkInstanceSuspending();
             }
         }
 
@@ -689,7 +1029,16 @@ public class WorkManagerImpl extends DefaultComponent implements WorkManager {
          * @return true if all work stopped or was saved, false if some remaining after timeout
          */
         public boolean awaitTerminationOrSave(long timeout, TimeUnit unit) throws InterruptedException {
+            long end = System.currentTimeMillis() + unit.toMillis(timeout);
             boolean terminated = super.awaitTermination(timeout, unit);
+            // also wait for the work instances run by the shared pool
+            while (terminated && sharedRunning.get() > 0) {
+                if (System.currentTimeMillis() >= end) {
+                    terminated = false;
+                    break;
+                }
+                Thread.sleep(10);
+            }
             if (!terminated) {
                 // drain queue from remaining scheduled work
                 List<Runnable> drained = new ArrayList<>();
@@ -703,8 +1052,13 @@ public class WorkManagerImpl extends DefaultComponent implements WorkManager {
         }
 
         public Work removeScheduled(String workId) {
-            Work w = queuing.removeScheduled(queueId, workId);
+            Work w = getPending(workId);
+            if (w == null || !pending.values().remove(w)) {
+                w = queuing.removeScheduled(queueId, workId);
+            }
             if (w != null) {
+                // it will never go through beforeExecute
+                scheduledCount.dec();
                 completionSynchronizer.signalCompletion();
             }
             return w;
@@ -776,7 +1130,28 @@ public class WorkManagerImpl extends DefaultComponent implements WorkManager {
             break;
 
         }
-        getExecutor(queueId).execute(work);
+        WorkThreadPoolExecutor executor = getExecutor(queueId);
+        String key = executor.coalesceDelay > 0 ? getCoalescingKey(work) : null;
+        if (key == null) {
+            executor.execute(work);
+        } else {
+            executor.executeCoalesced(work, key);
+        }
+    }
+
+    /**
+     * Gets the key under which similar work instances are coalesced: same class, category and
+     * {@link Work#getCoalescingKey}.
+     *
+     * @return the key, or {@code null} if the work doesn't provide one
+     * @since 7.2
+     */
+    protected String getCoalescingKey(Work work) {
+        String key = work.getCoalescingKey();
+        if (key == null) {
+            return null;
+        }
+        return work.getClass().getName() + '/' + work.getCategory() + '/' + key;
     }
 
     /**
@@ -832,28 +1207,81 @@ public class WorkManagerImpl extends DefaultComponent implements WorkManager {
             pos[0] = 0; // compat
         }
         String workId = work.getId();
-        return queuing.find(workId, state);
+        Work found = queuing.find(workId, state);
+        if (found == null && (state == null || state == State.SCHEDULED)) {
+            found = findPending(workId);
+        }
+        return found;
+    }
+
+    /**
+     * Finds a work instance held for coalescing in any queue. Such work instances are in the SCHEDULED state but not
+     * yet known to the {@link WorkQueuing}.
+     *
+     * @return the work, or {@code null} if none is held with this id
+     * @since 7.2
+     */
+    protected synchronized Work findPending(String workId) {
+        for (WorkThreadPoolExecutor executor : executors.values()) {
+            Work work = executor.getPending(workId);
+            if (work != null) {
+                return work;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Gets the work instances of a queue held for coalescing.
+     *
+     * @since 7.2
+     */
+    protected Collection<Work> getPendingWorks(String queueId) {
+        WorkThreadPoolExecutor executor = executors.get(queueId);
+        if (executor == null) {
+            return Collections.emptyList();
+        }
+        return executor.pending.values();
     }
 
     /** @param state SCHEDULED, RUNNING or null for both */
     protected boolean hasWorkInState(String workId, State state) {
-        return queuing.isWorkInState(workId, state);
+        if (queuing.isWorkInState(workId, state)) {
+            return true;
+        }
+        return (state == null || state == State.SCHEDULED) && findPending(workId) != null;
     }
 
     @Override
     public State getWorkState(String workId) {
-        return queuing.getWorkState(workId);
+        State state = queuing.getWorkState(workId);
+        if (state == null && findPending(workId) != null) {
+            state = State.SCHEDULED;
+        }
+        return state;
     }
 
     @Override
     public List<Work> listWork(String queueId, State state) {
         // don't return scheduled after commit
-        return queuing.listWork(queueId, state);
+        List<Work> works = queuing.listWork(queueId, state);
+        if (state == null || state == State.SCHEDULED) {
+            works = new ArrayList<>(works);
+            works.addAll(getPendingWorks(queueId));
+        }
+        return works;
     }
 
     @Override
     public List<String> listWorkIds(String queueId, State state) {
-        return queuing.listWorkIds(queueId, state);
+        List<String> workIds = queuing.listWorkIds(queueId, state);
+        if (state == null || state == State.SCHEDULED) {
+            workIds = new ArrayList<>(workIds);
+            for (Work work : getPendingWorks(queueId)) {
+                workIds.add(work.getId());
+            }
+        }
+        return workIds;
     }
 
     @Override
@@ -879,7 +1307,8 @@ public class WorkManagerImpl extends DefaultComponent implements WorkManager {
     }
 
     protected int getScheduledSize(String queueId) {
-        return queuing.getQueueSize(queueId, State.SCHEDULED);
+        // include the work instances held for coalescing
+        return queuing.getQueueSize(queueId, State.SCHEDULED) + getPendingWorks(queueId).size();
     }
 
     protected int getRunningSize(String queueId) {
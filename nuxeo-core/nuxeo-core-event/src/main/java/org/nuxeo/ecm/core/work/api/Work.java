@@ -395,6 +395,18 @@ public interface Work extends Serializable {
      */
     boolean isDocumentTree();
 
+    /**
+     * Gets the key under which this work can be coalesced with the other work instances of the same class and
+     * category, when its queue has a coalescing delay.
+     * <p>
+     * Only the last work instance scheduled with a given key during the delay is run, so the key must capture all the
+     * parameters of the work, not just its target document.
+     *
+     * @return the key, or {@code null} if this work must not be coalesced
+     * @since 7.2
+     */
+    String getCoalescingKey();
+
     /**
      * Returns the schedule path
      *
@@ -74,6 +74,50 @@ public class WorkQueueDescriptor {
     @XNode("capacity")
     public int capacity = -1;
 
+    /**
+     * If this is {@code true}, idle threads of the shared pool may run work instances of this queue, in addition to
+     * its own {@link #maxThreads} threads.
+     *
+     * @since 7.2
+     */
+    @XNode("shared")
+    public boolean shared = false;
+
+    /**
+     * Weight of the backlog of this queue when the shared pool chooses which queue to help.
+     *
+     * @since 7.2
+     */
+    @XNode("weight")
+    public int weight = 1;
+
+    /**
+     * Priority of this queue for the shared pool. Queues with a higher priority are helped first.
+     *
+     * @since 7.2
+     */
+    @XNode("priority")
+    public int priority = 0;
+
+    /**
+     * Maximum number of shared pool threads running work instances of this queue at the same time, or -1 for no
+     * limit.
+     *
+     * @since 7.2
+     */
+    @XNode("maxSharedThreads")
+    public int maxSharedThreads = -1;
+
+    /**
+     * When positive, work instances providing a {@link Work#getCoalescingKey} are held for this delay before being
+     * queued, and the ones scheduled meanwhile with the same key, category and class are coalesced into the last one.
+     * The delay starts with the first held instance and isn't extended by the coalesced ones.
+     *
+     * @since 7.2
+     */
+    @XNode("coalesceDelayMillis")
+    public long coalesceDelayMillis = 0;
+
     /**
      * Whether queuing of work instances to this queue is enabled for this Nuxeo instance.
      */
@@ -99,6 +143,11 @@ public class WorkQueueDescriptor {
         o.usePriority = usePriority;
         o.clearCompletedAfterSeconds = clearCompletedAfterSeconds;
         o.capacity = capacity;
+        o.shared = shared;
+        o.weight = weight;
+        o.priority = priority;
+        o.maxSharedThreads = maxSharedThreads;
+        o.coalesceDelayMillis = coalesceDelayMillis;
         o.categories = new HashSet<String>(categories);
         return o;
     }
@@ -115,6 +164,11 @@ public class WorkQueueDescriptor {
         usePriority = other.usePriority;
         clearCompletedAfterSeconds = other.clearCompletedAfterSeconds;
         capacity = other.capacity;
+        shared = other.shared;
+        weight = other.weight;
+        priority = other.priority;
+        maxSharedThreads = other.maxSharedThreads;
+        coalesceDelayMillis = other.coalesceDelayMillis;
         categories.addAll(other.categories);
     }
 
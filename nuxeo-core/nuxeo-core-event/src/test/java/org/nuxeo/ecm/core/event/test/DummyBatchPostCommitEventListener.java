@@ -0,0 +1,51 @@
+/*
+ * Copyright (c) 2015 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.ecm.core.event.test;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.nuxeo.ecm.core.event.EventBundle;
+import org.nuxeo.ecm.core.event.PostCommitBatchEventListener;
+
+public class DummyBatchPostCommitEventListener implements PostCommitBatchEventListener {
+
+    private static AtomicInteger batchCount = new AtomicInteger(0);
+
+    private static AtomicInteger bundleCount = new AtomicInteger(0);
+
+    @Override
+    public void handleEvent(EventBundle events) {
+        batchCount.incrementAndGet();
+        bundleCount.incrementAndGet();
+    }
+
+    @Override
+    public void handleEvents(List<EventBundle> bundles) {
+        batchCount.incrementAndGet();
+        bundleCount.addAndGet(bundles.size());
+    }
+
+    public static int batchCount() {
+        return batchCount.get();
+    }
+
+    public static int bundleCount() {
+        return bundleCount.get();
+    }
+
+    public static void reset() {
+        batchCount.set(0);
+        bundleCount.set(0);
+    }
+
+}
@@ -169,6 +169,42 @@ public class TestEventServiceComponent extends NXRuntimeTestCase {
         assertEquals(2, DummyPostCommitEventListener.eventCount());
     }
 
+    @Test
+    public void testSyncPostCommitBulkBatch() throws Exception {
+        URL url = getClass().getClassLoader().getResource("test-batch-postcommit-listeners.xml");
+        deployTestContrib("org.nuxeo.ecm.core.event", url);
+        DummyBatchPostCommitEventListener.reset();
+        EventService service = Framework.getService(EventService.class);
+        EventServiceAdmin eventServiceAdmin = Framework.getLocalService(EventServiceAdmin.class);
+        try {
+            Framework.getProperties().setProperty(PostCommitEventExecutor.BULK_BATCH_SIZE_PROP, "3");
+            eventServiceAdmin.setBulkModeEnabled(true);
+            for (int i = 0; i < 4; i++) {
+                if (i == 3) {
+                    // first batch done
+                    assertEquals(3, DummyPostCommitEventListener.handledCount());
+                    assertEquals(1, DummyBatchPostCommitEventListener.batchCount());
+                    assertEquals(3, DummyBatchPostCommitEventListener.bundleCount());
+                } else {
+                    assertEquals(0, DummyPostCommitEventListener.handledCount());
+                }
+                service.fireEvent(new EventImpl("testsyncpostcommit", new EventContextImpl()));
+                Event commit = new EventImpl("testnotmached", new EventContextImpl());
+                commit.setIsCommitEvent(true);
+                service.fireEvent(commit);
+            }
+            // incomplete batch passed when leaving bulk mode
+            eventServiceAdmin.setBulkModeEnabled(false);
+            assertEquals(4, DummyPostCommitEventListener.handledCount());
+            assertEquals(4, DummyPostCommitEventListener.eventCount());
+            assertEquals(2, DummyBatchPostCommitEventListener.batchCount());
+            assertEquals(4, DummyBatchPostCommitEventListener.bundleCount());
+        } finally {
+            eventServiceAdmin.setBulkModeEnabled(false);
+            Framework.getProperties().remove(PostCommitEventExecutor.BULK_BATCH_SIZE_PROP);
+        }
+    }
+
     protected void doTestSyncPostCommit(boolean bulk, boolean error, boolean timeout, int expectedHandled,
             int expectedEvents) throws Exception {
         EventServiceAdmin eventServiceAdmin = Framework.getLocalService(EventServiceAdmin.class);
@@ -19,6 +19,7 @@ package org.nuxeo.ecm.core.work;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assume.assumeTrue;
 import static org.nuxeo.ecm.core.work.api.Work.State.CANCELED;
@@ -44,12 +45,17 @@ import org.nuxeo.ecm.core.work.api.WorkManager;
 import org.nuxeo.ecm.core.work.api.WorkManager.Scheduling;
 import org.nuxeo.ecm.core.work.api.WorkQueueDescriptor;
 import org.nuxeo.runtime.api.Framework;
+import org.nuxeo.runtime.metrics.MetricsService;
 import org.nuxeo.runtime.test.NXRuntimeTestCase;
 import org.nuxeo.runtime.test.runner.Features;
 import org.nuxeo.runtime.test.runner.FeaturesRunner;
 import org.nuxeo.runtime.test.runner.FileEventsTrackingFeature;
 import org.nuxeo.runtime.trackers.files.FileEvent;
 
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.SharedMetricRegistries;
+
 @Features(FileEventsTrackingFeature.class)
 public class WorkManagerTest extends NXRuntimeTestCase {
 
@@ -211,6 +217,109 @@ public class WorkManagerTest extends NXRuntimeTestCase {
         assertSetEquals(Arrays.asList("1", "2", "3"), service.listWorkIds(QUEUE, COMPLETED));
     }
 
+    @Test
+    public void testWorkManagerSharedPool() throws Exception {
+        deployContrib("org.nuxeo.ecm.core.event.test", "test-workmanager-shared.xml");
+        String queueId = "SharedSleepWork";
+        WorkQueueDescriptor qd = service.getWorkQueueDescriptor(queueId);
+        assertTrue(qd.shared);
+        assertEquals(2, qd.weight);
+        assertEquals(2, qd.maxSharedThreads);
+
+        int duration = 3000; // ms
+        for (int i = 0; i < 4; i++) {
+            service.schedule(new SleepWork(duration, queueId, false, "s" + i));
+        }
+        Thread.sleep(duration / 2);
+        // one dedicated thread, helped by at most two shared threads
+        assertEquals(3, service.getQueueSize(queueId, RUNNING));
+        assertEquals(1, service.getQueueSize(queueId, SCHEDULED));
+
+        assertTrue(service.awaitCompletion(queueId, duration * 3, TimeUnit.MILLISECONDS));
+        assertEquals(4, service.getQueueSize(queueId, COMPLETED));
+    }
+
+    @Test
+    public void testWorkManagerCoalescing() throws Exception {
+        deployContrib("org.nuxeo.ecm.core.event.test", "test-workmanager-coalesce.xml");
+        String queueId = "CoalescedSleepWork";
+        assertEquals(500, service.getWorkQueueDescriptor(queueId).coalesceDelayMillis);
+
+        SleepWork[] works = new SleepWork[5];
+        for (int i = 0; i < works.length; i++) {
+            works[i] = new SleepWork(10, queueId, false, "c" + i);
+            works[i].setDocument("test", "doc1");
+            service.schedule(works[i]);
+        }
+        // other document, not coalesced
+        SleepWork other = new SleepWork(10, queueId, false, "other");
+        other.setDocument("test", "doc2");
+        service.schedule(other);
+
+        assertTrue(service.awaitCompletion(queueId, 5, TimeUnit.SECONDS));
+        for (int i = 0; i < works.length - 1; i++) {
+            assertEquals(CANCELED, works[i].getWorkInstanceState());
+        }
+        assertEquals(COMPLETED, service.getWorkState("c4"));
+        assertEquals(COMPLETED, service.getWorkState("other"));
+        assertEquals(2, service.getQueueSize(queueId, COMPLETED));
+    }
+
+    @Test
+    public void testWorkManagerCoalescingKey() throws Exception {
+        deployContrib("org.nuxeo.ecm.core.event.test", "test-workmanager-coalesce.xml");
+        String queueId = "CoalescedSleepWork";
+
+        // same document but different parameters, not coalesced
+        SleepWork work1 = new SleepWork(10, queueId, false, "k1");
+        work1.setDocument("test", "doc1");
+        service.schedule(work1);
+        SleepWork work2 = new SleepWork(20, queueId, false, "k2");
+        work2.setDocument("test", "doc1");
+        service.schedule(work2);
+        // no coalescing key, not held
+        SleepWork tree = new SleepWork(10, queueId, false, "tree");
+        tree.setDocument("test", "doc1", true);
+        assertNull(tree.getCoalescingKey());
+        service.schedule(tree);
+
+        assertTrue(service.awaitCompletion(queueId, 5, TimeUnit.SECONDS));
+        assertEquals(COMPLETED, work1.getWorkInstanceState());
+        assertEquals(COMPLETED, work2.getWorkInstanceState());
+        assertEquals(COMPLETED, tree.getWorkInstanceState());
+        assertEquals(3, service.getQueueSize(queueId, COMPLETED));
+    }
+
+    @Test
+    public void testWorkManagerCoalescingHeldWork() throws Exception {
+        deployContrib("org.nuxeo.ecm.core.event.test", "test-workmanager-coalesce.xml");
+        String queueId = "CoalescedSleepWork";
+        Counter scheduledCount = SharedMetricRegistries.getOrCreate(MetricsService.class.getName()).counter(
+                MetricRegistry.name("nuxeo", "works", queueId, "scheduled", "count"));
+        long scheduled = scheduledCount.getCount();
+
+        SleepWork work = new SleepWork(10, queueId, false, "held");
+        work.setDocument("test", "doc1");
+        service.schedule(work);
+        // held for coalescing, but visible as scheduled
+        assertEquals(SCHEDULED, service.getWorkState("held"));
+        assertEquals(work, service.find(work, SCHEDULED, false, null));
+        assertEquals(Arrays.asList("held"), service.listWorkIds(queueId, SCHEDULED));
+        assertEquals(1, service.getQueueSize(queueId, SCHEDULED));
+        assertEquals(scheduled + 1, scheduledCount.getCount());
+
+        // canceling the held work doesn't leave it counted as scheduled
+        SleepWork work2 = new SleepWork(10, queueId, false, "held");
+        work2.setDocument("test", "doc1");
+        service.schedule(work2, Scheduling.CANCEL_SCHEDULED);
+        assertEquals(CANCELED, work.getWorkInstanceState());
+        assertEquals(scheduled + 1, scheduledCount.getCount());
+
+        assertTrue(service.awaitCompletion(queueId, 5, TimeUnit.SECONDS));
+        assertEquals(COMPLETED, work2.getWorkInstanceState());
+        assertEquals(scheduled, scheduledCount.getCount());
+    }
+
     @Test
     @Ignore
     public void testWorkManagerShutdown() throws Exception {
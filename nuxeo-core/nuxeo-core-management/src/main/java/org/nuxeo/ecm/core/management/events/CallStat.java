@@ -24,6 +24,8 @@ public class CallStat {
 
     int callCount = 0;
 
+    int bundleCount = 0;
+
     final String label;
 
     public CallStat(String label) {
@@ -31,7 +33,12 @@ public class CallStat {
     }
 
     void update(long delta) {
+        update(delta, 1);
+    }
+
+    void update(long delta, int bundles) {
         callCount++;
+        bundleCount += bundles;
         accumulatedTime += delta;
     }
 
@@ -43,6 +50,15 @@ public class CallStat {
         return callCount;
     }
 
+    /**
+     * Gets the number of event bundles processed, several bundles being processed by each call in batch mode.
+     *
+     * @since 7.2
+     */
+    public int getBundleCount() {
+        return bundleCount;
+    }
+
     public String getLabel() {
         return label;
     }
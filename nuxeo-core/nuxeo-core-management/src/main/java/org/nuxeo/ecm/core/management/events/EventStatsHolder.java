@@ -63,23 +63,38 @@ public class EventStatsHolder {
     }
 
     public static void logAsyncExec(EventListenerDescriptor desc, long delta) {
-        if (!collectAsyncHandlersExecTime) {
-            return;
+        logBatchExec(desc, 1, delta);
+    }
+
+    /**
+     * Logs the execution of a post-commit listener on several bundles. Synchronous post-commit listeners are recorded
+     * with the synchronous handlers, asynchronous ones with the asynchronous handlers.
+     *
+     * @since 7.2
+     */
+    public static void logBatchExec(EventListenerDescriptor desc, int bundles, long delta) {
+        if (desc.getIsAsync()) {
+            if (collectAsyncHandlersExecTime) {
+                logPostCommitExec(aSyncStats, desc, "(async)", bundles, delta);
+            }
+        } else {
+            if (collectSyncHandlersExecTime) {
+                logPostCommitExec(syncStats, desc, "(postcommit)", bundles, delta);
+            }
         }
+    }
+
+    protected static void logPostCommitExec(Map<String, CallStat> stats, EventListenerDescriptor desc, String kind,
+            int bundles, long delta) {
         String name = desc.getName();
-        synchronized (aSyncStats) {
-            CallStat stat = aSyncStats.get(name);
+        synchronized (stats) {
+            CallStat stat = stats.get(name);
             if (stat == null) {
-                String label = desc.asPostCommitListener().getClass().getSimpleName();
-                if (desc.getIsAsync()) {
-                    label += "(async)";
-                } else {
-                    label += "(sync)";
-                }
+                String label = desc.asPostCommitListener().getClass().getSimpleName() + kind;
                 stat = new CallStat(label);
-                aSyncStats.put(name, stat);
+                stats.put(name, stat);
             }
-            stat.update(delta);
+            stat.update(delta, bundles);
         }
     }
 
@@ -138,6 +153,10 @@ public class EventStatsHolder {
                 sb.append(" - ");
                 sb.append(stat.getCallCount());
                 sb.append(" calls - ");
+                if (stat.getBundleCount() != stat.getCallCount()) {
+                    sb.append(stat.getBundleCount());
+                    sb.append(" bundles - ");
+                }
                 sb.append(stat.getAccumulatedTime());
                 sb.append("ms - ");
                 String pcent = String.format("%.2f", 100.0 * stat.getAccumulatedTime() / totalTime);
@@ -29,4 +29,9 @@ public class EventStatsImpl implements EventStats {
         EventStatsHolder.logSyncExec(desc, delta);
     }
 
+    @Override
+    public void logBatchExec(EventListenerDescriptor desc, int bundles, long delta) {
+        EventStatsHolder.logBatchExec(desc, bundles, delta);
+    }
+
 }
@@ -0,0 +1,153 @@
+/*
+ * Copyright (c) 2015 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.ecm.core.query.sql;
+
+import java.security.Principal;
+import java.util.Calendar;
+
+import org.joda.time.DateTime;
+import org.nuxeo.ecm.core.query.sql.model.DateLiteral;
+import org.nuxeo.ecm.core.query.sql.model.DoubleLiteral;
+import org.nuxeo.ecm.core.query.sql.model.IntegerLiteral;
+import org.nuxeo.ecm.core.query.sql.model.Literal;
+import org.nuxeo.ecm.core.query.sql.model.Operand;
+import org.nuxeo.ecm.core.query.sql.model.Operator;
+import org.nuxeo.ecm.core.query.sql.model.OrderByClause;
+import org.nuxeo.ecm.core.query.sql.model.OrderByExpr;
+import org.nuxeo.ecm.core.query.sql.model.OrderByList;
+import org.nuxeo.ecm.core.query.sql.model.Predicate;
+import org.nuxeo.ecm.core.query.sql.model.Reference;
+import org.nuxeo.ecm.core.query.sql.model.SQLQuery;
+import org.nuxeo.ecm.core.query.sql.model.SQLQuery.Transformer;
+import org.nuxeo.ecm.core.query.sql.model.SelectClause;
+import org.nuxeo.ecm.core.query.sql.model.StringLiteral;
+import org.nuxeo.ecm.core.query.sql.model.WhereClause;
+
+/**
+ * Transformer restricting a query to the rows following a given position in a keyset ordering.
+ * <p>
+ * The ordering is done on a single key and on {@code ecm:uuid} to break ties, and the transformed query selects both
+ * so that the position of the last returned row can be used for the next batch ({@code SELECT *} selects only them).
+ * Documents where the key is null are excluded.
+ * <p>
+ * The {@code LIMIT} and {@code OFFSET} of the query are removed, as they apply to the whole iteration and not to each
+ * batch: the caller is responsible for them (see {@code KeysetQueryCursor}).
+ *
+ * @since 7.2
+ */
+public class KeysetTransformer implements Transformer {
+
+    private static final long serialVersionUID = 1L;
+
+    protected final String key;
+
+    protected final boolean descending;
+
+    protected final Object afterKey;
+
+    protected final String afterId;
+
+    /**
+     * Constructs a transformer for the given key ordering.
+     *
+     * @param key the ordering key, or {@link NXQL#ECM_UUID}
+     * @param descending {@code true} for a descending ordering
+     * @param afterKey the value of the key at the last returned row, or {@code null} for the first batch
+     * @param afterId the id of the last returned row, or {@code null} for the first batch
+     */
+    public KeysetTransformer(String key, boolean descending, Object afterKey, String afterId) {
+        this.key = key;
+        this.descending = descending;
+        this.afterKey = afterKey;
+        this.afterId = afterId;
+    }
+
+    protected boolean isIdKey() {
+        return NXQL.ECM_UUID.equals(key);
+    }
+
+    @Override
+    public SQLQuery transform(Principal principal, SQLQuery query) {
+        Reference keyRef = new Reference(key);
+        Reference idRef = new Reference(NXQL.ECM_UUID);
+        Operator op = descending ? Operator.LT : Operator.GT;
+
+        Predicate predicate = query.where == null ? null : query.where.predicate;
+        if (!isIdKey()) {
+            predicate = and(predicate, new Predicate(keyRef, Operator.ISNOTNULL, null));
+        }
+        if (afterId != null) {
+            Predicate seek;
+            if (isIdKey()) {
+                seek = new Predicate(idRef, op, new StringLiteral(afterId));
+            } else {
+                Literal keyLiteral = toLiteral(afterKey);
+                // key > v OR (key = v AND ecm:uuid > id)
+                seek = new Predicate(new Predicate(keyRef, op, keyLiteral), Operator.OR, new Predicate(new Predicate(
+                        keyRef, Operator.EQ, keyLiteral), Operator.AND, new Predicate(idRef, op, new StringLiteral(
+                        afterId))));
+            }
+            predicate = and(predicate, seek);
+        }
+        WhereClause where = predicate == null ? null : new WhereClause(predicate);
+
+        OrderByList orderByList = new OrderByList(new OrderByExpr(keyRef, descending));
+        if (!isIdKey()) {
+            orderByList.add(new OrderByExpr(idRef, descending));
+        }
+        OrderByClause orderBy = new OrderByClause(orderByList);
+
+        SelectClause select = new SelectClause(query.select.isDistinct());
+        for (int i = 0; i < query.select.count(); i++) {
+            select.add(query.select.getAlias(i), query.select.get(i));
+        }
+        addIfMissing(select, keyRef);
+        addIfMissing(select, idRef);
+
+        return new SQLQuery(select, query.from, where, query.groupBy, query.having, orderBy, 0, 0);
+    }
+
+    protected static Predicate and(Predicate a, Predicate b) {
+        return a == null ? b : new Predicate(a, Operator.AND, b);
+    }
+
+    protected static void addIfMissing(SelectClause select, Reference ref) {
+        for (int i = 0; i < select.count(); i++) {
+            Operand op = select.get(i);
+            if (op instanceof Reference && ((Reference) op).name.equals(ref.name)) {
+                return;
+            }
+        }
+        select.add(ref);
+    }
+
+    /**
+     * Converts a value as returned by a query into a literal.
+     */
+    public static Literal toLiteral(Object value) {
+        if (value instanceof String) {
+            return new StringLiteral((String) value);
+        } else if (value instanceof Long || value instanceof Integer) {
+            return new IntegerLiteral(((Number) value).longValue());
+        } else if (value instanceof Double || value instanceof Float) {
+            return new DoubleLiteral(((Number) value).doubleValue());
+        } else if (value instanceof Boolean) {
+            return new IntegerLiteral(((Boolean) value).booleanValue() ? 1 : 0);
+        } else if (value instanceof Calendar) {
+            String date = DateLiteral.dateTimeFormatter.print(new DateTime(value));
+            return new DateLiteral(date, false);
+        } else {
+            throw new IllegalArgumentException("Unsupported keyset value: " + value);
+        }
+    }
+
+}
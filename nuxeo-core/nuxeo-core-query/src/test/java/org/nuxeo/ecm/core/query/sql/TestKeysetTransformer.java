@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) 2015 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.ecm.core.query.sql;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.GregorianCalendar;
+
+import org.junit.Test;
+import org.nuxeo.ecm.core.query.sql.model.DateLiteral;
+import org.nuxeo.ecm.core.query.sql.model.IntegerLiteral;
+import org.nuxeo.ecm.core.query.sql.model.Operator;
+import org.nuxeo.ecm.core.query.sql.model.Predicate;
+import org.nuxeo.ecm.core.query.sql.model.SQLQuery;
+import org.nuxeo.ecm.core.query.sql.model.StringLiteral;
+
+public class TestKeysetTransformer {
+
+    @Test
+    public void testFirstBatchOnId() {
+        SQLQuery query = SQLQueryParser.parse("SELECT dc:title FROM Document");
+        query = new KeysetTransformer(NXQL.ECM_UUID, false, null, null).transform(null, query);
+        assertNull(query.where);
+        assertEquals("ecm:uuid", query.orderBy.toString());
+        assertEquals("dc:title, ecm:uuid", query.select.toString());
+    }
+
+    @Test
+    public void testSelectStar() {
+        SQLQuery query = SQLQueryParser.parse("SELECT * FROM Document ORDER BY dc:title DESC");
+        query = new KeysetTransformer("dc:title", true, null, null).transform(null, query);
+        assertEquals("dc:title DESC, ecm:uuid DESC", query.orderBy.toString());
+        assertEquals("dc:title, ecm:uuid", query.select.toString());
+    }
+
+    @Test
+    public void testNextBatchOnId() {
+        SQLQuery query = SQLQueryParser.parse("SELECT ecm:uuid FROM Document WHERE dc:title = 'foo'");
+        query = new KeysetTransformer(NXQL.ECM_UUID, true, null, "123").transform(null, query);
+        Predicate predicate = query.where.predicate;
+        assertSame(Operator.AND, predicate.operator);
+        Predicate seek = (Predicate) predicate.rvalue;
+        assertSame(Operator.LT, seek.operator);
+        assertEquals(new StringLiteral("123"), seek.rvalue);
+        assertEquals("ecm:uuid DESC", query.orderBy.toString());
+        assertEquals("ecm:uuid", query.select.toString());
+    }
+
+    @Test
+    public void testNextBatchOnKey() {
+        SQLQuery query = SQLQueryParser.parse("SELECT ecm:uuid FROM Document ORDER BY dc:modified");
+        query = new KeysetTransformer("dc:modified", false, Long.valueOf(5), "123").transform(null, query);
+        Predicate predicate = query.where.predicate;
+        assertSame(Operator.AND, predicate.operator);
+        Predicate notNull = (Predicate) predicate.lvalue;
+        assertSame(Operator.ISNOTNULL, notNull.operator);
+        Predicate seek = (Predicate) predicate.rvalue;
+        assertSame(Operator.OR, seek.operator);
+        assertEquals(new IntegerLiteral(5), ((Predicate) seek.lvalue).rvalue);
+        assertSame(Operator.AND, ((Predicate) seek.rvalue).operator);
+        assertEquals("dc:modified, ecm:uuid", query.orderBy.toString());
+        assertEquals("ecm:uuid, dc:modified", query.select.toString());
+    }
+
+    @Test
+    public void testLimitOffsetRemoved() {
+        SQLQuery query = SQLQueryParser.parse("SELECT * FROM Document ORDER BY dc:title LIMIT 10 OFFSET 5");
+        query = new KeysetTransformer("dc:title", false, "foo", "123").transform(null, query);
+        assertEquals(0, query.limit);
+        assertEquals(0, query.offset);
+    }
+
+    @Test
+    public void testToLiteral() {
+        assertEquals(new StringLiteral("foo"), KeysetTransformer.toLiteral("foo"));
+        assertEquals(new IntegerLiteral(1), KeysetTransformer.toLiteral(Boolean.TRUE));
+        assertTrue(KeysetTransformer.toLiteral(new GregorianCalendar(2015, 0, 1)) instanceof DateLiteral);
+    }
+
+}
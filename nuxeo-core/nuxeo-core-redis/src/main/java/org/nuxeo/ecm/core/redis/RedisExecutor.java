@@ -33,9 +33,22 @@ public interface RedisExecutor {
             throw new UnsupportedOperationException("No pool available");
         }
 
+        @Override
+        public Jedis newConnection() {
+            throw new UnsupportedOperationException("No redis executor available");
+        }
+
     };
 
     <T> T execute(RedisCallable<T> call) throws IOException, JedisException;
 
     Pool<Jedis> getPool();
+
+    /**
+     * Opens a connection outside of the pool, for the blocking commands (subscriptions, blocking pops) that would keep
+     * a pooled connection busy for a long time. The caller must disconnect it.
+     *
+     * @since 7.2
+     */
+    Jedis newConnection() throws JedisException;
 }
@@ -57,4 +57,9 @@ public class RedisFailoverExecutor implements RedisExecutor {
         return executor.getPool();
     }
 
+    @Override
+    public Jedis newConnection() throws JedisConnectionException {
+        return executor.newConnection();
+    }
+
 }
@@ -11,6 +11,7 @@ package org.nuxeo.ecm.core.redis;
 import java.io.IOException;
 
 import redis.clients.jedis.Jedis;
+import redis.clients.jedis.Protocol;
 import redis.clients.jedis.exceptions.JedisConnectionException;
 import redis.clients.jedis.exceptions.JedisException;
 import redis.clients.util.Pool;
@@ -19,8 +20,24 @@ public class RedisPoolExecutor implements RedisExecutor {
 
     protected Pool<Jedis> pool;
 
+    protected final String password;
+
+    protected final int database;
+
+    protected final int timeout;
+
     public RedisPoolExecutor(Pool<Jedis> pool) {
+        this(pool, null, Protocol.DEFAULT_DATABASE, Protocol.DEFAULT_TIMEOUT);
+    }
+
+    /**
+     * @since 7.2
+     */
+    public RedisPoolExecutor(Pool<Jedis> pool, String password, int database, int timeout) {
         this.pool = pool;
+        this.password = password;
+        this.database = database;
+        this.timeout = timeout;
     }
 
     @Override
@@ -47,4 +64,31 @@ public class RedisPoolExecutor implements RedisExecutor {
         return pool;
     }
 
+    @Override
+    public Jedis newConnection() throws JedisException {
+        // connect to the server currently used by the pool, the master for a sentinel pool
+        String host;
+        int port;
+        Jedis pooled = pool.getResource();
+        try {
+            host = pooled.getClient().getHost();
+            port = pooled.getClient().getPort();
+        } finally {
+            pool.returnResource(pooled);
+        }
+        Jedis jedis = new Jedis(host, port, timeout);
+        try {
+            if (password != null) {
+                jedis.auth(password);
+            }
+            if (database != Protocol.DEFAULT_DATABASE) {
+                jedis.select(database);
+            }
+        } catch (JedisException cause) {
+            jedis.disconnect();
+            throw cause;
+        }
+        return jedis;
+    }
+
 }
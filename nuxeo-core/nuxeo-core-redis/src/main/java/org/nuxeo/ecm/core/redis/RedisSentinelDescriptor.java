@@ -29,7 +29,7 @@ public class RedisSentinelDescriptor extends RedisServerDescriptor {
     @Override
     public RedisExecutor newExecutor() throws RuntimeException {
         RedisExecutor base = new RedisPoolExecutor(new JedisSentinelPool(master, toSentinels(hosts),
-                new JedisPoolConfig(), timeout, password, database));
+                new JedisPoolConfig(), timeout, password, database), password, database, timeout);
         return new RedisFailoverExecutor(failoverTimeout, base);
     }
 
@@ -98,7 +98,7 @@ public class RedisServerDescriptor extends RedisPoolDescriptor {
         }
         RedisHostDescriptor host = selectHost();
         return new RedisPoolExecutor(new JedisPool(new JedisPoolConfig(), host.name, host.port, timeout,
-                StringUtils.defaultIfBlank(password, null), database));
+                StringUtils.defaultIfBlank(password, null), database), password, database, timeout);
 
     }
 }
@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) 2015 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.ecm.core.redis.contribs;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import org.nuxeo.ecm.core.work.api.Work;
+
+/**
+ * Default {@link WorkCodec}, using Java serialization compressed with deflate.
+ * <p>
+ * Works are arbitrary {@link java.io.Serializable} classes, so this codec keeps the class and field information of Java
+ * serialization, and with it its constraints on class evolution; it only reduces the stored size.
+ * <p>
+ * The encoded form starts with a format version byte. Works written by previous Nuxeo versions as plain Java
+ * serialization are still decoded.
+ *
+ * @since 7.2
+ */
+public class DeflatedJavaWorkCodec implements WorkCodec {
+
+    /** Format version of deflated Java serialization. */
+    public static final byte FORMAT_DEFLATE = 1;
+
+    /** First byte of a plain Java serialization stream (STREAM_MAGIC). */
+    protected static final byte FORMAT_LEGACY = (byte) 0xAC;
+
+    @Override
+    public byte[] encode(Work work) throws IOException {
+        ByteArrayOutputStream baout = new ByteArrayOutputStream();
+        baout.write(FORMAT_DEFLATE);
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            OutputStream dout = new DeflaterOutputStream(baout, deflater);
+            try (ObjectOutputStream out = new ObjectOutputStream(dout)) {
+                out.writeObject(work);
+            }
+        } finally {
+            deflater.end();
+        }
+        return baout.toByteArray();
+    }
+
+    @Override
+    public Work decode(byte[] bytes) throws IOException {
+        if (bytes == null) {
+            return null;
+        }
+        if (bytes.length == 0) {
+            throw new IOException("Empty work data");
+        }
+        InputStream in;
+        switch (bytes[0]) {
+        case FORMAT_DEFLATE:
+            in = new InflaterInputStream(new ByteArrayInputStream(bytes, 1, bytes.length - 1));
+            break;
+        case FORMAT_LEGACY:
+            in = new ByteArrayInputStream(bytes);
+            break;
+        default:
+            throw new IOException("Unknown work format: " + bytes[0]);
+        }
+        try (ObjectInputStream oin = new ObjectInputStream(in)) {
+            return (Work) oin.readObject();
+        } catch (ClassNotFoundException cause) {
+            throw new IOException("Cannot deserialize work", cause);
+        }
+    }
+
+}
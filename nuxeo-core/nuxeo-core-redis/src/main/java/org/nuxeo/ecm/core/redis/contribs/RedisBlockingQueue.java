@@ -17,19 +17,45 @@
 package org.nuxeo.ecm.core.redis.contribs;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.nuxeo.ecm.core.work.NuxeoBlockingQueue;
 import org.nuxeo.ecm.core.work.WorkHolder;
 import org.nuxeo.ecm.core.work.api.Work;
+import org.nuxeo.runtime.api.Framework;
+import org.nuxeo.runtime.metrics.MetricsService;
+
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.exceptions.JedisException;
+
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.SharedMetricRegistries;
+import com.codahale.metrics.Timer;
 
 /**
  * Redis-based {@link BlockingQueue}.
  * <p>
  * It has unlimited capacity, so never blocks on {@link #put} and {@link #offer} always returns {@code true}.
+ * <p>
+ * Waiting for a work doesn't poll Redis: a single thread per queue blocks on Redis on behalf of all the waiting
+ * threads, and dequeues in one round trip as many works as there are threads waiting (up to a batch size). The works
+ * that the leader thread doesn't run itself are handed to the other threads through a small local buffer. Until they
+ * run, they are also kept in a Redis list of this node, so that they are scheduled again if the node stops abruptly.
+ * The leader blocks on a dedicated connection, outside of the Redis pool.
+ * <p>
+ * Once the queue is suspending (during shutdown), no more works are dequeued.
  *
  * @since 5.8
  */
@@ -37,13 +63,70 @@ public class RedisBlockingQueue extends NuxeoBlockingQueue {
 
     private static final Log log = LogFactory.getLog(RedisBlockingQueue.class);
 
+    /**
+     * Maximum number of works dequeued in a single round trip.
+     *
+     * @since 7.2
+     */
+    public static final String DEQUEUE_BATCH_SIZE_PROP = "org.nuxeo.work.redis.dequeueBatchSize";
+
+    public static final String DEFAULT_DEQUEUE_BATCH_SIZE = "10";
+
+    /** Maximum time the leader blocks on Redis, to check activation and deadlines regularly. */
+    protected static final int BLOCK_SECONDS = 1;
+
     protected final String queueId;
 
     protected final RedisWorkQueuing queuing;
 
+    protected final int batchSize;
+
+    /** Works dequeued from Redis but not yet taken by a thread. */
+    protected final Queue<Work> buffer = new ConcurrentLinkedQueue<Work>();
+
+    /** Held by the thread waiting on Redis. */
+    protected final ReentrantLock dequeueLock = new ReentrantLock();
+
+    /** Dedicated connection for the blocking dequeue, used with the dequeue lock held. */
+    protected Jedis connection;
+
+    protected volatile boolean suspending;
+
+    protected final ReentrantLock signalLock = new ReentrantLock();
+
+    protected final Condition dequeued = signalLock.newCondition();
+
+    // @GuardedBy("signalLock")
+    protected long generation;
+
+    protected final AtomicInteger waiting = new AtomicInteger();
+
+    protected final MetricRegistry registry = SharedMetricRegistries.getOrCreate(MetricsService.class.getName());
+
+    protected final Timer dequeueTimer;
+
+    protected final Timer waitTimer;
+
+    protected final Histogram batchHistogram;
+
     public RedisBlockingQueue(String queueId, RedisWorkQueuing queuing) {
         this.queueId = queueId;
         this.queuing = queuing;
+        batchSize = getBatchSize();
+        dequeueTimer = registry.timer(MetricRegistry.name("nuxeo", "works", queueId, "redis", "dequeue"));
+        waitTimer = registry.timer(MetricRegistry.name("nuxeo", "works", queueId, "dequeue", "wait"));
+        batchHistogram = registry.histogram(MetricRegistry.name("nuxeo", "works", queueId, "redis", "batch"));
+    }
+
+    protected static int getBatchSize() {
+        String value = Framework.getProperty(DEQUEUE_BATCH_SIZE_PROP, DEFAULT_DEQUEUE_BATCH_SIZE);
+        try {
+            return Math.max(1, Integer.parseInt(value.trim()));
+        } catch (NumberFormatException e) {
+            log.warn("Invalid value for " + DEQUEUE_BATCH_SIZE_PROP + ": " + value + ", using default: "
+                    + DEFAULT_DEQUEUE_BATCH_SIZE);
+            return Integer.parseInt(DEFAULT_DEQUEUE_BATCH_SIZE);
+        }
     }
 
     @Override
@@ -69,16 +152,139 @@ public class RedisBlockingQueue extends NuxeoBlockingQueue {
             return null;
         }
         long end = System.currentTimeMillis() + TimeUnit.NANOSECONDS.toMillis(nanos);
-        for (;;) {
-            Runnable r = poll();
-            if (r != null) {
-                return r;
+        Timer.Context waitContext = waitTimer.time();
+        waiting.incrementAndGet();
+        try {
+            for (;;) {
+                if (!active) {
+                    return null;
+                }
+                Work work = buffer.poll();
+                if (work != null) {
+                    waitContext.stop();
+                    return new WorkHolder(work);
+                }
+                long gen = getGeneration();
+                long remaining = timeUntil(end);
+                if (suspending) {
+                    // scheduled works are suspended, wait for the shutdown
+                    if (remaining == 0) {
+                        return null;
+                    }
+                    awaitDequeued(gen, Math.min(remaining, BLOCK_SECONDS * 1000));
+                    continue;
+                }
+                if (dequeueLock.tryLock()) {
+                    try {
+                        int blockSeconds = remaining >= BLOCK_SECONDS * 1000 ? BLOCK_SECONDS : 0;
+                        work = dequeue(blockSeconds);
+                    } finally {
+                        dequeueLock.unlock();
+                        signalDequeued();
+                    }
+                    if (work != null) {
+                        waitContext.stop();
+                        return new WorkHolder(work);
+                    }
+                    if (remaining < BLOCK_SECONDS * 1000) {
+                        return null;
+                    }
+                } else {
+                    if (remaining == 0) {
+                        return null;
+                    }
+                    // wait for the leader to finish its round trip
+                    awaitDequeued(gen, Math.min(remaining, BLOCK_SECONDS * 1000));
+                }
             }
-            if (timeUntil(end) == 0) {
-                return null;
+        } finally {
+            waiting.decrementAndGet();
+        }
+    }
+
+    /**
+     * Dequeues works for the waiting threads, keeps one for the caller and buffers the others.
+     */
+    protected Work dequeue(int blockSeconds) throws InterruptedException {
+        if (suspending) {
+            return null;
+        }
+        int max = Math.min(batchSize, Math.max(1, waiting.get() - buffer.size()));
+        List<Work> works;
+        Timer.Context context = dequeueTimer.time();
+        try {
+            if (connection == null) {
+                connection = queuing.redisExecutor.newConnection();
             }
-            // TODO replace by wakeup when an element is added
-            Thread.sleep(100);
+            works = queuing.removeScheduledWorks(connection, queueId, max, blockSeconds);
+        } catch (JedisException e) {
+            log.error("Failed to remove Work from queue: " + queueId + ", reconnecting", e);
+            disconnect();
+            // don't retry immediately
+            Thread.sleep(BLOCK_SECONDS * 1000);
+            return null;
+        } catch (IOException e) {
+            log.error("Failed to remove Work from queue: " + queueId, e);
+            throw new RuntimeException(e);
+        } finally {
+            context.stop();
+        }
+        if (works.isEmpty()) {
+            return null;
+        }
+        batchHistogram.update(works.size());
+        if (log.isDebugEnabled()) {
+            log.debug("Remove scheduled " + works);
+        }
+        if (!active || suspending) {
+            // deactivated while we were waiting on Redis, put back all the works in order
+            buffer.addAll(works);
+            requeueBuffered();
+            return null;
+        }
+        buffer.addAll(works.subList(1, works.size()));
+        return works.get(0);
+    }
+
+    protected void disconnect() {
+        if (connection != null) {
+            try {
+                connection.disconnect();
+            } catch (JedisException e) {
+                log.debug("Failed to disconnect from Redis", e);
+            }
+            connection = null;
+        }
+    }
+
+    protected long getGeneration() {
+        signalLock.lock();
+        try {
+            return generation;
+        } finally {
+            signalLock.unlock();
+        }
+    }
+
+    protected void signalDequeued() {
+        signalLock.lock();
+        try {
+            generation++;
+            dequeued.signalAll();
+        } finally {
+            signalLock.unlock();
+        }
+    }
+
+    protected void awaitDequeued(long gen, long millis) throws InterruptedException {
+        long nanos = TimeUnit.MILLISECONDS.toNanos(millis);
+        signalLock.lock();
+        try {
+            while (generation == gen && nanos > 0) {
+                nanos = dequeued.awaitNanos(nanos);
+            }
+        } finally {
+            signalLock.unlock();
         }
     }
 
@@ -95,8 +301,12 @@ public class RedisBlockingQueue extends NuxeoBlockingQueue {
 
     @Override
     public Runnable pollElement() {
+        Work work = buffer.poll();
+        if (work != null) {
+            return new WorkHolder(work);
+        }
         try {
-            Work work = queuing.removeScheduledWork(queueId);
+            work = queuing.removeScheduledWork(queueId);
             if (work != null) {
                 log.debug("Remove scheduled " + work);
             }
@@ -107,4 +317,80 @@ public class RedisBlockingQueue extends NuxeoBlockingQueue {
         }
     }
 
+    /**
+     * Gets the number of works dequeued from Redis but not yet running.
+     *
+     * @since 7.2
+     */
+    public int getBufferedSize() {
+        return buffer.size();
+    }
+
+    /**
+     * Gets the ids of the works dequeued from Redis but not yet running.
+     *
+     * @since 7.2
+     */
+    public List<String> getBufferedIds() {
+        List<String> ids = new ArrayList<String>();
+        for (Work work : buffer) {
+            ids.add(work.getId());
+        }
+        return ids;
+    }
+
+    /**
+     * Removes a work dequeued from Redis but not yet running.
+     *
+     * @return the removed work, or {@code null} if it is not in the buffer
+     * @since 7.2
+     */
+    public Work removeBuffered(String workId) {
+        for (Iterator<Work> it = buffer.iterator(); it.hasNext();) {
+            Work work = it.next();
+            if (work.getId().equals(workId) && buffer.remove(work)) {
+                return work;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Stops dequeuing works, waiting for a dequeue in progress, and puts back in Redis the works dequeued but not yet
+     * running, so that they can be suspended. This is final, a queue is suspending only when shut down.
+     *
+     * @since 7.2
+     */
+    public void setSuspending() {
+        suspending = true;
+        dequeueLock.lock();
+        try {
+            requeueBuffered();
+            disconnect();
+        } finally {
+            dequeueLock.unlock();
+        }
+        // wake up the waiting threads
+        signalDequeued();
+    }
+
+    /**
+     * Puts back in Redis the works dequeued but not yet running, so that they can be suspended or run by another
+     * node.
+     *
+     * @since 7.2
+     */
+    public void requeueBuffered() {
+        List<Work> works = new ArrayList<Work>();
+        for (Work work; (work = buffer.poll()) != null;) {
+            works.add(work);
+        }
+        try {
+            queuing.requeueScheduledWork(queueId, works);
+        } catch (IOException e) {
+            log.error("Failed to requeue Work in queue: " + queueId, e);
+            throw new RuntimeException(e);
+        }
+    }
+
 }
@@ -19,11 +19,17 @@ package org.nuxeo.ecm.core.redis.contribs;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.Serializable;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -33,28 +39,100 @@ import org.nuxeo.ecm.core.redis.RedisAdmin;
 import org.nuxeo.ecm.core.redis.RedisCallable;
 import org.nuxeo.ecm.core.redis.RedisExecutor;
 import org.nuxeo.runtime.api.Framework;
+import org.nuxeo.runtime.metrics.MetricsService;
 
+import redis.clients.jedis.BinaryJedisPubSub;
 import redis.clients.jedis.Jedis;
+import redis.clients.jedis.exceptions.JedisException;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.RatioGauge;
+import com.codahale.metrics.SharedMetricRegistries;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 
 /**
  * Cache implementation on top of Redis
+ * <p>
+ * When the {@value CacheDescriptor#OPTION_NEAR_CACHE} option is set, a bounded in-memory cache is kept in front of
+ * Redis. Each modification is published on a channel of the cache, so that the other nodes drop their copy of the
+ * modified entries. The subscription is held by a dedicated thread, on its own connection outside of the Redis pool.
  *
  * @since 6.0
  */
-public class RedisCache extends AbstractCache {
+public class RedisCache extends AbstractCache implements Closeable {
 
     protected static final String UTF_8 = "UTF-8";
 
     protected static final Log log = LogFactory.getLog(RedisCache.class);
 
+    protected static final long RECONNECT_DELAY_MILLIS = 1000;
+
     protected final RedisExecutor executor;
 
     protected final String namespace;
 
+    protected final MetricRegistry registry = SharedMetricRegistries.getOrCreate(MetricsService.class.getName());
+
+    protected final Counter redisHits;
+
+    protected final Counter redisMisses;
+
+    /** The near cache, or {@code null} if not enabled. */
+    protected final Cache<String, Serializable> nearCache;
+
+    protected Counter nearHits;
+
+    protected Counter nearMisses;
+
+    /** Incremented on each modification, so that a value read from Redis is not cached once stale. */
+    protected final AtomicLong generation = new AtomicLong();
+
+    protected String nodeId;
+
+    protected byte[] channel;
+
+    protected Subscriber subscriber;
+
+    protected Thread subscriberThread;
+
+    /** The connection of the subscriber thread. */
+    protected volatile Jedis connection;
+
+    protected volatile boolean closed;
+
     public RedisCache(CacheDescriptor desc) {
         super(desc);
         executor = Framework.getService(RedisExecutor.class);
         namespace = Framework.getService(RedisAdmin.class).namespace("cache", name);
+        redisHits = registry.counter(MetricRegistry.name("nuxeo", "cache", name, "redis", "hits"));
+        redisMisses = registry.counter(MetricRegistry.name("nuxeo", "cache", name, "redis", "misses"));
+        registerRatio("redis", redisHits, redisMisses);
+        if (desc.isNearCache()) {
+            nearCache = CacheBuilder.newBuilder() //
+                                    .maximumSize(desc.getNearCacheMaxSize()) //
+                                    .expireAfterWrite(ttl, TimeUnit.MINUTES) //
+                                    .build();
+            nearHits = registry.counter(MetricRegistry.name("nuxeo", "cache", name, "near", "hits"));
+            nearMisses = registry.counter(MetricRegistry.name("nuxeo", "cache", name, "near", "misses"));
+            registerRatio("near", nearHits, nearMisses);
+            startSubscriber();
+        } else {
+            nearCache = null;
+        }
+    }
+
+    protected void registerRatio(String level, final Counter hits, final Counter misses) {
+        String metricName = MetricRegistry.name("nuxeo", "cache", name, level, "hit-ratio");
+        // the cache may be recreated on reload
+        registry.remove(metricName);
+        registry.register(metricName, new RatioGauge() {
+            @Override
+            protected Ratio getRatio() {
+                return Ratio.of(hits.getCount(), hits.getCount() + misses.getCount());
+            }
+        });
     }
 
     protected String formatKey(String key) {
@@ -85,14 +163,32 @@ public class RedisCache extends AbstractCache {
 
     @Override
     public Serializable get(final String key) throws IOException {
-        return executor.execute(new RedisCallable<Serializable>() {
+        long gen = 0;
+        if (nearCache != null) {
+            Serializable value = nearCache.getIfPresent(key);
+            if (value != null) {
+                nearHits.inc();
+                return value;
+            }
+            nearMisses.inc();
+            gen = generation.get();
+        }
+        Serializable value = executor.execute(new RedisCallable<Serializable>() {
 
             @Override
             public Serializable call(Jedis jedis) throws IOException {
                 return deserializeValue(jedis.get(bytes(formatKey(key))));
             }
         });
-
+        if (value == null) {
+            redisMisses.inc();
+        } else {
+            redisHits.inc();
+            if (nearCache != null && generation.get() == gen) {
+                nearCache.put(key, value);
+            }
+        }
+        return value;
     }
 
     protected byte[] serializeValue(Serializable value) throws IOException {
@@ -114,11 +210,21 @@ public class RedisCache extends AbstractCache {
                 return null;
             }
         });
+        if (nearCache != null) {
+            generation.incrementAndGet();
+            nearCache.invalidate(key);
+            publishInvalidation(key);
+        }
     }
 
     @Override
     public void invalidateAll() throws IOException {
         Framework.getService(RedisAdmin.class).clear(formatKey("*"));
+        if (nearCache != null) {
+            generation.incrementAndGet();
+            nearCache.invalidateAll();
+            publishInvalidation(null);
+        }
     }
 
     @Override
@@ -135,10 +241,18 @@ public class RedisCache extends AbstractCache {
                 return null;
             }
         });
+        if (nearCache != null) {
+            generation.incrementAndGet();
+            nearCache.put(key, value);
+            publishInvalidation(key);
+        }
     }
 
     @Override
     public boolean hasEntry(final String key) throws IOException {
+        if (nearCache != null && nearCache.getIfPresent(key) != null) {
+            return true;
+        }
         return (Boolean) executor.execute(new RedisCallable<Serializable>() {
             @Override
             public Serializable call(Jedis jedis) throws IOException {
@@ -147,4 +261,152 @@ public class RedisCache extends AbstractCache {
         });
     }
 
+    @Override
+    public void close() {
+        if (subscriber == null) {
+            return;
+        }
+        closed = true;
+        Jedis jedis = connection;
+        if (subscriber.isSubscribed()) {
+            subscriber.unsubscribe();
+        } else if (jedis != null) {
+            // not subscribed yet, make the subscription fail
+            jedis.disconnect();
+        }
+        subscriberThread.interrupt();
+    }
+
+    /*
+     * ******************** Near cache invalidations ********************
+     */
+
+    protected void startSubscriber() {
+        nodeId = UUID.randomUUID().toString();
+        channel = bytes(Framework.getService(RedisAdmin.class).namespace("cache", name, "invalidations"));
+        subscriber = new Subscriber();
+        subscriberThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                subscribe();
+            }
+        }, "Nuxeo-RedisCache-Invalidator-" + name);
+        subscriberThread.setDaemon(true);
+        subscriberThread.start();
+    }
+
+    /**
+     * Publishes the invalidation of a key, or of all keys if {@code null}.
+     */
+    protected void publishInvalidation(String key) throws IOException {
+        ByteArrayOutputStream baout = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(baout);
+        out.writeUTF(nodeId);
+        out.writeBoolean(key == null);
+        if (key != null) {
+            out.writeUTF(key);
+        }
+        out.close();
+        publish(baout.toByteArray());
+    }
+
+    protected void publish(final byte[] message) throws IOException {
+        executor.execute(new RedisCallable<Void>() {
+            @Override
+            public Void call(Jedis jedis) {
+                jedis.publish(channel, message);
+                return null;
+            }
+        });
+    }
+
+    protected void receiveInvalidation(byte[] message) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(message));
+        String sender = in.readUTF();
+        if (nodeId.equals(sender)) {
+            // our own message
+            return;
+        }
+        boolean all = in.readBoolean();
+        generation.incrementAndGet();
+        if (all) {
+            nearCache.invalidateAll();
+        } else {
+            nearCache.invalidate(in.readUTF());
+        }
+    }
+
+    /**
+     * Subscription loop, run in the subscriber thread until closed.
+     */
+    protected void subscribe() {
+        boolean first = true;
+        while (!closed) {
+            if (!first) {
+                // we may have missed invalidations while disconnected
+                generation.incrementAndGet();
+                nearCache.invalidateAll();
+            }
+            first = false;
+            Jedis jedis = null;
+            try {
+                jedis = executor.newConnection();
+                connection = jedis;
+                if (closed) {
+                    break;
+                }
+                // blocks until unsubscribed or disconnected
+                jedis.subscribe(subscriber, channel);
+            } catch (JedisException e) {
+                if (closed) {
+                    break;
+                }
+                log.error("Lost subscription to invalidations of cache " + name + ", reconnecting", e);
+                try {
+                    Thread.sleep(RECONNECT_DELAY_MILLIS);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            } finally {
+                connection = null;
+                if (jedis != null) {
+                    jedis.disconnect();
+                }
+            }
+        }
+    }
+
+    protected class Subscriber extends BinaryJedisPubSub {
+
+        @Override
+        public void onMessage(byte[] channel, byte[] message) {
+            try {
+                receiveInvalidation(message);
+            } catch (IOException e) {
+                log.error("Cannot read invalidations of cache " + name, e);
+            }
+        }
+
+        @Override
+        public void onPMessage(byte[] pattern, byte[] channel, byte[] message) {
+        }
+
+        @Override
+        public void onSubscribe(byte[] channel, int subscribedChannels) {
+        }
+
+        @Override
+        public void onUnsubscribe(byte[] channel, int subscribedChannels) {
+        }
+
+        @Override
+        public void onPUnsubscribe(byte[] pattern, int subscribedChannels) {
+        }
+
+        @Override
+        public void onPSubscribe(byte[] pattern, int subscribedChannels) {
+        }
+    }
+
 }
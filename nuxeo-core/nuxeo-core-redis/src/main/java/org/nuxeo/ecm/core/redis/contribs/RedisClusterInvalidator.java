@@ -0,0 +1,236 @@
+/*
+ * Copyright (c) 2015 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.ecm.core.redis.contribs;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.nuxeo.ecm.core.redis.RedisAdmin;
+import org.nuxeo.ecm.core.redis.RedisCallable;
+import org.nuxeo.ecm.core.redis.RedisExecutor;
+import org.nuxeo.ecm.core.storage.StorageException;
+import org.nuxeo.ecm.core.storage.sql.ClusterInvalidator;
+import org.nuxeo.ecm.core.storage.sql.Invalidations;
+import org.nuxeo.runtime.api.Framework;
+
+import redis.clients.jedis.BinaryJedisPubSub;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.exceptions.JedisException;
+
+/**
+ * {@link ClusterInvalidator} using Redis pub/sub to push VCS invalidations to the other cluster nodes.
+ * <p>
+ * Each repository has its own channel. A dedicated thread holds the subscription, on its own connection outside of the
+ * Redis pool; if the connection to Redis is lost, it resubscribes and tells the local node to invalidate everything, as
+ * messages may have been missed meanwhile.
+ *
+ * @since 7.2
+ */
+public class RedisClusterInvalidator implements ClusterInvalidator {
+
+    private static final Log log = LogFactory.getLog(RedisClusterInvalidator.class);
+
+    protected static final String UTF_8 = "UTF-8";
+
+    protected static final long RECONNECT_DELAY_MILLIS = 1000;
+
+    protected volatile String nodeId;
+
+    protected Receiver receiver;
+
+    protected RedisExecutor executor;
+
+    protected byte[] channel;
+
+    protected Subscriber subscriber;
+
+    protected Thread subscriberThread;
+
+    /** Connection used by the subscriber thread, not taken from the pool. */
+    protected volatile Jedis connection;
+
+    protected volatile boolean closed;
+
+    @Override
+    public void initialize(String nodeId, String repositoryName, Receiver receiver) throws StorageException {
+        this.nodeId = nodeId;
+        this.receiver = receiver;
+        executor = Framework.getService(RedisExecutor.class);
+        String namespace = Framework.getService(RedisAdmin.class).namespace("vcs", "invalidations", repositoryName);
+        channel = bytes(namespace);
+        subscriber = new Subscriber();
+        subscriberThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                subscribe();
+            }
+        }, "Nuxeo-VCS-RedisInvalidator-" + repositoryName);
+        subscriberThread.setDaemon(true);
+        subscriberThread.start();
+    }
+
+    @Override
+    public void setNodeId(String nodeId) {
+        this.nodeId = nodeId;
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        Jedis jedis = connection;
+        if (subscriber.isSubscribed()) {
+            subscriber.unsubscribe();
+        } else if (jedis != null) {
+            // not subscribed yet, make the subscription fail
+            jedis.disconnect();
+        }
+        subscriberThread.interrupt();
+    }
+
+    @Override
+    public void sendInvalidations(Invalidations invalidations) throws StorageException {
+        final byte[] message;
+        try {
+            message = serialize(invalidations);
+        } catch (IOException e) {
+            throw new StorageException(e);
+        }
+        try {
+            executor.execute(new RedisCallable<Void>() {
+                @Override
+                public Void call(Jedis jedis) {
+                    jedis.publish(channel, message);
+                    return null;
+                }
+            });
+        } catch (IOException | JedisException e) {
+            throw new StorageException("Cannot publish invalidations", e);
+        }
+    }
+
+    /**
+     * Subscription loop, run in the subscriber thread until closed.
+     */
+    protected void subscribe() {
+        boolean first = true;
+        while (!closed) {
+            if (!first) {
+                // we may have missed invalidations while disconnected
+                receiver.receiveInvalidations(new Invalidations(true), 0);
+            }
+            first = false;
+            Jedis jedis = null;
+            try {
+                jedis = executor.newConnection();
+                connection = jedis;
+                if (closed) {
+                    break;
+                }
+                // blocks until unsubscribed or disconnected
+                jedis.subscribe(subscriber, channel);
+            } catch (JedisException e) {
+                if (closed) {
+                    break;
+                }
+                log.error("Lost subscription to VCS invalidations, reconnecting", e);
+                try {
+                    Thread.sleep(RECONNECT_DELAY_MILLIS);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            } finally {
+                connection = null;
+                if (jedis != null) {
+                    jedis.disconnect();
+                }
+            }
+        }
+    }
+
+    protected class Subscriber extends BinaryJedisPubSub {
+
+        @Override
+        public void onMessage(byte[] channel, byte[] message) {
+            try {
+                receive(message);
+            } catch (IOException e) {
+                log.error("Cannot read VCS invalidations", e);
+            }
+        }
+
+        @Override
+        public void onPMessage(byte[] pattern, byte[] channel, byte[] message) {
+        }
+
+        @Override
+        public void onSubscribe(byte[] channel, int subscribedChannels) {
+        }
+
+        @Override
+        public void onUnsubscribe(byte[] channel, int subscribedChannels) {
+        }
+
+        @Override
+        public void onPUnsubscribe(byte[] pattern, int subscribedChannels) {
+        }
+
+        @Override
+        public void onPSubscribe(byte[] pattern, int subscribedChannels) {
+        }
+    }
+
+    protected void receive(byte[] message) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(message));
+        String sender = in.readUTF();
+        if (nodeId.equals(sender)) {
+            // our own message
+            return;
+        }
+        long sendTime = in.readLong();
+        Invalidations invalidations;
+        try {
+            invalidations = (Invalidations) new ObjectInputStream(in).readObject();
+        } catch (ClassNotFoundException e) {
+            throw new IOException(e);
+        }
+        receiver.receiveInvalidations(invalidations, sendTime);
+    }
+
+    protected byte[] serialize(Invalidations invalidations) throws IOException {
+        ByteArrayOutputStream baout = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(baout);
+        out.writeUTF(nodeId);
+        out.writeLong(System.currentTimeMillis());
+        ObjectOutputStream oout = new ObjectOutputStream(out);
+        oout.writeObject(invalidations);
+        oout.close();
+        return baout.toByteArray();
+    }
+
+    protected static byte[] bytes(String string) {
+        try {
+            return string.getBytes(UTF_8);
+        } catch (IOException e) {
+            // cannot happen for UTF-8
+            throw new RuntimeException(e);
+        }
+    }
+
+}
@@ -0,0 +1,189 @@
+/*
+ * Copyright (c) 2015 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.ecm.core.redis.contribs;
+
+import org.nuxeo.ecm.core.api.DocumentLocation;
+import org.nuxeo.ecm.core.api.DocumentRef;
+import org.nuxeo.ecm.core.api.IdRef;
+import org.nuxeo.ecm.core.api.PathRef;
+import org.nuxeo.ecm.core.api.impl.DocumentLocationImpl;
+import org.nuxeo.ecm.core.work.AbstractWork;
+import org.nuxeo.ecm.core.work.api.Work;
+
+/**
+ * Summary of a {@link Work} stored in Redis, used to list works without decoding them.
+ * <p>
+ * It holds the id, category, title, status, document and timestamps of the work it describes, and cannot be run. The
+ * summaries are listed by {@link RedisWorkQueuing#listWorkInfos}.
+ *
+ * @since 7.2
+ */
+public class RedisWorkInfo extends AbstractWork {
+
+    private static final long serialVersionUID = 1L;
+
+    protected static final char VERSION = '2';
+
+    protected static final char SEP = '\u001f';
+
+    protected static final int NFIELDS = 8;
+
+    protected String category;
+
+    protected String title;
+
+    protected DocumentRef docRef;
+
+    public RedisWorkInfo(String id) {
+        super(id);
+    }
+
+    /**
+     * Encodes the summary of a work.
+     */
+    public static String encode(Work work) {
+        DocumentLocation doc = work.getDocument();
+        StringBuilder buf = new StringBuilder();
+        buf.append(VERSION);
+        append(buf, work.getCategory());
+        append(buf, work.getTitle());
+        append(buf, doc == null ? null : doc.getServerName());
+        append(buf, doc == null ? null : encodeRef(doc.getDocRef()));
+        append(buf, work.getStatus());
+        append(buf, String.valueOf(work.getSchedulingTime()));
+        append(buf, String.valueOf(work.getStartTime()));
+        append(buf, String.valueOf(work.getCompletionTime()));
+        return buf.toString();
+    }
+
+    /**
+     * Encodes a document reference as its type followed by its value.
+     */
+    protected static String encodeRef(DocumentRef ref) {
+        if (ref == null) {
+            return null;
+        }
+        return String.valueOf(ref.type()) + ':' + ref.reference();
+    }
+
+    /**
+     * Decodes a document reference.
+     *
+     * @return the reference, or {@code null} if its type is unknown
+     */
+    protected static DocumentRef decodeRef(String string) {
+        int i = string.indexOf(':');
+        if (i < 0) {
+            return null;
+        }
+        int type;
+        try {
+            type = Integer.parseInt(string.substring(0, i));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        String value = string.substring(i + 1);
+        switch (type) {
+        case DocumentRef.ID:
+            return new IdRef(value);
+        case DocumentRef.PATH:
+            return new PathRef(value);
+        default:
+            return null;
+        }
+    }
+
+    protected static void append(StringBuilder buf, String value) {
+        buf.append(SEP);
+        if (value != null) {
+            buf.append(value.replace(SEP, ' '));
+        }
+    }
+
+    /**
+     * Decodes the summary of a work.
+     *
+     * @return the summary, or {@code null} if the format is unknown
+     */
+    public static RedisWorkInfo decode(String id, String string) {
+        if (string == null || string.isEmpty() || string.charAt(0) != VERSION) {
+            return null;
+        }
+        String[] fields = string.substring(2).split(String.valueOf(SEP), -1);
+        if (fields.length != NFIELDS) {
+            return null;
+        }
+        RedisWorkInfo info = new RedisWorkInfo(id);
+        info.category = emptyToNull(fields[0]);
+        info.title = emptyToNull(fields[1]);
+        info.repositoryName = emptyToNull(fields[2]);
+        if (!fields[3].isEmpty()) {
+            info.docRef = decodeRef(fields[3]);
+            if (info.docRef == null) {
+                return null;
+            }
+            if (info.docRef.type() == DocumentRef.ID) {
+                info.docId = (String) info.docRef.reference();
+            }
+        }
+        info.status = emptyToNull(fields[4]);
+        try {
+            info.schedulingTime = Long.parseLong(fields[5]);
+            info.startTime = Long.parseLong(fields[6]);
+            info.completionTime = Long.parseLong(fields[7]);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        return info;
+    }
+
+    protected static String emptyToNull(String string) {
+        return string.isEmpty() ? null : string;
+    }
+
+    @Override
+    public String getCategory() {
+        return category;
+    }
+
+    @Override
+    public String getTitle() {
+        return title;
+    }
+
+    @Override
+    public DocumentLocation getDocument() {
+        return docRef == null ? null : new DocumentLocationImpl(repositoryName, docRef);
+    }
+
+    @Override
+    public void work() {
+        throw new UnsupportedOperationException("Summary of work " + id + " cannot be run");
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder buf = new StringBuilder();
+        buf.append(category);
+        buf.append('(');
+        if (docRef != null) {
+            buf.append(docRef);
+            buf.append(", ");
+        }
+        buf.append(title);
+        buf.append(", ");
+        buf.append(getStatus());
+        buf.append(')');
+        return buf.toString();
+    }
+
+}
@@ -16,22 +16,24 @@
  */
 package org.nuxeo.ecm.core.redis.contribs;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.UUID;
 import java.util.concurrent.BlockingQueue;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.nuxeo.ecm.core.api.NuxeoException;
 import org.nuxeo.ecm.core.redis.RedisAdmin;
 import org.nuxeo.ecm.core.redis.RedisCallable;
 import org.nuxeo.ecm.core.redis.RedisExecutor;
@@ -55,11 +57,35 @@ public class RedisWorkQueuing implements WorkQueuing {
 
     protected static final String UTF_8 = "UTF-8";
 
+    /**
+     * Class name of the {@link WorkCodec} used to store works.
+     *
+     * @since 7.2
+     */
+    public static final String CODEC_PROP = "org.nuxeo.work.redis.codec";
+
+    public static final String DEFAULT_CODEC = DeflatedJavaWorkCodec.class.getName();
+
+    /**
+     * Identifier of this node, under which the works it dequeued are tracked until they run. It must be stable across
+     * restarts and unique in the cluster. Defaults to the host name.
+     *
+     * @since 7.2
+     */
+    public static final String NODE_ID_PROP = "org.nuxeo.work.redis.nodeId";
+
     /**
      * Global hash of Work instance id -> serialized Work instance.
      */
     protected static final String KEY_DATA = "data";
 
+    /**
+     * Global hash of Work instance id -> Work summary (see {@link RedisWorkInfo}), used for listings.
+     *
+     * @since 7.2
+     */
+    protected static final String KEY_META = "meta";
+
     /**
      * Global hash of Work instance id -> Work state. The completed state ( {@value #STATE_COMPLETED_B}) is followed by
      * a completion time in milliseconds.
@@ -76,6 +102,21 @@ public class RedisWorkQueuing implements WorkQueuing {
      */
     protected static final String KEY_SCHEDULED_PREFIX = "queue:";
 
+    /**
+     * Per-queue list of Work instance ids claimed by a blocking dequeue, transferred to a worker right after.
+     *
+     * @since 7.2
+     */
+    protected static final String KEY_CLAIMED_PREFIX = "claim:";
+
+    /**
+     * Per-node and per-queue list of Work instance ids dequeued but not yet running. Put back in the scheduled queue
+     * when the node starts, if it stopped without running them.
+     *
+     * @since 7.2
+     */
+    protected static final String KEY_DEQUEUED_PREFIX = "deq:";
+
     /**
      * Per-queue set of running Work instance ids.
      */
@@ -111,15 +152,41 @@ public class RedisWorkQueuing implements WorkQueuing {
 
     protected String redisNamespace;
 
+    protected String dequeueSha;
+
+    protected String requeueSha;
+
+    protected String nodeId;
+
+    protected final WorkCodec codec;
+
     public RedisWorkQueuing(WorkManagerImpl mgr, WorkQueueDescriptorRegistry workQueueDescriptors) {
         this.mgr = mgr;
+        String className = Framework.getProperty(CODEC_PROP, DEFAULT_CODEC);
+        try {
+            codec = (WorkCodec) Class.forName(className).newInstance();
+        } catch (ReflectiveOperationException | ClassCastException e) {
+            throw new NuxeoException("Cannot instantiate work codec: " + className, e);
+        }
     }
 
     @Override
     public void init() {
         redisExecutor = Framework.getLocalService(RedisExecutor.class);
-        redisNamespace = Framework.getService(RedisAdmin.class).namespace("work");
+        RedisAdmin redisAdmin = Framework.getService(RedisAdmin.class);
+        redisNamespace = redisAdmin.namespace("work");
+        nodeId = getNodeId();
         try {
+            dequeueSha = redisAdmin.load("org.nuxeo.ecm.core.redis", "dequeue-work");
+            requeueSha = redisAdmin.load("org.nuxeo.ecm.core.redis", "requeue-work");
+        } catch (IOException cause) {
+            throw new NuxeoException("Cannot load work scripts in redis", cause);
+        }
+        try {
+            for (String queueId : getDequeuedQueueIds()) {
+                int n = requeueDequeuedWork(queueId);
+                log.info("Re-scheduling " + n + " work instances dequeued before a stop from queue: " + queueId);
+            }
             for (String queueId : getSuspendedQueueIds()) {
                 int n = scheduleSuspendedWork(queueId);
                 log.info("Re-scheduling " + n + " work instances suspended from queue: " + queueId);
@@ -129,6 +196,20 @@ public class RedisWorkQueuing implements WorkQueuing {
         }
     }
 
+    protected static String getNodeId() {
+        String nodeId = Framework.getProperty(NODE_ID_PROP);
+        if (nodeId == null || nodeId.isEmpty()) {
+            try {
+                nodeId = InetAddress.getLocalHost().getHostName();
+            } catch (UnknownHostException e) {
+                nodeId = UUID.randomUUID().toString();
+                log.warn("Cannot get host name, set " + NODE_ID_PROP + " to recover the works dequeued before a stop,"
+                        + " using: " + nodeId, e);
+            }
+        }
+        return nodeId;
+    }
+
     @Override
     public BlockingQueue<Runnable> initScheduleQueue(String queueId) {
         if (allScheduled.containsKey(queueId)) {
@@ -171,13 +252,33 @@ public class RedisWorkQueuing implements WorkQueuing {
 
     @Override
     public List<Work> listWork(String queueId, State state) {
+        return listWork(queueId, state, false);
+    }
+
+    /**
+     * Lists the summaries of the works in a given queue in a defined state, without decoding the works.
+     * <p>
+     * The summaries are {@link RedisWorkInfo} instances, which cannot be run. A work stored without summary is
+     * returned in full.
+     *
+     * @param queueId the queue id
+     * @param state the state defining the state to look into, {@link State#SCHEDULED SCHEDULED}, {@link State#RUNNING
+     *            RUNNING}, {@link State#COMPLETED COMPLETED}
+     * @return the list of work summaries
+     * @since 7.2
+     */
+    public List<Work> listWorkInfos(String queueId, State state) {
+        return listWork(queueId, state, true);
+    }
+
+    protected List<Work> listWork(String queueId, State state, boolean summaries) {
         switch (state) {
         case SCHEDULED:
-            return listScheduled(queueId);
+            return listScheduled(queueId, summaries);
         case RUNNING:
-            return listRunning(queueId);
+            return listRunning(queueId, summaries);
         case COMPLETED:
-            return listCompleted(queueId);
+            return listCompleted(queueId, summaries);
         default:
             throw new IllegalArgumentException(String.valueOf(state));
         }
@@ -200,25 +301,25 @@ public class RedisWorkQueuing implements WorkQueuing {
         }
     }
 
-    protected List<Work> listScheduled(String queueId) {
+    protected List<Work> listScheduled(String queueId, boolean summaries) {
         try {
-            return listWorkList(scheduledKey(queueId));
+            return listWorkList(scheduledKey(queueId), summaries);
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
     }
 
-    protected List<Work> listRunning(String queueId) {
+    protected List<Work> listRunning(String queueId, boolean summaries) {
         try {
-            return listWorkSet(runningKey(queueId));
+            return listWorkSet(runningKey(queueId), summaries);
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
     }
 
-    protected List<Work> listCompleted(String queueId) {
+    protected List<Work> listCompleted(String queueId, boolean summaries) {
         try {
-            return listWorkSet(completedKey(queueId));
+            return listWorkSet(completedKey(queueId), summaries);
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
@@ -226,7 +327,12 @@ public class RedisWorkQueuing implements WorkQueuing {
 
     protected List<String> listScheduledIds(String queueId) {
         try {
-            return listWorkIdsList(scheduledKey(queueId));
+            List<String> list = listWorkIdsList(scheduledKey(queueId));
+            RedisBlockingQueue queue = getRedisQueue(queueId);
+            if (queue != null) {
+                list.addAll(queue.getBufferedIds());
+            }
+            return list;
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
@@ -270,7 +376,12 @@ public class RedisWorkQueuing implements WorkQueuing {
 
     protected int getScheduledSize(String queueId) {
         try {
-            return getScheduledQueueSize(queueId);
+            int size = getScheduledQueueSize(queueId);
+            RedisBlockingQueue queue = getRedisQueue(queueId);
+            if (queue != null) {
+                size += queue.getBufferedSize();
+            }
+            return size;
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
@@ -312,6 +423,15 @@ public class RedisWorkQueuing implements WorkQueuing {
     @Override
     public Work removeScheduled(String queueId, String workId) {
         try {
+            RedisBlockingQueue queue = getRedisQueue(queueId);
+            if (queue != null) {
+                // dequeued but not yet running
+                Work work = queue.removeBuffered(workId);
+                if (work != null) {
+                    workSetRemoved(queueId, work);
+                    return work;
+                }
+            }
             return removeScheduledWork(queueId, workId);
         } catch (IOException cause) {
             throw new RuntimeException("Cannot remove scheduled work " + workId + " from " + queueId, cause);
@@ -330,6 +450,11 @@ public class RedisWorkQueuing implements WorkQueuing {
     @Override
     public int setSuspending(String queueId) {
         try {
+            RedisBlockingQueue queue = getRedisQueue(queueId);
+            if (queue != null) {
+                // no more dequeues, buffered works are put back to be suspended with the others
+                queue.setSuspending();
+            }
             int n = suspendScheduledWork(queueId);
             log.info("Suspending " + n + " work instances from queue: " + queueId);
             return n;
@@ -351,6 +476,11 @@ public class RedisWorkQueuing implements WorkQueuing {
         }
     }
 
+    protected RedisBlockingQueue getRedisQueue(String queueId) {
+        BlockingQueue<Runnable> queue = allScheduled.get(queueId);
+        return queue instanceof RedisBlockingQueue ? (RedisBlockingQueue) queue : null;
+    }
+
     /*
      * ******************** Redis Interface ********************
      */
@@ -388,6 +518,14 @@ public class RedisWorkQueuing implements WorkQueuing {
         return keyBytes(KEY_SCHEDULED_PREFIX, queueId);
     }
 
+    protected byte[] claimedKey(String queueId) {
+        return keyBytes(KEY_CLAIMED_PREFIX, queueId);
+    }
+
+    protected byte[] dequeuedKey(String queueId) {
+        return keyBytes(KEY_DEQUEUED_PREFIX + nodeId + ':', queueId);
+    }
+
     protected byte[] runningKey(String queueId) {
         return keyBytes(KEY_RUNNING_PREFIX, queueId);
     }
@@ -404,35 +542,45 @@ public class RedisWorkQueuing implements WorkQueuing {
         return keyBytes(KEY_DATA);
     }
 
+    protected byte[] metaKey() {
+        return keyBytes(KEY_META);
+    }
+
     protected byte[] serializeWork(Work work) throws IOException {
-        ByteArrayOutputStream baout = new ByteArrayOutputStream();
-        ObjectOutputStream out = new ObjectOutputStream(baout);
-        out.writeObject(work);
-        out.flush();
-        out.close();
-        return baout.toByteArray();
+        return codec.encode(work);
     }
 
     protected Work deserializeWork(byte[] workBytes) {
-        if (workBytes == null) {
-            return null;
-        }
-        InputStream bain = new ByteArrayInputStream(workBytes);
-        try (ObjectInputStream in = new ObjectInputStream(bain)) {
-            return (Work) in.readObject();
-        } catch (RuntimeException cause) {
-            throw cause;
-        } catch (IOException | ClassNotFoundException cause) {
+        try {
+            return codec.decode(workBytes);
+        } catch (IOException cause) {
             throw new RuntimeException("Cannot deserialize work", cause);
         }
     }
 
+    protected byte[] serializeWorkInfo(Work work) {
+        return bytes(RedisWorkInfo.encode(work));
+    }
+
+    /**
+     * Gets the summary of a work, falling back to the full work if it was stored without summary.
+     */
+    protected Work deserializeWorkInfo(Jedis jedis, byte[] workIdBytes, byte[] metaBytes) {
+        if (metaBytes != null) {
+            RedisWorkInfo info = RedisWorkInfo.decode(string(workIdBytes), string(metaBytes));
+            if (info != null) {
+                return info;
+            }
+        }
+        return deserializeWork(jedis.hget(dataKey(), workIdBytes));
+    }
+
     protected int getScheduledQueueSize(final String queueId) throws IOException {
         return redisExecutor.execute(new RedisCallable<Long>() {
 
             @Override
             public Long call(Jedis jedis) {
-                return jedis.llen(scheduledKey(queueId));
+                return jedis.llen(scheduledKey(queueId)) + jedis.llen(claimedKey(queueId));
             }
 
         }).intValue();
@@ -473,12 +621,14 @@ public class RedisWorkQueuing implements WorkQueuing {
 
         // serialize Work
         final byte[] workBytes = serializeWork(work);
+        final byte[] metaBytes = serializeWorkInfo(work);
 
         redisExecutor.execute(new RedisCallable<Void>() {
 
             @Override
             public Void call(Jedis jedis) {
                 jedis.hset(dataKey(), workIdBytes, workBytes);
+                jedis.hset(metaKey(), workIdBytes, metaBytes);
                 jedis.hset(stateKey(), workIdBytes, STATE_SCHEDULED);
                 jedis.lpush(scheduledKey(queueId), workIdBytes);
                 return null;
@@ -497,6 +647,16 @@ public class RedisWorkQueuing implements WorkQueuing {
         return getQueueIds(KEY_SUSPENDED_PREFIX);
     }
 
+    /**
+     * Finds which queues have works dequeued by this node but not running.
+     *
+     * @return a set of queue ids
+     * @since 7.2
+     */
+    protected Set<String> getDequeuedQueueIds() throws IOException {
+        return getQueueIds(KEY_DEQUEUED_PREFIX + nodeId + ':');
+    }
+
     protected Set<String> getScheduledQueueIds() {
         try {
             return getQueueIds(KEY_SCHEDULED_PREFIX);
@@ -581,12 +741,14 @@ public class RedisWorkQueuing implements WorkQueuing {
 
             @Override
             public Integer call(Jedis jedis) throws IOException {
-                for (int n = 0;; n++) {
-                    byte[] workIdBytes = jedis.rpoplpush(scheduledKey(queueId), suspendedKey(queueId));
-                    if (workIdBytes == null) {
-                        return n;
+                int n = 0;
+                // claimed works are the oldest ones
+                for (byte[] key : Arrays.asList(claimedKey(queueId), scheduledKey(queueId))) {
+                    while (jedis.rpoplpush(key, suspendedKey(queueId)) != null) {
+                        n++;
                     }
                 }
+                return n;
             }
         }).intValue();
     }
@@ -605,6 +767,7 @@ public class RedisWorkQueuing implements WorkQueuing {
             public Void call(Jedis jedis) throws IOException {
                 jedis.sadd(runningKey(queueId), workIdBytes);
                 jedis.hset(stateKey(), workIdBytes, STATE_RUNNING);
+                jedis.lrem(dequeuedKey(queueId), 0, workIdBytes);
                 return null;
             }
         });
@@ -620,12 +783,14 @@ public class RedisWorkQueuing implements WorkQueuing {
     protected void workSetCompleted(final String queueId, final Work work) throws IOException {
         final byte[] workIdBytes = bytes(work.getId());
         final byte[] workBytes = serializeWork(work);
+        final byte[] metaBytes = serializeWorkInfo(work);
         redisExecutor.execute(new RedisCallable<Void>() {
 
             @Override
             public Void call(Jedis jedis) throws IOException {
                 // store (updated) content in hash
                 jedis.hset(dataKey(), workIdBytes, workBytes);
+                jedis.hset(metaKey(), workIdBytes, metaBytes);
                 // remove key from running set
                 jedis.srem(runningKey(queueId), workIdBytes);
                 // put key in completed set
@@ -707,40 +872,52 @@ public class RedisWorkQueuing implements WorkQueuing {
 
     }
 
-    protected List<Work> listWorkList(final byte[] queueBytes) throws IOException {
+    protected List<Work> listWorkList(final byte[] queueBytes, final boolean summaries) throws IOException {
         return redisExecutor.execute(new RedisCallable<List<Work>>() {
             @Override
             public List<Work> call(Jedis jedis) throws IOException {
                 List<byte[]> keys = jedis.lrange(queueBytes, 0, -1);
-                List<Work> list = new ArrayList<Work>(keys.size());
-                for (byte[] workIdBytes : keys) {
-                    // get data
-                    byte[] workBytes = jedis.hget(dataKey(), workIdBytes);
-                    Work work = deserializeWork(workBytes);
-                    list.add(work);
-                }
-                return list;
+                return getWorks(jedis, keys, summaries);
             }
         });
     }
 
-    protected List<Work> listWorkSet(final byte[] queueBytes) throws IOException {
+    protected List<Work> listWorkSet(final byte[] queueBytes, final boolean summaries) throws IOException {
         return redisExecutor.execute(new RedisCallable<List<Work>>() {
             @Override
             public List<Work> call(Jedis jedis) {
                 Set<byte[]> keys = jedis.smembers(queueBytes);
-                List<Work> list = new ArrayList<Work>(keys.size());
-                for (byte[] workIdBytes : keys) {
-                    // get data
-                    byte[] workBytes = jedis.hget(dataKey(), workIdBytes);
-                    Work work = deserializeWork(workBytes);
-                    list.add(work);
-                }
-                return list;
+                return getWorks(jedis, keys, summaries);
             }
         });
     }
 
+    /**
+     * Gets the given works, or their summaries, in a single round trip.
+     *
+     * @since 7.2
+     */
+    protected List<Work> getWorks(Jedis jedis, Collection<byte[]> keys, boolean summaries) {
+        if (keys.isEmpty()) {
+            return new ArrayList<Work>(0);
+        }
+        byte[][] workIdsBytes = keys.toArray(new byte[keys.size()][]);
+        List<byte[]> values = jedis.hmget(summaries ? metaKey() : dataKey(), workIdsBytes);
+        List<Work> list = new ArrayList<Work>(workIdsBytes.length);
+        for (int i = 0; i < workIdsBytes.length; i++) {
+            Work work;
+            if (summaries) {
+                work = deserializeWorkInfo(jedis, workIdsBytes[i], values.get(i));
+            } else {
+                work = deserializeWork(values.get(i));
+            }
+            if (work != null) {
+                list.add(work);
+            }
+        }
+        return list;
+    }
+
     protected Work getWork(byte[] workIdBytes) {
         try {
             return getWorkData(workIdBytes);
@@ -768,23 +945,151 @@ public class RedisWorkQueuing implements WorkQueuing {
      * @return the work, or {@code null} if the scheduled queue is empty
      */
     protected Work removeScheduledWork(final String queueId) throws IOException {
-        return redisExecutor.execute(new RedisCallable<Work>() {
+        List<Work> works = removeScheduledWorks(queueId, 1);
+        return works.isEmpty() ? null : works.get(0);
+    }
+
+    /**
+     * Sets the state of a work removed from the scheduled queue before running to completed at current time.
+     *
+     * @since 7.2
+     */
+    protected void workSetRemoved(final String queueId, Work work) throws IOException {
+        final byte[] workIdBytes = bytes(work.getId());
+        redisExecutor.execute(new RedisCallable<Void>() {
 
             @Override
-            public Work call(Jedis jedis) throws IOException {
-                // pop from queue
-                byte[] workIdBytes = jedis.rpop(scheduledKey(queueId));
-                if (workIdBytes == null) {
-                    return null;
-                }
-                // get data
-                byte[] workBytes = jedis.hget(dataKey(), workIdBytes);
-                return deserializeWork(workBytes);
+            public Void call(Jedis jedis) throws IOException {
+                byte[] completedBytes = bytes(String.valueOf(System.currentTimeMillis()));
+                jedis.hset(stateKey(), workIdBytes, completedBytes);
+                jedis.lrem(dequeuedKey(queueId), 0, workIdBytes);
+                return null;
+            }
+
+        });
+    }
+
+    /**
+     * Removes up to {@code max} works from the scheduled queue, in scheduling order, without waiting.
+     *
+     * @param queueId the queue id
+     * @param max the maximum number of works to remove
+     * @return the works, or an empty list if the scheduled queue is empty
+     * @since 7.2
+     */
+    protected List<Work> removeScheduledWorks(final String queueId, final int max) throws IOException {
+        return redisExecutor.execute(new RedisCallable<List<Work>>() {
+
+            @Override
+            public List<Work> call(Jedis jedis) throws IOException {
+                return removeScheduledWorks(jedis, queueId, max, 0);
+            }
+
+        });
+    }
+
+    /**
+     * Removes up to {@code max} works from the scheduled queue, in scheduling order, using the given connection.
+     * <p>
+     * If the queue is empty and {@code blockSeconds} is positive, waits for a work to be scheduled. The blocking pop
+     * moves the first work id to the claimed list, then a script moves the claimed and next scheduled ids atomically to
+     * the dequeued list of this node, and their data is fetched in a single round trip. The works stay in the scheduled
+     * state and in the dequeued list until they are running, so that they are scheduled again if the node stops
+     * before running them.
+     * <p>
+     * When blocking, the connection must be a dedicated one from {@link RedisExecutor#newConnection}, to avoid holding
+     * a pooled connection while waiting.
+     *
+     * @param jedis the connection
+     * @param queueId the queue id
+     * @param max the maximum number of works to remove
+     * @param blockSeconds the maximum time to wait for a work, or 0 to return immediately
+     * @return the works, or an empty list if the scheduled queue is empty
+     * @since 7.2
+     */
+    @SuppressWarnings("unchecked")
+    protected List<Work> removeScheduledWorks(Jedis jedis, String queueId, int max, int blockSeconds)
+            throws IOException {
+        if (blockSeconds > 0) {
+            // wait for a work, other works will be popped by the script
+            byte[] workIdBytes = jedis.brpoplpush(scheduledKey(queueId), claimedKey(queueId), blockSeconds);
+            if (workIdBytes == null) {
+                return Collections.emptyList();
+            }
+        }
+        List<String> keys = Arrays.asList(string(scheduledKey(queueId)), string(claimedKey(queueId)),
+                string(dequeuedKey(queueId)));
+        List<String> args = Collections.singletonList(String.valueOf(max));
+        List<String> ids = (List<String>) jedis.evalsha(dequeueSha, keys, args);
+        if (ids == null || ids.isEmpty()) {
+            return Collections.emptyList();
+        }
+        byte[][] workIdsBytes = new byte[ids.size()][];
+        for (int i = 0; i < workIdsBytes.length; i++) {
+            workIdsBytes[i] = bytes(ids.get(i));
+        }
+        // get data
+        List<byte[]> data = jedis.hmget(dataKey(), workIdsBytes);
+        List<Work> works = new ArrayList<Work>(data.size());
+        for (int i = 0; i < workIdsBytes.length; i++) {
+            Work work = deserializeWork(data.get(i));
+            if (work != null) {
+                works.add(work);
+            } else {
+                // nothing to run
+                jedis.lrem(dequeuedKey(queueId), 0, workIdsBytes[i]);
+            }
+        }
+        return works;
+    }
+
+    /**
+     * Puts back works dequeued but not run at the head of the scheduled queue, in their original order.
+     *
+     * @param queueId the queue id
+     * @param works the works, in scheduling order
+     * @since 7.2
+     */
+    protected void requeueScheduledWork(final String queueId, Collection<Work> works) throws IOException {
+        if (works.isEmpty()) {
+            return;
+        }
+        final List<String> ids = new ArrayList<String>(works.size());
+        for (Work work : works) {
+            ids.add(work.getId());
+        }
+        redisExecutor.execute(new RedisCallable<Void>() {
+
+            @Override
+            public Void call(Jedis jedis) throws IOException {
+                List<String> keys = Arrays.asList(string(scheduledKey(queueId)), string(dequeuedKey(queueId)));
+                jedis.evalsha(requeueSha, keys, ids);
+                return null;
             }
 
         });
     }
 
+    /**
+     * Puts back at the head of the scheduled queue all the works dequeued by this node but not run, typically because
+     * the node stopped abruptly.
+     *
+     * @param queueId the queue id
+     * @return the number of work instances scheduled
+     * @since 7.2
+     */
+    protected int requeueDequeuedWork(final String queueId) throws IOException {
+        return redisExecutor.execute(new RedisCallable<Long>() {
+
+            @Override
+            public Long call(Jedis jedis) throws IOException {
+                List<String> keys = Arrays.asList(string(scheduledKey(queueId)), string(dequeuedKey(queueId)));
+                return (Long) jedis.evalsha(requeueSha, keys, Collections.<String> emptyList());
+            }
+
+        }).intValue();
+    }
+
     /**
      * Removes a given work from scheduled queue and set state to completed.
      *
@@ -824,6 +1129,7 @@ public class RedisWorkQueuing implements WorkQueuing {
                     }
                     jedis.hdel(stateKey(), workIdBytes);
                     jedis.hdel(dataKey(), workIdBytes);
+                    jedis.hdel(metaKey(), workIdBytes);
                 }
             }
 
@@ -840,6 +1146,7 @@ public class RedisWorkQueuing implements WorkQueuing {
                     }
                     jedis.hdel(stateKey(), workIdBytes);
                     jedis.hdel(dataKey(), workIdBytes);
+                    jedis.hdel(metaKey(), workIdBytes);
                 }
             }
 
@@ -863,6 +1170,7 @@ public class RedisWorkQueuing implements WorkQueuing {
                         jedis.srem(completedKey(queueId), workIdBytes);
                         jedis.hdel(stateKey(), workIdBytes);
                         jedis.hdel(dataKey(), workIdBytes);
+                        jedis.hdel(metaKey(), workIdBytes);
                     }
                 }
                 return null;
@@ -0,0 +1,41 @@
+/*
+ * Copyright (c) 2015 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.ecm.core.redis.contribs;
+
+import java.io.IOException;
+
+import org.nuxeo.ecm.core.work.api.Work;
+
+/**
+ * Encodes and decodes {@link Work} instances stored in Redis.
+ * <p>
+ * The codec used by {@link RedisWorkQueuing} is configured with the {@value RedisWorkQueuing#CODEC_PROP} property. A
+ * codec must be able to decode the data written by the previous versions of its own format.
+ *
+ * @since 7.2
+ */
+public interface WorkCodec {
+
+    /**
+     * Encodes a work.
+     */
+    byte[] encode(Work work) throws IOException;
+
+    /**
+     * Decodes a work.
+     *
+     * @param bytes the encoded work
+     * @return the work, or {@code null} if {@code bytes} is {@code null}
+     */
+    Work decode(byte[] bytes) throws IOException;
+
+}
@@ -0,0 +1,16 @@
+-- Moves up to ARGV[1] work ids to the dequeued list KEYS[3] of this node, first from the
+-- claimed list KEYS[2] (filled by a blocking pop) then from the scheduled list KEYS[1], in
+-- scheduling order, and returns them
+local max = tonumber(ARGV[1])
+local ids = {}
+for i = 1, max do
+  local id = redis.call('RPOPLPUSH', KEYS[2], KEYS[3])
+  if not id then
+    id = redis.call('RPOPLPUSH', KEYS[1], KEYS[3])
+  end
+  if not id then
+    break
+  end
+  ids[#ids + 1] = id
+end
+return ids
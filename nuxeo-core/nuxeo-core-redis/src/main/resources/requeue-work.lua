@@ -0,0 +1,20 @@
+-- Moves work ids from the dequeued list KEYS[2] of this node back to the head of the
+-- scheduled list KEYS[1]. ARGV holds the ids in scheduling order; without ARGV, all the
+-- dequeued ids are moved. Returns the number of ids moved
+if #ARGV == 0 then
+  local n = 0
+  while true do
+    -- most recently dequeued first, so that the oldest one is popped first again
+    local id = redis.call('LPOP', KEYS[2])
+    if not id then
+      return n
+    end
+    redis.call('RPUSH', KEYS[1], id)
+    n = n + 1
+  end
+end
+for i = #ARGV, 1, -1 do
+  redis.call('LREM', KEYS[2], 0, ARGV[i])
+  redis.call('RPUSH', KEYS[1], ARGV[i])
+end
+return #ARGV
@@ -53,6 +53,8 @@ import org.nuxeo.runtime.test.runner.SimpleFeature;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 
+import redis.clients.jedis.Jedis;
+
 @Features({ CoreFeature.class, CacheFeature.class })
 @RepositoryConfig(init = DefaultRepositoryInit.class)
 public class RedisFeature extends SimpleFeature {
@@ -123,7 +125,13 @@ public class RedisFeature extends SimpleFeature {
         if (Mode.embedded.equals(config.mode())) {
             RedisComponent component = (RedisComponent) Framework.getRuntime().getComponent(
                     RedisComponent.class.getPackage().getName());
-            RedisExecutor executor = new RedisPoolExecutor(new RedisEmbeddedPool());
+            RedisExecutor executor = new RedisPoolExecutor(new RedisEmbeddedPool()) {
+                @Override
+                public Jedis newConnection() {
+                    // no server to connect to, use an embedded connection
+                    return ((RedisEmbeddedPool) pool).newConnection();
+                }
+            };
             executor = new RedisEmbeddedTraceExecutor(executor);
             executor = new RedisEmbeddedSynchronizedExecutor(executor);
             executor = new RedisFailoverExecutor(10, executor);
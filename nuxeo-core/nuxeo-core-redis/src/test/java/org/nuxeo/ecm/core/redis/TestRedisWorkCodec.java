@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2015 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.ecm.core.redis;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectOutputStream;
+
+import org.junit.Test;
+import org.nuxeo.ecm.core.api.DocumentLocation;
+import org.nuxeo.ecm.core.api.IdRef;
+import org.nuxeo.ecm.core.api.PathRef;
+import org.nuxeo.ecm.core.api.impl.DocumentLocationImpl;
+import org.nuxeo.ecm.core.redis.contribs.DeflatedJavaWorkCodec;
+import org.nuxeo.ecm.core.redis.contribs.RedisWorkInfo;
+import org.nuxeo.ecm.core.work.SleepWork;
+import org.nuxeo.ecm.core.work.api.Work;
+
+public class TestRedisWorkCodec {
+
+    @Test
+    public void testJavaCodec() throws Exception {
+        DeflatedJavaWorkCodec codec = new DeflatedJavaWorkCodec();
+        SleepWork work = new SleepWork(1234, "mycat", false, "myid");
+        byte[] bytes = codec.encode(work);
+        assertEquals(DeflatedJavaWorkCodec.FORMAT_DEFLATE, bytes[0]);
+        Work decoded = codec.decode(bytes);
+        assertEquals("myid", decoded.getId());
+        assertEquals("mycat", decoded.getCategory());
+        assertNull(codec.decode(null));
+    }
+
+    @Test
+    public void testJavaCodecLegacyFormat() throws Exception {
+        SleepWork work = new SleepWork(1234, "mycat", false, "myid");
+        ByteArrayOutputStream baout = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(baout)) {
+            out.writeObject(work);
+        }
+        byte[] legacy = baout.toByteArray();
+        Work decoded = new DeflatedJavaWorkCodec().decode(legacy);
+        assertEquals("myid", decoded.getId());
+        // compressed form is smaller
+        assertTrue(new DeflatedJavaWorkCodec().encode(work).length < legacy.length);
+    }
+
+    @Test
+    public void testWorkInfo() throws Exception {
+        SleepWork work = new SleepWork(1234, "mycat", false, "myid");
+        String encoded = RedisWorkInfo.encode(work);
+        RedisWorkInfo info = RedisWorkInfo.decode("myid", encoded);
+        assertEquals("myid", info.getId());
+        assertEquals("mycat", info.getCategory());
+        assertEquals("Sleep 1234 ms", info.getTitle());
+        assertNull(info.getDocument());
+        assertEquals(work.getSchedulingTime(), info.getSchedulingTime());
+        assertEquals(0, info.getCompletionTime());
+        // unknown format
+        assertNull(RedisWorkInfo.decode("myid", "9"));
+    }
+
+    @Test
+    public void testWorkInfoDocument() throws Exception {
+        SleepWork work = new SleepWork(1234, "mycat", false, "myid");
+        work.setDocument("myrepo", "1234-5678");
+        DocumentLocation doc = RedisWorkInfo.decode("myid", RedisWorkInfo.encode(work)).getDocument();
+        assertEquals("myrepo", doc.getServerName());
+        assertEquals(new IdRef("1234-5678"), doc.getDocRef());
+
+        Work pathWork = new SleepWork(1234, "mycat", false, "myid") {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            public DocumentLocation getDocument() {
+                return new DocumentLocationImpl("myrepo", new PathRef("/foo/bar"));
+            }
+        };
+        doc = RedisWorkInfo.decode("myid", RedisWorkInfo.encode(pathWork)).getDocument();
+        assertEquals("myrepo", doc.getServerName());
+        assertEquals(new PathRef("/foo/bar"), doc.getDocRef());
+    }
+
+}
@@ -0,0 +1,185 @@
+/*
+ * (C) Copyright 2015 Nuxeo SA (http://nuxeo.com/) and contributors.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public License
+ * (LGPL) version 2.1 which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl-2.1.html
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.ecm.core.redis.contribs;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.nuxeo.ecm.core.redis.RedisFeature;
+import org.nuxeo.ecm.core.work.SleepWork;
+import org.nuxeo.ecm.core.work.WorkHolder;
+import org.nuxeo.ecm.core.work.api.Work;
+import org.nuxeo.ecm.core.work.api.Work.State;
+import org.nuxeo.runtime.test.NXRuntimeTestCase;
+
+/**
+ * Tests of the batch and blocking dequeue of the {@link RedisBlockingQueue}. Does not run if no Redis is configured
+ * through the properties of {@link RedisFeature}.
+ *
+ * @since 7.2
+ */
+public class TestRedisBlockingQueue extends NXRuntimeTestCase {
+
+    protected static final String QUEUE_ID = "testqueue";
+
+    protected RedisWorkQueuing queuing;
+
+    protected RedisBlockingQueue queue;
+
+    @Override
+    @Before
+    public void setUp() throws Exception {
+        super.setUp();
+        assumeTrue(RedisFeature.setup(this));
+        fireFrameworkStarted();
+        queuing = new RedisWorkQueuing(null, null);
+        queuing.init();
+        queue = (RedisBlockingQueue) queuing.initScheduleQueue(QUEUE_ID);
+    }
+
+    @Override
+    @After
+    public void tearDown() throws Exception {
+        if (queue != null) {
+            queue.disconnect();
+        }
+        super.tearDown();
+    }
+
+    protected void schedule(String... ids) throws Exception {
+        for (String id : ids) {
+            queue.put(new WorkHolder(new SleepWork(0, false, id)));
+        }
+    }
+
+    protected static String getId(Runnable r) {
+        return r == null ? null : WorkHolder.getWork(r).getId();
+    }
+
+    @Test
+    public void testBatchDequeueOrder() throws Exception {
+        schedule("w1", "w2", "w3", "w4", "w5");
+        // three threads waiting
+        queue.waiting.set(3);
+        assertEquals("w1", queue.dequeue(0).getId());
+        assertEquals(2, queue.getBufferedSize());
+        // buffered works are still scheduled
+        assertEquals(4, queuing.getQueueSize(QUEUE_ID, State.SCHEDULED));
+        queue.waiting.set(0);
+        for (String id : new String[] { "w2", "w3", "w4", "w5" }) {
+            assertEquals(id, getId(queue.poll()));
+        }
+        assertNull(queue.poll());
+    }
+
+    @Test
+    public void testDequeueWhenInactive() throws Exception {
+        schedule("w1", "w2", "w3", "w4");
+        queue.setActive(false);
+        queue.waiting.set(3);
+        assertNull(queue.dequeue(0));
+        assertEquals(0, queue.getBufferedSize());
+        // put back in scheduling order
+        queue.setActive(true);
+        queue.waiting.set(0);
+        for (String id : new String[] { "w1", "w2", "w3", "w4" }) {
+            assertEquals(id, getId(queue.poll()));
+        }
+    }
+
+    @Test
+    public void testBlockingPoll() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<String> future = executor.submit(new Callable<String>() {
+                @Override
+                public String call() throws InterruptedException {
+                    return getId(queue.poll(10, TimeUnit.SECONDS));
+                }
+            });
+            Thread.sleep(500);
+            schedule("w1");
+            assertEquals("w1", future.get(10, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testDequeuedRecoveredAtStartup() throws Exception {
+        schedule("w1", "w2", "w3");
+        queue.waiting.set(2);
+        Work work = queue.dequeue(0);
+        assertEquals("w1", work.getId());
+        queuing.workRunning(QUEUE_ID, work);
+        // w2 is only in the local buffer when the node stops abruptly
+        assertEquals(1, queue.getBufferedSize());
+        queue.disconnect();
+
+        // restart
+        queuing = new RedisWorkQueuing(null, null);
+        queuing.init();
+        queue = (RedisBlockingQueue) queuing.initScheduleQueue(QUEUE_ID);
+        assertEquals(2, queuing.getQueueSize(QUEUE_ID, State.SCHEDULED));
+        for (String id : new String[] { "w2", "w3" }) {
+            assertEquals(id, getId(queue.poll()));
+        }
+        assertNull(queue.poll());
+    }
+
+    @Test
+    public void testListWork() throws Exception {
+        schedule("w1");
+        // full works
+        List<Work> works = queuing.listWork(QUEUE_ID, State.SCHEDULED);
+        assertEquals(1, works.size());
+        assertTrue(works.get(0) instanceof SleepWork);
+        // summaries
+        works = queuing.listWorkInfos(QUEUE_ID, State.SCHEDULED);
+        assertEquals(1, works.size());
+        assertTrue(works.get(0) instanceof RedisWorkInfo);
+        assertEquals("w1", works.get(0).getId());
+    }
+
+    @Test
+    public void testSuspending() throws Exception {
+        schedule("w1", "w2", "w3");
+        queue.waiting.set(2);
+        assertEquals("w1", queue.dequeue(0).getId());
+        assertEquals(1, queue.getBufferedSize());
+        // the buffered work is suspended with the scheduled one
+        assertEquals(2, queuing.setSuspending(QUEUE_ID));
+        assertEquals(0, queuing.getQueueSize(QUEUE_ID, State.SCHEDULED));
+        // nothing more is dequeued
+        schedule("w4");
+        assertNull(queue.dequeue(0));
+        assertNull(queue.poll(100, TimeUnit.MILLISECONDS));
+    }
+
+}
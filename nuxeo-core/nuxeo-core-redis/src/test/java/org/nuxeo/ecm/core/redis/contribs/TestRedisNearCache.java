@@ -0,0 +1,197 @@
+/*
+ * (C) Copyright 2015 Nuxeo SA (http://nuxeo.com/) and contributors.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public License
+ * (LGPL) version 2.1 which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl-2.1.html
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.ecm.core.redis.contribs;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assume.assumeTrue;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.nuxeo.ecm.core.cache.CacheDescriptor;
+import org.nuxeo.ecm.core.redis.RedisFeature;
+import org.nuxeo.runtime.test.NXRuntimeTestCase;
+
+/**
+ * Tests of the near cache of the {@link RedisCache}. Two instances of the same cache play the role of two nodes; as the
+ * embedded Redis has no pub/sub, the published invalidations are recorded and delivered by the test.
+ *
+ * @since 7.2
+ */
+public class TestRedisNearCache extends NXRuntimeTestCase {
+
+    protected static final String CACHE_NAME = "testNearCache";
+
+    protected NodeCache cache1;
+
+    protected NodeCache cache2;
+
+    /**
+     * A near cache whose invalidations are recorded instead of published.
+     */
+    protected static class NodeCache extends RedisCache {
+
+        protected final List<byte[]> published = new ArrayList<byte[]>();
+
+        /** Number of modifications to simulate while the next value is read from Redis. */
+        protected int concurrentModifications;
+
+        public NodeCache(CacheDescriptor desc) {
+            super(desc);
+        }
+
+        @Override
+        protected void startSubscriber() {
+            nodeId = String.valueOf(System.identityHashCode(this));
+        }
+
+        @Override
+        protected void publish(byte[] message) {
+            published.add(message);
+        }
+
+        @Override
+        protected Serializable deserializeValue(byte[] workBytes) throws IOException {
+            for (; concurrentModifications > 0; concurrentModifications--) {
+                generation.incrementAndGet();
+            }
+            return super.deserializeValue(workBytes);
+        }
+
+        /** Delivers the invalidations published by this node to another node. */
+        protected void deliverTo(NodeCache other) throws IOException {
+            for (byte[] message : published) {
+                other.receiveInvalidation(message);
+            }
+            published.clear();
+        }
+    }
+
+    protected static CacheDescriptor newDescriptor() {
+        CacheDescriptor desc = new CacheDescriptor() {
+            {
+                ttl = 10;
+                options.put(OPTION_NEAR_CACHE, "true");
+            }
+        };
+        desc.name = CACHE_NAME;
+        return desc;
+    }
+
+    @Override
+    @Before
+    public void setUp() throws Exception {
+        super.setUp();
+        assumeTrue(RedisFeature.setup(this));
+        fireFrameworkStarted();
+        cache1 = new NodeCache(newDescriptor());
+        cache2 = new NodeCache(newDescriptor());
+    }
+
+    @Override
+    @After
+    public void tearDown() throws Exception {
+        if (cache1 != null) {
+            cache1.invalidateAll();
+        }
+        super.tearDown();
+    }
+
+    @Test
+    public void testHitsAndMisses() throws Exception {
+        long nearHits = cache1.nearHits.getCount();
+        long nearMisses = cache1.nearMisses.getCount();
+        long redisHits = cache1.redisHits.getCount();
+        long redisMisses = cache1.redisMisses.getCount();
+
+        cache1.put("key", "value");
+        // from the near cache
+        assertEquals("value", cache1.get("key"));
+        assertEquals(nearHits + 1, cache1.nearHits.getCount());
+        assertEquals(redisHits, cache1.redisHits.getCount());
+        // other node: from Redis, then from its near cache
+        assertEquals("value", cache2.get("key"));
+        assertEquals(nearMisses + 1, cache1.nearMisses.getCount());
+        assertEquals(redisHits + 1, cache1.redisHits.getCount());
+        assertEquals("value", cache2.get("key"));
+        assertEquals(nearHits + 2, cache1.nearHits.getCount());
+        // missing everywhere
+        assertNull(cache1.get("nosuchkey"));
+        assertEquals(nearMisses + 2, cache1.nearMisses.getCount());
+        assertEquals(redisMisses + 1, cache1.redisMisses.getCount());
+    }
+
+    @Test
+    public void testGenerationGuard() throws Exception {
+        cache1.put("key", "value");
+        // a modification happens while cache2 reads from Redis
+        cache2.concurrentModifications = 1;
+        assertEquals("value", cache2.get("key"));
+        // the possibly stale value is not kept
+        assertNull(cache2.nearCache.getIfPresent("key"));
+        assertEquals("value", cache2.get("key"));
+        assertEquals("value", cache2.nearCache.getIfPresent("key"));
+    }
+
+    @Test
+    public void testLocalInvalidation() throws Exception {
+        cache1.put("key", "value");
+        assertEquals("value", cache1.nearCache.getIfPresent("key"));
+        cache1.put("key", "value2");
+        assertEquals("value2", cache1.nearCache.getIfPresent("key"));
+        cache1.invalidate("key");
+        assertNull(cache1.nearCache.getIfPresent("key"));
+        assertNull(cache1.get("key"));
+        assertFalse(cache1.hasEntry("key"));
+        assertEquals(3, cache1.published.size());
+        // own invalidations are ignored
+        cache1.put("key", "value3");
+        cache1.deliverTo(cache1);
+        assertEquals("value3", cache1.nearCache.getIfPresent("key"));
+    }
+
+    @Test
+    public void testInvalidationFromOtherNode() throws Exception {
+        cache1.put("key", "value");
+        cache1.put("other", "othervalue");
+        cache1.published.clear();
+        assertEquals("value", cache2.get("key"));
+        assertEquals("othervalue", cache2.get("other"));
+
+        cache1.put("key", "value2");
+        // not yet received, stale value from the near cache
+        assertEquals("value", cache2.get("key"));
+        cache1.deliverTo(cache2);
+        assertNull(cache2.nearCache.getIfPresent("key"));
+        assertEquals("othervalue", cache2.nearCache.getIfPresent("other"));
+        assertEquals("value2", cache2.get("key"));
+
+        // invalidate all
+        cache1.invalidateAll();
+        cache1.deliverTo(cache2);
+        assertEquals(0, cache2.nearCache.size());
+        assertNull(cache2.get("other"));
+    }
+
+}
@@ -36,6 +36,27 @@ public class RedisEmbeddedConnection extends EmbeddedJedis {
         return value;
     }
 
+    public byte[] brpoplpush(final byte[] source, final byte[] destination, final int timeout) {
+        // no blocking in embedded mode, poll instead
+        long end = System.currentTimeMillis() + timeout * 1000L;
+        for (;;) {
+            byte[] value = rpop(source);
+            if (value != null) {
+                lpush(destination, value);
+                return value;
+            }
+            if (System.currentTimeMillis() >= end) {
+                return null;
+            }
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new JedisException(e);
+            }
+        }
+    }
+
     @Override
     public List<String> lrange(final String key, final long start, final long end) {
         return super.lrange(key, start, end);
@@ -10,6 +10,7 @@ package org.nuxeo.ecm.core.redis.embedded;
 
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -19,6 +20,7 @@ import javax.script.CompiledScript;
 import javax.script.ScriptException;
 
 import org.apache.commons.codec.binary.Hex;
+import org.luaj.vm2.LuaTable;
 import org.luaj.vm2.LuaValue;
 import org.luaj.vm2.script.LuaScriptEngine;
 import org.luaj.vm2.script.LuaScriptEngineFactory;
@@ -85,6 +87,18 @@ public class RedisEmbeddedLuaEngine {
             if (value.isboolean() && value.toboolean() == false) {
                 return null;
             }
+            if (value.istable()) {
+                LuaTable table = (LuaTable) value;
+                List<String> list = new ArrayList<>(table.length());
+                for (int i = 1; i <= table.length(); i++) {
+                    list.add(table.get(i).tojstring());
+                }
+                return list;
+            }
+            if (value.isinttype()) {
+                // integer reply
+                return Long.valueOf(value.tolong());
+            }
             return value.tojstring();
         }
         return result;
@@ -55,6 +55,12 @@ public class RedisEmbeddedLuaLibrary extends TwoArgFunction {
             case "del": {
                 return call(varargs.arg(1), LuaValue.tableOf(varargs, 1));
             }
+            case "lrem": {
+                String key = varargs.checkjstring(2);
+                long count = varargs.checklong(3);
+                String value = varargs.checkjstring(4);
+                return valueOfOrFalse(connection.lrem(key, count, value));
+            }
 
             }
             throw new UnsupportedOperationException(opcode);
@@ -68,6 +74,12 @@ public class RedisEmbeddedLuaLibrary extends TwoArgFunction {
             if ("get".equals(opcode)) {
                 return valueOfOrFalse(connection.get(key));
             }
+            if ("rpop".equals(opcode)) {
+                return valueOfOrFalse(connection.rpop(key));
+            }
+            if ("lpop".equals(opcode)) {
+                return valueOfOrFalse(connection.lpop(key));
+            }
             if ("del".equals(opcode)) {
                 return valueOfOrFalse(connection.del((String[]) CoerceLuaToJava.coerce(luaKey, String[].class)));
             }
@@ -91,6 +103,16 @@ public class RedisEmbeddedLuaLibrary extends TwoArgFunction {
             case "set": {
                 return valueOfOrFalse(connection.set(key, arg));
             }
+            case "rpush": {
+                return valueOfOrFalse(connection.rpush(key, arg));
+            }
+            case "rpoplpush": {
+                String value = connection.rpop(key);
+                if (value != null) {
+                    connection.lpush(arg, value);
+                }
+                return valueOfOrFalse(value);
+            }
             }
             throw new UnsupportedOperationException(opcode);
         }
@@ -18,6 +18,15 @@ public class RedisEmbeddedPool extends Pool<Jedis> {
         super(new GenericObjectPoolConfig(), new RedisEmbeddedFactory());
     }
 
+    /**
+     * Creates a connection to the embedded server outside of the pool.
+     *
+     * @since 7.2
+     */
+    public Jedis newConnection() {
+        return ((RedisEmbeddedFactory) internalPool.getFactory()).createProxy();
+    }
+
     public void setError(RedisEmbeddedGuessConnectionError error) {
         ((RedisEmbeddedFactory) internalPool.getFactory()).error = error;
     }
@@ -41,4 +41,9 @@ public class RedisEmbeddedSynchronizedExecutor implements RedisExecutor {
         return delegate.getPool();
     }
 
+    @Override
+    public Jedis newConnection() throws JedisException {
+        return delegate.newConnection();
+    }
+
 }
@@ -95,6 +95,18 @@ public interface DBSRepository extends Repository {
      */
     void updateState(String id, StateDiff diff) throws DocumentException;
 
+    /**
+     * Creates and updates several documents.
+     * <p>
+     * Implementations may send all the writes to the storage in batches.
+     *
+     * @param creates the states of the documents to create, in creation order
+     * @param updates the diffs to apply, by document id
+     * @throws DocumentException if a document cannot be written
+     * @since 7.2
+     */
+    void writeStates(List<State> creates, Map<String, StateDiff> updates) throws DocumentException;
+
     /**
      * Deletes a set of document.
      *
@@ -20,7 +20,9 @@ import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 
@@ -40,6 +42,8 @@ import org.nuxeo.ecm.core.api.security.impl.ACPImpl;
 import org.nuxeo.ecm.core.blob.BlobManager;
 import org.nuxeo.ecm.core.model.Document;
 import org.nuxeo.ecm.core.model.Session;
+import org.nuxeo.ecm.core.storage.State;
+import org.nuxeo.ecm.core.storage.State.StateDiff;
 import org.nuxeo.ecm.core.storage.binary.BinaryManager;
 import org.nuxeo.ecm.core.storage.binary.BinaryManagerDescriptor;
 import org.nuxeo.ecm.core.storage.binary.BinaryManagerService;
@@ -114,6 +118,21 @@ public abstract class DBSRepositoryBase implements DBSRepository {
         }
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The default implementation creates and updates the documents one at a time.
+     */
+    @Override
+    public void writeStates(List<State> creates, Map<String, StateDiff> updates) throws DocumentException {
+        for (State state : creates) {
+            createState(state);
+        }
+        for (Entry<String, StateDiff> en : updates.entrySet()) {
+            updateState(en.getKey(), en.getValue());
+        }
+    }
+
     @Override
     public String getRootId() {
         return DEBUG_UUIDS ? UUID_ZERO_DEBUG : UUID_ZERO;
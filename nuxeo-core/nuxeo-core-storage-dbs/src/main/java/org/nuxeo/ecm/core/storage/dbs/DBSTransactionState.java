@@ -50,6 +50,7 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
@@ -496,12 +497,13 @@ public class DBSTransactionState {
         } else {
             works = Collections.emptyList();
         }
+        List<State> creates = new ArrayList<>(transientCreated.size());
         for (String id : transientCreated) { // ordered
             DBSDocumentState docState = transientStates.get(id);
             docState.setNotDirty();
-            repository.createState(docState.getState());
-            // TODO undo log
+            creates.add(docState.getState());
         }
+        Map<String, StateDiff> updates = new LinkedHashMap<>();
         for (DBSDocumentState docState : transientStates.values()) {
             String id = docState.getId();
             if (transientCreated.contains(id)) {
@@ -510,10 +512,12 @@ public class DBSTransactionState {
             StateDiff diff = docState.getStateChange();
             docState.setNotDirty();
             if (diff != null) {
-                repository.updateState(id, diff);
-                // TODO undo log
+                updates.put(id, diff);
             }
         }
+        // written in batch if the repository supports it
+        repository.writeStates(creates, updates);
+        // TODO undo log
         transientCreated.clear();
         scheduleWork(works);
     }
@@ -0,0 +1,194 @@
+/*
+ * Copyright (c) 2015 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.ecm.core.storage.mem;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.nuxeo.ecm.core.storage.State;
+import org.nuxeo.ecm.core.storage.State.StateDiff;
+
+/**
+ * Hash index on the values of some top-level keys of the states of a {@link MemRepository}, mapping each value to
+ * the ids of the documents having it.
+ * <p>
+ * For a single key holding an array or a list, each scalar element is indexed separately. For several keys, the
+ * indexed value is the list of the values of all the keys, and a document is indexed only if none of them is null.
+ * Documents with nothing to index are tracked separately, see {@link #getMissing}.
+ * <p>
+ * The index is only a hint: callers must check the actual state of the documents it returns.
+ *
+ * @since 7.2
+ */
+public class MemIndex {
+
+    protected final List<String> keys;
+
+    protected final ConcurrentMap<Object, Set<String>> index = new ConcurrentHashMap<>();
+
+    protected final Set<String> missing = newSet();
+
+    public MemIndex(String... keys) {
+        this.keys = new ArrayList<>(keys.length);
+        Collections.addAll(this.keys, keys);
+    }
+
+    protected static Set<String> newSet() {
+        return Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    }
+
+    public List<String> getKeys() {
+        return keys;
+    }
+
+    /**
+     * Checks if this index may be impacted by a diff.
+     */
+    public boolean isImpacted(StateDiff diff) {
+        for (String key : keys) {
+            if (diff.containsKey(key)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Gets the values indexed for a state.
+     */
+    public Set<Object> getValues(State state) {
+        if (keys.size() == 1) {
+            Serializable value = state.get(keys.get(0));
+            if (value instanceof Object[]) {
+                return scalars((Object[]) value);
+            } else if (value instanceof List) {
+                return scalars(((List<?>) value).toArray());
+            } else if (value == null || value instanceof State) {
+                return Collections.emptySet();
+            } else {
+                return Collections.<Object> singleton(value);
+            }
+        }
+        List<Object> values = new ArrayList<>(keys.size());
+        for (String key : keys) {
+            Serializable value = state.get(key);
+            if (value == null || value instanceof State || value instanceof Object[] || value instanceof List) {
+                return Collections.emptySet();
+            }
+            values.add(value);
+        }
+        return Collections.<Object> singleton(values);
+    }
+
+    protected static Set<Object> scalars(Object[] array) {
+        Set<Object> values = new HashSet<>();
+        for (Object v : array) {
+            if (v != null && !(v instanceof State)) {
+                values.add(v);
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Indexes a new state.
+     */
+    public void add(String id, State state) {
+        add(id, getValues(state));
+    }
+
+    /**
+     * Updates the index for a state whose values were previously the given ones.
+     */
+    public void update(String id, Set<Object> oldValues, State state) {
+        Set<Object> newValues = getValues(state);
+        // add before removing so that concurrent readers never miss the document
+        Set<Object> added = new HashSet<>(newValues);
+        added.removeAll(oldValues);
+        if (!added.isEmpty()) {
+            add(id, added);
+            missing.remove(id);
+        }
+        Set<Object> removed = new HashSet<>(oldValues);
+        removed.removeAll(newValues);
+        remove(id, removed);
+        if (newValues.isEmpty()) {
+            missing.add(id);
+        }
+    }
+
+    /**
+     * Unindexes a removed state.
+     */
+    public void remove(String id, State state) {
+        Set<Object> values = getValues(state);
+        remove(id, values);
+        missing.remove(id);
+    }
+
+    protected void add(String id, Set<Object> values) {
+        if (values.isEmpty()) {
+            missing.add(id);
+            return;
+        }
+        for (Object value : values) {
+            Set<String> ids = index.get(value);
+            if (ids == null) {
+                ids = newSet();
+                Set<String> old = index.putIfAbsent(value, ids);
+                if (old != null) {
+                    ids = old;
+                }
+            }
+            ids.add(id);
+        }
+    }
+
+    protected void remove(String id, Set<Object> values) {
+        for (Object value : values) {
+            Set<String> ids = index.get(value);
+            if (ids != null) {
+                // empty sets are kept, removing them could race with a concurrent add
+                ids.remove(id);
+            }
+        }
+    }
+
+    /**
+     * Gets the ids of the documents having the given value.
+     * <p>
+     * For a multi-key index, the value is a list of the values of each key.
+     */
+    public Set<String> get(Object value) {
+        Set<String> ids = index.get(value);
+        return ids == null ? Collections.<String> emptySet() : ids;
+    }
+
+    /**
+     * Gets the ids of the documents with nothing indexed.
+     */
+    public Set<String> getMissing() {
+        return missing;
+    }
+
+    public void clear() {
+        index.clear();
+        missing.clear();
+    }
+
+}
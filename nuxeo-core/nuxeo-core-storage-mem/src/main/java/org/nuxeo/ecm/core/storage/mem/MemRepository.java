@@ -13,17 +13,25 @@ package org.nuxeo.ecm.core.storage.mem;
 
 import static java.lang.Boolean.TRUE;
 import static org.nuxeo.ecm.core.storage.State.NOP;
+import static org.nuxeo.ecm.core.storage.dbs.DBSDocument.KEY_ANCESTOR_IDS;
 import static org.nuxeo.ecm.core.storage.dbs.DBSDocument.KEY_ID;
 import static org.nuxeo.ecm.core.storage.dbs.DBSDocument.KEY_IS_PROXY;
 import static org.nuxeo.ecm.core.storage.dbs.DBSDocument.KEY_NAME;
 import static org.nuxeo.ecm.core.storage.dbs.DBSDocument.KEY_PARENT_ID;
 import static org.nuxeo.ecm.core.storage.dbs.DBSDocument.KEY_PROXY_IDS;
 import static org.nuxeo.ecm.core.storage.dbs.DBSDocument.KEY_PROXY_TARGET_ID;
+import static org.nuxeo.ecm.core.storage.dbs.DBSDocument.KEY_PROXY_VERSION_SERIES_ID;
+import static org.nuxeo.ecm.core.storage.dbs.DBSDocument.KEY_READ_ACL;
+import static org.nuxeo.ecm.core.storage.dbs.DBSDocument.KEY_VERSION_SERIES_ID;
 
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -33,14 +41,21 @@ import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.atomic.AtomicLong;
 
+import org.apache.commons.lang.StringUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.nuxeo.ecm.core.api.ConcurrentUpdateDocumentException;
 import org.nuxeo.ecm.core.api.DocumentException;
 import org.nuxeo.ecm.core.api.model.Delta;
 import org.nuxeo.ecm.core.model.Repository;
+import org.nuxeo.ecm.core.query.sql.NXQL;
 import org.nuxeo.ecm.core.query.sql.model.Expression;
+import org.nuxeo.ecm.core.query.sql.model.MultiExpression;
+import org.nuxeo.ecm.core.query.sql.model.Operand;
+import org.nuxeo.ecm.core.query.sql.model.Operator;
 import org.nuxeo.ecm.core.query.sql.model.OrderByClause;
+import org.nuxeo.ecm.core.query.sql.model.Reference;
+import org.nuxeo.ecm.core.query.sql.model.StringLiteral;
 import org.nuxeo.ecm.core.storage.State.ListDiff;
 import org.nuxeo.ecm.core.storage.State.StateDiff;
 import org.nuxeo.ecm.core.storage.StateHelper;
@@ -50,6 +65,8 @@ import org.nuxeo.ecm.core.storage.dbs.DBSDocument;
 import org.nuxeo.ecm.core.storage.dbs.DBSExpressionEvaluator;
 import org.nuxeo.ecm.core.storage.dbs.DBSExpressionEvaluator.OrderByComparator;
 import org.nuxeo.ecm.core.storage.dbs.DBSRepositoryBase;
+import org.nuxeo.ecm.core.storage.dbs.DBSSession;
+import org.nuxeo.runtime.api.Framework;
 
 /**
  * In-memory implementation of a {@link Repository}.
@@ -58,6 +75,11 @@ import org.nuxeo.ecm.core.storage.dbs.DBSRepositoryBase;
  * <p>
  * A document object is a JSON-like document stored as a Map recursively containing the data, see {@link DBSDocument}
  * for the description of the document.
+ * <p>
+ * Hash indexes are maintained on the parent id and name, the ancestor ids, the proxy target id, the read ACL, the
+ * version series ids and on the keys listed in the {@value #INDEXES_PROP} framework property, and are used to avoid
+ * full scans when looking up children or documents by key value, and when querying with equality conditions on indexed
+ * keys.
  *
  * @since 5.9.4
  */
@@ -65,6 +87,16 @@ public class MemRepository extends DBSRepositoryBase {
 
     private static final Log log = LogFactory.getLog(MemRepository.class);
 
+    /**
+     * Framework property holding a comma-separated list of additional top-level keys to index.
+     *
+     * @since 7.2
+     */
+    public static final String INDEXES_PROP = "org.nuxeo.dbs.mem.indexes";
+
+    protected static final String[] DEFAULT_INDEXED_KEYS = { KEY_PARENT_ID, KEY_ANCESTOR_IDS, KEY_PROXY_TARGET_ID,
+            KEY_READ_ACL, KEY_VERSION_SERIES_ID, KEY_PROXY_VERSION_SERIES_ID };
+
     // for debug
     private final AtomicLong temporaryIdCounter = new AtomicLong(0);
 
@@ -73,6 +105,27 @@ public class MemRepository extends DBSRepositoryBase {
      */
     protected Map<String, State> states;
 
+    /**
+     * Single-key indexes, by key.
+     *
+     * @since 7.2
+     */
+    protected Map<String, MemIndex> indexes;
+
+    /**
+     * Index on parent id and name.
+     *
+     * @since 7.2
+     */
+    protected MemIndex childIndex;
+
+    /**
+     * All the indexes.
+     *
+     * @since 7.2
+     */
+    protected List<MemIndex> allIndexes;
+
     public MemRepository(String repositoryName) {
         super(repositoryName, false);
         initRepository();
@@ -86,9 +139,24 @@ public class MemRepository extends DBSRepositoryBase {
 
     protected void initRepository() {
         states = new ConcurrentHashMap<>();
+        initIndexes();
         initRoot();
     }
 
+    protected void initIndexes() {
+        Set<String> keys = new LinkedHashSet<>(Arrays.asList(DEFAULT_INDEXED_KEYS));
+        for (String key : StringUtils.split(Framework.getProperty(INDEXES_PROP, ""), ", ")) {
+            keys.add(key);
+        }
+        indexes = new LinkedHashMap<>();
+        for (String key : keys) {
+            indexes.put(key, new MemIndex(key));
+        }
+        childIndex = new MemIndex(KEY_PARENT_ID, KEY_NAME);
+        allIndexes = new ArrayList<>(indexes.values());
+        allIndexes.add(childIndex);
+    }
+
     @Override
     public String generateNewId() {
         if (DEBUG_UUIDS) {
@@ -130,6 +198,9 @@ public class MemRepository extends DBSRepositoryBase {
         state = StateHelper.deepCopy(state, true); // thread-safe
         StateHelper.resetDeltas(state);
         states.put(id, state);
+        for (MemIndex index : allIndexes) {
+            index.add(id, state);
+        }
     }
 
     @Override
@@ -141,7 +212,18 @@ public class MemRepository extends DBSRepositoryBase {
         if (state == null) {
             throw new ConcurrentUpdateDocumentException("Missing: " + id);
         }
+        List<MemIndex> impacted = new ArrayList<>(1);
+        List<Set<Object>> oldValues = new ArrayList<>(1);
+        for (MemIndex index : allIndexes) {
+            if (index.isImpacted(diff)) {
+                impacted.add(index);
+                oldValues.add(index.getValues(state));
+            }
+        }
         applyDiff(state, diff);
+        for (int i = 0; i < impacted.size(); i++) {
+            impacted.get(i).update(id, oldValues.get(i), state);
+        }
     }
 
     @Override
@@ -150,16 +232,20 @@ public class MemRepository extends DBSRepositoryBase {
             log.trace("delete " + ids);
         }
         for (String id : ids) {
-            if (states.remove(id) == null) {
+            State state = states.remove(id);
+            if (state == null) {
                 log.debug("Missing on remove: " + id);
+                continue;
+            }
+            for (MemIndex index : allIndexes) {
+                index.remove(id, state);
             }
         }
     }
 
     @Override
     public State readChildState(String parentId, String name, Set<String> ignored) {
-        // TODO optimize by maintaining a parent/child index
-        for (State state : states.values()) {
+        for (State state : getStates(childIndex.get(Arrays.asList(parentId, name)))) {
             if (ignored.contains(state.get(KEY_ID))) {
                 continue;
             }
@@ -182,7 +268,7 @@ public class MemRepository extends DBSRepositoryBase {
     @Override
     public List<State> queryKeyValue(String key, String value, Set<String> ignored) {
         List<State> list = new ArrayList<>();
-        for (State state : states.values()) {
+        for (State state : getStates(key, value)) {
             String id = (String) state.get(KEY_ID);
             if (ignored.contains(id)) {
                 continue;
@@ -198,7 +284,7 @@ public class MemRepository extends DBSRepositoryBase {
     @Override
     public void queryKeyValueArray(String key, Object value, Set<String> ids, Map<String, String> proxyTargets,
             Map<String, Object[]> targetProxies) {
-        STATE: for (State state : states.values()) {
+        STATE: for (State state : getStates(key, value)) {
             Object[] array = (Object[]) state.get(key);
             String id = (String) state.get(KEY_ID);
             if (array != null) {
@@ -224,7 +310,7 @@ public class MemRepository extends DBSRepositoryBase {
 
     @Override
     public boolean queryKeyValuePresence(String key, String value, Set<String> ignored) {
-        for (State state : states.values()) {
+        for (State state : getStates(key, value)) {
             String id = (String) state.get(KEY_ID);
             if (ignored.contains(id)) {
                 continue;
@@ -240,7 +326,7 @@ public class MemRepository extends DBSRepositoryBase {
     public PartialList<State> queryAndFetch(Expression expression, DBSExpressionEvaluator evaluator,
             OrderByClause orderByClause, int limit, int offset, int countUpTo, boolean deepCopy, boolean fulltextScore) {
         List<State> maps = new ArrayList<>();
-        for (State state : states.values()) {
+        for (State state : getQueryStates(expression, evaluator)) {
             if (evaluator.matches(state)) {
                 if (deepCopy) {
                     state = StateHelper.deepCopy(state);
@@ -278,6 +364,124 @@ public class MemRepository extends DBSRepositoryBase {
         return new PartialList<>(maps, totalSize);
     }
 
+    /**
+     * Gets the states having the given value for a key, or more. All the states are returned if the key is not indexed.
+     *
+     * @since 7.2
+     */
+    protected Collection<State> getStates(String key, Object value) {
+        MemIndex index = indexes.get(key);
+        if (index == null) {
+            return states.values();
+        }
+        return getStates(index.get(value));
+    }
+
+    /**
+     * Gets the existing states for the given ids.
+     *
+     * @since 7.2
+     */
+    protected Collection<State> getStates(Set<String> ids) {
+        List<State> list = new ArrayList<>(ids.size());
+        for (String id : ids) {
+            State state = states.get(id);
+            if (state != null) {
+                list.add(state);
+            }
+        }
+        return list;
+    }
+
+    /**
+     * Gets the states that may match a query, using the indexes if possible.
+     *
+     * @since 7.2
+     */
+    protected Collection<State> getQueryStates(Expression expression, DBSExpressionEvaluator evaluator) {
+        Set<String> ids = getQueryIds(expression, evaluator);
+        if (evaluator.principals != null) {
+            // the evaluator lets documents without read ACL through
+            MemIndex index = indexes.get(KEY_READ_ACL);
+            Set<String> readIds = new HashSet<>(index.getMissing());
+            for (String principal : evaluator.principals) {
+                readIds.addAll(index.get(principal));
+            }
+            ids = smallest(ids, readIds);
+        }
+        if (ids == null) {
+            return states.values();
+        }
+        return getStates(ids);
+    }
+
+    /**
+     * Gets the ids of the documents that may match an expression according to the indexes, or {@code null} if no index
+     * can be used.
+     *
+     * @since 7.2
+     */
+    protected Set<String> getQueryIds(Operand operand, DBSExpressionEvaluator evaluator) {
+        if (!(operand instanceof Expression)) {
+            return null;
+        }
+        Expression expr = (Expression) operand;
+        Operator op = expr.operator;
+        if (op == Operator.AND) {
+            if (expr instanceof MultiExpression) {
+                Set<String> ids = null;
+                for (Operand value : ((MultiExpression) expr).values) {
+                    ids = smallest(ids, getQueryIds(value, evaluator));
+                }
+                return ids;
+            }
+            return smallest(getQueryIds(expr.lvalue, evaluator), getQueryIds(expr.rvalue, evaluator));
+        }
+        if (!(expr.lvalue instanceof Reference) || !(expr.rvalue instanceof StringLiteral)) {
+            return null;
+        }
+        String name = ((Reference) expr.lvalue).name;
+        String value = ((StringLiteral) expr.rvalue).value;
+        String key;
+        if (op == Operator.STARTSWITH && NXQL.ECM_PATH.equals(name)) {
+            if (value.length() > 1 && value.endsWith("/")) {
+                value = value.substring(0, value.length() - 1);
+            }
+            value = evaluator.pathResolver.getIdForPath(value);
+            if (value == null) {
+                return Collections.emptySet();
+            }
+            key = KEY_ANCESTOR_IDS;
+        } else if (op != Operator.EQ) {
+            return null;
+        } else if (NXQL.ECM_ANCESTORID.equals(name)) {
+            key = KEY_ANCESTOR_IDS;
+        } else if (NXQL.ECM_MIXINTYPE.equals(name)) {
+            // also matches the facets of the document type
+            return null;
+        } else if (name.startsWith(NXQL.ECM_PREFIX)) {
+            try {
+                key = DBSSession.convToInternal(name);
+            } catch (RuntimeException e) {
+                return null;
+            }
+        } else {
+            key = name;
+        }
+        MemIndex index = indexes.get(key);
+        return index == null ? null : index.get(value);
+    }
+
+    protected static Set<String> smallest(Set<String> a, Set<String> b) {
+        if (a == null) {
+            return b;
+        }
+        if (b == null) {
+            return a;
+        }
+        return a.size() <= b.size() ? a : b;
+    }
+
     /**
      * Applies a {@link StateDiff} in-place onto a base {@link State}.
      * <p>
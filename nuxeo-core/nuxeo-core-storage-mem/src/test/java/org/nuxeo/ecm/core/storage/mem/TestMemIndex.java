@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) 2015 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.ecm.core.storage.mem;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Test;
+import org.nuxeo.ecm.core.storage.State;
+import org.nuxeo.ecm.core.storage.State.StateDiff;
+
+public class TestMemIndex {
+
+    private static State state(Serializable... values) {
+        State state = new State();
+        for (int i = 0; i < values.length; i += 2) {
+            state.put((String) values[i], values[i + 1]);
+        }
+        return state;
+    }
+
+    private static Set<String> set(String... ids) {
+        return new HashSet<>(Arrays.asList(ids));
+    }
+
+    @Test
+    public void testSingleKey() {
+        MemIndex index = new MemIndex("ecm:parentId");
+        index.add("id1", state("ecm:parentId", "p1"));
+        index.add("id2", state("ecm:parentId", "p1"));
+        index.add("id3", state("ecm:parentId", "p2"));
+        index.add("id4", state());
+        assertEquals(set("id1", "id2"), index.get("p1"));
+        assertEquals(set("id3"), index.get("p2"));
+        assertEquals(Collections.emptySet(), index.get("p3"));
+        assertEquals(set("id4"), index.getMissing());
+
+        // move id1 from p1 to p2
+        State state = state("ecm:parentId", "p1");
+        Set<Object> oldValues = index.getValues(state);
+        state.put("ecm:parentId", "p2");
+        index.update("id1", oldValues, state);
+        assertEquals(set("id2"), index.get("p1"));
+        assertEquals(set("id1", "id3"), index.get("p2"));
+
+        index.remove("id2", state("ecm:parentId", "p1"));
+        index.remove("id4", state());
+        assertEquals(Collections.emptySet(), index.get("p1"));
+        assertEquals(Collections.emptySet(), index.getMissing());
+    }
+
+    @Test
+    public void testArrayKey() {
+        MemIndex index = new MemIndex("ecm:racl");
+        State state = state("ecm:racl", new String[] { "bob", "members" });
+        index.add("id1", state);
+        assertEquals(set("id1"), index.get("bob"));
+        assertEquals(set("id1"), index.get("members"));
+
+        Set<Object> oldValues = index.getValues(state);
+        state.put("ecm:racl", new String[] { "members", "jim" });
+        index.update("id1", oldValues, state);
+        assertEquals(Collections.emptySet(), index.get("bob"));
+        assertEquals(set("id1"), index.get("members"));
+        assertEquals(set("id1"), index.get("jim"));
+
+        oldValues = index.getValues(state);
+        state.put("ecm:racl", null);
+        index.update("id1", oldValues, state);
+        assertEquals(Collections.emptySet(), index.get("members"));
+        assertEquals(set("id1"), index.getMissing());
+    }
+
+    @Test
+    public void testMultipleKeys() {
+        MemIndex index = new MemIndex("ecm:parentId", "ecm:name");
+        index.add("id1", state("ecm:parentId", "p1", "ecm:name", "foo"));
+        index.add("id2", state("ecm:parentId", "p1", "ecm:name", "bar"));
+        index.add("id3", state("ecm:name", "foo"));
+        assertEquals(set("id1"), index.get(Arrays.asList("p1", "foo")));
+        assertEquals(set("id2"), index.get(Arrays.asList("p1", "bar")));
+        assertEquals(set("id3"), index.getMissing());
+    }
+
+    @Test
+    public void testImpacted() {
+        MemIndex index = new MemIndex("ecm:parentId", "ecm:name");
+        StateDiff diff = new StateDiff();
+        diff.put("dc:title", "foo");
+        assertFalse(index.isImpacted(diff));
+        diff.put("ecm:name", "bar");
+        assertTrue(index.isImpacted(diff));
+    }
+
+}
@@ -30,6 +30,7 @@ import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -55,8 +56,15 @@ import org.nuxeo.ecm.core.storage.State.StateDiff;
 import org.nuxeo.ecm.core.storage.dbs.DBSDocument;
 import org.nuxeo.ecm.core.storage.dbs.DBSExpressionEvaluator;
 import org.nuxeo.ecm.core.storage.dbs.DBSRepositoryBase;
+import org.nuxeo.runtime.metrics.MetricsService;
 
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.SharedMetricRegistries;
+import com.codahale.metrics.Timer;
 import com.mongodb.BasicDBObject;
+import com.mongodb.BulkWriteException;
+import com.mongodb.BulkWriteOperation;
 import com.mongodb.DB;
 import com.mongodb.DBCollection;
 import com.mongodb.DBCursor;
@@ -120,8 +128,29 @@ public class MongoDBRepository extends DBSRepositoryBase {
 
     protected DBCollection countersColl;
 
+    protected final boolean bulkWriteEnabled;
+
+    protected final boolean bulkWriteOrdered;
+
+    protected final int bulkWriteBatchSize;
+
+    protected final MetricRegistry registry = SharedMetricRegistries.getOrCreate(MetricsService.class.getName());
+
+    /** Number of operations in each executed bulk write. */
+    protected final Histogram bulkWriteSizeHistogram;
+
+    /** Time taken to write all the creates and updates of a flush. */
+    protected final Timer flushTimer;
+
     public MongoDBRepository(MongoDBRepositoryDescriptor descriptor) {
         super(descriptor.name, descriptor.getFulltextDisabled());
+        bulkWriteEnabled = descriptor.getBulkWriteEnabled();
+        bulkWriteOrdered = descriptor.getBulkWriteOrdered();
+        bulkWriteBatchSize = Math.max(1, descriptor.getBulkWriteBatchSize());
+        bulkWriteSizeHistogram = registry.histogram(MetricRegistry.name("nuxeo", "repositories", repositoryName,
+                "mongodb", "bulk", "size"));
+        flushTimer = registry.timer(MetricRegistry.name("nuxeo", "repositories", repositoryName, "mongodb",
+                "flush"));
         try {
             mongoClient = newMongoClient(descriptor);
             coll = getCollection(descriptor, mongoClient);
@@ -484,6 +513,118 @@ public class MongoDBRepository extends DBSRepositoryBase {
         }
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Unless disabled in the configuration, all creates and updates are sent as MongoDB bulk writes of at most the
+     * configured batch size. When a document needs several updates (to avoid conflicting modifiers), its updates are
+     * sent in successive rounds so that they are applied in order even for unordered bulk writes.
+     */
+    @Override
+    public void writeStates(List<State> creates, Map<String, StateDiff> updates) throws DocumentException {
+        if (!bulkWriteEnabled) {
+            super.writeStates(creates, updates);
+            return;
+        }
+        Timer.Context timerContext = flushTimer.time();
+        try {
+            BulkWriter writer = new BulkWriter();
+            for (State state : creates) {
+                DBObject ob = stateToBson(state);
+                if (log.isTraceEnabled()) {
+                    log.trace("MongoDB: CREATE " + ob);
+                }
+                writer.insert(ob);
+            }
+            Map<String, List<DBObject>> updatesById = new LinkedHashMap<>();
+            int rounds = 0;
+            for (Entry<String, StateDiff> en : updates.entrySet()) {
+                List<DBObject> list = diffToBson(en.getValue());
+                updatesById.put(en.getKey(), list);
+                rounds = Math.max(rounds, list.size());
+            }
+            for (int round = 0; round < rounds; round++) {
+                for (Entry<String, List<DBObject>> en : updatesById.entrySet()) {
+                    List<DBObject> list = en.getValue();
+                    if (round >= list.size()) {
+                        continue;
+                    }
+                    String id = en.getKey();
+                    DBObject update = list.get(round);
+                    if (log.isTraceEnabled()) {
+                        log.trace("MongoDB: UPDATE " + id + ": " + update);
+                    }
+                    writer.update(new BasicDBObject(KEY_ID, id), update);
+                }
+                if (!bulkWriteOrdered) {
+                    // next round must see the results of this one
+                    writer.flush();
+                }
+            }
+            writer.flush();
+        } finally {
+            timerContext.stop();
+        }
+    }
+
+    /**
+     * Accumulates write operations into bulk writes of bounded size.
+     *
+     * @since 7.2
+     */
+    protected class BulkWriter {
+
+        protected BulkWriteOperation bulk;
+
+        protected int size;
+
+        protected BulkWriteOperation getBulk() {
+            if (bulk == null) {
+                bulk = bulkWriteOrdered ? coll.initializeOrderedBulkOperation()
+                        : coll.initializeUnorderedBulkOperation();
+            }
+            return bulk;
+        }
+
+        public void insert(DBObject ob) throws DocumentException {
+            getBulk().insert(ob);
+            added();
+        }
+
+        public void update(DBObject query, DBObject update) throws DocumentException {
+            getBulk().find(query).updateOne(update);
+            added();
+        }
+
+        protected void added() throws DocumentException {
+            if (++size >= bulkWriteBatchSize) {
+                flush();
+            }
+        }
+
+        /**
+         * Executes the pending operations. When some of them fail, the others are still applied for an unordered bulk
+         * write, and only the ones before the first failure for an ordered one.
+         */
+        public void flush() throws DocumentException {
+            if (bulk == null) {
+                return;
+            }
+            if (log.isTraceEnabled()) {
+                log.trace("MongoDB: BULK " + size + " operations");
+            }
+            bulkWriteSizeHistogram.update(size);
+            BulkWriteOperation op = bulk;
+            bulk = null;
+            size = 0;
+            try {
+                op.execute();
+            } catch (BulkWriteException e) {
+                throw new DocumentException("Bulk write failed: " + e.getWriteErrors(), e);
+            }
+        }
+    }
+
     @Override
     public void deleteStates(Set<String> ids) throws DocumentException {
         DBObject query = new BasicDBObject(KEY_ID, new BasicDBObject(QueryOperators.IN, ids));
@@ -23,11 +23,18 @@ public class MongoDBRepositoryDescriptor {
     public MongoDBRepositoryDescriptor() {
     }
 
+    public static final int DEFAULT_BULK_WRITE_BATCH_SIZE = 1000;
+
     /** False if the boolean is null or FALSE, true otherwise. */
     private static boolean defaultFalse(Boolean bool) {
         return Boolean.TRUE.equals(bool);
     }
 
+    /** True if the boolean is null or TRUE, false otherwise. */
+    private static boolean defaultTrue(Boolean bool) {
+        return !Boolean.FALSE.equals(bool);
+    }
+
     @XNode("@name")
     public String name;
 
@@ -56,6 +63,42 @@ public class MongoDBRepositoryDescriptor {
     @XNode("dbname")
     public String dbname;
 
+    /** @since 7.2 */
+    @XNode("bulkWrite@enabled")
+    private Boolean bulkWriteEnabled;
+
+    public boolean getBulkWriteEnabled() {
+        return defaultTrue(bulkWriteEnabled);
+    }
+
+    public void setBulkWriteEnabled(Boolean bulkWriteEnabled) {
+        this.bulkWriteEnabled = bulkWriteEnabled;
+    }
+
+    /** @since 7.2 */
+    @XNode("bulkWrite@ordered")
+    private Boolean bulkWriteOrdered;
+
+    public boolean getBulkWriteOrdered() {
+        return defaultFalse(bulkWriteOrdered);
+    }
+
+    public void setBulkWriteOrdered(Boolean bulkWriteOrdered) {
+        this.bulkWriteOrdered = bulkWriteOrdered;
+    }
+
+    /** @since 7.2 */
+    @XNode("bulkWrite@batchSize")
+    private Integer bulkWriteBatchSize;
+
+    public int getBulkWriteBatchSize() {
+        return bulkWriteBatchSize == null ? DEFAULT_BULK_WRITE_BATCH_SIZE : bulkWriteBatchSize.intValue();
+    }
+
+    public void setBulkWriteBatchSize(Integer bulkWriteBatchSize) {
+        this.bulkWriteBatchSize = bulkWriteBatchSize;
+    }
+
     /** Copy constructor. */
     public MongoDBRepositoryDescriptor(MongoDBRepositoryDescriptor other) {
         name = other.name;
@@ -64,6 +107,9 @@ public class MongoDBRepositoryDescriptor {
         server = other.server;
         dbname = other.dbname;
         fulltextDisabled = other.fulltextDisabled;
+        bulkWriteEnabled = other.bulkWriteEnabled;
+        bulkWriteOrdered = other.bulkWriteOrdered;
+        bulkWriteBatchSize = other.bulkWriteBatchSize;
     }
 
     public void merge(MongoDBRepositoryDescriptor other) {
@@ -85,6 +131,15 @@ public class MongoDBRepositoryDescriptor {
         if (other.fulltextDisabled != null) {
             fulltextDisabled = other.fulltextDisabled;
         }
+        if (other.bulkWriteEnabled != null) {
+            bulkWriteEnabled = other.bulkWriteEnabled;
+        }
+        if (other.bulkWriteOrdered != null) {
+            bulkWriteOrdered = other.bulkWriteOrdered;
+        }
+        if (other.bulkWriteBatchSize != null) {
+            bulkWriteBatchSize = other.bulkWriteBatchSize;
+        }
     }
 
 }
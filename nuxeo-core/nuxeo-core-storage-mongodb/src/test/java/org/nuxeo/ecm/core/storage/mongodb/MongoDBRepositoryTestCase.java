@@ -94,12 +94,20 @@ public class MongoDBRepositoryTestCase extends NXRuntimeTestCase {
         descriptor.name = repositoryName;
         descriptor.server = "localhost:27017";
         descriptor.dbname = null; // default "nuxeo"
+        initDescriptor(descriptor);
         MongoDBRepositoryService repositoryService = Framework.getLocalService(MongoDBRepositoryService.class);
         repositoryService.addContribution(descriptor);
 
         clearMongoDb();
     }
 
+    /**
+     * Customizes the repository descriptor before registration.
+     */
+    protected void initDescriptor(MongoDBRepositoryDescriptor descriptor) {
+        // to be subclassed
+    }
+
     protected void clearMongoDb() throws UnknownHostException {
         MongoClient mongoClient = MongoDBRepository.newMongoClient(descriptor);
         try {
@@ -0,0 +1,155 @@
+/*
+ * Copyright (c) 2015 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.ecm.core.storage.mongodb;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+import static org.nuxeo.ecm.core.storage.dbs.DBSDocument.KEY_ID;
+import static org.nuxeo.ecm.core.storage.dbs.DBSDocument.KEY_NAME;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+import org.nuxeo.ecm.core.api.DocumentException;
+import org.nuxeo.ecm.core.api.model.DeltaLong;
+import org.nuxeo.ecm.core.repository.RepositoryService;
+import org.nuxeo.ecm.core.storage.State;
+import org.nuxeo.ecm.core.storage.State.ListDiff;
+import org.nuxeo.ecm.core.storage.State.StateDiff;
+import org.nuxeo.runtime.api.Framework;
+
+/**
+ * Tests of the flush of creates and updates through unordered bulk writes.
+ */
+public class TestMongoDBBulkWrite extends MongoDBRepositoryTestCase {
+
+    /** Small batch size, to check that several bulk writes are used. */
+    protected static final int BATCH_SIZE = 3;
+
+    protected boolean isOrdered() {
+        return false;
+    }
+
+    @Override
+    protected void initDescriptor(MongoDBRepositoryDescriptor descriptor) {
+        descriptor.setBulkWriteEnabled(Boolean.TRUE);
+        descriptor.setBulkWriteOrdered(Boolean.valueOf(isOrdered()));
+        descriptor.setBulkWriteBatchSize(Integer.valueOf(BATCH_SIZE));
+    }
+
+    protected MongoDBRepository getRepository() {
+        return (MongoDBRepository) Framework.getService(RepositoryService.class).getRepository(repositoryName);
+    }
+
+    protected static State newState(String id) {
+        State state = new State();
+        state.put(KEY_ID, id);
+        state.put(KEY_NAME, "doc-" + id);
+        return state;
+    }
+
+    protected static State newListItem(String value) {
+        State item = new State();
+        item.put("string", value);
+        return item;
+    }
+
+    @Test
+    public void testMixedCreatesAndUpdates() throws Exception {
+        MongoDBRepository repository = getRepository();
+        List<State> creates = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            State state = newState("bulk" + i);
+            state.put("tst:title", "title" + i);
+            state.put("tst:list", new ArrayList<Serializable>(Arrays.asList(newListItem("a"))));
+            creates.add(state);
+        }
+        repository.writeStates(creates, Collections.<String, StateDiff> emptyMap());
+
+        // more creates, updates of some of the previous documents
+        creates = new ArrayList<>();
+        for (int i = 10; i < 15; i++) {
+            creates.add(newState("bulk" + i));
+        }
+        Map<String, StateDiff> updates = new LinkedHashMap<>();
+        for (int i = 0; i < 10; i += 2) {
+            StateDiff diff = new StateDiff();
+            diff.put("tst:title", "updated" + i);
+            updates.put("bulk" + i, diff);
+        }
+        // update of a list item and append to the same list, needing two rounds
+        StateDiff itemDiff = new StateDiff();
+        itemDiff.put("string", "b");
+        ListDiff listDiff = new ListDiff();
+        listDiff.diff = new ArrayList<Object>(Arrays.asList(itemDiff));
+        listDiff.rpush = new ArrayList<Object>(Arrays.asList(newListItem("c")));
+        updates.get("bulk0").put("tst:list", listDiff);
+        assertEquals(2, repository.diffToBson(updates.get("bulk0")).size());
+        repository.writeStates(creates, updates);
+
+        for (int i = 0; i < 15; i++) {
+            State state = repository.readState("bulk" + i);
+            assertNotNull("bulk" + i, state);
+            if (i >= 10) {
+                assertNull(state.get("tst:title"));
+            } else {
+                assertEquals(i % 2 == 0 ? "updated" + i : "title" + i, state.get("tst:title"));
+            }
+        }
+        List<?> list = (List<?>) repository.readState("bulk0").get("tst:list");
+        assertEquals(2, list.size());
+        assertEquals("b", ((State) list.get(0)).get("string"));
+        assertEquals("c", ((State) list.get(1)).get("string"));
+    }
+
+    @Test
+    public void testPartialFailure() throws Exception {
+        MongoDBRepository repository = getRepository();
+        List<State> states = new ArrayList<>();
+        for (String id : Arrays.asList("fail0", "fail2")) {
+            State state = newState(id);
+            state.put("tst:title", "title");
+            states.add(state);
+        }
+        repository.writeStates(states, Collections.<String, StateDiff> emptyMap());
+
+        List<State> creates = Collections.singletonList(newState("fail1"));
+        Map<String, StateDiff> updates = new LinkedHashMap<>();
+        // cannot increment a string
+        StateDiff badDiff = new StateDiff();
+        badDiff.put("tst:title", new DeltaLong(0, 1));
+        updates.put("fail0", badDiff);
+        StateDiff diff = new StateDiff();
+        diff.put("tst:title", "updated");
+        updates.put("fail2", diff);
+        try {
+            repository.writeStates(creates, updates);
+            fail("bulk write should fail");
+        } catch (DocumentException e) {
+            // ok
+        }
+        // operations before the failure are applied
+        assertNotNull(repository.readState("fail1"));
+        assertEquals("title", repository.readState("fail0").get("tst:title"));
+        // operations after the failure are applied only for unordered writes
+        assertEquals(isOrdered() ? "title" : "updated", repository.readState("fail2").get("tst:title"));
+    }
+
+}
@@ -0,0 +1,24 @@
+/*
+ * Copyright (c) 2015 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.ecm.core.storage.mongodb;
+
+/**
+ * Tests of the flush of creates and updates through ordered bulk writes.
+ */
+public class TestMongoDBBulkWriteOrdered extends TestMongoDBBulkWrite {
+
+    @Override
+    protected boolean isOrdered() {
+        return true;
+    }
+
+}
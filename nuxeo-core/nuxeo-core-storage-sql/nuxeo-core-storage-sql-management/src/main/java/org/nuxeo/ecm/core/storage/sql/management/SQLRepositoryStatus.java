@@ -11,12 +11,15 @@
  */
 package org.nuxeo.ecm.core.storage.sql.management;
 
+import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.nuxeo.ecm.core.storage.binary.BinaryGarbageCollector;
 import org.nuxeo.ecm.core.storage.binary.BinaryManagerStatus;
+import org.nuxeo.ecm.core.storage.binary.IncrementalBinaryGarbageCollector;
 import org.nuxeo.ecm.core.storage.sql.RepositoryManagement;
 import org.nuxeo.ecm.core.storage.sql.coremodel.SQLRepositoryService;
 import org.nuxeo.runtime.api.Framework;
@@ -102,7 +105,10 @@ public class SQLRepositoryStatus implements SQLRepositoryStatusMBean {
                 gc = gcs.get(gcid);
             } else {
                 gcs.put(gcid, gc);
-                gc.start();
+                if (!(gc instanceof IncrementalBinaryGarbageCollector)
+                        || !((IncrementalBinaryGarbageCollector) gc).resume()) {
+                    gc.start();
+                }
             }
             repogcs.put(repository.getName(), gc);
         }
@@ -117,6 +123,10 @@ public class SQLRepositoryStatus implements SQLRepositoryStatusMBean {
             status.sizeBinaries += s.sizeBinaries;
             status.numBinariesGC += s.numBinariesGC;
             status.sizeBinariesGC += s.sizeBinariesGC;
+            status.numBinariesMarked += s.numBinariesMarked;
+            status.numShards += s.numShards;
+            status.numShardsSwept += s.numShardsSwept;
+            status.interrupted |= s.interrupted;
         }
         status.gcDuration = System.currentTimeMillis() - start;
         return status;
@@ -133,4 +143,41 @@ public class SQLRepositoryStatus implements SQLRepositoryStatusMBean {
         return false;
     }
 
+    @Override
+    public void interruptBinariesGC() {
+        for (RepositoryManagement repo : getRepositories()) {
+            BinaryGarbageCollector gc = repo.getBinaryGarbageCollector();
+            if (gc instanceof IncrementalBinaryGarbageCollector && gc.isInProgress()) {
+                ((IncrementalBinaryGarbageCollector) gc).interrupt();
+            }
+        }
+    }
+
+    @Override
+    public BinaryManagerStatus getBinariesGCProgress() {
+        BinaryManagerStatus status = null;
+        Set<String> seen = new HashSet<String>();
+        for (RepositoryManagement repo : getRepositories()) {
+            BinaryGarbageCollector gc = repo.getBinaryGarbageCollector();
+            if (gc == null || !gc.isInProgress() || !seen.add(gc.getId())) {
+                continue;
+            }
+            BinaryManagerStatus s = gc.getStatus();
+            if (s == null) {
+                continue;
+            }
+            if (status == null) {
+                status = new BinaryManagerStatus();
+            }
+            status.numBinaries += s.numBinaries;
+            status.sizeBinaries += s.sizeBinaries;
+            status.numBinariesGC += s.numBinariesGC;
+            status.sizeBinariesGC += s.sizeBinariesGC;
+            status.numBinariesMarked += s.numBinariesMarked;
+            status.numShards += s.numShards;
+            status.numShardsSwept += s.numShardsSwept;
+        }
+        return status;
+    }
+
 }
@@ -48,6 +48,9 @@ public interface SQLRepositoryStatusMBean {
 
     /**
      * GC the unused binaries.
+     * <p>
+     * If a previous GC was interrupted and its binary manager supports it, it is resumed instead of starting a new
+     * one.
      *
      * @param delete if {@code false} don't actually delete the GCed binaries (but still return statistics about them),
      *            if {@code true} delete them
@@ -64,4 +67,18 @@ public interface SQLRepositoryStatusMBean {
      */
     boolean isBinariesGCInProgress();
 
+    /**
+     * Requests interruption of the GC of the binaries in progress. It can be resumed by a later {@link #gcBinaries}.
+     *
+     * @since 7.2
+     */
+    void interruptBinariesGC();
+
+    /**
+     * Gets the progress of the GC of the binaries in progress, or {@code null} if none is in progress.
+     *
+     * @since 7.2
+     */
+    BinaryManagerStatus getBinariesGCProgress();
+
 }
@@ -13,6 +13,7 @@
 package org.nuxeo.ecm.core.storage.sql.ra;
 
 import java.io.Serializable;
+import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
@@ -189,6 +190,11 @@ public class ConnectionImpl implements Session {
         return getSession().getNodesByIds(ids);
     }
 
+    @Override
+    public List<Node> getNodesByIds(List<Serializable> ids, Collection<String> prefetch) throws StorageException {
+        return getSession().getNodesByIds(ids, prefetch);
+    }
+
     @Override
     public Node getNodeByPath(String path, Node node) throws StorageException {
         return getSession().getNodeByPath(path, node);
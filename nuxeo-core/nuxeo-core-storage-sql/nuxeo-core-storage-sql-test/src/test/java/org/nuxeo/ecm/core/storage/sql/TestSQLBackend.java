@@ -79,8 +79,13 @@ import org.nuxeo.ecm.core.storage.sql.jdbc.JDBCConnectionPropagator;
 import org.nuxeo.ecm.core.storage.sql.jdbc.JDBCRowMapper;
 import org.nuxeo.ecm.core.storage.sql.jdbc.dialect.Dialect;
 import org.nuxeo.runtime.api.Framework;
+import org.nuxeo.runtime.metrics.MetricsService;
 import org.nuxeo.runtime.test.runner.ConditionalIgnoreRule;
 
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.SharedMetricRegistries;
+
 public class TestSQLBackend extends SQLBackendTestCase {
 
     private static final Log log = LogFactory.getLog(TestSQLBackend.class);
@@ -592,6 +597,39 @@ public class TestSQLBackend extends SQLBackendTestCase {
         return gc.getStatus();
     }
 
+    @Test
+    public void testBinariesGCSharedByRepositories() throws Exception {
+        // config for second repo available only for H2
+        assumeTrue(DatabaseHelper.DATABASE instanceof DatabaseH2);
+        DatabaseH2 db = (DatabaseH2) DatabaseHelper.DATABASE;
+        db.setUp2();
+        RepositoryDescriptor descriptor = newDescriptor(db.repositoryName + "2", -1);
+        descriptor.properties.put("URL", db.url2);
+        RepositoryImpl repo2 = new RepositoryImpl(descriptor);
+        Framework.getService(SQLRepositoryService.class).registerTestRepository(repo2);
+        repository2 = repo2;
+
+        Session session = repository.getConnection();
+        addBinary(session, "ABC", "ABC");
+        session.save();
+        Session session2 = repository2.getConnection();
+        addBinary(session2, "DEF", "DEF");
+        session2.save();
+
+        Thread.sleep(3 * 1000); // sleep before GC to pass its time threshold
+        // same binary store, so the same GC marks both repositories
+        BinaryGarbageCollector gc = repository.getBinaryGarbageCollector();
+        assertEquals(gc.getId(), repository2.getBinaryGarbageCollector().getId());
+        gc.start();
+        repository.markReferencedBinaries(gc);
+        repository2.markReferencedBinaries(gc);
+        gc.stop(true);
+        BinaryManagerStatus status = gc.getStatus();
+        // the binary referenced only by the second repository is kept
+        assertEquals(2, status.numBinaries);
+        assertEquals(0, status.numBinariesGC);
+    }
+
     @Test
     public void testACLs() throws Exception {
         Session session = repository.getConnection();
@@ -1787,6 +1825,100 @@ public class TestSQLBackend extends SQLBackendTestCase {
         session.save();
     }
 
+    @Test
+    public void testCopyNonBulk() throws Exception {
+        Framework.getProperties().setProperty(JDBCRowMapper.BULK_COPY_PROP, "false");
+        try {
+            testCopy();
+        } finally {
+            Framework.getProperties().remove(JDBCRowMapper.BULK_COPY_PROP);
+        }
+    }
+
+    @Test
+    public void testCopyLockedWithStaleFragment() throws Exception {
+        Framework.getProperties().setProperty(JDBCRowMapper.BULK_COPY_PROP, "true");
+        try {
+            doTestCopyLockedWithStaleFragment();
+        } finally {
+            Framework.getProperties().remove(JDBCRowMapper.BULK_COPY_PROP);
+        }
+    }
+
+    protected void doTestCopyLockedWithStaleFragment() throws Exception {
+        Session session = repository.getConnection();
+        Node root = session.getRootNode();
+        Node folder = session.addChildNode(root, "folder", null, "TestDoc", false);
+        Node node = session.addChildNode(folder, "node", null, "TestDoc", false);
+        session.addChildNode(folder, "other", null, "TestDoc", false);
+        // the age fragment row stays when the mixin is removed
+        session.addMixinType(node, "Aged");
+        node.setSimpleProperty("age:age", "123");
+        session.save();
+        session.removeMixinType(node, "Aged");
+        session.save();
+        session.setLock(node.getId(), new Lock("bob", null));
+        assertNotNull(session.getLock(node.getId()));
+
+        Node folder2 = session.copy(folder, root, "folder2");
+        session.save();
+        Node node2 = session.getChildNode(folder2, "node", false);
+        assertNotNull(node2);
+        // copy is not locked
+        assertNull(session.getLock(node2.getId()));
+        // stale fragment row not copied
+        session.addMixinType(node2, "Aged");
+        assertNull(node2.getSimpleProperty("age:age").getValue());
+        session.close();
+    }
+
+    protected static final String COPY_BENCHMARK_PROP = "nuxeo.test.copy.benchmark";
+
+    /**
+     * Compares copy time between recursive and bulk copy for increasing tree sizes. Enabled with
+     * -Dnuxeo.test.copy.benchmark=true.
+     */
+    @Test
+    public void testCopyBenchmark() throws Exception {
+        assumeTrue(Boolean.getBoolean(COPY_BENCHMARK_PROP));
+        Session session = repository.getConnection();
+        Node root = session.getRootNode();
+        for (int size : new int[] { 10, 100, 1000, 10000 }) {
+            Node folder = session.addChildNode(root, "bench" + size, null, "TestDoc", false);
+            int fanout = 10;
+            List<Node> parents = new ArrayList<Node>(Collections.singletonList(folder));
+            int created = 0;
+            while (created < size) {
+                List<Node> next = new ArrayList<Node>();
+                for (Node parent : parents) {
+                    for (int i = 0; i < fanout && created < size; i++) {
+                        Node node = session.addChildNode(parent, "doc" + i, null, "TestDoc", false);
+                        node.setSimpleProperty("tst:title", "title" + created);
+                        node.setCollectionProperty("tst:subjects", new String[] { "a", "b" });
+                        next.add(node);
+                        created++;
+                    }
+                }
+                parents = next;
+            }
+            session.save();
+            long[] times = new long[2];
+            for (int bulk = 0; bulk < 2; bulk++) {
+                Framework.getProperties().setProperty(JDBCRowMapper.BULK_COPY_PROP, String.valueOf(bulk == 1));
+                try {
+                    long t0 = System.currentTimeMillis();
+                    session.copy(folder, root, "copy" + size + "-" + bulk);
+                    session.save();
+                    times[bulk] = System.currentTimeMillis() - t0;
+                } finally {
+                    Framework.getProperties().remove(JDBCRowMapper.BULK_COPY_PROP);
+                }
+            }
+            log.info(String.format("Copy of %d documents: recursive %d ms, bulk %d ms", size, times[0], times[1]));
+        }
+        session.close();
+    }
+
     @Test
     public void testCopyOrdered() throws Exception {
         Session session = repository.getConnection();
@@ -2440,6 +2572,13 @@ public class TestSQLBackend extends SQLBackendTestCase {
         }
         assertEquals(expectedFragments, model.getTypePrefetchedFragments("TestDoc3"));
 
+        // additional prefetch requested by the caller
+        Set<String> extraFragments = new HashSet<String>(expectedFragments);
+        extraFragments.add(tagsIsArray ? "testschema" : "tst:tags");
+        assertEquals(extraFragments, model.getTypePrefetchedFragments("TestDoc3", Arrays.asList("tst:tags/*")));
+        // schema not in the type
+        assertEquals(expectedFragments, model.getTypePrefetchedFragments("TestDoc3", Arrays.asList("testschema2")));
+
         Node root = session.getRootNode();
 
         Node node1 = session.addChildNode(root, "n1", null, "TestDoc", false);
@@ -2485,6 +2624,80 @@ public class TestSQLBackend extends SQLBackendTestCase {
         acls = (ACLRow[]) aclProp.getValue();
         assertEquals(1, acls.length);
         assertEquals("Read", acls[0].permission);
+
+        // with additional prefetch, in a new session
+        session.close();
+        session = repository.getConnection();
+        nodes = session.getNodesByIds(Arrays.asList(node1.getId(), node2.getId()), Arrays.asList("testschema2"));
+        assertEquals(2, nodes.size());
+        assertEquals(node1.getId(), nodes.get(0).getId());
+        assertEquals(node2.getId(), nodes.get(1).getId());
+        assertEquals("two", nodes.get(1).getSimpleProperty("tst2:title").getString());
+    }
+
+    @Test
+    public void testBulkFetchCounters() throws Exception {
+        Session session = repository.getConnection();
+        Model model = ((SessionImpl) session).getModel();
+        boolean subjectsIsArray = !model.getFragmentNames().contains("tst:subjects");
+        Node root = session.getRootNode();
+        Node folder = session.addChildNode(root, "folder", null, "TestDoc", false);
+        int n = 5;
+        for (int i = 0; i < n; i++) {
+            Node node = session.addChildNode(folder, "n" + i, null, "TestDoc3", false);
+            node.setSimpleProperty("tst:title", "title" + i);
+            node.setCollectionProperty("tst:subjects", new String[] { "s" + i });
+        }
+        session.save();
+
+        // fragments prefetched for each child, hierarchy and versions are not fetched for non-versions
+        Set<String> tableNames = new HashSet<String>(model.getTypePrefetchedFragments("TestDoc3"));
+        tableNames.remove(Model.HIER_TABLE_NAME);
+        tableNames.remove(Model.VERSION_TABLE_NAME);
+
+        MetricRegistry registry = SharedMetricRegistries.getOrCreate(MetricsService.class.getName());
+        Counter prefetched = registry.counter(MetricRegistry.name("nuxeo", "repositories",
+                session.getRepositoryName(), "fragments", "prefetched"));
+        Counter lazy = registry.counter(MetricRegistry.name("nuxeo", "repositories", session.getRepositoryName(),
+                "fragments", "lazy"));
+
+        // another session
+        session.close();
+        session = repository.getConnection();
+        folder = session.getNodeByPath("/folder", null);
+        long prefetchedBefore = prefetched.getCount();
+        long lazyBefore = lazy.getCount();
+        List<Node> children = session.getChildren(folder, null, false);
+        assertEquals(n, children.size());
+        assertEquals(prefetchedBefore + n * tableNames.size(), prefetched.getCount());
+        assertEquals(lazyBefore, lazy.getCount());
+
+        // prefetched fields don't need a fetch
+        for (Node child : children) {
+            assertEquals(1, child.getCollectionProperty("tst:subjects").getStrings().length);
+        }
+        assertEquals(lazyBefore, lazy.getCount());
+
+        // when subjects are stored as an array, the testschema fragment holding them was prefetched
+        for (Node child : children) {
+            assertNotNull(child.getSimpleProperty("tst:title").getString());
+        }
+        assertEquals(lazyBefore + (subjectsIsArray ? 0 : n), lazy.getCount());
+
+        // with the schema requested by the caller, nothing is fetched lazily
+        List<Serializable> ids = new ArrayList<Serializable>();
+        for (Node child : children) {
+            ids.add(child.getId());
+        }
+        session.close();
+        session = repository.getConnection();
+        lazyBefore = lazy.getCount();
+        List<Node> nodes = session.getNodesByIds(ids, Arrays.asList("testschema"));
+        for (Node node : nodes) {
+            assertNotNull(node.getSimpleProperty("tst:title").getString());
+            assertEquals(1, node.getCollectionProperty("tst:subjects").getStrings().length);
+        }
+        assertEquals(lazyBefore, lazy.getCount());
     }
 
     @Test
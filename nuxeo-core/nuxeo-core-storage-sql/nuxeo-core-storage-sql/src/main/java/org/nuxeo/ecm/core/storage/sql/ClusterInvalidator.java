@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) 2015 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.ecm.core.storage.sql;
+
+import org.nuxeo.ecm.core.storage.StorageException;
+
+/**
+ * Transport of invalidations between the nodes of a cluster.
+ * <p>
+ * When a cluster invalidator is configured on a repository, invalidations are pushed to the other cluster nodes
+ * instead of being stored in the database and polled from it. Received invalidations are delivered asynchronously to
+ * the {@link Receiver} given at initialization time.
+ *
+ * @since 7.2
+ */
+public interface ClusterInvalidator {
+
+    /**
+     * Receiver of the invalidations sent by other cluster nodes.
+     */
+    interface Receiver {
+
+        /**
+         * Called when invalidations are received from another cluster node.
+         * <p>
+         * May be called asynchronously from any thread.
+         *
+         * @param invalidations the invalidations
+         * @param sendTime the time at which the invalidations were sent, in milliseconds since the epoch, or
+         *            {@code 0} if unknown
+         */
+        void receiveInvalidations(Invalidations invalidations, long sendTime);
+
+    }
+
+    /**
+     * Initializes the invalidator for the given node.
+     *
+     * @param nodeId the cluster node id
+     * @param repositoryName the repository name
+     * @param receiver the receiver of invalidations from other nodes
+     */
+    void initialize(String nodeId, String repositoryName, Receiver receiver) throws StorageException;
+
+    /**
+     * Changes the cluster node id, when the cluster node was recreated after a connection reset.
+     *
+     * @param nodeId the new cluster node id
+     */
+    void setNodeId(String nodeId);
+
+    /**
+     * Closes this invalidator and releases its resources.
+     */
+    void close();
+
+    /**
+     * Sends invalidations to the other cluster nodes.
+     * <p>
+     * The invalidations are never sent back to this node.
+     */
+    void sendInvalidations(Invalidations invalidations) throws StorageException;
+
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright (c) 2006-2015 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ *     Benoit Delbosc
+ */
+package org.nuxeo.ecm.core.storage.sql;
+
+import java.util.Map;
+
+import javax.management.MBeanServer;
+import javax.transaction.SystemException;
+import javax.transaction.Transaction;
+import javax.transaction.TransactionManager;
+
+import net.sf.ehcache.Cache;
+import net.sf.ehcache.CacheManager;
+import net.sf.ehcache.Element;
+import net.sf.ehcache.management.ManagementService;
+import net.sf.ehcache.transaction.manager.TransactionManagerLookup;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.nuxeo.runtime.api.Framework;
+import org.nuxeo.runtime.management.ServerLocator;
+
+/**
+ * A {@link UnifiedRowCache} using an unified ehcache, shared by all the repositories.
+ *
+ * @since 7.2
+ */
+public class EhcacheRowCache implements UnifiedRowCache {
+
+    private static final Log log = LogFactory.getLog(EhcacheRowCache.class);
+
+    public static final String CACHE_NAME = "unifiedVCSCache";
+
+    public static final String EHCACHE_FILE_PROP = "ehcacheFilePath";
+
+    private static CacheManager cacheManager = null;
+
+    protected static boolean isXA;
+
+    private final Cache cache;
+
+    public EhcacheRowCache(Map<String, String> properties) {
+        cache = getCacheManager(properties).getCache(CACHE_NAME);
+    }
+
+    protected static synchronized CacheManager getCacheManager(Map<String, String> properties) {
+        if (cacheManager == null) {
+            if (properties.containsKey(EHCACHE_FILE_PROP)) {
+                String value = properties.get(EHCACHE_FILE_PROP);
+                log.info("Creating ehcache manager for VCS, using ehcache file: " + value);
+                cacheManager = CacheManager.create(value);
+            } else {
+                log.info("Creating ehcache manager for VCS, No ehcache file provided");
+                cacheManager = CacheManager.create();
+            }
+            isXA = cacheManager.getConfiguration().getCacheConfigurations().get(CACHE_NAME).isXaTransactional();
+            // Exposes cache to JMX
+            MBeanServer mBeanServer = Framework.getLocalService(ServerLocator.class).lookupServer();
+            ManagementService.registerMBeans(cacheManager, mBeanServer, true, true, true, true);
+        }
+        return cacheManager;
+    }
+
+    protected boolean hasTransaction() {
+        TransactionManagerLookup transactionManagerLookup = cache.getTransactionManagerLookup();
+        if (transactionManagerLookup == null) {
+            return false;
+        }
+        TransactionManager transactionManager = transactionManagerLookup.getTransactionManager();
+        if (transactionManager == null) {
+            return false;
+        }
+        Transaction transaction;
+        try {
+            transaction = transactionManager.getTransaction();
+        } catch (SystemException e) {
+            throw new RuntimeException(e);
+        }
+        return transaction != null;
+    }
+
+    protected boolean useEhCache() {
+        return !isXA || hasTransaction();
+    }
+
+    @Override
+    public Row get(RowId key) {
+        if (useEhCache()) {
+            Element element = cache.get(key);
+            if (element != null) {
+                return (Row) element.getObjectValue();
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public void put(RowId key, Row row) {
+        if (useEhCache()) {
+            cache.put(new Element(key, row));
+        }
+    }
+
+    @Override
+    public void remove(RowId key) {
+        if (useEhCache()) {
+            cache.remove(key);
+        }
+    }
+
+    @Override
+    public void clear() {
+        if (useEhCache()) {
+            cache.removeAll();
+        }
+    }
+
+    @Override
+    public int getSize() {
+        return cache.getSize();
+    }
+
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2015 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.ecm.core.storage.sql;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.lang.SerializationUtils;
+
+/**
+ * In-JVM {@link ClusterInvalidator}, delivering invalidations to the other invalidators of the same repository living
+ * in the same JVM.
+ * <p>
+ * Used for tests, to simulate several cluster nodes without an external transport. Delivery is asynchronous, and
+ * invalidations are copied so that sender and receivers never share state.
+ *
+ * @since 7.2
+ */
+public class LoopbackClusterInvalidator implements ClusterInvalidator {
+
+    /** Invalidators by repository name. */
+    protected static final ConcurrentMap<String, List<LoopbackClusterInvalidator>> INVALIDATORS = new ConcurrentHashMap<>();
+
+    protected static final ExecutorService EXECUTOR = Executors.newCachedThreadPool(new ThreadFactory() {
+
+        protected final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "Nuxeo-VCS-LoopbackInvalidator-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    protected volatile String nodeId;
+
+    protected String repositoryName;
+
+    protected Receiver receiver;
+
+    @Override
+    public void initialize(String nodeId, String repositoryName, Receiver receiver) {
+        this.nodeId = nodeId;
+        this.repositoryName = repositoryName;
+        this.receiver = receiver;
+        List<LoopbackClusterInvalidator> list = new CopyOnWriteArrayList<>();
+        List<LoopbackClusterInvalidator> old = INVALIDATORS.putIfAbsent(repositoryName, list);
+        if (old != null) {
+            list = old;
+        }
+        list.add(this);
+    }
+
+    @Override
+    public void setNodeId(String nodeId) {
+        this.nodeId = nodeId;
+    }
+
+    @Override
+    public void close() {
+        List<LoopbackClusterInvalidator> list = INVALIDATORS.get(repositoryName);
+        if (list != null) {
+            list.remove(this);
+        }
+    }
+
+    @Override
+    public void sendInvalidations(Invalidations invalidations) {
+        List<LoopbackClusterInvalidator> list = INVALIDATORS.get(repositoryName);
+        if (list == null) {
+            return;
+        }
+        final long sendTime = System.currentTimeMillis();
+        for (final LoopbackClusterInvalidator invalidator : list) {
+            if (invalidator == this || invalidator.nodeId.equals(nodeId)) {
+                continue;
+            }
+            final Invalidations copy = (Invalidations) SerializationUtils.clone(invalidations);
+            EXECUTOR.execute(new Runnable() {
+                @Override
+                public void run() {
+                    invalidator.receiver.receiveInvalidations(copy, sendTime);
+                }
+            });
+        }
+    }
+
+}
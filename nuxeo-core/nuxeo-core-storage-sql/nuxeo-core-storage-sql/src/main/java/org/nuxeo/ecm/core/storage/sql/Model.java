@@ -1085,6 +1085,45 @@ public class Model {
         return docTypePrefetchedFragments.get(typeName);
     }
 
+    /**
+     * Gets the fragments to prefetch for a document type, given the schemas and fields that will be needed in addition
+     * to the ones from the type prefetch info.
+     *
+     * @param typeName the document type
+     * @param prefetch schema names, or field names or xpaths ({@code dc:subjects/*} prefetches {@code dc:subjects})
+     * @return the fragment names, or {@code null} for an unknown type
+     * @since 7.2
+     */
+    public Set<String> getTypePrefetchedFragments(String typeName, Collection<String> prefetch) {
+        Set<String> prefetched = getTypePrefetchedFragments(typeName);
+        if (prefetched == null || prefetch == null || prefetch.isEmpty()) {
+            return prefetched;
+        }
+        Set<String> typeFragments = getTypeFragments(typeName);
+        if (typeFragments == null) {
+            return prefetched;
+        }
+        Set<String> fragments = new HashSet<String>(prefetched);
+        for (String name : prefetch) {
+            Set<String> sf = schemaFragments.get(name);
+            if (sf != null) {
+                for (String fragment : sf) {
+                    if (typeFragments.contains(fragment)) {
+                        fragments.add(fragment);
+                    }
+                }
+                continue;
+            }
+            int i = name.indexOf('/');
+            String fieldName = i == -1 ? name : name.substring(0, i);
+            String fragment = fieldFragment.get(fieldName);
+            if (fragment != null && typeFragments.contains(fragment)) {
+                fragments.add(fragment);
+            }
+        }
+        return fragments;
+    }
+
     /**
      * Checks if we have a type (doctype or complex type).
      */
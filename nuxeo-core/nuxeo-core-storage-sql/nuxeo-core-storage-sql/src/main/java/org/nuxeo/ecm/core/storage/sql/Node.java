@@ -240,7 +240,7 @@ public class Node {
         if (fragment == null) {
             // lazy fragment, fetch from session
             RowId rowId = new RowId(fragmentName, getId());
-            fragment = context.get(rowId, true);
+            fragment = context.getLazily(rowId);
             fragments.put(fragmentName, fragment);
         }
         return new SimpleProperty(name, propertyInfo.propertyType, propertyInfo.readonly, (SimpleFragment) fragment,
@@ -274,7 +274,7 @@ public class Node {
         if (fragment == null) {
             // lazy fragment, fetch from session
             RowId rowId = new RowId(fragmentName, getId());
-            fragment = context.get(rowId, true);
+            fragment = context.getLazily(rowId);
         }
         if (fragment instanceof CollectionFragment) {
             return new CollectionProperty(name, propertyInfo.propertyType, propertyInfo.readonly,
@@ -145,6 +145,20 @@ public class PersistenceContext {
 
     protected final Counter cacheHitCount;
 
+    /**
+     * Number of fragments requested by bulk prefetch.
+     *
+     * @since 7.2
+     */
+    protected final Counter prefetchedFragmentsCount;
+
+    /**
+     * Number of fragments fetched lazily, one at a time, on first property access.
+     *
+     * @since 7.2
+     */
+    protected final Counter lazyFragmentsCount;
+
     /**
      * Threshold at which we warn that a Selection may be too big, with stack trace.
      */
@@ -181,6 +195,10 @@ public class PersistenceContext {
                 "caches", "count"));
         cacheHitCount = registry.counter(MetricRegistry.name("nuxeo", "repositories", session.getRepositoryName(),
                 "caches", "hit"));
+        prefetchedFragmentsCount = registry.counter(MetricRegistry.name("nuxeo", "repositories",
+                session.getRepositoryName(), "fragments", "prefetched"));
+        lazyFragmentsCount = registry.counter(MetricRegistry.name("nuxeo", "repositories",
+                session.getRepositoryName(), "fragments", "lazy"));
         try {
             bigSelWarnThreshold = Long.parseLong(Framework.getProperty(SEL_WARN_THRESHOLD_PROP, SEL_WARN_THRESHOLD_DEFAULT));
         } catch (NumberFormatException e) {
@@ -567,6 +585,29 @@ public class PersistenceContext {
         return fragment;
     }
 
+    /**
+     * Gets a fragment that was not prefetched with its node, counting it as a lazy fetch if it's not in the context.
+     *
+     * @since 7.2
+     */
+    protected Fragment getLazily(RowId rowId) throws StorageException {
+        Fragment fragment = getIfPresent(rowId);
+        if (fragment == null) {
+            lazyFragmentsCount.inc();
+            fragment = getFromMapper(rowId, true, false);
+        }
+        return fragment;
+    }
+
+    /**
+     * Counts fragments requested by a bulk prefetch.
+     *
+     * @since 7.2
+     */
+    protected void countPrefetched(int n) {
+        prefetchedFragmentsCount.inc(n);
+    }
+
     /**
      * Gets a fragment from the context or the mapper cache or the underlying database.
      *
@@ -290,8 +290,12 @@ public class RepositoryImpl implements Repository {
         // create the mapper for the cluster node handler
         if (repositoryDescriptor.getClusteringEnabled()) {
             backend.newMapper(model, null, MapperKind.CLUSTER_NODE_HANDLER);
-            log.info("Clustering enabled with " + repositoryDescriptor.getClusteringDelay()
-                    + " ms delay for repository: " + getName());
+            if (repositoryDescriptor.clusterInvalidatorClass == null) {
+                log.info("Clustering enabled with " + repositoryDescriptor.getClusteringDelay()
+                        + " ms delay for repository: " + getName());
+            } else {
+                log.info("Clustering enabled with push invalidations for repository: " + getName());
+            }
         }
 
         // log once which mapper cache is being used
@@ -13,6 +13,7 @@
 package org.nuxeo.ecm.core.storage.sql;
 
 import java.io.Serializable;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 
@@ -99,6 +100,17 @@ public interface Session extends Connection {
      */
     List<Node> getNodesByIds(List<Serializable> ids) throws StorageException;
 
+    /**
+     * Gets several nodes given their ids, prefetching in bulk what's needed for the given schemas and fields in addition
+     * to the type prefetch info.
+     *
+     * @param ids the ids
+     * @param prefetch the schema names, field names or xpaths that will be accessed, or {@code null}
+     * @return the nodes, in the same order as the ids, with elements being {@code null} if not found
+     * @since 7.2
+     */
+    List<Node> getNodesByIds(List<Serializable> ids, Collection<String> prefetch) throws StorageException;
+
     /**
      * Gets a node given its absolute path, or given an existing node and a relative path.
      *
@@ -608,6 +608,17 @@ public class SessionImpl implements Session, XAResource {
     }
 
     public List<Node> getNodesByIds(List<Serializable> ids, boolean prefetch) throws StorageException {
+        return getNodesByIds(ids, prefetch, null);
+    }
+
+    /**
+     * Gets nodes, prefetching in one batch per table the fragments from the type prefetch info and the ones needed for
+     * the given additional schemas or fields.
+     *
+     * @since 7.2
+     */
+    protected List<Node> getNodesByIds(List<Serializable> ids, boolean prefetch, Collection<String> prefetchNames)
+            throws StorageException {
         // get hier fragments
         List<RowId> hierRowIds = new ArrayList<RowId>(ids.size());
         for (Serializable id : ids) {
@@ -656,8 +667,10 @@ public class SessionImpl implements Session, XAResource {
             Set<Serializable> proxyIds = new HashSet<Serializable>();
 
             // get rows to prefetch for hier fragments
+            Map<String, Set<String>> typeTableNames = new HashMap<String, Set<String>>();
             for (Fragment fragment : hierFragments) {
-                findPrefetchedFragments((SimpleFragment) fragment, bulkRowIds, proxyIds);
+                findPrefetchedFragments((SimpleFragment) fragment, bulkRowIds, proxyIds, prefetchNames,
+                        typeTableNames);
             }
 
             // proxies
@@ -682,12 +695,13 @@ public class SessionImpl implements Session, XAResource {
             }
             hierFragments = context.getMulti(hierRowIds, true);
             for (Fragment fragment : hierFragments) {
-                findPrefetchedFragments((SimpleFragment) fragment, bulkRowIds, null);
+                findPrefetchedFragments((SimpleFragment) fragment, bulkRowIds, null, prefetchNames, typeTableNames);
             }
 
             // we have everything to be prefetched
 
             // fetch all the prefetches in bulk
+            context.countPrefetched(bulkRowIds.size());
             List<Fragment> fragments = context.getMulti(bulkRowIds, true);
 
             // put each fragment in the map of the proper group
@@ -716,6 +730,18 @@ public class SessionImpl implements Session, XAResource {
      */
     protected void findPrefetchedFragments(SimpleFragment hierFragment, List<RowId> bulkRowIds,
             Set<Serializable> proxyIds) throws StorageException {
+        findPrefetchedFragments(hierFragment, bulkRowIds, proxyIds, null, new HashMap<String, Set<String>>());
+    }
+
+    /**
+     * Finds prefetched fragments for a hierarchy fragment, including the ones for additional schemas or fields. The
+     * table names are computed once per type and kept in the passed map.
+     *
+     * @since 7.2
+     */
+    protected void findPrefetchedFragments(SimpleFragment hierFragment, List<RowId> bulkRowIds,
+            Set<Serializable> proxyIds, Collection<String> prefetchNames, Map<String, Set<String>> typeTableNames)
+            throws StorageException {
         Serializable id = hierFragment.row.id;
 
         // find type
@@ -728,7 +754,13 @@ public class SessionImpl implements Session, XAResource {
         }
 
         // find table names
-        Set<String> tableNames = model.getTypePrefetchedFragments(typeName);
+        Set<String> tableNames;
+        if (typeTableNames.containsKey(typeName)) {
+            tableNames = typeTableNames.get(typeName);
+        } else {
+            tableNames = model.getTypePrefetchedFragments(typeName, prefetchNames);
+            typeTableNames.put(typeName, tableNames);
+        }
         if (tableNames == null) {
             return; // unknown (obsolete) type
         }
@@ -753,6 +785,12 @@ public class SessionImpl implements Session, XAResource {
         return getNodesByIds(ids, true);
     }
 
+    @Override
+    public List<Node> getNodesByIds(List<Serializable> ids, Collection<String> prefetch) throws StorageException {
+        checkLive();
+        return getNodesByIds(ids, true, prefetch);
+    }
+
     @Override
     public Node getParentNode(Node node) throws StorageException {
         checkLive();
@@ -978,12 +1016,18 @@ public class SessionImpl implements Session, XAResource {
     public List<Node> getChildren(Node parent, String name, boolean complexProp) throws StorageException {
         checkLive();
         List<SimpleFragment> fragments = context.getChildren(parent.getId(), name, complexProp);
-        List<Node> nodes = new ArrayList<Node>(fragments.size());
+        List<Serializable> ids = new ArrayList<Serializable>(fragments.size());
         for (SimpleFragment fragment : fragments) {
-            Node node = getNodeById(fragment.getId());
+            ids.add(fragment.getId());
+        }
+        // get all the children and their prefetched fragments in bulk
+        List<Node> nodes = new ArrayList<Node>(fragments.size());
+        List<Node> children = getNodesByIds(ids, true);
+        for (int i = 0; i < ids.size(); i++) {
+            Node node = children.get(i);
             if (node == null) {
                 // cannot happen
-                log.error("Child node cannot be created: " + fragment.getId());
+                log.error("Child node cannot be created: " + ids.get(i));
                 continue;
             }
             nodes.add(node);
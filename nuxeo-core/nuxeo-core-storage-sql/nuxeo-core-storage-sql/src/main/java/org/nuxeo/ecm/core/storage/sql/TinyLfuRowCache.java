@@ -0,0 +1,726 @@
+/*
+ * Copyright (c) 2015 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.ecm.core.storage.sql;
+
+import java.io.Serializable;
+import java.util.Calendar;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.nuxeo.runtime.api.Framework;
+import org.nuxeo.runtime.management.ServerLocator;
+import org.nuxeo.runtime.metrics.MetricsService;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.SharedMetricRegistries;
+
+/**
+ * A cache of {@link Row}s bounded by an estimation of their size in bytes, using the W-TinyLFU policy.
+ * <p>
+ * New entries go to a small LRU window. Entries evicted from the window are admitted to the main region (a segmented
+ * LRU with a probation and a protected part) only if they have been accessed more frequently than the entry they would
+ * evict, frequencies being estimated by a count-min sketch that is periodically aged. This keeps one-shot reads (for
+ * instance from big queries or reindexing) from flushing frequently used rows out of the cache.
+ * <p>
+ * To avoid a single lock on the hot read path, the cache is split into segments chosen by key hash, each with its own
+ * lock, regions and frequency sketch, and a share of the maximum size (see {@value #CONCURRENCY_PROP}). Caches too
+ * small to be split use a single segment.
+ * <p>
+ * Hits, misses and evictions are counted per table in the metrics registry.
+ * <p>
+ * Used by the {@link UnifiedCachingRowMapper} when its {@value UnifiedCachingRowMapper#CACHE_PROP} property is
+ * {@value UnifiedCachingRowMapper#CACHE_TINYLFU}, configured with the {@value #MAX_BYTES_PROP},
+ * {@value #WINDOW_PERCENT_PROP} and {@value #CONCURRENCY_PROP} properties.
+ *
+ * @since 7.2
+ */
+public class TinyLfuRowCache implements UnifiedRowCache, TinyLfuRowCacheMBean {
+
+    private static final Log log = LogFactory.getLog(TinyLfuRowCache.class);
+
+    public static final String MAX_BYTES_PROP = "maxBytes";
+
+    public static final String WINDOW_PERCENT_PROP = "windowPercent";
+
+    /** Maximum number of segments, rounded down to a power of two. */
+    public static final String CONCURRENCY_PROP = "concurrencyLevel";
+
+    public static final long DEFAULT_MAX_BYTES = 64L * 1024 * 1024;
+
+    public static final int DEFAULT_WINDOW_PERCENT = 1;
+
+    public static final int DEFAULT_CONCURRENCY = 16;
+
+    /** Minimum size of a segment, so that the admission policy still sees enough entries. */
+    protected static final long MIN_SEGMENT_BYTES = 1024 * 1024;
+
+    protected static final int PROTECTED_PERCENT = 80;
+
+    /** Used to size the frequency sketch. */
+    protected static final int AVERAGE_ROW_BYTES = 512;
+
+    protected enum Region {
+        WINDOW, PROBATION, PROTECTED
+    }
+
+    protected static class Node {
+
+        protected final RowId key;
+
+        protected Row row;
+
+        protected long weight;
+
+        protected Region region;
+
+        protected Node(RowId key, Row row, long weight) {
+            this.key = key;
+            this.row = row;
+            this.weight = weight;
+        }
+    }
+
+    protected class TableMetrics {
+
+        protected final Counter hits;
+
+        protected final Counter misses;
+
+        protected final Counter evictions;
+
+        protected TableMetrics(String tableName) {
+            hits = registry.counter(MetricRegistry.name(metricsPrefix, tableName, "hits"));
+            misses = registry.counter(MetricRegistry.name(metricsPrefix, tableName, "misses"));
+            evictions = registry.counter(MetricRegistry.name(metricsPrefix, tableName, "evictions"));
+        }
+    }
+
+    protected final MetricRegistry registry = SharedMetricRegistries.getOrCreate(MetricsService.class.getName());
+
+    protected final String metricsPrefix;
+
+    protected final ConcurrentMap<String, TableMetrics> tableMetrics = new ConcurrentHashMap<>();
+
+    protected final long maxBytes;
+
+    protected final Segment[] segments;
+
+    protected final int segmentShift;
+
+    /**
+     * @param repositoryName the repository name, for metrics
+     * @param maxBytes the maximum estimated size of the cache
+     * @param windowPercent the percentage of the cache used by the admission window
+     */
+    public TinyLfuRowCache(String repositoryName, long maxBytes, int windowPercent) {
+        this(repositoryName, maxBytes, windowPercent, DEFAULT_CONCURRENCY);
+    }
+
+    /**
+     * @param repositoryName the repository name, for metrics
+     * @param maxBytes the maximum estimated size of the cache
+     * @param windowPercent the percentage of the cache used by the admission window
+     * @param concurrency the maximum number of segments
+     */
+    public TinyLfuRowCache(String repositoryName, long maxBytes, int windowPercent, int concurrency) {
+        if (maxBytes <= 0) {
+            throw new IllegalArgumentException("Invalid max bytes: " + maxBytes);
+        }
+        if (windowPercent < 0 || windowPercent > 100) {
+            throw new IllegalArgumentException("Invalid window percent: " + windowPercent);
+        }
+        if (concurrency <= 0) {
+            throw new IllegalArgumentException("Invalid concurrency level: " + concurrency);
+        }
+        this.maxBytes = maxBytes;
+        int n = Integer.highestOneBit(concurrency);
+        while (n > 1 && maxBytes / n < MIN_SEGMENT_BYTES) {
+            n >>= 1;
+        }
+        segments = new Segment[n];
+        for (int i = 0; i < n; i++) {
+            segments[i] = new Segment(maxBytes / n, windowPercent);
+        }
+        segmentShift = 32 - Integer.numberOfTrailingZeros(n);
+        metricsPrefix = MetricRegistry.name("nuxeo", "repositories", repositoryName, "caches", "tinylfu");
+    }
+
+    /**
+     * The caches, by repository name.
+     */
+    protected static final ConcurrentMap<String, TinyLfuRowCache> caches = new ConcurrentHashMap<>();
+
+    /**
+     * Gets the cache of a repository, creating it from the caching mapper properties if needed.
+     */
+    public static TinyLfuRowCache getCache(String repositoryName, Map<String, String> properties) {
+        TinyLfuRowCache cache = caches.get(repositoryName);
+        if (cache != null) {
+            return cache;
+        }
+        synchronized (caches) {
+            cache = caches.get(repositoryName);
+            if (cache == null) {
+                long maxBytes = getLongProperty(properties, MAX_BYTES_PROP, DEFAULT_MAX_BYTES);
+                int windowPercent = (int) getLongProperty(properties, WINDOW_PERCENT_PROP, DEFAULT_WINDOW_PERCENT);
+                int concurrency = (int) getLongProperty(properties, CONCURRENCY_PROP, DEFAULT_CONCURRENCY);
+                log.info("Creating row cache for repository: " + repositoryName + ", max bytes: " + maxBytes);
+                cache = new TinyLfuRowCache(repositoryName, maxBytes, windowPercent, concurrency);
+                cache.registerMBean(repositoryName);
+                cache.registerGauge();
+                caches.put(repositoryName, cache);
+            }
+            return cache;
+        }
+    }
+
+    protected static long getLongProperty(Map<String, String> properties, String name, long defaultValue) {
+        String value = properties.get(name);
+        if (value == null || value.trim().isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            log.error("Invalid value for caching mapper property " + name + ": " + value);
+            return defaultValue;
+        }
+    }
+
+    protected void registerMBean(String repositoryName) {
+        try {
+            MBeanServer mBeanServer = Framework.getLocalService(ServerLocator.class).lookupServer();
+            ObjectName name = new ObjectName("org.nuxeo:type=VCSRowCache,repository=" + ObjectName.quote(repositoryName));
+            if (mBeanServer.isRegistered(name)) {
+                mBeanServer.unregisterMBean(name);
+            }
+            mBeanServer.registerMBean(this, name);
+        } catch (JMException | RuntimeException e) {
+            log.warn("Cannot register row cache MBean for repository: " + repositoryName, e);
+        }
+    }
+
+    protected void registerGauge() {
+        String gaugeName = MetricRegistry.name(metricsPrefix, "cache-bytes");
+        registry.remove(gaugeName);
+        registry.register(gaugeName, new Gauge<Long>() {
+            @Override
+            public Long getValue() {
+                return Long.valueOf(getBytes());
+            }
+        });
+    }
+
+    protected TableMetrics getTableMetrics(String tableName) {
+        TableMetrics metrics = tableMetrics.get(tableName);
+        if (metrics == null) {
+            metrics = new TableMetrics(tableName);
+            TableMetrics old = tableMetrics.putIfAbsent(tableName, metrics);
+            if (old != null) {
+                metrics = old;
+            }
+        }
+        return metrics;
+    }
+
+    protected Segment segmentFor(RowId key) {
+        if (segments.length == 1) {
+            return segments[0];
+        }
+        int h = key.hashCode() * 0x9e3779b9;
+        return segments[h >>> segmentShift];
+    }
+
+    /**
+     * Gets a row from the cache.
+     * <p>
+     * The returned row is the cached instance and must not be modified.
+     *
+     * @return the row, or {@code null} if not in the cache
+     */
+    @Override
+    public Row get(RowId key) {
+        Row row = segmentFor(key).get(key);
+        TableMetrics metrics = getTableMetrics(key.tableName);
+        if (row == null) {
+            metrics.misses.inc();
+        } else {
+            metrics.hits.inc();
+        }
+        return row;
+    }
+
+    /**
+     * Puts a row in the cache. The row must not be modified afterwards.
+     */
+    @Override
+    public void put(RowId key, Row row) {
+        segmentFor(key).put(key, row, weigh(key, row));
+    }
+
+    @Override
+    public void remove(RowId key) {
+        segmentFor(key).remove(key);
+    }
+
+    @Override
+    public void clear() {
+        for (Segment segment : segments) {
+            segment.clear();
+        }
+    }
+
+    protected static Node eldest(LinkedHashMap<RowId, Node> map) {
+        Iterator<Node> it = map.values().iterator();
+        return it.hasNext() ? it.next() : null;
+    }
+
+    /**
+     * A part of the cache holding the keys with a given hash range, with its own lock.
+     */
+    protected class Segment {
+
+        protected final long maxBytes;
+
+        protected final long windowMaxBytes;
+
+        protected final long protectedMaxBytes;
+
+        protected final Map<RowId, Node> data = new HashMap<>();
+
+        // access-ordered, eldest first
+
+        protected final LinkedHashMap<RowId, Node> window = new LinkedHashMap<>(16, 0.75f, true);
+
+        protected final LinkedHashMap<RowId, Node> probation = new LinkedHashMap<>(16, 0.75f, true);
+
+        protected final LinkedHashMap<RowId, Node> protectd = new LinkedHashMap<>(16, 0.75f, true);
+
+        protected long windowBytes;
+
+        protected long probationBytes;
+
+        protected long protectedBytes;
+
+        protected final FrequencySketch sketch;
+
+        protected long hitCount;
+
+        protected long missCount;
+
+        protected long evictionCount;
+
+        protected long rejectionCount;
+
+        protected Segment(long maxBytes, int windowPercent) {
+            this.maxBytes = maxBytes;
+            windowMaxBytes = maxBytes * windowPercent / 100;
+            protectedMaxBytes = (maxBytes - windowMaxBytes) * PROTECTED_PERCENT / 100;
+            sketch = new FrequencySketch((int) Math.min(Integer.MAX_VALUE / 2, maxBytes / AVERAGE_ROW_BYTES));
+        }
+
+        protected synchronized Row get(RowId key) {
+            sketch.increment(key);
+            Node node = data.get(key);
+            if (node == null) {
+                missCount++;
+                return null;
+            }
+            hitCount++;
+            onHit(node);
+            return node.row;
+        }
+
+        protected synchronized void put(RowId key, Row row, long weight) {
+            if (weight > maxBytes - windowMaxBytes) {
+                // too big to ever be admitted
+                remove(key);
+                return;
+            }
+            Node node = data.get(key);
+            if (node != null) {
+                node.row = row;
+                addWeight(node.region, weight - node.weight);
+                node.weight = weight;
+                onHit(node);
+                if (node.region == Region.PROTECTED) {
+                    demoteProtected();
+                }
+            } else {
+                sketch.increment(key);
+                node = new Node(key, row, weight);
+                data.put(key, node);
+                add(Region.WINDOW, node);
+            }
+            evict();
+        }
+
+        protected synchronized void remove(RowId key) {
+            Node node = data.remove(key);
+            if (node != null) {
+                unlink(node);
+            }
+        }
+
+        protected synchronized void clear() {
+            data.clear();
+            window.clear();
+            probation.clear();
+            protectd.clear();
+            windowBytes = 0;
+            probationBytes = 0;
+            protectedBytes = 0;
+        }
+
+        protected synchronized long getBytes() {
+            return windowBytes + probationBytes + protectedBytes;
+        }
+
+        protected synchronized int getSize() {
+            return data.size();
+        }
+
+        protected synchronized long getHitCount() {
+            return hitCount;
+        }
+
+        protected synchronized long getMissCount() {
+            return missCount;
+        }
+
+        protected synchronized long getEvictionCount() {
+            return evictionCount;
+        }
+
+        protected synchronized long getRejectionCount() {
+            return rejectionCount;
+        }
+
+        protected void onHit(Node node) {
+            switch (node.region) {
+            case WINDOW:
+                window.get(node.key);
+                break;
+            case PROBATION:
+                unlink(node);
+                add(Region.PROTECTED, node);
+                demoteProtected();
+                break;
+            case PROTECTED:
+                protectd.get(node.key);
+                break;
+            }
+        }
+
+        protected LinkedHashMap<RowId, Node> getMap(Region region) {
+            switch (region) {
+            case WINDOW:
+                return window;
+            case PROBATION:
+                return probation;
+            default:
+                return protectd;
+            }
+        }
+
+        protected void addWeight(Region region, long weight) {
+            switch (region) {
+            case WINDOW:
+                windowBytes += weight;
+                break;
+            case PROBATION:
+                probationBytes += weight;
+                break;
+            case PROTECTED:
+                protectedBytes += weight;
+                break;
+            }
+        }
+
+        protected void add(Region region, Node node) {
+            node.region = region;
+            getMap(region).put(node.key, node);
+            addWeight(region, node.weight);
+        }
+
+        protected void unlink(Node node) {
+            getMap(node.region).remove(node.key);
+            addWeight(node.region, -node.weight);
+            node.region = null;
+        }
+
+        /**
+         * Moves the least recently used protected entries to probation while the protected region is too big.
+         */
+        protected void demoteProtected() {
+            while (protectedBytes > protectedMaxBytes) {
+                Node node = eldest(protectd);
+                unlink(node);
+                add(Region.PROBATION, node);
+            }
+        }
+
+        /**
+         * Moves the entries overflowing from the window to the main region if they are more frequent than the main
+         * region's victims, otherwise evicts them.
+         */
+        protected void evict() {
+            long mainMaxBytes = maxBytes - windowMaxBytes;
+            while (windowBytes > windowMaxBytes) {
+                Node candidate = eldest(window);
+                unlink(candidate);
+                int candidateFrequency = sketch.frequency(candidate.key);
+                boolean admitted = true;
+                while (probationBytes + protectedBytes + candidate.weight > mainMaxBytes) {
+                    Node victim = eldest(probation);
+                    if (victim == null) {
+                        victim = eldest(protectd);
+                    }
+                    if (candidateFrequency <= sketch.frequency(victim.key)) {
+                        admitted = false;
+                        break;
+                    }
+                    evict(victim);
+                }
+                if (admitted) {
+                    add(Region.PROBATION, candidate);
+                } else {
+                    rejectionCount++;
+                    evict(candidate);
+                }
+            }
+            // an updated row may have grown
+            while (probationBytes + protectedBytes > mainMaxBytes) {
+                Node victim = eldest(probation);
+                evict(victim == null ? eldest(protectd) : victim);
+            }
+        }
+
+        protected void evict(Node node) {
+            if (node.region != null) {
+                unlink(node);
+            }
+            data.remove(node.key);
+            evictionCount++;
+            getTableMetrics(node.key.tableName).evictions.inc();
+        }
+    }
+
+    /*
+     * ----- Weight -----
+     */
+
+    protected static final int OBJECT_OVERHEAD = 16;
+
+    protected static final int REFERENCE_SIZE = 8;
+
+    /** Cache structures overhead (node, hash entries, linked entries). */
+    protected static final int ENTRY_OVERHEAD = 160;
+
+    /**
+     * Estimates the memory used by a cached row, in bytes.
+     */
+    public static long weigh(RowId key, Row row) {
+        long weight = ENTRY_OVERHEAD + weigh(key.id);
+        weight += 2 * OBJECT_OVERHEAD + REFERENCE_SIZE * 3 + 4;
+        if (row.keys != null) {
+            // key names are shared with the model
+            weight += OBJECT_OVERHEAD + REFERENCE_SIZE * row.keys.length;
+        }
+        weight += weigh(row.values);
+        return weight;
+    }
+
+    protected static long weigh(Object value) {
+        if (value == null) {
+            return 0;
+        } else if (value instanceof String) {
+            return 2 * OBJECT_OVERHEAD + 8 + 2L * ((String) value).length();
+        } else if (value instanceof Number || value instanceof Boolean) {
+            return OBJECT_OVERHEAD + 8;
+        } else if (value instanceof Calendar) {
+            // GregorianCalendar with its fields arrays and zone
+            return 450;
+        } else if (value instanceof ACLRow) {
+            ACLRow acl = (ACLRow) value;
+            return OBJECT_OVERHEAD + 8 + 5 * REFERENCE_SIZE + weigh(acl.name) + weigh(acl.permission)
+                    + weigh(acl.user) + weigh(acl.group);
+        } else if (value instanceof Object[]) {
+            Object[] array = (Object[]) value;
+            long weight = OBJECT_OVERHEAD + REFERENCE_SIZE * array.length;
+            for (Object v : array) {
+                weight += weigh(v);
+            }
+            return weight;
+        } else if (value instanceof Serializable) {
+            return 4 * OBJECT_OVERHEAD;
+        } else {
+            return OBJECT_OVERHEAD;
+        }
+    }
+
+    /*
+     * ----- Frequency -----
+     */
+
+    /**
+     * A count-min sketch of 4-bit counters, halved after a number of increments so that old frequencies fade.
+     */
+    protected static class FrequencySketch {
+
+        protected static final long[] SEEDS = { 0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL,
+                0xcbf29ce484222325L };
+
+        protected static final long RESET_MASK = 0x7777777777777777L;
+
+        protected final long[] table;
+
+        protected final int mask;
+
+        protected final int sampleSize;
+
+        protected int additions;
+
+        protected FrequencySketch(int expectedSize) {
+            int size = Integer.highestOneBit(Math.max(expectedSize, 64) - 1) << 1;
+            table = new long[size];
+            mask = size - 1;
+            sampleSize = 10 * size;
+        }
+
+        protected int spread(Object key) {
+            int h = key.hashCode() * 0x9e3779b9;
+            return h ^ (h >>> 16);
+        }
+
+        protected int index(int hash, int i) {
+            long h = (hash + SEEDS[i]) * SEEDS[i];
+            h += h >>> 32;
+            return ((int) h) & mask;
+        }
+
+        protected static int offset(int hash, int i) {
+            // counter number (0-15) in the long, distinct per hash function
+            return (((hash >>> (i << 3)) & 3) << 2) + i;
+        }
+
+        public int frequency(Object key) {
+            int hash = spread(key);
+            int frequency = Integer.MAX_VALUE;
+            for (int i = 0; i < 4; i++) {
+                int shift = offset(hash, i) << 2;
+                int count = (int) ((table[index(hash, i)] >>> shift) & 0xfL);
+                frequency = Math.min(frequency, count);
+            }
+            return frequency;
+        }
+
+        public void increment(Object key) {
+            int hash = spread(key);
+            boolean added = false;
+            for (int i = 0; i < 4; i++) {
+                int index = index(hash, i);
+                int shift = offset(hash, i) << 2;
+                if (((table[index] >>> shift) & 0xfL) != 0xfL) {
+                    table[index] += 1L << shift;
+                    added = true;
+                }
+            }
+            if (added && ++additions >= sampleSize) {
+                reset();
+            }
+        }
+
+        protected void reset() {
+            for (int i = 0; i < table.length; i++) {
+                table[i] = (table[i] >>> 1) & RESET_MASK;
+            }
+            additions /= 2;
+        }
+    }
+
+    /*
+     * ----- MBean -----
+     */
+
+    @Override
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    @Override
+    public long getBytes() {
+        long bytes = 0;
+        for (Segment segment : segments) {
+            bytes += segment.getBytes();
+        }
+        return bytes;
+    }
+
+    @Override
+    public int getSize() {
+        int size = 0;
+        for (Segment segment : segments) {
+            size += segment.getSize();
+        }
+        return size;
+    }
+
+    @Override
+    public long getHitCount() {
+        long count = 0;
+        for (Segment segment : segments) {
+            count += segment.getHitCount();
+        }
+        return count;
+    }
+
+    @Override
+    public long getMissCount() {
+        long count = 0;
+        for (Segment segment : segments) {
+            count += segment.getMissCount();
+        }
+        return count;
+    }
+
+    @Override
+    public long getEvictionCount() {
+        long count = 0;
+        for (Segment segment : segments) {
+            count += segment.getEvictionCount();
+        }
+        return count;
+    }
+
+    @Override
+    public long getRejectionCount() {
+        long count = 0;
+        for (Segment segment : segments) {
+            count += segment.getRejectionCount();
+        }
+        return count;
+    }
+
+}
@@ -0,0 +1,41 @@
+/*
+ * Copyright (c) 2015 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.ecm.core.storage.sql;
+
+/**
+ * JMX view of a {@link TinyLfuRowCache}.
+ *
+ * @since 7.2
+ */
+public interface TinyLfuRowCacheMBean {
+
+    /** The maximum weight of the cache, in bytes. */
+    long getMaxBytes();
+
+    /** The current estimated weight of the cache, in bytes. */
+    long getBytes();
+
+    /** The number of entries in the cache. */
+    int getSize();
+
+    long getHitCount();
+
+    long getMissCount();
+
+    long getEvictionCount();
+
+    /** The number of entries not admitted in the main region because they were less frequent than the victim. */
+    long getRejectionCount();
+
+    void clear();
+
+}
@@ -23,25 +23,13 @@ import java.util.Map;
 import java.util.SortedMap;
 import java.util.concurrent.atomic.AtomicInteger;
 
-import javax.management.MBeanServer;
-import javax.transaction.SystemException;
-import javax.transaction.Transaction;
-import javax.transaction.TransactionManager;
 import javax.transaction.xa.XAException;
 import javax.transaction.xa.Xid;
 
-import net.sf.ehcache.Cache;
-import net.sf.ehcache.CacheManager;
-import net.sf.ehcache.Element;
-import net.sf.ehcache.management.ManagementService;
-import net.sf.ehcache.transaction.manager.TransactionManagerLookup;
-
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.nuxeo.ecm.core.storage.StorageException;
 import org.nuxeo.ecm.core.storage.sql.ACLRow.ACLRowPositionComparator;
-import org.nuxeo.runtime.api.Framework;
-import org.nuxeo.runtime.management.ServerLocator;
 import org.nuxeo.runtime.metrics.MetricsService;
 
 import com.codahale.metrics.Counter;
@@ -52,7 +40,11 @@ import com.codahale.metrics.Timer;
 import com.codahale.metrics.Timer.Context;
 
 /**
- * A {@link RowMapper} that use an unified ehcache.
+ * A {@link RowMapper} that use an unified cache, shared by all the sessions.
+ * <p>
+ * The cache implementation is chosen with the {@value #CACHE_PROP} caching mapper property: an ehcache (the default,
+ * {@value #CACHE_EHCACHE}, see {@link EhcacheRowCache}) or a cache bounded by size in bytes ({@value #CACHE_TINYLFU},
+ * see {@link TinyLfuRowCache}).
  * <p>
  * The cache only holds {@link Row}s that are known to be identical to what's in the underlying {@link RowMapper}.
  */
@@ -62,11 +54,20 @@ public class UnifiedCachingRowMapper implements RowMapper {
 
     private static final String ABSENT = "__ABSENT__\0\0\0";
 
-    private static CacheManager cacheManager = null;
+    /**
+     * Caching mapper property choosing the cache implementation.
+     *
+     * @since 7.2
+     */
+    public static final String CACHE_PROP = "cache";
+
+    /** @since 7.2 */
+    public static final String CACHE_EHCACHE = "ehcache";
 
-    protected static boolean isXA;
+    /** @since 7.2 */
+    public static final String CACHE_TINYLFU = "tinylfu";
 
-    private Cache cache;
+    private UnifiedRowCache cache;
 
     private Model model;
 
@@ -91,10 +92,6 @@ public class UnifiedCachingRowMapper implements RowMapper {
      */
     private InvalidationsPropagator cachePropagator;
 
-    private static final String CACHE_NAME = "unifiedVCSCache";
-
-    private static final String EHCACHE_FILE_PROP = "ehcacheFilePath";
-
     private static AtomicInteger rowMapperCount = new AtomicInteger();
 
     /**
@@ -124,25 +121,27 @@ public class UnifiedCachingRowMapper implements RowMapper {
         this.rowMapper = rowMapper;
         this.cachePropagator = cachePropagator;
         cachePropagator.addQueue(cacheQueue);
-        if (cacheManager == null) {
-            if (properties.containsKey(EHCACHE_FILE_PROP)) {
-                String value = properties.get(EHCACHE_FILE_PROP);
-                log.info("Creating ehcache manager for VCS, using ehcache file: " + value);
-                cacheManager = CacheManager.create(value);
-            } else {
-                log.info("Creating ehcache manager for VCS, No ehcache file provided");
-                cacheManager = CacheManager.create();
-            }
-            isXA = cacheManager.getConfiguration().getCacheConfigurations().get(CACHE_NAME).isXaTransactional();
-            // Exposes cache to JMX
-            MBeanServer mBeanServer = Framework.getLocalService(ServerLocator.class).lookupServer();
-            ManagementService.registerMBeans(cacheManager, mBeanServer, true, true, true, true);
-        }
         rowMapperCount.incrementAndGet();
-        cache = cacheManager.getCache(CACHE_NAME);
+        cache = newCache(repositoryName, properties);
         setMetrics(repositoryName);
     }
 
+    /**
+     * Gets the cache to use, according to the caching mapper properties.
+     *
+     * @since 7.2
+     */
+    protected UnifiedRowCache newCache(String repositoryName, Map<String, String> properties) {
+        String type = properties.get(CACHE_PROP);
+        if (CACHE_TINYLFU.equals(type)) {
+            return TinyLfuRowCache.getCache(repositoryName, properties);
+        }
+        if (type != null && !CACHE_EHCACHE.equals(type)) {
+            log.error("Unknown cache for caching mapper: " + type + ", using " + CACHE_EHCACHE);
+        }
+        return new EhcacheRowCache(properties);
+    }
+
     protected void setMetrics(String repositoryName) {
         cacheHitCount = registry.counter(MetricRegistry.name("nuxeo", "repositories", repositoryName, "caches",
                 "unified", "hits"));
@@ -156,13 +155,11 @@ public class UnifiedCachingRowMapper implements RowMapper {
                 "cache-size");
         SortedMap<String, Gauge> gauges = registry.getGauges();
         if (!gauges.containsKey(gaugeName)) {
+            final UnifiedRowCache theCache = cache;
             registry.register(gaugeName, new Gauge<Integer>() {
                 @Override
                 public Integer getValue() {
-                    if (cacheManager != null) {
-                        return cacheManager.getCache(CACHE_NAME).getSize();
-                    }
-                    return 0;
+                    return theCache.getSize();
                 }
             });
         }
@@ -178,65 +175,6 @@ public class UnifiedCachingRowMapper implements RowMapper {
         return rowMapper.generateNewId();
     }
 
-    /*
-     * ----- ehcache -----
-     */
-
-    protected boolean hasTransaction() {
-        TransactionManagerLookup transactionManagerLookup = cache.getTransactionManagerLookup();
-        if (transactionManagerLookup == null) {
-            return false;
-        }
-        TransactionManager transactionManager = transactionManagerLookup.getTransactionManager();
-        if (transactionManager == null) {
-            return false;
-        }
-        Transaction transaction;
-        try {
-            transaction = transactionManager.getTransaction();
-        } catch (SystemException e) {
-            throw new RuntimeException(e);
-        }
-        return transaction != null;
-    }
-
-    protected boolean useEhCache() {
-        return !isXA || hasTransaction();
-    }
-
-    protected void ehCachePut(Element element) {
-        if (useEhCache()) {
-            cache.put(element);
-        }
-    }
-
-    protected Element ehCacheGet(Serializable key) {
-        if (useEhCache()) {
-            return cache.get(key);
-        }
-        return null;
-    }
-
-    protected int ehCacheGetSize() {
-        if (useEhCache()) {
-            return cache.getSize();
-        }
-        return 0;
-    }
-
-    protected boolean ehCacheRemove(Serializable key) {
-        if (useEhCache()) {
-            return cache.remove(key);
-        }
-        return false;
-    }
-
-    protected void ehCacheRemoveAll() {
-        if (useEhCache()) {
-            cache.removeAll();
-        }
-    }
-
     /*
      * ----- Cache -----
      */
@@ -253,8 +191,7 @@ public class UnifiedCachingRowMapper implements RowMapper {
         if (row.isCollection() && row.values.length > 0 && row.values[0] instanceof ACLRow) {
             row.values = sortACLRows((ACLRow[]) row.values);
         }
-        Element element = new Element(new RowId(row), row);
-        ehCachePut(element);
+        cache.put(new RowId(row), row);
     }
 
     protected ACLRow[] sortACLRows(ACLRow[] acls) {
@@ -265,8 +202,7 @@ public class UnifiedCachingRowMapper implements RowMapper {
     }
 
     protected void cachePutAbsent(RowId rowId) {
-        Element element = new Element(new RowId(rowId), new Row(ABSENT, (Serializable) null));
-        ehCachePut(element);
+        cache.put(new RowId(rowId), new Row(ABSENT, (Serializable) null));
     }
 
     protected void cachePutAbsentIfNull(RowId rowId, Row row) {
@@ -288,11 +224,7 @@ public class UnifiedCachingRowMapper implements RowMapper {
     protected Row cacheGet(RowId rowId) {
         final Context context = cacheGetTimer.time();
         try {
-            Element element = ehCacheGet(rowId);
-            Row row = null;
-            if (element != null) {
-                row = (Row) element.getObjectValue();
-            }
+            Row row = cache.get(rowId);
             if (row != null && !isAbsent(row)) {
                 row = row.clone();
             }
@@ -306,7 +238,7 @@ public class UnifiedCachingRowMapper implements RowMapper {
     }
 
     protected void cacheRemove(RowId rowId) {
-        ehCacheRemove(rowId);
+        cache.remove(rowId);
     }
 
     /*
@@ -368,7 +300,7 @@ public class UnifiedCachingRowMapper implements RowMapper {
 
     @Override
     public void clearCache() {
-        ehCacheRemoveAll();
+        cache.clear();
         localInvalidations.clear();
         rowMapper.clearCache();
     }
@@ -378,7 +310,7 @@ public class UnifiedCachingRowMapper implements RowMapper {
         try {
             rowMapper.rollback(xid);
         } finally {
-            ehCacheRemoveAll();
+            cache.clear();
             localInvalidations.clear();
         }
     }
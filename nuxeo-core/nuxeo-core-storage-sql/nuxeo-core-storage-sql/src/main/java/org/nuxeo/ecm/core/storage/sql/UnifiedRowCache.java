@@ -0,0 +1,44 @@
+/*
+ * Copyright (c) 2015 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.ecm.core.storage.sql;
+
+/**
+ * The cache of {@link Row}s shared by the {@link UnifiedCachingRowMapper}s.
+ *
+ * @since 7.2
+ */
+public interface UnifiedRowCache {
+
+    /**
+     * Gets a row from the cache.
+     * <p>
+     * The returned row may be the cached instance and must not be modified.
+     *
+     * @return the row, or {@code null} if not in the cache
+     */
+    Row get(RowId key);
+
+    /**
+     * Puts a row in the cache. The row must not be modified afterwards.
+     */
+    void put(RowId key, Row row);
+
+    void remove(RowId key);
+
+    void clear();
+
+    /**
+     * Gets the number of entries in the cache.
+     */
+    int getSize();
+
+}
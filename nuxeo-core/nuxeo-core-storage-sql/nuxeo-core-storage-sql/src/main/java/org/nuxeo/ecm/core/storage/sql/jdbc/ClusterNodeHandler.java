@@ -12,22 +12,34 @@
 
 package org.nuxeo.ecm.core.storage.sql.jdbc;
 
+import java.util.concurrent.TimeUnit;
+
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.nuxeo.ecm.core.storage.ConnectionResetException;
 import org.nuxeo.ecm.core.storage.StorageException;
+import org.nuxeo.ecm.core.storage.sql.ClusterInvalidator;
 import org.nuxeo.ecm.core.storage.sql.Invalidations;
 import org.nuxeo.ecm.core.storage.sql.InvalidationsPropagator;
 import org.nuxeo.ecm.core.storage.sql.InvalidationsQueue;
 import org.nuxeo.ecm.core.storage.sql.Mapper;
 import org.nuxeo.ecm.core.storage.sql.RepositoryDescriptor;
+import org.nuxeo.runtime.metrics.MetricsService;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.SharedMetricRegistries;
+import com.codahale.metrics.Timer;
 
 /**
  * Encapsulates cluster node operations.
  * <p>
  * There is one cluster node handler per cluster node (repository).
+ * <p>
+ * If a {@link ClusterInvalidator} is configured, invalidations are pushed to and received from the other cluster nodes
+ * through it, otherwise they are stored in the database and polled from it.
  */
-public class ClusterNodeHandler {
+public class ClusterNodeHandler implements ClusterInvalidator.Receiver {
 
     private static final Log log = LogFactory.getLog(ClusterNodeHandler.class);
 
@@ -45,6 +57,18 @@ public class ClusterNodeHandler {
     /** Cluster node id, needed at the Java level for some databases. */
     private String nodeId;
 
+    /** Push-based transport of invalidations, or {@code null} to use the database. */
+    private final ClusterInvalidator clusterInvalidator;
+
+    protected final MetricRegistry registry = SharedMetricRegistries.getOrCreate(MetricsService.class.getName());
+
+    protected final Counter sentCount;
+
+    protected final Counter receivedCount;
+
+    /** Time between the sending of invalidations by another node and their reception by this node. */
+    protected final Timer propagationLagTimer;
+
     public ClusterNodeHandler(Mapper clusterNodeMapper, RepositoryDescriptor repositoryDescriptor)
             throws StorageException {
         this.clusterNodeMapper = clusterNodeMapper;
@@ -52,6 +76,25 @@ public class ClusterNodeHandler {
         clusteringDelay = repositoryDescriptor.getClusteringDelay();
         processClusterInvalidationsNext();
         propagator = new InvalidationsPropagator("cluster-" + this);
+        String repositoryName = repositoryDescriptor.name;
+        sentCount = registry.counter(MetricRegistry.name("nuxeo", "repositories", repositoryName, "cluster",
+                "invalidations", "sent"));
+        receivedCount = registry.counter(MetricRegistry.name("nuxeo", "repositories", repositoryName, "cluster",
+                "invalidations", "received"));
+        propagationLagTimer = registry.timer(MetricRegistry.name("nuxeo", "repositories", repositoryName, "cluster",
+                "invalidations", "lag"));
+        Class<? extends ClusterInvalidator> klass = repositoryDescriptor.clusterInvalidatorClass;
+        if (klass == null) {
+            clusterInvalidator = null;
+        } else {
+            try {
+                clusterInvalidator = klass.newInstance();
+            } catch (ReflectiveOperationException e) {
+                throw new StorageException("Cannot instantiate cluster invalidator: " + klass.getName(), e);
+            }
+            clusterInvalidator.initialize(nodeId, repositoryName, this);
+            log.info("Using cluster invalidator " + klass.getName() + " for repository: " + repositoryName);
+        }
     }
 
     public JDBCConnection getConnection() {
@@ -59,6 +102,9 @@ public class ClusterNodeHandler {
     }
 
     public void close() throws StorageException {
+        if (clusterInvalidator != null) {
+            clusterInvalidator.close();
+        }
         synchronized (clusterNodeMapper) {
             try {
                 clusterNodeMapper.removeClusterNode();
@@ -74,6 +120,9 @@ public class ClusterNodeHandler {
             // cannot remove, old connection is gone
             // create should do a cleanup anyway
             nodeId = clusterNodeMapper.createClusterNode();
+            if (clusterInvalidator != null) {
+                clusterInvalidator.setNodeId(nodeId);
+            }
             // but all invalidations queued for us have been lost
             // so reset all
             propagator.propagateInvalidations(new Invalidations(true), null);
@@ -106,10 +155,34 @@ public class ClusterNodeHandler {
         propagator.propagateInvalidations(invalidations, null);
     }
 
+    /**
+     * Receives cluster invalidations pushed by other cluster nodes through the {@link ClusterInvalidator}.
+     * <p>
+     * The invalidations are directly propagated to the queues of this cluster node.
+     */
+    @Override
+    public void receiveInvalidations(Invalidations invalidations, long sendTime) {
+        if (invalidations == null || invalidations.isEmpty()) {
+            return;
+        }
+        receivedCount.inc();
+        if (sendTime > 0) {
+            long lag = System.currentTimeMillis() - sendTime;
+            propagationLagTimer.update(Math.max(lag, 0), TimeUnit.MILLISECONDS);
+        }
+        propagator.propagateInvalidations(invalidations, null);
+    }
+
     /**
      * Receives cluster invalidations from other cluster nodes.
+     * <p>
+     * When a {@link ClusterInvalidator} is used, invalidations are pushed asynchronously and this returns
+     * {@code null}.
      */
     public Invalidations receiveClusterInvalidations() throws StorageException {
+        if (clusterInvalidator != null) {
+            return null;
+        }
         synchronized (clusterNodeMapper) {
             if (clusterNodeLastInvalidationTimeMillis + clusteringDelay > System.currentTimeMillis()) {
                 // delay hasn't expired
@@ -134,6 +207,11 @@ public class ClusterNodeHandler {
         if (invalidations == null || invalidations.isEmpty()) {
             return;
         }
+        sentCount.inc();
+        if (clusterInvalidator != null) {
+            clusterInvalidator.sendInvalidations(invalidations);
+            return;
+        }
         synchronized (clusterNodeMapper) {
             clusterNodeMapper.insertClusterInvalidations(invalidations, nodeId);
         }
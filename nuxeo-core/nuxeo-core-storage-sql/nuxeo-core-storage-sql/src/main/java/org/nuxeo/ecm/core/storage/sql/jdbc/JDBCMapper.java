@@ -52,6 +52,7 @@ import org.nuxeo.ecm.core.storage.ConnectionResetException;
 import org.nuxeo.ecm.core.storage.PartialList;
 import org.nuxeo.ecm.core.storage.StorageException;
 import org.nuxeo.ecm.core.storage.binary.BinaryGarbageCollector;
+import org.nuxeo.ecm.core.storage.binary.IncrementalBinaryGarbageCollector;
 import org.nuxeo.ecm.core.storage.sql.ColumnType;
 import org.nuxeo.ecm.core.storage.sql.ColumnType.WrappedId;
 import org.nuxeo.ecm.core.storage.sql.Invalidations;
@@ -89,6 +90,25 @@ public class JDBCMapper extends JDBCRowMapper implements Mapper {
 
     public static final String TEST_UPGRADE_LAST_CONTRIBUTOR = "testUpgradeLastContributor";
 
+    /**
+     * Property used to configure the JDBC fetch size of {@link ResultSetQueryResult} cursors, {@code 0} for the driver
+     * default.
+     *
+     * @since 7.2
+     */
+    public static final String QUERY_FETCH_SIZE_PROP = "org.nuxeo.vcs.query.fetchSize";
+
+    public static final String QUERY_FETCH_SIZE_DEFAULT = "0";
+
+    /**
+     * Number of digests marked per batch by an incremental binaries GC.
+     *
+     * @since 7.2
+     */
+    public static final String GC_MARK_BATCH_SIZE_PROP = "org.nuxeo.vcs.gc.markBatchSize";
+
+    public static final String GC_MARK_BATCH_SIZE_DEFAULT = "10000";
+
     public static final String TEST_UPGRADE_LOCKS = "testUpgradeLocks";
 
     public static final String TEST_UPGRADE_FULLTEXT = "testUpgradeFulltext";
@@ -698,7 +718,13 @@ public class JDBCMapper extends JDBCRowMapper implements Mapper {
         if (queryMaker == null) {
             throw new StorageException("No QueryMaker accepts query: " + queryType + ": " + query);
         }
-        QueryMaker.Query q = queryMaker.buildQuery(sqlInfo, model, pathResolver, query, queryFilter);
+        QueryMaker.Query q;
+        QueryPlanCache queryPlanCache = sqlInfo.getQueryPlanCache();
+        if (queryMaker.getClass() == NXQLQueryMaker.class && queryPlanCache.isEnabled()) {
+            q = queryPlanCache.buildQuery(sqlInfo, model, pathResolver, query, queryFilter);
+        } else {
+            q = queryMaker.buildQuery(sqlInfo, model, pathResolver, query, queryFilter);
+        }
 
         if (q == null) {
             logger.log("Query cannot return anything due to conflicting clauses");
@@ -842,6 +868,21 @@ public class JDBCMapper extends JDBCRowMapper implements Mapper {
         return i;
     }
 
+    /**
+     * Gets the JDBC fetch size to use for query cursors, {@code 0} for the driver default.
+     *
+     * @since 7.2
+     */
+    protected int getQueryFetchSize() {
+        String value = Framework.getProperty(QUERY_FETCH_SIZE_PROP, QUERY_FETCH_SIZE_DEFAULT);
+        try {
+            return Math.max(0, Integer.parseInt(value.trim()));
+        } catch (NumberFormatException e) {
+            log.error("Invalid value for " + QUERY_FETCH_SIZE_PROP + ": " + value);
+            return 0;
+        }
+    }
+
     // queryFilter used for principals and permissions
     @Override
     public IterableQueryResult queryAndFetch(String query, String queryType, QueryFilter queryFilter, Object... params)
@@ -1215,6 +1256,10 @@ public class JDBCMapper extends JDBCRowMapper implements Mapper {
 
     @Override
     public void markReferencedBinaries(BinaryGarbageCollector gc) throws StorageException {
+        if (gc instanceof IncrementalBinaryGarbageCollector) {
+            markReferencedBinariesIncrementally((IncrementalBinaryGarbageCollector) gc);
+            return;
+        }
         log.debug("Starting binaries GC mark");
         Statement st = null;
         try {
@@ -1255,6 +1300,85 @@ public class JDBCMapper extends JDBCRowMapper implements Mapper {
         log.debug("End of binaries GC mark");
     }
 
+    /**
+     * Marks binaries by batches of digests in order, recording the position reached in the GC after each batch so that
+     * an interrupted GC can resume where it stopped.
+     * <p>
+     * The positions are recorded per repository, as the GC may be shared by several repositories having the same
+     * tables.
+     *
+     * @since 7.2
+     */
+    protected void markReferencedBinariesIncrementally(IncrementalBinaryGarbageCollector gc) throws StorageException {
+        log.debug("Starting incremental binaries GC mark");
+        int batchSize = Integer.parseInt(Framework.getProperty(GC_MARK_BATCH_SIZE_PROP, GC_MARK_BATCH_SIZE_DEFAULT));
+        String repositoryName = model.getRepositoryDescriptor().name;
+        for (int i = 0; i < sqlInfo.getBinariesBatchSql.size(); i++) {
+            String source = repositoryName + '/' + sqlInfo.getBinariesSources.get(i);
+            String position = gc.getMarkPosition(source);
+            if (IncrementalBinaryGarbageCollector.MARK_DONE.equals(position)) {
+                continue;
+            }
+            if (position == null) {
+                position = "";
+            }
+            String sql = sqlInfo.getBinariesBatchSql.get(i);
+            boolean paging = dialect.supportsPaging();
+            if (paging) {
+                sql = dialect.addPagingClause(sql, batchSize, 0);
+            }
+            Column col = sqlInfo.getBinariesColumns.get(i);
+            for (;;) {
+                if (gc.isInterrupted()) {
+                    log.debug("Binaries GC mark interrupted");
+                    return;
+                }
+                int n = 0;
+                PreparedStatement ps = null;
+                try {
+                    ps = connection.prepareStatement(sql);
+                    if (!paging) {
+                        ps.setMaxRows(batchSize);
+                    }
+                    ps.setString(1, position);
+                    if (logger.isLogEnabled()) {
+                        logger.logSQL(sql, Collections.<Serializable> singletonList(position));
+                    }
+                    ResultSet rs = ps.executeQuery();
+                    countExecute();
+                    while (rs.next()) {
+                        n++;
+                        String digest = (String) col.getFromResultSet(rs, 1);
+                        if (digest != null) {
+                            gc.mark(digest);
+                            position = digest;
+                        }
+                    }
+                    if (logger.isLogEnabled()) {
+                        logger.logCount(n);
+                    }
+                } catch (SQLException e) {
+                    checkConnectionReset(e);
+                    throw new RuntimeException("Failed to mark binaries for GC", e);
+                } finally {
+                    if (ps != null) {
+                        try {
+                            closeStatement(ps);
+                        } catch (SQLException e) {
+                            log.error(e.getMessage(), e);
+                        }
+                    }
+                }
+                if (n < batchSize) {
+                    gc.setMarkPosition(source, IncrementalBinaryGarbageCollector.MARK_DONE);
+                    break;
+                }
+                gc.setMarkPosition(source, position);
+            }
+        }
+        log.debug("End of incremental binaries GC mark");
+    }
+
     /*
      * ----- XAResource -----
      */
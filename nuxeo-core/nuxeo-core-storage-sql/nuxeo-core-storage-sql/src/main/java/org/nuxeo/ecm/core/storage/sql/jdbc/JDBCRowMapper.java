@@ -56,6 +56,7 @@ import org.nuxeo.ecm.core.storage.sql.jdbc.SQLInfo.SQLInfoSelection;
 import org.nuxeo.ecm.core.storage.sql.jdbc.db.Column;
 import org.nuxeo.ecm.core.storage.sql.jdbc.db.Table;
 import org.nuxeo.ecm.core.storage.sql.jdbc.db.Update;
+import org.nuxeo.runtime.api.Framework;
 
 /**
  * A {@link JDBCRowMapper} maps {@link Row}s to and from a JDBC database.
@@ -66,6 +67,15 @@ public class JDBCRowMapper extends JDBCConnection implements RowMapper {
 
     public static final int DEBUG_MAX_TREE = 50;
 
+    /**
+     * Property to disable the set-based bulk copy, for dialects supporting it.
+     *
+     * @since 7.2
+     */
+    public static final String BULK_COPY_PROP = "org.nuxeo.vcs.copy.bulk";
+
+    public static final String BULK_COPY_DEFAULT = "true";
+
     /**
      * Cluster node handler, or {@code null} if this {@link Mapper} is not the cluster node mapper.
      */
@@ -997,6 +1007,9 @@ public class JDBCRowMapper extends JDBCConnection implements RowMapper {
     @Override
     public CopyResult copy(IdWithTypes source, Serializable destParentId, String destName, Row overwriteRow)
             throws StorageException {
+        if (overwriteRow == null && destParentId != null && useBulkCopy()) {
+            return copyBulk(source, destParentId, destName);
+        }
         // assert !model.separateMainTable; // other case not implemented
         Invalidations invalidations = new Invalidations();
         try {
@@ -1059,6 +1072,189 @@ public class JDBCRowMapper extends JDBCConnection implements RowMapper {
         }
     }
 
+    /**
+     * Checks if a regular copy (not a checkin or restore) can use the set-based bulk copy.
+     *
+     * @since 7.2
+     */
+    protected boolean useBulkCopy() {
+        return dialect.supportsBulkCopy()
+                && Boolean.parseBoolean(Framework.getProperty(BULK_COPY_PROP, BULK_COPY_DEFAULT));
+    }
+
+    /**
+     * Copies a tree using a bounded number of set-based statements.
+     * <p>
+     * The descendants of the source are collected level by level into a temporary table mapping source ids to new
+     * ids, then hierarchy rows are copied with one {@code INSERT ... SELECT} per level (parents before children).
+     * Only the fragments of the types of the copied nodes are copied: a fragment common to all of them is copied with a
+     * single {@code INSERT ... SELECT}, the others row by row.
+     *
+     * @since 7.2
+     */
+    protected CopyResult copyBulk(IdWithTypes source, Serializable destParentId, String destName)
+            throws StorageException {
+        Invalidations invalidations = new Invalidations();
+        try {
+            for (String sql : sqlInfo.getCopyIdsPrepareSqls()) {
+                executeCopyIdsSql(sql);
+            }
+            // copy the root
+            Map<Serializable, Serializable> idMap = new HashMap<Serializable, Serializable>();
+            Map<Serializable, IdWithTypes> idToTypes = new HashMap<Serializable, IdWithTypes>();
+            Serializable newRootId = copyHier(source.id, destParentId, destName, true, idMap);
+            idToTypes.put(source.id, source);
+            insertCopyIds(Collections.singletonMap(source.id, newRootId), 0);
+            // collect and map descendants, level by level
+            int maxLevel = 0;
+            for (int level = 0;; level++) {
+                List<IdWithTypes> children = getCopyIdsChildren(level);
+                if (children.isEmpty()) {
+                    break;
+                }
+                Map<Serializable, Serializable> levelMap = new LinkedHashMap<Serializable, Serializable>();
+                for (IdWithTypes child : children) {
+                    levelMap.put(child.id, generateNewIdInternal());
+                    idToTypes.put(child.id, child);
+                }
+                insertCopyIds(levelMap, level + 1);
+                idMap.putAll(levelMap);
+                maxLevel = level + 1;
+            }
+            // copy the hierarchy, parents first
+            String hierSql = sqlInfo.getBulkCopyHierSql(true);
+            for (int level = 1; level <= maxLevel; level++) {
+                executeCopyIdsSql(hierSql, Integer.valueOf(level));
+            }
+            // copy the fragments of the types, like the recursive copy
+            for (Entry<String, Set<Serializable>> entry : model.getPerFragmentIds(idToTypes).entrySet()) {
+                String tableName = entry.getKey();
+                if (tableName.equals(model.HIER_TABLE_NAME) || tableName.equals(model.VERSION_TABLE_NAME)
+                        || tableName.equals(model.LOCK_TABLE_NAME)) {
+                    // hierarchy already done, versions not fileable, locks not copied
+                    continue;
+                }
+                Set<Serializable> ids = entry.getValue();
+                if (ids.size() == idToTypes.size()) {
+                    // fragment of all the copied nodes, one statement
+                    executeCopyIdsSql(sqlInfo.getBulkCopySql(tableName));
+                } else {
+                    // fragment of some nodes only, don't copy stale rows of the others
+                    copyRows(tableName, ids, idMap, null);
+                }
+            }
+            Set<Serializable> proxyIds = new HashSet<Serializable>();
+            if (sqlInfo.proxiesEnabled) {
+                proxyIds.addAll(getCopyIdsProxies());
+            }
+            // invalidate children of the destination
+            invalidations.addModified(new RowId(Invalidations.PARENT, destParentId));
+            return new CopyResult(newRootId, invalidations, proxyIds);
+        } catch (SQLException e) {
+            checkConnectionReset(e);
+            throw new StorageException("Could not copy: " + source.id.toString(), e);
+        }
+    }
+
+    protected void executeCopyIdsSql(String sql, Serializable... values) throws SQLException {
+        if (logger.isLogEnabled()) {
+            logger.logSQL(sql, Arrays.asList(values));
+        }
+        PreparedStatement ps = connection.prepareStatement(sql);
+        try {
+            int i = 1;
+            for (Serializable value : values) {
+                ps.setObject(i++, value);
+            }
+            int count = ps.executeUpdate();
+            countExecute();
+            logger.logCount(count);
+        } finally {
+            closeStatement(ps);
+        }
+    }
+
+    protected void insertCopyIds(Map<Serializable, Serializable> ids, int level) throws SQLException {
+        String sql = sqlInfo.getCopyIdsInsertSql();
+        PreparedStatement ps = connection.prepareStatement(sql);
+        try {
+            int batch = 0;
+            for (Entry<Serializable, Serializable> en : ids.entrySet()) {
+                if (logger.isLogEnabled()) {
+                    logger.logSQL(sql, Arrays.asList(en.getKey(), en.getValue(), Integer.valueOf(level)));
+                }
+                dialect.setId(ps, 1, en.getKey());
+                dialect.setId(ps, 2, en.getValue());
+                ps.setInt(3, level);
+                ps.addBatch();
+                if (++batch % UPDATE_BATCH_SIZE == 0) {
+                    ps.executeBatch();
+                    countExecute();
+                }
+            }
+            if (batch % UPDATE_BATCH_SIZE != 0) {
+                ps.executeBatch();
+                countExecute();
+            }
+        } finally {
+            closeStatement(ps);
+        }
+    }
+
+    protected List<IdWithTypes> getCopyIdsChildren(int level) throws SQLException {
+        String sql = sqlInfo.getCopyIdsSelectChildrenSql();
+        if (logger.isLogEnabled()) {
+            logger.logSQL(sql, Collections.singletonList(Integer.valueOf(level)));
+        }
+        List<Column> columns = sqlInfo.getSelectChildrenIdsAndTypesWhatColumns();
+        List<IdWithTypes> children = new ArrayList<IdWithTypes>();
+        PreparedStatement ps = connection.prepareStatement(sql);
+        try {
+            ps.setInt(1, level);
+            ResultSet rs = ps.executeQuery();
+            countExecute();
+            while (rs.next()) {
+                children.add(getIdWithTypes(rs, columns));
+            }
+            if (logger.isLogEnabled()) {
+                logger.log("  -> " + children.size() + " rows");
+            }
+            return children;
+        } finally {
+            closeStatement(ps);
+        }
+    }
+
+    protected List<Serializable> getCopyIdsProxies() throws SQLException {
+        return selectCopyIds(sqlInfo.getBulkCopyProxyIdsSql());
+    }
+
+    protected List<Serializable> selectCopyIds(String sql, Serializable... values) throws SQLException {
+        if (logger.isLogEnabled()) {
+            logger.logSQL(sql, Arrays.asList(values));
+        }
+        Column idColumn = sqlInfo.database.getTable(model.HIER_TABLE_NAME).getColumn(model.MAIN_KEY);
+        List<Serializable> ids = new ArrayList<Serializable>();
+        PreparedStatement ps = connection.prepareStatement(sql);
+        try {
+            int i = 1;
+            for (Serializable value : values) {
+                ps.setObject(i++, value);
+            }
+            ResultSet rs = ps.executeQuery();
+            countExecute();
+            while (rs.next()) {
+                ids.add(idColumn.getFromResultSet(rs, 1));
+            }
+            if (logger.isLogEnabled()) {
+                logger.logIds(ids, false, 0);
+            }
+            return ids;
+        } finally {
+            closeStatement(ps);
+        }
+    }
+
     /**
      * Updates a row in the database with given explicit values.
      */
@@ -1218,24 +1414,10 @@ public class JDBCRowMapper extends JDBCConnection implements RowMapper {
             ResultSet rs = ps.executeQuery();
             countExecute();
             while (rs.next()) {
-                Serializable childId = null;
-                String childPrimaryType = null;
-                String[] childMixinTypes = null;
-                int i = 1;
-                for (Column column : columns) {
-                    String key = column.getKey();
-                    Serializable value = column.getFromResultSet(rs, i++);
-                    if (key.equals(model.MAIN_KEY)) {
-                        childId = value;
-                    } else if (key.equals(model.MAIN_PRIMARY_TYPE_KEY)) {
-                        childPrimaryType = (String) value;
-                    } else if (key.equals(model.MAIN_MIXIN_TYPES_KEY)) {
-                        childMixinTypes = (String[]) value;
-                    }
-                }
-                children.add(new IdWithTypes(childId, childPrimaryType, childMixinTypes));
+                IdWithTypes child = getIdWithTypes(rs, columns);
+                children.add(child);
                 if (debugValues != null) {
-                    debugValues.add(childId + "/" + childPrimaryType + "/" + Arrays.toString(childMixinTypes));
+                    debugValues.add(child.id + "/" + child.primaryType + "/" + Arrays.toString(child.mixinTypes));
                 }
             }
             if (debugValues != null) {
@@ -1247,6 +1429,28 @@ public class JDBCRowMapper extends JDBCConnection implements RowMapper {
         }
     }
 
+    /**
+     * Reads an id and types from the current row of a result set.
+     */
+    protected IdWithTypes getIdWithTypes(ResultSet rs, List<Column> columns) throws SQLException {
+        Serializable id = null;
+        String primaryType = null;
+        String[] mixinTypes = null;
+        int i = 1;
+        for (Column column : columns) {
+            String key = column.getKey();
+            Serializable value = column.getFromResultSet(rs, i++);
+            if (key.equals(model.MAIN_KEY)) {
+                id = value;
+            } else if (key.equals(model.MAIN_PRIMARY_TYPE_KEY)) {
+                primaryType = (String) value;
+            } else if (key.equals(model.MAIN_MIXIN_TYPES_KEY)) {
+                mixinTypes = (String[]) value;
+            }
+        }
+        return new IdWithTypes(id, primaryType, mixinTypes);
+    }
+
     /**
      * Copy the rows from tableName with given ids into new ones with new ids given by idMap.
      * <p>
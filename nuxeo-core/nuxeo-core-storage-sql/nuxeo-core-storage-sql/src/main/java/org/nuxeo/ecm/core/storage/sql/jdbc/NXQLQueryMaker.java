@@ -246,6 +246,22 @@ public class NXQLQueryMaker implements QueryMaker {
     @Override
     public Query buildQuery(SQLInfo sqlInfo, Model model, PathResolver pathResolver, String query,
             QueryFilter queryFilter, Object... params) throws StorageException {
+        SQLQuery sqlQuery;
+        try {
+            sqlQuery = SQLQueryParser.parse(query);
+        } catch (QueryParseException e) {
+            throw new StorageException(e);
+        }
+        return buildQuery(sqlInfo, model, pathResolver, sqlQuery, queryFilter);
+    }
+
+    /**
+     * Builds the query from an already parsed NXQL query, which may be modified.
+     *
+     * @since 7.2
+     */
+    public Query buildQuery(SQLInfo sqlInfo, Model model, PathResolver pathResolver, SQLQuery sqlQuery,
+            QueryFilter queryFilter) throws StorageException {
         this.sqlInfo = sqlInfo;
         database = sqlInfo.database;
         dialect = sqlInfo.dialect;
@@ -260,12 +276,6 @@ public class NXQLQueryMaker implements QueryMaker {
 
         // transform the query according to the transformers defined by the
         // security policies
-        SQLQuery sqlQuery;
-        try {
-            sqlQuery = SQLQueryParser.parse(query);
-        } catch (QueryParseException e) {
-            throw new StorageException(e);
-        }
         for (SQLQuery.Transformer transformer : queryFilter.getQueryTransformers()) {
             sqlQuery = transformer.transform(queryFilter.getPrincipal(), sqlQuery);
         }
@@ -0,0 +1,445 @@
+/*
+ * Copyright (c) 2015 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.ecm.core.storage.sql.jdbc;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.nuxeo.ecm.core.api.impl.FacetFilter;
+import org.nuxeo.ecm.core.query.QueryFilter;
+import org.nuxeo.ecm.core.query.QueryParseException;
+import org.nuxeo.ecm.core.query.sql.NXQL;
+import org.nuxeo.ecm.core.query.sql.SQLQueryParser;
+import org.nuxeo.ecm.core.query.sql.model.DateLiteral;
+import org.nuxeo.ecm.core.query.sql.model.Expression;
+import org.nuxeo.ecm.core.query.sql.model.Literal;
+import org.nuxeo.ecm.core.query.sql.model.LiteralList;
+import org.nuxeo.ecm.core.query.sql.model.Operand;
+import org.nuxeo.ecm.core.query.sql.model.Operator;
+import org.nuxeo.ecm.core.query.sql.model.Predicate;
+import org.nuxeo.ecm.core.query.sql.model.Reference;
+import org.nuxeo.ecm.core.query.sql.model.SQLQuery;
+import org.nuxeo.ecm.core.query.sql.model.StringLiteral;
+import org.nuxeo.ecm.core.query.sql.model.WhereClause;
+import org.nuxeo.ecm.core.storage.StorageException;
+import org.nuxeo.ecm.core.storage.sql.Model;
+import org.nuxeo.ecm.core.storage.sql.PathResolver;
+import org.nuxeo.ecm.core.storage.sql.jdbc.QueryMaker.Query;
+import org.nuxeo.ecm.core.storage.sql.jdbc.SQLInfo.SQLInfoSelect;
+import org.nuxeo.runtime.api.Framework;
+import org.nuxeo.runtime.metrics.MetricsService;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.SharedMetricRegistries;
+
+/**
+ * Bounded cache of the SQL plans compiled by the {@link NXQLQueryMaker}.
+ * <p>
+ * Plans are looked up first by the exact NXQL string, which avoids even parsing the query, then by the parsed query
+ * normalized by lifting the string and date literals compared to regular properties into parameters. In both cases the
+ * key also includes the shape of the {@link QueryFilter} (principals, permissions, facet filter, transformers).
+ * <p>
+ * A normalized plan is only kept if each lifted literal can be found exactly once among the parameters of the
+ * compiled SQL, in which case the actual values are bound at these positions. Queries on {@code ecm:path} are never
+ * cached as the path is resolved to an id when compiling.
+ * <p>
+ * There is one cache per {@link SQLInfo}, which is recreated with the model when the repository is reloaded (for
+ * instance after a schema hot reload), so plans never outlive the model they were compiled for.
+ *
+ * @since 7.2
+ */
+public class QueryPlanCache {
+
+    private static final Log log = LogFactory.getLog(QueryPlanCache.class);
+
+    /** Framework property for the maximum number of cached plans, {@code 0} to disable the cache. */
+    public static final String SIZE_PROP = "org.nuxeo.vcs.query.planCache.size";
+
+    public static final String SIZE_DEFAULT = "1000";
+
+    protected static final String STRING_SENTINEL = "\u0001NxqlParam";
+
+    // distinct ranges for DATE and TIMESTAMP, as DateLiteral.equals ignores onlyDate
+    protected static final DateTime DATE_SENTINEL_BASE = new DateTime(1, 1, 1, 0, 0, 0, 0, DateTimeZone.UTC);
+
+    protected static final DateTime TIMESTAMP_SENTINEL_BASE = new DateTime(2, 1, 1, 0, 0, 0, 0, DateTimeZone.UTC);
+
+    protected static final List<Operator> LIFTED_OPERATORS = Arrays.asList(Operator.EQ, Operator.NOTEQ, Operator.LT,
+            Operator.GT, Operator.LTEQ, Operator.GTEQ, Operator.IN, Operator.NOTIN, Operator.LIKE, Operator.NOTLIKE,
+            Operator.BETWEEN, Operator.NOTBETWEEN);
+
+    /** Marker for normalized queries whose lifted literals cannot be found back in the compiled parameters. */
+    protected static final Plan UNCACHEABLE = new Plan(null, null, null);
+
+    protected final int maxSize;
+
+    protected final Map<PlanKey, Plan> plans;
+
+    protected final Counter hitCount;
+
+    protected final Counter missCount;
+
+    public QueryPlanCache(String repositoryName, final int maxSize) {
+        this.maxSize = maxSize;
+        plans = new LinkedHashMap<PlanKey, Plan>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<PlanKey, Plan> eldest) {
+                return size() > maxSize;
+            }
+        };
+        MetricRegistry registry = SharedMetricRegistries.getOrCreate(MetricsService.class.getName());
+        hitCount = registry.counter(MetricRegistry.name("nuxeo", "repositories", repositoryName, "queryplans", "hits"));
+        missCount = registry.counter(MetricRegistry.name("nuxeo", "repositories", repositoryName, "queryplans",
+                "misses"));
+    }
+
+    /**
+     * Gets the maximum number of cached plans configured by the {@link #SIZE_PROP} property, or the default if the
+     * property is not a valid number.
+     */
+    public static int getConfiguredSize() {
+        String value = Framework.getProperty(SIZE_PROP, SIZE_DEFAULT);
+        try {
+            return Math.max(0, Integer.parseInt(value.trim()));
+        } catch (NumberFormatException e) {
+            log.warn("Invalid value for " + SIZE_PROP + ": " + value + ", using default: " + SIZE_DEFAULT);
+            return Integer.parseInt(SIZE_DEFAULT);
+        }
+    }
+
+    public boolean isEnabled() {
+        return maxSize > 0;
+    }
+
+    public int getSize() {
+        synchronized (plans) {
+            return plans.size();
+        }
+    }
+
+    public void clear() {
+        synchronized (plans) {
+            plans.clear();
+        }
+    }
+
+    protected Plan get(PlanKey key) {
+        synchronized (plans) {
+            return plans.get(key);
+        }
+    }
+
+    protected void put(PlanKey key, Plan plan) {
+        synchronized (plans) {
+            plans.put(key, plan);
+        }
+    }
+
+    /**
+     * Builds the query using a cached plan if possible.
+     *
+     * @return the query, or {@code null} if the query cannot match anything
+     */
+    public Query buildQuery(SQLInfo sqlInfo, Model model, PathResolver pathResolver, String query,
+            QueryFilter queryFilter) throws StorageException {
+        List<Object> shape = getFilterShape(queryFilter);
+        PlanKey exactKey = new PlanKey(query, shape);
+        Plan plan = get(exactKey);
+        if (plan != null) {
+            hitCount.inc();
+            return plan.bind(Collections.<Serializable> emptyList());
+        }
+
+        Normalizer normalizer = new Normalizer();
+        SQLQuery normalized = normalizer.normalize(parse(query));
+        if (normalized == null) {
+            // not cacheable
+            missCount.inc();
+            return new NXQLQueryMaker().buildQuery(sqlInfo, model, pathResolver, parse(query), queryFilter);
+        }
+        PlanKey key = new PlanKey(normalized, shape);
+        plan = get(key);
+        if (plan != null && plan != UNCACHEABLE) {
+            hitCount.inc();
+            Query bound = plan.bind(normalizer.values);
+            put(exactKey, new Plan(bound.selectInfo, bound.selectParams, new int[0]));
+            return bound;
+        }
+        missCount.inc();
+
+        if (plan == null) {
+            // compile the normalized query, on a fresh copy as the query maker changes it
+            Normalizer templateNormalizer = new Normalizer();
+            SQLQuery template = templateNormalizer.normalize(parse(query));
+            Query q = new NXQLQueryMaker().buildQuery(sqlInfo, model, pathResolver, template, queryFilter);
+            int[] positions = q == null ? null : findSentinels(q, templateNormalizer.sentinels);
+            if (positions != null) {
+                plan = new Plan(q.selectInfo, q.selectParams, positions);
+                put(key, plan);
+                Query bound = plan.bind(normalizer.values);
+                put(exactKey, new Plan(bound.selectInfo, bound.selectParams, new int[0]));
+                return bound;
+            }
+            put(key, UNCACHEABLE);
+        }
+        // lifted literals cannot be bound, cache the exact query only
+        Query q = new NXQLQueryMaker().buildQuery(sqlInfo, model, pathResolver, parse(query), queryFilter);
+        if (q != null) {
+            put(exactKey, new Plan(q.selectInfo, q.selectParams, new int[0]));
+        }
+        return q;
+    }
+
+    protected static SQLQuery parse(String query) throws StorageException {
+        try {
+            return SQLQueryParser.parse(query);
+        } catch (QueryParseException e) {
+            throw new StorageException(e);
+        }
+    }
+
+    protected static List<Object> getFilterShape(QueryFilter queryFilter) {
+        List<Object> shape = new ArrayList<Object>(6);
+        shape.add(queryFilter.getPrincipal() == null ? null : queryFilter.getPrincipal().getName());
+        String[] principals = queryFilter.getPrincipals();
+        shape.add(principals == null ? null : Arrays.asList(principals));
+        String[] permissions = queryFilter.getPermissions();
+        shape.add(permissions == null ? null : Arrays.asList(permissions));
+        FacetFilter facetFilter = queryFilter.getFacetFilter();
+        shape.add(facetFilter == null ? null : facetFilter.required);
+        shape.add(facetFilter == null ? null : facetFilter.excluded);
+        shape.add(queryFilter.getQueryTransformers() == null ? null : new ArrayList<Object>(
+                queryFilter.getQueryTransformers()));
+        return shape;
+    }
+
+    /**
+     * Finds the position of each sentinel in the compiled parameters, or returns {@code null} if some are missing,
+     * ambiguous or leaked into the SQL.
+     */
+    protected static int[] findSentinels(Query q, List<Serializable> sentinels) {
+        int[] positions = new int[sentinels.size()];
+        for (int i = 0; i < sentinels.size(); i++) {
+            Serializable sentinel = sentinels.get(i);
+            if (sentinel instanceof String && q.selectInfo.sql.contains((String) sentinel)) {
+                return null;
+            }
+            int found = -1;
+            int pos = 0;
+            for (Serializable param : q.selectParams) {
+                if (sentinel.equals(param)) {
+                    if (found != -1) {
+                        return null;
+                    }
+                    found = pos;
+                }
+                pos++;
+            }
+            if (found == -1) {
+                return null;
+            }
+            positions[i] = found;
+        }
+        return positions;
+    }
+
+    /**
+     * Replaces the liftable literals of a query with sentinels, collecting the actual values and the sentinel values
+     * as the query maker will pass them as parameters.
+     */
+    protected static class Normalizer {
+
+        protected final List<Serializable> values = new ArrayList<Serializable>();
+
+        protected final List<Serializable> sentinels = new ArrayList<Serializable>();
+
+        protected boolean cacheable = true;
+
+        /**
+         * Returns the normalized query, or {@code null} if it must not be cached.
+         */
+        public SQLQuery normalize(SQLQuery query) {
+            if (query.where == null || query.where.predicate == null) {
+                return query;
+            }
+            Operand predicate = normalize(query.where.predicate);
+            if (!cacheable) {
+                return null;
+            }
+            return new SQLQuery(query.select, query.from, new WhereClause((Predicate) predicate), query.groupBy,
+                    query.having, query.orderBy, query.limit, query.offset);
+        }
+
+        protected Operand normalize(Operand operand) {
+            if (operand instanceof Reference) {
+                if (NXQL.ECM_PATH.equals(((Reference) operand).name)) {
+                    // path resolved to an id at compile time
+                    cacheable = false;
+                }
+                return operand;
+            }
+            if (!(operand instanceof Expression)) {
+                return operand;
+            }
+            Expression expr = (Expression) operand;
+            Operand lvalue = normalize(expr.lvalue);
+            Operand rvalue;
+            if (isLiftable(expr)) {
+                rvalue = lift(expr.rvalue);
+            } else {
+                rvalue = normalize(expr.rvalue);
+            }
+            if (lvalue == expr.lvalue && rvalue == expr.rvalue) {
+                return expr;
+            }
+            if (expr instanceof Predicate) {
+                return new Predicate(lvalue, expr.operator, rvalue);
+            } else {
+                return new Expression(lvalue, expr.operator, rvalue);
+            }
+        }
+
+        protected boolean isLiftable(Expression expr) {
+            if (!(expr.lvalue instanceof Reference) || !LIFTED_OPERATORS.contains(expr.operator)) {
+                return false;
+            }
+            Reference ref = (Reference) expr.lvalue;
+            return ref.cast == null && !ref.name.startsWith(NXQL.ECM_PREFIX);
+        }
+
+        protected Operand lift(Operand rvalue) {
+            if (rvalue instanceof LiteralList) {
+                LiteralList list = (LiteralList) rvalue;
+                LiteralList lifted = new LiteralList();
+                boolean changed = false;
+                for (Literal literal : list) {
+                    Literal l = lift(literal);
+                    changed |= l != literal;
+                    lifted.add(l);
+                }
+                return changed ? lifted : list;
+            } else if (rvalue instanceof Literal) {
+                return lift((Literal) rvalue);
+            }
+            return normalize(rvalue);
+        }
+
+        protected Literal lift(Literal literal) {
+            int n = values.size();
+            if (literal instanceof StringLiteral) {
+                String value = ((StringLiteral) literal).value;
+                if (value.isEmpty()) {
+                    // empty strings may get special treatment
+                    return literal;
+                }
+                String sentinel = STRING_SENTINEL + n + '\u0001';
+                values.add(value);
+                sentinels.add(sentinel);
+                return new StringLiteral(sentinel);
+            } else if (literal instanceof DateLiteral) {
+                DateLiteral date = (DateLiteral) literal;
+                DateLiteral sentinel;
+                if (date.onlyDate) {
+                    String s = DateLiteral.dateFormatter.print(DATE_SENTINEL_BASE.plusDays(n));
+                    sentinel = new DateLiteral(s, true);
+                    values.add(date.toSqlDate());
+                    sentinels.add(sentinel.toSqlDate());
+                } else {
+                    String s = DateLiteral.dateTimeFormatter.print(TIMESTAMP_SENTINEL_BASE.plusMillis(n));
+                    sentinel = new DateLiteral(s, false);
+                    values.add(date.toCalendar());
+                    sentinels.add(sentinel.toCalendar());
+                }
+                return sentinel;
+            }
+            return literal;
+        }
+    }
+
+    /**
+     * Cache key: a query (string or normalized tree) and a filter shape.
+     */
+    protected static class PlanKey {
+
+        protected final Object query;
+
+        protected final List<Object> shape;
+
+        protected final int hash;
+
+        public PlanKey(Object query, List<Object> shape) {
+            this.query = query;
+            this.shape = shape;
+            hash = 31 * query.hashCode() + shape.hashCode();
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof PlanKey)) {
+                return false;
+            }
+            PlanKey other = (PlanKey) obj;
+            return hash == other.hash && query.getClass() == other.query.getClass() && query.equals(other.query)
+                    && shape.equals(other.shape);
+        }
+    }
+
+    /**
+     * A compiled plan, with the positions of the parameters to bind.
+     */
+    protected static class Plan {
+
+        protected final SQLInfoSelect selectInfo;
+
+        protected final List<Serializable> params;
+
+        protected final int[] positions;
+
+        public Plan(SQLInfoSelect selectInfo, List<Serializable> params, int[] positions) {
+            this.selectInfo = selectInfo;
+            this.params = params == null ? null : new ArrayList<Serializable>(params);
+            this.positions = positions;
+        }
+
+        public Query bind(List<Serializable> values) {
+            Query q = new Query();
+            q.selectInfo = selectInfo;
+            List<Serializable> selectParams = new ArrayList<Serializable>(params);
+            for (int i = 0; i < positions.length; i++) {
+                selectParams.set(positions[i], values.get(i));
+            }
+            q.selectParams = selectParams;
+            return q;
+        }
+    }
+
+}
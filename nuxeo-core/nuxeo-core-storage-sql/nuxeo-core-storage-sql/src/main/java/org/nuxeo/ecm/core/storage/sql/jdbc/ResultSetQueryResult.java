@@ -26,6 +26,10 @@ import org.nuxeo.ecm.core.storage.sql.Session.PathResolver;
 
 /**
  * Iterable query result implemented as a cursor on a SQL {@link ResultSet}.
+ * <p>
+ * If the query filter has a limit, the cursor is forward-only and only fetches the requested rows, which lets the
+ * database and driver stream them (see {@link JDBCMapper#QUERY_FETCH_SIZE_PROP}). In that case the size is not
+ * available and it is only possible to skip forward.
  */
 public class ResultSetQueryResult implements IterableQueryResult, Iterator<Map<String, Serializable>> {
 
@@ -43,6 +47,9 @@ public class ResultSetQueryResult implements IterableQueryResult, Iterator<Map<S
 
     private long size = -1;
 
+    /** Forward-only cursor on a bounded batch of rows. */
+    private boolean forwardOnly;
+
     private final JDBCLogger logger;
 
     public ResultSetQueryResult(QueryMaker queryMaker, String query, QueryFilter queryFilter,
@@ -58,11 +65,34 @@ public class ResultSetQueryResult implements IterableQueryResult, Iterator<Map<S
         } else {
             eof = false;
         }
+        String sql = q.selectInfo.sql;
+        long limit = queryFilter.getLimit();
+        long offset = queryFilter.getOffset();
+        boolean paging = false;
+        if (limit > 0) {
+            forwardOnly = true;
+            if (mapper.dialect.supportsPaging()) {
+                sql = mapper.dialect.addPagingClause(sql, limit, offset);
+                paging = true;
+            }
+        }
         if (logger.isLogEnabled()) {
-            logger.logSQL(q.selectInfo.sql, q.selectParams);
+            logger.logSQL(sql, q.selectParams);
+        }
+        int resultSetType = forwardOnly ? ResultSet.TYPE_FORWARD_ONLY : ResultSet.TYPE_SCROLL_INSENSITIVE;
+        ps = mapper.connection.prepareStatement(sql, resultSetType, ResultSet.CONCUR_READ_ONLY);
+        int fetchSize = mapper.getQueryFetchSize();
+        if (forwardOnly) {
+            if (!paging) {
+                ps.setMaxRows((int) Math.min(Integer.MAX_VALUE, limit + offset));
+            }
+            if (fetchSize == 0 || fetchSize > limit) {
+                fetchSize = (int) Math.min(Integer.MAX_VALUE, limit);
+            }
+        }
+        if (fetchSize > 0) {
+            ps.setFetchSize(fetchSize);
         }
-        ps = mapper.connection.prepareStatement(q.selectInfo.sql, ResultSet.TYPE_SCROLL_INSENSITIVE,
-                ResultSet.CONCUR_READ_ONLY);
         int i = 1;
         for (Serializable object : q.selectParams) {
             mapper.setToPreparedStatement(ps, i++, object);
@@ -70,6 +100,11 @@ public class ResultSetQueryResult implements IterableQueryResult, Iterator<Map<S
         rs = ps.executeQuery();
         mapper.countExecute();
         // rs.setFetchDirection(ResultSet.FETCH_UNKNOWN); fails in H2
+        if (forwardOnly && !paging) {
+            for (long n = 0; n < offset && rs.next(); n++) {
+                // skip to offset
+            }
+        }
     }
 
     protected static void closePreparedStatement(PreparedStatement ps) throws SQLException {
@@ -128,6 +163,9 @@ public class ResultSetQueryResult implements IterableQueryResult, Iterator<Map<S
         if (size != -1) {
             return size;
         }
+        if (forwardOnly) {
+            return -1;
+        }
         try {
             // save cursor pos
             int old = rs.isBeforeFirst() ? -1 : rs.isAfterLast() ? -2 : rs.getRow();
@@ -157,6 +195,15 @@ public class ResultSetQueryResult implements IterableQueryResult, Iterator<Map<S
     @Override
     public void skipTo(long pos) {
         checkLife();
+        if (forwardOnly) {
+            if (pos < this.pos) {
+                throw new IllegalStateException("Cannot skip backward in forward-only cursor");
+            }
+            while (this.pos < pos && hasNext()) {
+                next();
+            }
+            return;
+        }
         try {
             boolean available = rs.absolute((int) pos + 1);
             if (available) {
@@ -107,6 +107,25 @@ public class SQLInfo {
 
     protected List<Column> getBinariesColumns;
 
+    /**
+     * Same as {@link #getBinariesSql} but returning digests after a given one, in order, for batched marking.
+     *
+     * @since 7.2
+     */
+    protected List<String> getBinariesBatchSql;
+
+    /**
+     * Identifiers of the binary columns, used as GC mark sources.
+     *
+     * @since 7.2
+     */
+    protected List<String> getBinariesSources;
+
+    /**
+     * @since 7.2
+     */
+    protected final QueryPlanCache queryPlanCache;
+
     /**
      * Generates and holds the needed SQL statements given a {@link Model} and a {@link Dialect}.
      *
@@ -143,6 +162,10 @@ public class SQLInfo {
 
         getBinariesSql = new ArrayList<String>(1);
         getBinariesColumns = new ArrayList<Column>(1);
+        getBinariesBatchSql = new ArrayList<String>(1);
+        getBinariesSources = new ArrayList<String>(1);
+
+        queryPlanCache = new QueryPlanCache(repositoryDescriptor.name, QueryPlanCache.getConfiguredSize());
 
         initSQL();
         initSelections();
@@ -154,6 +177,15 @@ public class SQLInfo {
         }
     }
 
+    /**
+     * Gets the cache of compiled NXQL query plans for this model.
+     *
+     * @since 7.2
+     */
+    public QueryPlanCache getQueryPlanCache() {
+        return queryPlanCache;
+    }
+
     public Database getDatabase() {
         return database;
     }
@@ -505,6 +537,142 @@ public class SQLInfo {
         return copyIdColumnMap.get(tableName);
     }
 
+    // ----- bulk copy -----
+
+    /**
+     * Temporary table mapping source ids to copied ids during a bulk copy, with columns {@code src}, {@code dst} and
+     * {@code lvl} (depth relative to the copy root).
+     *
+     * @since 7.2
+     */
+    public static final String COPY_IDS_TABLE = "nxp_copy_ids";
+
+    /**
+     * Gets the SQL statements creating (if needed) and emptying the bulk copy id map table.
+     *
+     * @since 7.2
+     */
+    public List<String> getCopyIdsPrepareSqls() {
+        return dialect.getCopyIdsPrepareSqls(COPY_IDS_TABLE);
+    }
+
+    /**
+     * Gets the SQL to add a mapping to the bulk copy id map. Free parameters are source id, copied id and level.
+     *
+     * @since 7.2
+     */
+    public String getCopyIdsInsertSql() {
+        return "INSERT INTO " + COPY_IDS_TABLE + " (src, dst, lvl) VALUES (?, ?, ?)";
+    }
+
+    /**
+     * Gets the SQL to select the ids and types of the children of all the mapped nodes of a given level. The free
+     * parameter is the level, the selected columns are {@link #getSelectChildrenIdsAndTypesWhatColumns}.
+     *
+     * @since 7.2
+     */
+    public String getCopyIdsSelectChildrenSql() {
+        Table table = database.getTable(model.HIER_TABLE_NAME);
+        List<String> whats = new ArrayList<String>(3);
+        for (Column column : selectChildrenIdsAndTypesWhatColumns) {
+            whats.add(column.getFullQuotedName());
+        }
+        Select select = new Select(null);
+        select.setWhat(StringUtils.join(whats, ", "));
+        select.setFrom(table.getQuotedName() + " JOIN " + COPY_IDS_TABLE + " m ON "
+                + table.getColumn(model.HIER_PARENT_KEY).getFullQuotedName() + " = m.src");
+        select.setWhere("m.lvl = ?" + getSoftDeleteClause(model.HIER_TABLE_NAME));
+        return select.getStatement();
+    }
+
+    /**
+     * Gets the SQL to copy in one statement the hierarchy rows of all the mapped nodes of a given level, whose parents
+     * are mapped too. The free parameter is the level.
+     *
+     * @since 7.2
+     */
+    public String getBulkCopyHierSql(boolean resetVersion) {
+        Table table = database.getTable(model.HIER_TABLE_NAME);
+        Collection<Column> columns = table.getColumns();
+        List<String> selectWhats = new ArrayList<String>(columns.size());
+        Insert insert = new Insert(table);
+        for (Column column : columns) {
+            if (column.isIdentity()) {
+                // identity column is never copied
+                continue;
+            }
+            insert.addColumn(column);
+            String key = column.getKey();
+            if (key.equals(model.MAIN_KEY)) {
+                selectWhats.add("m.dst");
+            } else if (key.equals(model.HIER_PARENT_KEY)) {
+                selectWhats.add("p.dst");
+            } else if (key.equals(model.MAIN_BASE_VERSION_KEY) //
+                    || key.equals(model.MAIN_CHECKED_IN_KEY) //
+                    || (key.equals(model.MAIN_MINOR_VERSION_KEY) && resetVersion) //
+                    || (key.equals(model.MAIN_MAJOR_VERSION_KEY) && resetVersion)) {
+                selectWhats.add("NULL");
+            } else {
+                selectWhats.add(column.getFullQuotedName());
+            }
+        }
+        Select select = new Select(null);
+        select.setWhat(StringUtils.join(selectWhats, ", "));
+        select.setFrom(table.getQuotedName() //
+                + " JOIN " + COPY_IDS_TABLE + " m ON " + table.getColumn(model.MAIN_KEY).getFullQuotedName()
+                + " = m.src" //
+                + " JOIN " + COPY_IDS_TABLE + " p ON " + table.getColumn(model.HIER_PARENT_KEY).getFullQuotedName()
+                + " = p.src");
+        select.setWhere("m.lvl = ?");
+        insert.setValues(select.getStatement());
+        return insert.getStatement();
+    }
+
+    /**
+     * Gets the SQL to copy in one statement the rows of a fragment table for all the mapped nodes.
+     *
+     * @since 7.2
+     */
+    public String getBulkCopySql(String tableName) {
+        Table table = database.getTable(tableName);
+        Collection<Column> columns = table.getColumns();
+        List<String> selectWhats = new ArrayList<String>(columns.size());
+        Column idColumn = table.getColumn(model.MAIN_KEY);
+        Insert insert = new Insert(table);
+        for (Column column : columns) {
+            if (column.isIdentity()) {
+                // identity column is never copied
+                continue;
+            }
+            insert.addColumn(column);
+            if (column == idColumn) {
+                selectWhats.add("m.dst");
+            } else {
+                selectWhats.add(column.getFullQuotedName());
+            }
+        }
+        Select select = new Select(null);
+        select.setWhat(StringUtils.join(selectWhats, ", "));
+        select.setFrom(table.getQuotedName() + " JOIN " + COPY_IDS_TABLE + " m ON " + idColumn.getFullQuotedName()
+                + " = m.src");
+        insert.setValues(select.getStatement());
+        return insert.getStatement();
+    }
+
+    /**
+     * Gets the SQL to select the copied ids of all the mapped nodes that are proxies.
+     *
+     * @since 7.2
+     */
+    public String getBulkCopyProxyIdsSql() {
+        Table table = database.getTable(model.PROXY_TABLE_NAME);
+        Select select = new Select(null);
+        select.setWhat("m.dst");
+        select.setFrom(COPY_IDS_TABLE + " m JOIN " + table.getQuotedName() + " ON "
+                + table.getColumn(model.MAIN_KEY).getFullQuotedName() + " = m.src");
+        return select.getStatement();
+    }
+
     // ----- prepare everything -----
 
     /**
@@ -592,6 +760,10 @@ public class SQLInfo {
                 // in the result column we want the digest, not the binary
                 Column resCol = new Column(table, null, ColumnType.STRING, null);
                 getBinariesColumns.add(resCol);
+                select.setWhere(col.getQuotedName() + " > ?");
+                select.setOrderBy(col.getQuotedName());
+                getBinariesBatchSql.add(select.getStatement());
+                getBinariesSources.add(tableName + '.' + key);
             }
         }
     }
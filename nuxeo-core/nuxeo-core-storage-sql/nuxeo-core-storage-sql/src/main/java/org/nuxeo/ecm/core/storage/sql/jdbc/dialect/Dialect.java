@@ -1025,6 +1025,27 @@ public abstract class Dialect {
         return null;
     }
 
+    /**
+     * Does the dialect support set-based bulk copy of a tree, using a temporary table mapping source ids to copied
+     * ids.
+     *
+     * @since 7.2
+     */
+    public boolean supportsBulkCopy() {
+        return false;
+    }
+
+    /**
+     * Gets the SQL statements creating (if needed) and emptying the temporary table used to map source ids to copied
+     * ids during a bulk copy. The table has columns {@code src} (primary key), {@code dst} and {@code lvl}.
+     *
+     * @param tableName the temporary table name
+     * @since 7.2
+     */
+    public List<String> getCopyIdsPrepareSqls(String tableName) {
+        throw new UnsupportedOperationException("Bulk copy not supported");
+    }
+
     /**
      * Does the dialect support ILIKE operator
      */
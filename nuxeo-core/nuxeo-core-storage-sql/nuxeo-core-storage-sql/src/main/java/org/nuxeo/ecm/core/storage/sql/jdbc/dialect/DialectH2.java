@@ -20,6 +20,7 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Types;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedList;
@@ -270,6 +271,21 @@ public class DialectH2 extends Dialect {
         return String.format("NX_ACCESS_ALLOWED(%s, ?, ?)", idColumnName);
     }
 
+    @Override
+    public boolean supportsBulkCopy() {
+        return true;
+    }
+
+    @Override
+    public List<String> getCopyIdsPrepareSqls(String tableName) {
+        String idType = getJDBCTypeAndString(ColumnType.NODEVAL).string;
+        // TRANSACTIONAL so that the DDL doesn't commit the transaction of the copy
+        return Arrays.asList( //
+                String.format("CREATE LOCAL TEMPORARY TABLE IF NOT EXISTS %s (src %s PRIMARY KEY, dst %s, lvl INTEGER)"
+                        + " TRANSACTIONAL", tableName, idType, idType), //
+                "DELETE FROM " + tableName);
+    }
+
     @Override
     public String getInTreeSql(String idColumnName) {
         return String.format("NX_IN_TREE(%s, ?)", idColumnName);
@@ -25,6 +25,7 @@ import java.sql.Statement;
 import java.sql.Timestamp;
 import java.sql.Types;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Collections;
 import java.util.HashMap;
@@ -736,6 +737,20 @@ public class DialectPostgreSQL extends Dialect {
         return true;
     }
 
+    @Override
+    public boolean supportsBulkCopy() {
+        return true;
+    }
+
+    @Override
+    public List<String> getCopyIdsPrepareSqls(String tableName) {
+        String idType = getJDBCTypeAndString(ColumnType.NODEVAL).string;
+        return Arrays.asList( //
+                String.format("CREATE TEMPORARY TABLE IF NOT EXISTS %s (src %s PRIMARY KEY, dst %s, lvl integer)",
+                        tableName, idType, idType), //
+                "TRUNCATE " + tableName);
+    }
+
     @Override
     public boolean supportsIlike() {
         return true;
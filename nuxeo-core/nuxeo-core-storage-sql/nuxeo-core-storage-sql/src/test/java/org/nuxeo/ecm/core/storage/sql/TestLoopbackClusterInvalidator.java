@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) 2015 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.ecm.core.storage.sql;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class TestLoopbackClusterInvalidator {
+
+    protected static class QueueReceiver implements ClusterInvalidator.Receiver {
+
+        protected final BlockingQueue<Invalidations> received = new LinkedBlockingQueue<>();
+
+        @Override
+        public void receiveInvalidations(Invalidations invalidations, long sendTime) {
+            received.add(invalidations);
+        }
+    }
+
+    @Test
+    public void testSendToOtherNodes() throws Exception {
+        QueueReceiver r1 = new QueueReceiver();
+        QueueReceiver r2 = new QueueReceiver();
+        ClusterInvalidator i1 = new LoopbackClusterInvalidator();
+        ClusterInvalidator i2 = new LoopbackClusterInvalidator();
+        i1.initialize("node1", "testrepo", r1);
+        i2.initialize("node2", "testrepo", r2);
+        try {
+            Invalidations invalidations = new Invalidations();
+            invalidations.addModified(new RowId("hierarchy", "id1"));
+            i1.sendInvalidations(invalidations);
+
+            Invalidations received = r2.received.poll(10, TimeUnit.SECONDS);
+            assertEquals(Collections.singleton(new RowId("hierarchy", "id1")), received.modified);
+            // not sent back to the sender
+            assertTrue(r1.received.isEmpty());
+        } finally {
+            i1.close();
+            i2.close();
+        }
+    }
+
+    @Test
+    public void testNodeIdChange() throws Exception {
+        QueueReceiver r1 = new QueueReceiver();
+        QueueReceiver r2 = new QueueReceiver();
+        ClusterInvalidator i1 = new LoopbackClusterInvalidator();
+        ClusterInvalidator i2 = new LoopbackClusterInvalidator();
+        i1.initialize("node1", "testrepo", r1);
+        i2.initialize("node2", "testrepo", r2);
+        try {
+            // node recreated after a connection reset
+            i1.setNodeId("node3");
+            Invalidations invalidations = new Invalidations();
+            invalidations.addModified(new RowId("hierarchy", "id1"));
+            i2.sendInvalidations(invalidations);
+            assertNotNull(r1.received.poll(10, TimeUnit.SECONDS));
+            // same id as another node, invalidations sent under the new id
+            i1.setNodeId("node2");
+            i1.sendInvalidations(invalidations);
+            assertNull(r2.received.poll(1, TimeUnit.SECONDS));
+        } finally {
+            i1.close();
+            i2.close();
+        }
+    }
+
+}
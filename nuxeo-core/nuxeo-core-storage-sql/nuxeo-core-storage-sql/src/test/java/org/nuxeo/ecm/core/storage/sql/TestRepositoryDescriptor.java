@@ -51,6 +51,7 @@ public class TestRepositoryDescriptor {
         assertEquals("foo", desc.name);
         assertTrue(desc.getClusteringEnabled());
         assertEquals(1234, desc.getClusteringDelay());
+        assertEquals(LoopbackClusterInvalidator.class, desc.clusterInvalidatorClass);
     }
 
     @Test
@@ -0,0 +1,160 @@
+/*
+ * Copyright (c) 2015 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.ecm.core.storage.sql;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+public class TestTinyLfuRowCache {
+
+    protected static Row row(String id, String value) {
+        Row row = new Row("hierarchy", id);
+        row.put("name", value);
+        return row;
+    }
+
+    @Test
+    public void testGetPut() {
+        TinyLfuRowCache cache = new TinyLfuRowCache("test", 1024 * 1024, 1);
+        Row row = row("id1", "foo");
+        assertNull(cache.get(new RowId(row)));
+        cache.put(new RowId(row), row);
+        assertSame(row, cache.get(new RowId("hierarchy", "id1")));
+        assertEquals(1, cache.getSize());
+        assertEquals(TinyLfuRowCache.weigh(new RowId(row), row), cache.getBytes());
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+
+        // replace
+        Row row2 = row("id1", "barbarbar");
+        cache.put(new RowId(row2), row2);
+        assertSame(row2, cache.get(new RowId(row2)));
+        assertEquals(TinyLfuRowCache.weigh(new RowId(row2), row2), cache.getBytes());
+
+        cache.remove(new RowId(row2));
+        assertNull(cache.get(new RowId(row2)));
+        assertEquals(0, cache.getSize());
+        assertEquals(0, cache.getBytes());
+    }
+
+    @Test
+    public void testBoundedByBytes() {
+        long maxBytes = 100 * 1024;
+        TinyLfuRowCache cache = new TinyLfuRowCache("test", maxBytes, 1);
+        for (int i = 0; i < 10000; i++) {
+            Row row = row("id" + i, "value" + i);
+            cache.put(new RowId(row), row);
+            assertTrue(cache.getBytes() <= maxBytes);
+        }
+        assertTrue(cache.getEvictionCount() > 0);
+        assertEquals(10000, cache.getSize() + cache.getEvictionCount());
+    }
+
+    @Test
+    public void testFrequentRowsSurviveScan() {
+        TinyLfuRowCache cache = new TinyLfuRowCache("test", 100 * 1024, 1);
+        // a few frequently read rows
+        for (int n = 0; n < 10; n++) {
+            for (int i = 0; i < 50; i++) {
+                RowId rowId = new RowId("hierarchy", "hot" + i);
+                if (cache.get(rowId) == null) {
+                    cache.put(rowId, row("hot" + i, "hot"));
+                }
+            }
+        }
+        // a big scan of rows read once
+        for (int i = 0; i < 10000; i++) {
+            Row row = row("cold" + i, "cold");
+            cache.put(new RowId(row), row);
+        }
+        for (int i = 0; i < 50; i++) {
+            assertNotNull("hot" + i, cache.get(new RowId("hierarchy", (Serializable) ("hot" + i))));
+        }
+        assertTrue(cache.getRejectionCount() > 0);
+    }
+
+    @Test
+    public void testSegments() {
+        // too small to be split
+        assertEquals(1, new TinyLfuRowCache("test", 1024 * 1024, 1, 16).segments.length);
+        assertEquals(4, new TinyLfuRowCache("test", 4 * 1024 * 1024, 1, 16).segments.length);
+        // rounded down to a power of two
+        assertEquals(8, new TinyLfuRowCache("test", 64 * 1024 * 1024, 1, 10).segments.length);
+    }
+
+    @Test
+    public void testConcurrentAccess() throws Exception {
+        final long maxBytes = 8 * 1024 * 1024;
+        final TinyLfuRowCache cache = new TinyLfuRowCache("test", maxBytes, 1, 8);
+        assertEquals(8, cache.segments.length);
+        final int nThreads = 4;
+        final int n = 20000;
+        final CyclicBarrier barrier = new CyclicBarrier(nThreads);
+        ExecutorService executor = Executors.newFixedThreadPool(nThreads);
+        List<Future<Void>> futures = new ArrayList<>();
+        for (int t = 0; t < nThreads; t++) {
+            futures.add(executor.submit(new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    barrier.await();
+                    for (int i = 0; i < n; i++) {
+                        // overlapping keys between threads
+                        RowId rowId = new RowId("hierarchy", "id" + (i % 5000));
+                        Row row = cache.get(rowId);
+                        if (row == null) {
+                            cache.put(rowId, row("id" + (i % 5000), "value"));
+                        } else {
+                            assertEquals(rowId.id, row.id);
+                        }
+                    }
+                    return null;
+                }
+            }));
+        }
+        for (Future<Void> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+        assertTrue(cache.getBytes() <= maxBytes);
+        assertEquals(nThreads * n, cache.getHitCount() + cache.getMissCount());
+        // everything fits, all the rows are there
+        assertEquals(5000, cache.getSize());
+    }
+
+    @Test
+    public void testTooBig() {
+        TinyLfuRowCache cache = new TinyLfuRowCache("test", 1024, 1);
+        StringBuilder buf = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            buf.append('x');
+        }
+        Row row = row("id1", buf.toString());
+        cache.put(new RowId(row), row);
+        assertNull(cache.get(new RowId(row)));
+        assertEquals(0, cache.getBytes());
+    }
+
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) 2015 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.ecm.core.storage.sql.jdbc;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Test;
+import org.nuxeo.ecm.core.query.sql.SQLQueryParser;
+import org.nuxeo.ecm.core.query.sql.model.SQLQuery;
+import org.nuxeo.ecm.core.storage.sql.jdbc.QueryMaker.Query;
+import org.nuxeo.ecm.core.storage.sql.jdbc.QueryPlanCache.Normalizer;
+import org.nuxeo.ecm.core.storage.sql.jdbc.QueryPlanCache.Plan;
+import org.nuxeo.ecm.core.storage.sql.jdbc.SQLInfo.SQLInfoSelect;
+import org.nuxeo.ecm.core.storage.sql.jdbc.db.Column;
+
+public class TestQueryPlanCache {
+
+    protected static SQLQuery normalize(Normalizer normalizer, String query) {
+        return normalizer.normalize(SQLQueryParser.parse(query));
+    }
+
+    @Test
+    public void testNormalize() {
+        Normalizer n1 = new Normalizer();
+        SQLQuery q1 = normalize(n1, "SELECT * FROM Document WHERE dc:title = 'foo' AND dc:subjects IN ('a', 'b')"
+                + " AND ecm:primaryType = 'File'");
+        Normalizer n2 = new Normalizer();
+        SQLQuery q2 = normalize(n2, "SELECT * FROM Document WHERE dc:title = 'bar' AND dc:subjects IN ('c', 'd')"
+                + " AND ecm:primaryType = 'File'");
+        assertEquals(q1, q2);
+        assertEquals(q1.hashCode(), q2.hashCode());
+        assertEquals(Arrays.asList("foo", "a", "b"), n1.values);
+        assertEquals(Arrays.asList("bar", "c", "d"), n2.values);
+        assertEquals(n1.sentinels, n2.sentinels);
+
+        // ecm: properties are part of the plan
+        SQLQuery q3 = normalize(new Normalizer(), "SELECT * FROM Document WHERE dc:title = 'foo'"
+                + " AND dc:subjects IN ('a', 'b') AND ecm:primaryType = 'Note'");
+        assertFalse(q1.equals(q3));
+        // list sizes are part of the plan
+        SQLQuery q4 = normalize(new Normalizer(), "SELECT * FROM Document WHERE dc:title = 'foo'"
+                + " AND dc:subjects IN ('a') AND ecm:primaryType = 'File'");
+        assertFalse(q1.equals(q4));
+    }
+
+    @Test
+    public void testNormalizeDates() {
+        Normalizer n1 = new Normalizer();
+        SQLQuery q1 = normalize(n1, "SELECT * FROM Document WHERE dc:modified > DATE '2015-01-01'");
+        Normalizer n2 = new Normalizer();
+        SQLQuery q2 = normalize(n2, "SELECT * FROM Document WHERE dc:modified > TIMESTAMP '2015-01-01T00:00:00'");
+        assertFalse(q1.equals(q2));
+        assertEquals(1, n1.values.size());
+        assertEquals(1, n2.values.size());
+    }
+
+    @Test
+    public void testPathNotCacheable() {
+        assertNull(normalize(new Normalizer(), "SELECT * FROM Document WHERE ecm:path STARTSWITH '/foo'"));
+    }
+
+    @Test
+    public void testFindSentinelsAndBind() {
+        Normalizer normalizer = new Normalizer();
+        normalize(normalizer, "SELECT * FROM Document WHERE dc:title = 'foo' AND dc:description = 'bar'");
+        Query q = new Query();
+        q.selectInfo = new SQLInfoSelect("SELECT id FROM hierarchy WHERE title = ? AND x = ? AND description = ?",
+                Collections.<Column> emptyList(), null, null);
+        q.selectParams.add(normalizer.sentinels.get(0));
+        q.selectParams.add("other");
+        q.selectParams.add(normalizer.sentinels.get(1));
+        int[] positions = QueryPlanCache.findSentinels(q, normalizer.sentinels);
+        assertArrayEquals(new int[] { 0, 2 }, positions);
+
+        Query bound = new Plan(q.selectInfo, q.selectParams, positions).bind(normalizer.values);
+        assertEquals(Arrays.<Serializable> asList("foo", "other", "bar"), bound.selectParams);
+
+        // ambiguous
+        q.selectParams.add(normalizer.sentinels.get(1));
+        assertNull(QueryPlanCache.findSentinels(q, normalizer.sentinels));
+    }
+
+}
@@ -78,6 +78,16 @@ public abstract class FulltextExtractorWork extends AbstractWork {
         return TITLE;
     }
 
+    /**
+     * The extraction only depends on the current state of the document, so successive ones can be coalesced.
+     *
+     * @since 7.2
+     */
+    @Override
+    public String getCoalescingKey() {
+        return repositoryName + ':' + docId + ':' + excludeProxies;
+    }
+
     @Override
     public void work() {
         initSession();
@@ -46,6 +46,8 @@ import org.apache.commons.logging.LogFactory;
 import org.nuxeo.ecm.core.api.NuxeoException;
 import org.nuxeo.runtime.api.Framework;
 
+import com.codahale.metrics.Timer;
+
 /**
  * A binary manager that encrypts binaries on the filesystem using AES.
  * <p>
@@ -425,11 +427,18 @@ public class AESBinaryManager extends LocalBinaryManager {
             data.writeInt(iv.length);
             data.write(iv);
 
-            // digest and write the encrypted data
-            CipherAndDigestOutputStream cipherOut = new CipherAndDigestOutputStream(out, cipher, messageDigest);
-            IOUtils.copy(in, cipherOut);
-            cipherOut.close();
-            byte[] digest = cipherOut.getDigest();
+            // write the encrypted data, the digest of the original data is computed in parallel
+            CipherAndDigestOutputStream cipherOut = new CipherAndDigestOutputStream(out, cipher, null);
+            DigestingCopier copier = new DigestingCopier(messageDigest);
+            Timer.Context context = getIngestTimer().time();
+            byte[] digest;
+            try {
+                digest = copier.copy(in, cipherOut);
+                cipherOut.close();
+            } finally {
+                context.stop();
+            }
+            getIngestMeter().mark(copier.getLength());
             return toHexString(digest);
         } catch (GeneralSecurityException e) {
             throw new NuxeoException(e);
@@ -511,6 +520,8 @@ public class AESBinaryManager extends LocalBinaryManager {
     /**
      * A {@link javax.crypto.CipherOutputStream CipherOutputStream} that also does a digest of the original stream at
      * the same time.
+     * <p>
+     * The message digest may be {@code null} if the digest is computed elsewhere.
      */
     public static class CipherAndDigestOutputStream extends FilterOutputStream {
 
@@ -540,7 +551,9 @@ public class AESBinaryManager extends LocalBinaryManager {
 
         @Override
         public void write(byte b[], int off, int len) throws IOException {
-            messageDigest.update(b, off, len);
+            if (messageDigest != null) {
+                messageDigest.update(b, off, len);
+            }
             byte[] bytes = cipher.update(b, off, len);
             if (bytes != null) {
                 out.write(bytes);
@@ -555,7 +568,9 @@ public class AESBinaryManager extends LocalBinaryManager {
 
         @Override
         public void close() throws IOException {
-            digest = messageDigest.digest();
+            if (messageDigest != null) {
+                digest = messageDigest.digest();
+            }
             try {
                 byte[] bytes = cipher.doFinal();
                 out.write(bytes);
@@ -22,6 +22,12 @@ import java.security.NoSuchAlgorithmException;
 
 import org.nuxeo.common.xmap.XMap;
 import org.nuxeo.ecm.core.api.Blob;
+import org.nuxeo.runtime.metrics.MetricsService;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.SharedMetricRegistries;
+import com.codahale.metrics.Timer;
 
 /**
  * Abstract BinaryManager implementation that provides a few utilities
@@ -40,6 +46,8 @@ public abstract class AbstractBinaryManager implements BinaryManager {
 
     protected BinaryGarbageCollector garbageCollector;
 
+    protected final MetricRegistry registry = SharedMetricRegistries.getOrCreate(MetricsService.class.getName());
+
     @Override
     abstract public void initialize(BinaryManagerDescriptor binaryManagerDescriptor) throws IOException;
 
@@ -88,35 +96,54 @@ public abstract class AbstractBinaryManager implements BinaryManager {
 
     public static final int MAX_BUF_SIZE = 64 * 1024; // 64 kB
 
+    /**
+     * Copies the stream to the output while digesting it.
+     * <p>
+     * File to file copies are done by the kernel, and the digest is computed in parallel with the writes.
+     */
     protected String storeAndDigest(InputStream in, OutputStream out) throws IOException {
-        MessageDigest digest;
+        DigestingCopier copier = new DigestingCopier(getMessageDigest());
+        Timer.Context context = getIngestTimer().time();
+        byte[] digest;
+        try {
+            digest = copier.copy(in, out);
+            out.flush();
+        } finally {
+            context.stop();
+        }
+        getIngestMeter().mark(copier.getLength());
+        return toHexString(digest);
+    }
+
+    /**
+     * Gets a new message digest for the configured algorithm.
+     *
+     * @since 7.2
+     */
+    protected MessageDigest getMessageDigest() throws IOException {
         try {
-            digest = MessageDigest.getInstance(descriptor.digest);
+            return MessageDigest.getInstance(descriptor.digest);
         } catch (NoSuchAlgorithmException e) {
             throw (IOException) new IOException().initCause(e);
         }
+    }
 
-        int size = in.available();
-        if (size == 0) {
-            size = MAX_BUF_SIZE;
-        } else if (size < MIN_BUF_SIZE) {
-            size = MIN_BUF_SIZE;
-        } else if (size > MAX_BUF_SIZE) {
-            size = MAX_BUF_SIZE;
-        }
-        byte[] buf = new byte[size];
-
-        /*
-         * Copy and digest.
-         */
-        int n;
-        while ((n = in.read(buf)) != -1) {
-            digest.update(buf, 0, n);
-            out.write(buf, 0, n);
-        }
-        out.flush();
+    /**
+     * Timer for the copy and digest of incoming binaries.
+     *
+     * @since 7.2
+     */
+    protected Timer getIngestTimer() {
+        return registry.timer(MetricRegistry.name("nuxeo", "binaries", String.valueOf(repositoryName), "ingest"));
+    }
 
-        return toHexString(digest.digest());
+    /**
+     * Meter for the bytes of incoming binaries, giving the ingestion throughput.
+     *
+     * @since 7.2
+     */
+    protected Meter getIngestMeter() {
+        return registry.meter(MetricRegistry.name("nuxeo", "binaries", String.valueOf(repositoryName), "ingest-bytes"));
     }
 
     private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
@@ -31,6 +31,18 @@ public class BinaryManagerStatus {
 
     public long sizeBinariesGC;
 
+    /** @since 7.2 */
+    public long numBinariesMarked;
+
+    /** @since 7.2 */
+    public long numShards;
+
+    /** @since 7.2 */
+    public long numShardsSwept;
+
+    /** @since 7.2 */
+    public boolean interrupted;
+
     /**
      * The GC duration, in milliseconds
      */
@@ -66,6 +78,42 @@ public class BinaryManagerStatus {
         return sizeBinariesGC;
     }
 
+    /**
+     * The number of binaries marked as in use so far.
+     *
+     * @since 7.2
+     */
+    public long getNumBinariesMarked() {
+        return numBinariesMarked;
+    }
+
+    /**
+     * The number of shards (top-level directories) of the store to sweep.
+     *
+     * @since 7.2
+     */
+    public long getNumShards() {
+        return numShards;
+    }
+
+    /**
+     * The number of shards already swept.
+     *
+     * @since 7.2
+     */
+    public long getNumShardsSwept() {
+        return numShardsSwept;
+    }
+
+    /**
+     * Whether the GC was interrupted before completion, in which case it can be resumed.
+     *
+     * @since 7.2
+     */
+    public boolean isInterrupted() {
+        return interrupted;
+    }
+
     @Override
     public String toString() {
         StringBuilder builder = new StringBuilder();
@@ -73,7 +121,11 @@ public class BinaryManagerStatus {
         .append(", numBinaries=").append(numBinaries) //
         .append(", sizeBinaries=").append(sizeBinaries) //
         .append(", numBinariesGC=").append(numBinariesGC) //
-        .append(", sizeBinariesGC=").append(sizeBinariesGC).append("]");
+        .append(", sizeBinariesGC=").append(sizeBinariesGC) //
+        .append(", numBinariesMarked=").append(numBinariesMarked) //
+        .append(", numShardsSwept=").append(numShardsSwept) //
+        .append(", numShards=").append(numShards) //
+        .append(", interrupted=").append(interrupted).append("]");
         return builder.toString();
     }
 
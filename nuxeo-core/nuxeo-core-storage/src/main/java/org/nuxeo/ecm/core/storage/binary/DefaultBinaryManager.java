@@ -13,13 +13,15 @@
 package org.nuxeo.ecm.core.storage.binary;
 
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.InputStream;
+import java.nio.channels.FileChannel;
 
-import org.apache.commons.io.output.NullOutputStream;
 import org.nuxeo.ecm.core.api.Blob;
 import org.nuxeo.ecm.core.api.impl.blob.FileBlob;
 
+import com.codahale.metrics.Timer;
+
 /**
  * A simple filesystem-based binary manager. It stores the binaries according to their digest (hash), which means that
  * no transactional behavior needs to be implemented.
@@ -52,12 +54,19 @@ public class DefaultBinaryManager extends LocalBinaryManager {
 
     /**
      * Stores and digests a temporary FileBlob.
+     * <p>
+     * The file is digested in place and then moved, so no copy is done when it is on the same filesystem as the store.
      */
     protected String storeAndDigest(FileBlob blob) throws IOException {
         String digest;
-        try (InputStream in = blob.getStream()) {
-            digest = storeAndDigest(in, NullOutputStream.NULL_OUTPUT_STREAM);
+        DigestingCopier copier = new DigestingCopier(getMessageDigest());
+        Timer.Context context = getIngestTimer().time();
+        try (FileChannel channel = new FileInputStream(blob.getFile()).getChannel()) {
+            digest = toHexString(copier.digest(channel));
+        } finally {
+            context.stop();
         }
+        getIngestMeter().mark(copier.getLength());
         File digestFile = getFileForDigest(digest, true);
         if (digestFile.exists()) {
             // The file with the proper digest is already there so don't do anything. This is to avoid
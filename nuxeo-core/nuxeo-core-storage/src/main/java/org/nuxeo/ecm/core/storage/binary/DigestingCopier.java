@@ -0,0 +1,385 @@
+/*
+ * Copyright (c) 2015 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.ecm.core.storage.binary;
+
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Copies a stream to its storage while computing its digest.
+ * <p>
+ * When both ends are files, the data is copied by the kernel using {@link FileChannel#transferFrom} while the digest
+ * is computed in parallel on another thread by reading the source through a direct buffer. Otherwise the data is read
+ * into a small pipeline of pooled buffers: each buffer is written by the calling thread then handed to a digest thread,
+ * so that writing the next buffer overlaps with digesting the previous one. Small streams that fit in a single buffer
+ * are processed inline.
+ * <p>
+ * The digest threads are bounded by {@link #MAX_DIGESTERS}; when they are all busy the copy is done sequentially on
+ * the calling thread.
+ * <p>
+ * An instance is used for a single copy.
+ *
+ * @since 7.2
+ */
+public class DigestingCopier {
+
+    public static final int BUFFER_SIZE = 256 * 1024; // 256 kB
+
+    /** Number of buffers in flight for a stream copy. */
+    protected static final int PIPELINE_DEPTH = 4;
+
+    /** Maximum number of buffers of each kind kept in the pools. */
+    protected static final int MAX_POOLED = 32;
+
+    protected static final ByteBuffer EOF = ByteBuffer.allocate(0);
+
+    protected static final Queue<ByteBuffer> DIRECT_POOL = new ConcurrentLinkedQueue<>();
+
+    protected static final Queue<ByteBuffer> HEAP_POOL = new ConcurrentLinkedQueue<>();
+
+    /** Maximum number of digest threads. */
+    protected static final int MAX_DIGESTERS = 2 * Runtime.getRuntime().availableProcessors();
+
+    protected static final AtomicInteger THREAD_NUMBER = new AtomicInteger();
+
+    // no queue: a task is rejected when all the threads are busy
+    protected static final ExecutorService DIGESTERS = new ThreadPoolExecutor(0, MAX_DIGESTERS, 60, TimeUnit.SECONDS,
+            new SynchronousQueue<Runnable>(), new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "Nuxeo-BinaryDigest-" + THREAD_NUMBER.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+
+    protected final MessageDigest messageDigest;
+
+    protected long length;
+
+    public DigestingCopier(MessageDigest messageDigest) {
+        this.messageDigest = messageDigest;
+    }
+
+    /**
+     * Gets the number of bytes copied.
+     */
+    public long getLength() {
+        return length;
+    }
+
+    /**
+     * Copies the stream and returns the digest of its content.
+     * <p>
+     * Neither stream is closed.
+     */
+    public byte[] copy(InputStream in, OutputStream out) throws IOException {
+        if (out instanceof FileOutputStream) {
+            FileChannel dst = ((FileOutputStream) out).getChannel();
+            if (in instanceof FileInputStream) {
+                return transfer(((FileInputStream) in).getChannel(), dst);
+            }
+            return pipeline(Channels.newChannel(in), new ChannelSink(dst), true);
+        }
+        return pipeline(Channels.newChannel(in), new StreamSink(out), false);
+    }
+
+    /**
+     * Computes the digest of the content of a file channel from its current position, without copying it.
+     */
+    public byte[] digest(FileChannel src) throws IOException {
+        ByteBuffer buf = acquire(true);
+        try {
+            long pos = src.position();
+            int n;
+            while ((n = src.read(buf, pos)) != -1) {
+                pos += n;
+                length += n;
+                buf.flip();
+                messageDigest.update(buf);
+                buf.clear();
+            }
+            return messageDigest.digest();
+        } finally {
+            release(buf);
+        }
+    }
+
+    /**
+     * Copies file to file using the kernel, while digesting the source on another thread.
+     */
+    protected byte[] transfer(final FileChannel src, FileChannel dst) throws IOException {
+        final long start = src.position();
+        final long size = src.size() - start;
+        Future<byte[]> future = null;
+        if (size > BUFFER_SIZE) {
+            try {
+                future = DIGESTERS.submit(new Callable<byte[]>() {
+                    @Override
+                    public byte[] call() throws IOException {
+                        return digestRange(src, start, size);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                // all digest threads busy, digest after the copy
+            }
+        }
+        boolean done = false;
+        try {
+            long dstStart = dst.position();
+            long pos = 0;
+            while (pos < size) {
+                long n = dst.transferFrom(src, dstStart + pos, size - pos);
+                if (n <= 0) {
+                    throw new IOException("Source shrank during copy");
+                }
+                pos += n;
+            }
+            dst.position(dstStart + size);
+            length = size;
+            byte[] digest = future == null ? digestRange(src, start, size) : future.get();
+            done = true;
+            return digest;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        } catch (ExecutionException e) {
+            throw new IOException(e.getCause());
+        } finally {
+            if (!done && future != null) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    /**
+     * Digests a range of a file channel using positional reads, which does not move the channel position.
+     */
+    protected byte[] digestRange(FileChannel src, long start, long size) throws IOException {
+        ByteBuffer buf = acquire(true);
+        try {
+            long pos = start;
+            long end = start + size;
+            while (pos < end) {
+                if (end - pos < buf.capacity()) {
+                    buf.limit((int) (end - pos));
+                }
+                int n = src.read(buf, pos);
+                if (n == -1) {
+                    throw new IOException("Source shrank during copy");
+                }
+                pos += n;
+                buf.flip();
+                messageDigest.update(buf);
+                buf.clear();
+            }
+            return messageDigest.digest();
+        } finally {
+            release(buf);
+        }
+    }
+
+    /**
+     * Copies using a pipeline of buffers, writing on the calling thread and digesting on another one.
+     */
+    protected byte[] pipeline(ReadableByteChannel src, Sink sink, boolean direct) throws IOException {
+        ByteBuffer buf = acquire(direct);
+        boolean eof = fill(src, buf);
+        if (eof) {
+            // fits in one buffer, no need for another thread
+            return sequential(src, sink, buf, true);
+        }
+        final BlockingQueue<ByteBuffer> filled = new ArrayBlockingQueue<>(PIPELINE_DEPTH + 1);
+        final BlockingQueue<ByteBuffer> free = new ArrayBlockingQueue<>(PIPELINE_DEPTH);
+        Future<byte[]> future;
+        try {
+            future = DIGESTERS.submit(new Callable<byte[]>() {
+                @Override
+                public byte[] call() throws InterruptedException {
+                    for (;;) {
+                        ByteBuffer b = filled.take();
+                        if (b == EOF) {
+                            return messageDigest.digest();
+                        }
+                        messageDigest.update(b);
+                        free.put(b);
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // all digest threads busy
+            return sequential(src, sink, buf, false);
+        }
+        final List<ByteBuffer> buffers = new ArrayList<>(PIPELINE_DEPTH);
+        buffers.add(buf);
+        for (int i = 1; i < PIPELINE_DEPTH; i++) {
+            ByteBuffer b = acquire(direct);
+            buffers.add(b);
+            free.add(b);
+        }
+        boolean done = false;
+        try {
+            for (;;) {
+                length += buf.remaining();
+                sink.write(buf.duplicate());
+                filled.put(buf);
+                if (eof) {
+                    break;
+                }
+                while ((buf = free.poll(1, TimeUnit.SECONDS)) == null) {
+                    if (future.isDone()) {
+                        future.get();
+                        throw new IOException("Digest thread terminated");
+                    }
+                }
+                buf.clear();
+                eof = fill(src, buf);
+            }
+            filled.put(EOF);
+            byte[] digest = future.get();
+            done = true;
+            return digest;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        } catch (ExecutionException e) {
+            throw new IOException(e.getCause());
+        } finally {
+            if (done) {
+                for (ByteBuffer b : buffers) {
+                    release(b);
+                }
+            } else {
+                // buffers may still be used by the digest thread, don't pool them
+                future.cancel(true);
+            }
+        }
+    }
+
+    /**
+     * Copies and digests on the calling thread, starting with an already filled buffer which is released at the end.
+     */
+    protected byte[] sequential(ReadableByteChannel src, Sink sink, ByteBuffer buf, boolean eof) throws IOException {
+        try {
+            for (;;) {
+                length += buf.remaining();
+                sink.write(buf.duplicate());
+                messageDigest.update(buf);
+                if (eof) {
+                    return messageDigest.digest();
+                }
+                buf.clear();
+                eof = fill(src, buf);
+            }
+        } finally {
+            release(buf);
+        }
+    }
+
+    /**
+     * Reads into the buffer until it is full or the end of the stream is reached, and flips it.
+     *
+     * @return {@code true} if the end of the stream was reached
+     */
+    protected static boolean fill(ReadableByteChannel src, ByteBuffer buf) throws IOException {
+        boolean eof = false;
+        while (buf.hasRemaining()) {
+            if (src.read(buf) == -1) {
+                eof = true;
+                break;
+            }
+        }
+        buf.flip();
+        return eof;
+    }
+
+    protected static ByteBuffer acquire(boolean direct) {
+        ByteBuffer buf = (direct ? DIRECT_POOL : HEAP_POOL).poll();
+        if (buf == null) {
+            buf = direct ? ByteBuffer.allocateDirect(BUFFER_SIZE) : ByteBuffer.allocate(BUFFER_SIZE);
+        }
+        buf.clear();
+        return buf;
+    }
+
+    protected static void release(ByteBuffer buf) {
+        Queue<ByteBuffer> pool = buf.isDirect() ? DIRECT_POOL : HEAP_POOL;
+        // size() is not constant-time but the pools are small
+        if (pool.size() < MAX_POOLED) {
+            pool.add(buf);
+        }
+    }
+
+    /**
+     * Destination of a pipelined copy.
+     */
+    protected interface Sink {
+        void write(ByteBuffer buf) throws IOException;
+    }
+
+    protected static class ChannelSink implements Sink {
+
+        protected final FileChannel channel;
+
+        public ChannelSink(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        @Override
+        public void write(ByteBuffer buf) throws IOException {
+            while (buf.hasRemaining()) {
+                channel.write(buf);
+            }
+        }
+    }
+
+    protected static class StreamSink implements Sink {
+
+        protected final OutputStream out;
+
+        public StreamSink(OutputStream out) {
+            this.out = out;
+        }
+
+        @Override
+        public void write(ByteBuffer buf) throws IOException {
+            // heap buffer
+            out.write(buf.array(), buf.arrayOffset() + buf.position(), buf.remaining());
+        }
+    }
+
+}
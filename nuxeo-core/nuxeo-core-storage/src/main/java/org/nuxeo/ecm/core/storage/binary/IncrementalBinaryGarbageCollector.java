@@ -0,0 +1,69 @@
+/*
+ * Copyright (c) 2015 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.ecm.core.storage.binary;
+
+/**
+ * A binary garbage collector whose state is persisted, so that an interrupted GC can be resumed later.
+ * <p>
+ * The repository marks binaries by batches for each of its mark sources (typically a binary column), and after each
+ * batch records the position reached through {@link #setMarkPosition}. As a garbage collector may be shared by several
+ * repositories, the source names include the repository name. When resuming, marking continues from the
+ * recorded positions, and the sweep skips the parts of the store already swept.
+ *
+ * @since 7.2
+ */
+public interface IncrementalBinaryGarbageCollector extends BinaryGarbageCollector {
+
+    /**
+     * Mark position of a source that has been fully marked.
+     */
+    String MARK_DONE = "\uffff";
+
+    /**
+     * Resumes a previously interrupted garbage collection, if any.
+     * <p>
+     * If there is nothing to resume, {@link #start} must be called instead.
+     *
+     * @return {@code true} if a garbage collection was resumed
+     */
+    boolean resume();
+
+    /**
+     * Gets the position reached when marking the given source.
+     *
+     * @param source the mark source
+     * @return the last marked digest, {@link #MARK_DONE} if the source is fully marked, or {@code null} if marking of
+     *         this source hasn't started
+     */
+    String getMarkPosition(String source);
+
+    /**
+     * Records the position reached when marking the given source. All binaries up to this position have been marked.
+     *
+     * @param source the mark source
+     * @param position the last marked digest, or {@link #MARK_DONE}
+     */
+    void setMarkPosition(String source, String position);
+
+    /**
+     * Requests interruption of the garbage collection in progress.
+     * <p>
+     * Marking and sweeping stop at the next batch boundary, and the garbage collection can then be resumed.
+     */
+    void interrupt();
+
+    /**
+     * Checks if an interruption has been requested.
+     */
+    boolean isInterrupted();
+
+}
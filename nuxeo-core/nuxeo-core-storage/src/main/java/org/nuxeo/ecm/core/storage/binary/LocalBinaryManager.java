@@ -19,6 +19,18 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
@@ -28,6 +40,9 @@ import org.nuxeo.common.Environment;
 import org.nuxeo.ecm.core.api.NuxeoException;
 import org.nuxeo.runtime.api.Framework;
 
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.MetricRegistry;
+
 /**
  * A simple filesystem-based binary manager. It stores the binaries according to their digest (hash), which means that
  * no transactional behavior needs to be implemented.
@@ -38,7 +53,8 @@ import org.nuxeo.runtime.api.Framework;
  * <ul>
  * <li><em>data/</em> hierarchy with the actual binaries in subdirectories,</li>
  * <li><em>tmp/</em> temporary storage during creation,</li>
- * <li><em>config.xml</em> a file containing the configuration used.</li>
+ * <li><em>config.xml</em> a file containing the configuration used,</li>
+ * <li><em>gc.properties</em> the state of an interrupted garbage collection, if any.</li>
  * </ul>
  *
  * @author Florent Guillaume
@@ -62,6 +78,7 @@ public class LocalBinaryManager extends AbstractBinaryManager {
 
     @Override
     public void initialize(BinaryManagerDescriptor binaryManagerDescriptor) throws IOException {
+        repositoryName = binaryManagerDescriptor.repositoryName;
         String path = binaryManagerDescriptor.storePath;
         if (path == null || path.trim().length() == 0) {
             path = DEFAULT_PATH;
@@ -232,19 +249,70 @@ public class LocalBinaryManager extends AbstractBinaryManager {
         garbageCollector = new DefaultBinaryGarbageCollector(this);
     }
 
-    public static class DefaultBinaryGarbageCollector implements BinaryGarbageCollector {
+    /**
+     * Garbage collector marking binaries by touching their file, then deleting files that haven't been touched since the
+     * start of the GC.
+     * <p>
+     * The start time, the mark positions and the already swept shards (top-level directories) with their counts are
+     * persisted in a state file, so that an interrupted GC can be resumed. Shards are swept in parallel. A dry run (stop
+     * without delete) does not record swept shards, so that a later real GC sweeps them. An interrupted GC older than
+     * {@link #RESUME_MAX_AGE_PROP} is not resumed but restarted.
+     */
+    public static class DefaultBinaryGarbageCollector implements IncrementalBinaryGarbageCollector {
 
         /**
          * Windows FAT filesystems have a time resolution of 2s. Other common filesystems have 1s.
          */
         public static int TIME_RESOLUTION = 2000;
 
+        /**
+         * @since 7.2
+         */
+        public static final String STATE_FILE = "gc.properties";
+
+        /**
+         * Number of threads used to sweep shards in parallel.
+         *
+         * @since 7.2
+         */
+        public static final String SWEEP_THREADS_PROP = "org.nuxeo.binary.gc.sweepThreads";
+
+        public static final String SWEEP_THREADS_DEFAULT = "4";
+
+        /**
+         * Maximum age in seconds of an interrupted GC for it to be resumed, an older one is restarted.
+         *
+         * @since 7.2
+         */
+        public static final String RESUME_MAX_AGE_PROP = "org.nuxeo.binary.gc.resumeMaxAge";
+
+        public static final String RESUME_MAX_AGE_DEFAULT = "86400"; // 1 day
+
+        protected static final String MARKED_KEY = "marked";
+
+        protected static final String START_TIME_KEY = "startTime";
+
+        protected static final String MARK_PREFIX = "mark.";
+
+        protected static final String SWEPT_PREFIX = "swept.";
+
         protected final LocalBinaryManager binaryManager;
 
         protected volatile long startTime;
 
+        protected volatile boolean interrupted;
+
         protected BinaryManagerStatus status;
 
+        /** Persisted state, also used as lock for its updates. */
+        protected Properties state;
+
+        protected Counter markedCounter;
+
+        protected Counter sweptCounter;
+
+        protected Counter deletedCounter;
+
         public DefaultBinaryGarbageCollector(LocalBinaryManager binaryManager) {
             this.binaryManager = binaryManager;
         }
@@ -270,8 +338,112 @@ public class LocalBinaryManager extends AbstractBinaryManager {
             if (startTime != 0) {
                 throw new RuntimeException("Alread started");
             }
-            startTime = System.currentTimeMillis();
+            init(System.currentTimeMillis());
+            state = new Properties();
+            state.setProperty(START_TIME_KEY, String.valueOf(startTime));
+            saveState();
+        }
+
+        @Override
+        public boolean resume() {
+            if (startTime != 0) {
+                throw new RuntimeException("Alread started");
+            }
+            Properties props = loadState();
+            if (props == null) {
+                return false;
+            }
+            long time;
+            try {
+                time = Long.parseLong(props.getProperty(START_TIME_KEY));
+            } catch (NumberFormatException e) {
+                log.error("Invalid binaries GC state, starting a new GC: " + getStateFile());
+                deleteState();
+                return false;
+            }
+            long now = System.currentTimeMillis();
+            long maxAge = getLongProperty(RESUME_MAX_AGE_PROP, RESUME_MAX_AGE_DEFAULT) * 1000;
+            if (time > now || now - time > maxAge) {
+                log.warn("Not resuming binaries GC started at " + new Date(time) + ", starting a new GC");
+                deleteState();
+                return false;
+            }
+            init(time);
+            state = props;
+            status.numBinariesMarked = parseLong(props.getProperty(MARKED_KEY));
+            for (String key : props.stringPropertyNames()) {
+                if (key.startsWith(SWEPT_PREFIX)) {
+                    status.numShardsSwept++;
+                    String[] counts = props.getProperty(key).split(",");
+                    if (counts.length == 4) {
+                        status.numBinaries += parseLong(counts[0]);
+                        status.sizeBinaries += parseLong(counts[1]);
+                        status.numBinariesGC += parseLong(counts[2]);
+                        status.sizeBinariesGC += parseLong(counts[3]);
+                    }
+                }
+            }
+            log.info("Resuming binaries GC started at " + new Date(startTime));
+            return true;
+        }
+
+        protected static long parseLong(String value) {
+            if (value == null) {
+                return 0;
+            }
+            try {
+                return Long.parseLong(value);
+            } catch (NumberFormatException e) {
+                return 0;
+            }
+        }
+
+        protected static long getLongProperty(String name, String defaultValue) {
+            String value = Framework.getProperty(name, defaultValue);
+            try {
+                return Long.parseLong(value.trim());
+            } catch (NumberFormatException e) {
+                log.warn("Invalid value for " + name + ": " + value + ", using default: " + defaultValue);
+                return Long.parseLong(defaultValue);
+            }
+        }
+
+        protected void init(long time) {
+            startTime = time;
+            interrupted = false;
             status = new BinaryManagerStatus();
+            MetricRegistry registry = binaryManager.registry;
+            String repositoryName = String.valueOf(binaryManager.repositoryName);
+            markedCounter = registry.counter(MetricRegistry.name("nuxeo", "binaries", repositoryName, "gc", "marked"));
+            sweptCounter = registry.counter(MetricRegistry.name("nuxeo", "binaries", repositoryName, "gc", "swept"));
+            deletedCounter = registry.counter(MetricRegistry.name("nuxeo", "binaries", repositoryName, "gc",
+                    "deleted"));
+        }
+
+        @Override
+        public String getMarkPosition(String source) {
+            synchronized (state) {
+                return state.getProperty(MARK_PREFIX + source);
+            }
+        }
+
+        @Override
+        public void setMarkPosition(String source, String position) {
+            synchronized (state) {
+                state.setProperty(MARK_PREFIX + source, position);
+                state.setProperty(MARKED_KEY, String.valueOf(status.numBinariesMarked));
+                saveState();
+            }
+        }
+
+        @Override
+        public void interrupt() {
+            interrupted = true;
+        }
+
+        @Override
+        public boolean isInterrupted() {
+            return interrupted;
         }
 
         @Override
@@ -282,6 +454,8 @@ public class LocalBinaryManager extends AbstractBinaryManager {
                 return;
             }
             touch(file);
+            status.numBinariesMarked++;
+            markedCounter.inc();
         }
 
         @Override
@@ -289,15 +463,102 @@ public class LocalBinaryManager extends AbstractBinaryManager {
             if (startTime == 0) {
                 throw new RuntimeException("Not started");
             }
-            deleteOld(binaryManager.getStorageDir(), startTime - TIME_RESOLUTION, 0, delete);
-            status.gcDuration = System.currentTimeMillis() - startTime;
-            startTime = 0;
+            try {
+                if (!interrupted) {
+                    sweep(delete);
+                }
+                status.interrupted = interrupted;
+                if (interrupted) {
+                    log.info("Binaries GC interrupted, it can be resumed later");
+                } else {
+                    deleteState();
+                }
+                status.gcDuration = System.currentTimeMillis() - startTime;
+            } finally {
+                startTime = 0;
+            }
         }
 
-        protected void deleteOld(File file, long minTime, int depth, boolean delete) {
+        /**
+         * Sweeps the shards not already swept, in parallel.
+         */
+        protected void sweep(boolean delete) {
+            final long minTime = startTime - TIME_RESOLUTION;
+            File[] files = binaryManager.getStorageDir().listFiles();
+            if (files == null) {
+                return;
+            }
+            List<File> shards = new ArrayList<>();
+            for (File file : files) {
+                if (file.isDirectory()) {
+                    shards.add(file);
+                } else {
+                    deleteOld(file, minTime, 1, delete, status);
+                }
+            }
+            status.numShards = shards.size();
+            int nThreads = (int) getLongProperty(SWEEP_THREADS_PROP, SWEEP_THREADS_DEFAULT);
+            ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, nThreads), new ThreadFactory() {
+                protected final AtomicInteger threadNumber = new AtomicInteger();
+
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "Nuxeo-BinaryGC-Sweep-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+            try {
+                List<Future<?>> futures = new ArrayList<>(shards.size());
+                for (final File shard : shards) {
+                    final String key = SWEPT_PREFIX + shard.getName();
+                    synchronized (state) {
+                        if (state.containsKey(key)) {
+                            continue;
+                        }
+                    }
+                    final boolean del = delete;
+                    futures.add(executor.submit(new Runnable() {
+                        @Override
+                        public void run() {
+                            if (interrupted) {
+                                return;
+                            }
+                            BinaryManagerStatus shardStatus = new BinaryManagerStatus();
+                            deleteOld(shard, minTime, 1, del, shardStatus);
+                            synchronized (state) {
+                                status.numBinaries += shardStatus.numBinaries;
+                                status.sizeBinaries += shardStatus.sizeBinaries;
+                                status.numBinariesGC += shardStatus.numBinariesGC;
+                                status.sizeBinariesGC += shardStatus.sizeBinariesGC;
+                                status.numShardsSwept++;
+                                if (del) {
+                                    // a dry run must not prevent a later real GC from sweeping the shard
+                                    state.setProperty(key, shardStatus.numBinaries + "," + shardStatus.sizeBinaries
+                                            + "," + shardStatus.numBinariesGC + "," + shardStatus.sizeBinariesGC);
+                                    saveState();
+                                }
+                            }
+                        }
+                    }));
+                }
+                for (Future<?> future : futures) {
+                    future.get();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                interrupted = true;
+            } catch (ExecutionException e) {
+                throw new RuntimeException(e.getCause());
+            } finally {
+                executor.shutdownNow();
+            }
+        }
+
+        protected void deleteOld(File file, long minTime, int depth, boolean delete, BinaryManagerStatus status) {
             if (file.isDirectory()) {
                 for (File f : file.listFiles()) {
-                    deleteOld(f, minTime, depth + 1, delete);
+                    deleteOld(f, minTime, depth + 1, delete, status);
                 }
                 if (depth > 0 && file.list().length == 0) {
                     // empty directory
@@ -306,13 +567,18 @@ public class LocalBinaryManager extends AbstractBinaryManager {
             } else if (file.isFile() && file.canWrite()) {
                 long lastModified = file.lastModified();
                 long length = file.length();
+                sweptCounter.inc();
                 if (lastModified == 0) {
                     log.error("Cannot read last modified for file: " + file);
                 } else if (lastModified < minTime) {
                     status.sizeBinariesGC += length;
                     status.numBinariesGC++;
-                    if (delete && !file.delete()) {
-                        log.warn("Cannot gc file: " + file);
+                    if (delete) {
+                        if (file.delete()) {
+                            deletedCounter.inc();
+                        } else {
+                            log.warn("Cannot gc file: " + file);
+                        }
                     }
                 } else {
                     status.sizeBinaries += length;
@@ -320,6 +586,50 @@ public class LocalBinaryManager extends AbstractBinaryManager {
                 }
             }
         }
+
+        protected File getStateFile() {
+            return new File(binaryManager.getStorageDir().getParentFile(), STATE_FILE);
+        }
+
+        protected Properties loadState() {
+            File file = getStateFile();
+            if (!file.exists()) {
+                return null;
+            }
+            Properties props = new Properties();
+            try (InputStream in = new FileInputStream(file)) {
+                props.load(in);
+            } catch (IOException e) {
+                log.error("Cannot read binaries GC state: " + file, e);
+                return null;
+            }
+            if (props.getProperty(START_TIME_KEY) == null) {
+                return null;
+            }
+            return props;
+        }
+
+        /**
+         * Writes the state to a temporary file then renames it, so that a crash never leaves a truncated state.
+         * Called with the state lock held.
+         */
+        protected void saveState() {
+            File file = getStateFile();
+            File tmp = new File(file.getPath() + ".tmp");
+            try {
+                try (OutputStream out = new FileOutputStream(tmp)) {
+                    state.store(out, "Nuxeo binaries GC state");
+                }
+                Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                        StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                log.error("Cannot write binaries GC state: " + file, e);
+            }
+        }
+
+        protected void deleteState() {
+            getStateFile().delete();
+        }
     }
 
     /**
@@ -25,11 +25,13 @@ import static org.junit.Assert.assertTrue;
 import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
+import java.util.Properties;
 
 import org.apache.commons.io.IOUtils;
 import org.junit.Test;
 import org.nuxeo.ecm.core.api.Blobs;
 import org.nuxeo.ecm.core.api.impl.blob.FileBlob;
+import org.nuxeo.ecm.core.storage.binary.LocalBinaryManager.DefaultBinaryGarbageCollector;
 import org.nuxeo.runtime.test.NXRuntimeTestCase;
 
 public class TestDefaultBinaryManager extends NXRuntimeTestCase {
@@ -107,6 +109,101 @@ public class TestDefaultBinaryManager extends NXRuntimeTestCase {
         binaryManager.close();
     }
 
+    @Test
+    public void testIncrementalGC() throws Exception {
+        DefaultBinaryManager binaryManager = new DefaultBinaryManager();
+        binaryManager.initialize(new BinaryManagerDescriptor());
+        binaryManager.getBinary(Blobs.createBlob(CONTENT));
+        binaryManager.getBinary(Blobs.createBlob("abc"));
+        assertEquals(2, countFiles(binaryManager.getStorageDir()));
+
+        // sleep before GC to pass its time threshold
+        Thread.sleep(3 * 1000);
+
+        IncrementalBinaryGarbageCollector gc = (IncrementalBinaryGarbageCollector) binaryManager.getGarbageCollector();
+        assertFalse(gc.resume());
+        gc.start();
+        gc.mark(CONTENT_MD5);
+        gc.setMarkPosition("content.data", CONTENT_MD5);
+        // interrupted before the sweep
+        gc.interrupt();
+        gc.stop(true);
+        assertFalse(gc.isInProgress());
+        assertTrue(gc.getStatus().interrupted);
+        assertEquals(2, countFiles(binaryManager.getStorageDir()));
+
+        // resume
+        assertTrue(gc.resume());
+        assertTrue(gc.isInProgress());
+        assertEquals(CONTENT_MD5, gc.getMarkPosition("content.data"));
+        assertNull(gc.getMarkPosition("other.data"));
+        assertEquals(1, gc.getStatus().numBinariesMarked);
+        gc.setMarkPosition("content.data", IncrementalBinaryGarbageCollector.MARK_DONE);
+        gc.stop(true);
+        BinaryManagerStatus status = gc.getStatus();
+        assertFalse(status.interrupted);
+        assertEquals(1, status.numBinaries);
+        assertEquals(1, status.numBinariesGC);
+        assertEquals(status.numShards, status.numShardsSwept);
+        assertEquals(1, countFiles(binaryManager.getStorageDir()));
+
+        // nothing left to resume
+        assertFalse(gc.resume());
+
+        binaryManager.close();
+    }
+
+    @Test
+    public void testIncrementalGCDryRun() throws Exception {
+        DefaultBinaryManager binaryManager = new DefaultBinaryManager();
+        binaryManager.initialize(new BinaryManagerDescriptor());
+        binaryManager.getBinary(Blobs.createBlob(CONTENT));
+        binaryManager.getBinary(Blobs.createBlob("abc"));
+
+        // sleep before GC to pass its time threshold
+        Thread.sleep(3 * 1000);
+
+        DefaultBinaryGarbageCollector gc = (DefaultBinaryGarbageCollector) binaryManager.getGarbageCollector();
+        gc.start();
+        gc.mark(CONTENT_MD5);
+        gc.setMarkPosition("content.data", IncrementalBinaryGarbageCollector.MARK_DONE);
+        // dry run sweep, then interrupted
+        gc.sweep(false);
+        assertEquals(1, gc.getStatus().numBinariesGC);
+        gc.interrupt();
+        gc.stop(false);
+        assertEquals(2, countFiles(binaryManager.getStorageDir()));
+
+        // the real GC still sweeps all the shards
+        assertTrue(gc.resume());
+        assertEquals(0, gc.getStatus().numShardsSwept);
+        gc.stop(true);
+        assertEquals(1, gc.getStatus().numBinariesGC);
+        assertEquals(1, countFiles(binaryManager.getStorageDir()));
+
+        binaryManager.close();
+    }
+
+    @Test
+    public void testIncrementalGCNotResumedInTheFuture() throws Exception {
+        DefaultBinaryManager binaryManager = new DefaultBinaryManager();
+        binaryManager.initialize(new BinaryManagerDescriptor());
+        DefaultBinaryGarbageCollector gc = (DefaultBinaryGarbageCollector) binaryManager.getGarbageCollector();
+        gc.start();
+        gc.interrupt();
+        gc.stop(true);
+        // corrupted start time
+        Properties state = gc.loadState();
+        state.setProperty(DefaultBinaryGarbageCollector.START_TIME_KEY,
+                String.valueOf(System.currentTimeMillis() + 3600 * 1000));
+        gc.state = state;
+        gc.saveState();
+        assertFalse(gc.resume());
+        assertNull(gc.loadState());
+
+        binaryManager.close();
+    }
+
     @Test
     public void testTemporaryCopies() throws IOException {
         DefaultBinaryManager binaryManager = new DefaultBinaryManager();
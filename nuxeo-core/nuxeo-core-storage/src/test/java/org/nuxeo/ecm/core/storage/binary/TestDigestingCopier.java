@@ -0,0 +1,132 @@
+/*
+ * Copyright (c) 2015 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.ecm.core.storage.binary;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.security.MessageDigest;
+import java.util.Random;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+
+public class TestDigestingCopier {
+
+    protected static byte[] randomBytes(int size) {
+        byte[] bytes = new byte[size];
+        new Random(size).nextBytes(bytes);
+        return bytes;
+    }
+
+    protected static byte[] md5(byte[] bytes) throws Exception {
+        return MessageDigest.getInstance("MD5").digest(bytes);
+    }
+
+    protected void checkStreamCopy(int size) throws Exception {
+        byte[] bytes = randomBytes(size);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        DigestingCopier copier = new DigestingCopier(MessageDigest.getInstance("MD5"));
+        byte[] digest = copier.copy(new ByteArrayInputStream(bytes), out);
+        assertArrayEquals(md5(bytes), digest);
+        assertArrayEquals(bytes, out.toByteArray());
+        assertEquals(size, copier.getLength());
+    }
+
+    @Test
+    public void testStreamCopy() throws Exception {
+        checkStreamCopy(0);
+        checkStreamCopy(1000);
+        checkStreamCopy(DigestingCopier.BUFFER_SIZE);
+        // several times the pipeline depth
+        checkStreamCopy(20 * DigestingCopier.BUFFER_SIZE + 123);
+    }
+
+    @Test
+    public void testSequentialCopy() throws Exception {
+        // copy used when all the digest threads are busy
+        byte[] bytes = randomBytes(3 * DigestingCopier.BUFFER_SIZE + 5);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        DigestingCopier copier = new DigestingCopier(MessageDigest.getInstance("MD5"));
+        ReadableByteChannel src = Channels.newChannel(new ByteArrayInputStream(bytes));
+        ByteBuffer buf = DigestingCopier.acquire(false);
+        boolean eof = DigestingCopier.fill(src, buf);
+        byte[] digest = copier.sequential(src, new DigestingCopier.StreamSink(out), buf, eof);
+        assertArrayEquals(md5(bytes), digest);
+        assertArrayEquals(bytes, out.toByteArray());
+        assertEquals(bytes.length, copier.getLength());
+    }
+
+    protected void checkFileCopy(int size) throws Exception {
+        byte[] bytes = randomBytes(size);
+        File src = File.createTempFile("nxtest-", ".tmp");
+        File dst = File.createTempFile("nxtest-", ".tmp");
+        try {
+            FileUtils.writeByteArrayToFile(src, bytes);
+            DigestingCopier copier = new DigestingCopier(MessageDigest.getInstance("MD5"));
+            byte[] digest;
+            try (InputStream in = new FileInputStream(src); OutputStream out = new FileOutputStream(dst)) {
+                digest = copier.copy(in, out);
+            }
+            assertArrayEquals(md5(bytes), digest);
+            assertArrayEquals(bytes, FileUtils.readFileToByteArray(dst));
+            assertEquals(size, copier.getLength());
+
+            // digest only
+            copier = new DigestingCopier(MessageDigest.getInstance("MD5"));
+            try (FileChannel channel = new FileInputStream(src).getChannel()) {
+                digest = copier.digest(channel);
+            }
+            assertArrayEquals(md5(bytes), digest);
+            assertEquals(size, copier.getLength());
+        } finally {
+            src.delete();
+            dst.delete();
+        }
+    }
+
+    @Test
+    public void testFileCopy() throws Exception {
+        checkFileCopy(0);
+        checkFileCopy(1000);
+        checkFileCopy(5 * DigestingCopier.BUFFER_SIZE + 7);
+    }
+
+    @Test
+    public void testStreamToFileCopy() throws Exception {
+        byte[] bytes = randomBytes(3 * DigestingCopier.BUFFER_SIZE + 5);
+        File dst = File.createTempFile("nxtest-", ".tmp");
+        try {
+            DigestingCopier copier = new DigestingCopier(MessageDigest.getInstance("MD5"));
+            byte[] digest;
+            try (OutputStream out = new FileOutputStream(dst)) {
+                digest = copier.copy(new ByteArrayInputStream(bytes), out);
+            }
+            assertArrayEquals(md5(bytes), digest);
+            assertArrayEquals(bytes, FileUtils.readFileToByteArray(dst));
+        } finally {
+            dst.delete();
+        }
+    }
+
+}
@@ -22,9 +22,11 @@ import static org.junit.Assert.fail;
 
 import java.io.Serializable;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -48,6 +50,7 @@ import org.nuxeo.ecm.core.api.Filter;
 import org.nuxeo.ecm.core.api.IdRef;
 import org.nuxeo.ecm.core.api.IterableQueryResult;
 import org.nuxeo.ecm.core.api.PathRef;
+import org.nuxeo.ecm.core.api.QueryCursor;
 import org.nuxeo.ecm.core.api.VersioningOption;
 import org.nuxeo.ecm.core.api.impl.DocumentModelImpl;
 import org.nuxeo.ecm.core.api.impl.FacetFilter;
@@ -1193,6 +1196,86 @@ public class TestSQLRepositoryQuery extends SQLRepositoryTestCase {
         res.close();
     }
 
+    protected List<String> readCursor(QueryCursor cursor, int max) {
+        List<String> ids = new ArrayList<String>();
+        try {
+            while (ids.size() < max && cursor.hasNext()) {
+                ids.add((String) cursor.next().get(NXQL.ECM_UUID));
+            }
+        } finally {
+            cursor.close();
+        }
+        return ids;
+    }
+
+    @Test
+    public void testQueryCursor() throws Exception {
+        DocumentModel folder = session.createDocumentModel("/", "folder", "Folder");
+        folder = session.createDocument(folder);
+        // several documents with the same key, more than a batch
+        String[] titles = { "b", "a", "c", "a", "b", "a", "c" };
+        for (int i = 0; i < titles.length; i++) {
+            DocumentModel doc = session.createDocumentModel("/folder", "doc" + i, "File");
+            doc.setPropertyValue("dc:title", titles[i]);
+            session.createDocument(doc);
+        }
+        session.save();
+
+        String where = "SELECT * FROM File WHERE ecm:parentId = '" + folder.getId() + "'";
+        String query = where + " ORDER BY dc:title";
+        List<String> expected = new ArrayList<String>();
+        IterableQueryResult res = session.queryAndFetch(where + " ORDER BY dc:title, ecm:uuid", "NXQL");
+        for (Map<String, Serializable> map : res) {
+            expected.add((String) map.get(NXQL.ECM_UUID));
+        }
+        res.close();
+        assertEquals(titles.length, expected.size());
+
+        // full iteration, in batches of 2
+        QueryCursor cursor = session.queryCursor(query, null, 2);
+        List<String> ids = new ArrayList<String>();
+        String previous = null;
+        try {
+            while (cursor.hasNext()) {
+                Map<String, Serializable> row = cursor.next();
+                String title = (String) row.get("dc:title");
+                if (previous != null) {
+                    assertTrue(previous.compareTo(title) <= 0);
+                }
+                previous = title;
+                ids.add((String) row.get(NXQL.ECM_UUID));
+            }
+        } finally {
+            cursor.close();
+        }
+        assertEquals(expected, ids);
+
+        // stop in the middle of equal keys and resume from the position
+        cursor = session.queryCursor(query, null, 2);
+        ids = readCursor(cursor, 2);
+        String position = cursor.getPosition();
+        assertNotNull(position);
+        ids.addAll(readCursor(session.queryCursor(query, position, 2), Integer.MAX_VALUE));
+        assertEquals(expected, ids);
+
+        // descending
+        cursor = session.queryCursor(where + " ORDER BY dc:title DESC", null, 3);
+        ids = readCursor(cursor, Integer.MAX_VALUE);
+        List<String> reversed = new ArrayList<String>(expected);
+        Collections.reverse(reversed);
+        assertEquals(reversed, ids);
+
+        // limit and offset apply to the whole iteration, also when resuming
+        String limitQuery = query + " LIMIT 4 OFFSET 1";
+        cursor = session.queryCursor(limitQuery, null, 2);
+        assertEquals(expected.subList(1, 5), readCursor(cursor, Integer.MAX_VALUE));
+        cursor = session.queryCursor(limitQuery, null, 2);
+        ids = readCursor(cursor, 3);
+        assertEquals(expected.subList(1, 4), ids);
+        cursor = session.queryCursor(limitQuery, cursor.getPosition(), 2);
+        assertEquals(expected.subList(4, 5), readCursor(cursor, Integer.MAX_VALUE));
+    }
+
     @Test
     public void testSecurityManagerBasic() throws Exception {
         doTestSecurityManager("OSGI-INF/security-policy-contrib.xml");
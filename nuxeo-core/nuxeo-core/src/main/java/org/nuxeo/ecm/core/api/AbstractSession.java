@@ -1281,6 +1281,16 @@ public abstract class AbstractSession implements CoreSession, Serializable {
 
     @Override
     public IterableQueryResult queryAndFetch(String query, String queryType, Object... params) throws ClientException {
+        return queryAndFetch(query, queryType, null, 0, params);
+    }
+
+    /**
+     * Executes a query and fetch, with an additional query transformer and a maximum number of rows.
+     *
+     * @since 7.2
+     */
+    protected IterableQueryResult queryAndFetch(String query, String queryType, Transformer transformer, long limit,
+            Object[] params) throws ClientException {
         try {
             SecurityService securityService = getSecurityService();
             Principal principal = getPrincipal();
@@ -1299,7 +1309,11 @@ public abstract class AbstractSession implements CoreSession, Serializable {
             } else {
                 transformers = Collections.emptyList();
             }
-            QueryFilter queryFilter = new QueryFilter(principal, principals, permissions, null, transformers, 0, 0);
+            if (transformer != null) {
+                transformers = new ArrayList<>(transformers);
+                transformers.add(transformer);
+            }
+            QueryFilter queryFilter = new QueryFilter(principal, principals, permissions, null, transformers, limit, 0);
             IterableQueryResult result = getSession().queryAndFetch(query, queryType, queryFilter, params);
             return result;
         } catch (ClientException | QueryException e) {
@@ -1308,6 +1322,19 @@ public abstract class AbstractSession implements CoreSession, Serializable {
         }
     }
 
+    @Override
+    public QueryCursor queryCursor(String query, String position, int batchSize, Object... params)
+            throws ClientException {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("Invalid batch size: " + batchSize);
+        }
+        try {
+            return new KeysetQueryCursor(this, query, position, batchSize, params);
+        } catch (IllegalArgumentException | QueryParseException e) {
+            throw new ClientException("Failed to execute query: " + query + ": " + tryToExtractMeaningfulErrMsg(e), e);
+        }
+    }
+
     private String tryToExtractMeaningfulErrMsg(Throwable t) {
         if (t instanceof QueryParseException) {
             return t.getMessage();
@@ -0,0 +1,281 @@
+/*
+ * Copyright (c) 2015 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.ecm.core.api;
+
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.GregorianCalendar;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import org.apache.commons.codec.binary.Base64;
+import org.nuxeo.ecm.core.query.sql.KeysetTransformer;
+import org.nuxeo.ecm.core.query.sql.NXQL;
+import org.nuxeo.ecm.core.query.sql.SQLQueryParser;
+import org.nuxeo.ecm.core.query.sql.model.OrderByExpr;
+import org.nuxeo.ecm.core.query.sql.model.OrderByList;
+import org.nuxeo.ecm.core.query.sql.model.SQLQuery;
+
+/**
+ * Query cursor doing keyset pagination on the single ordering key of a query and on {@code ecm:uuid}.
+ * <p>
+ * Each batch is a separate bounded query whose rows are read fully before the underlying result is closed, so no
+ * database cursor is held between two batches. The returned rows include the ordering key and {@code ecm:uuid}.
+ * <p>
+ * The {@code LIMIT} and {@code OFFSET} of the query apply to the whole iteration, not to each batch: the offset rows
+ * are skipped when starting from the beginning, and the number of rows still allowed by the limit is kept in the
+ * position so that a resumed cursor stops at the same place.
+ * <p>
+ * The position token is the URL-safe Base64 encoding of a small typed representation of the last key and id.
+ *
+ * @since 7.2
+ */
+public class KeysetQueryCursor implements QueryCursor {
+
+    protected final AbstractSession session;
+
+    protected final String query;
+
+    protected final int batchSize;
+
+    protected final Object[] params;
+
+    protected final String key;
+
+    protected final boolean descending;
+
+    /** Whether the query has a {@code LIMIT}. */
+    protected final boolean limited;
+
+    /** Rows still allowed by the query {@code LIMIT}. */
+    protected long remaining;
+
+    /** Rows still to skip for the query {@code OFFSET}. */
+    protected long toSkip;
+
+    protected Serializable lastKey;
+
+    protected String lastId;
+
+    protected Iterator<Map<String, Serializable>> batch = Collections.<Map<String, Serializable>> emptyList().iterator();
+
+    protected boolean exhausted;
+
+    public KeysetQueryCursor(AbstractSession session, String query, String position, int batchSize, Object[] params) {
+        this.session = session;
+        this.query = query;
+        this.batchSize = batchSize;
+        this.params = params;
+        SQLQuery sqlQuery = SQLQueryParser.parse(query);
+        OrderByList orderBy = sqlQuery.orderBy == null ? null : sqlQuery.orderBy.elements;
+        if (orderBy == null || orderBy.isEmpty()) {
+            key = NXQL.ECM_UUID;
+            descending = false;
+        } else {
+            OrderByExpr first = orderBy.get(0);
+            if (orderBy.size() > 2 || (orderBy.size() == 2 && !NXQL.ECM_UUID.equals(orderBy.get(1).reference.name))) {
+                throw new IllegalArgumentException("Query cursors can only order on a single key: " + query);
+            }
+            key = first.reference.name;
+            descending = first.isDescending;
+        }
+        limited = sqlQuery.limit > 0;
+        remaining = sqlQuery.limit;
+        if (position != null) {
+            decodePosition(position);
+        } else {
+            toSkip = sqlQuery.offset;
+        }
+    }
+
+    protected boolean isIdKey() {
+        return NXQL.ECM_UUID.equals(key);
+    }
+
+    protected void fetch() {
+        int size = batchSize;
+        if (limited) {
+            size = (int) Math.min(size, toSkip + remaining);
+        }
+        KeysetTransformer transformer = new KeysetTransformer(key, descending, lastKey, lastId);
+        IterableQueryResult result = session.queryAndFetch(query, NXQL.NXQL, transformer, size, params);
+        List<Map<String, Serializable>> rows = new ArrayList<>(size);
+        try {
+            Iterator<Map<String, Serializable>> it = result.iterator();
+            while (rows.size() < size && it.hasNext()) {
+                rows.add(it.next());
+            }
+        } finally {
+            result.close();
+        }
+        exhausted = rows.size() < size;
+        batch = rows.iterator();
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (limited && remaining <= 0) {
+            return false;
+        }
+        for (;;) {
+            if (!batch.hasNext() && !exhausted) {
+                fetch();
+            }
+            if (!batch.hasNext()) {
+                return false;
+            }
+            if (toSkip == 0) {
+                return true;
+            }
+            // skip rows for the query offset
+            advance(batch.next());
+            toSkip--;
+        }
+    }
+
+    @Override
+    public Map<String, Serializable> next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        Map<String, Serializable> row = batch.next();
+        advance(row);
+        if (limited) {
+            remaining--;
+        }
+        return row;
+    }
+
+    protected void advance(Map<String, Serializable> row) {
+        lastId = (String) row.get(NXQL.ECM_UUID);
+        if (!isIdKey()) {
+            lastKey = row.get(key);
+        }
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public String getPosition() {
+        if (lastId == null) {
+            return null;
+        }
+        return encodePosition();
+    }
+
+    @Override
+    public void close() {
+        batch = Collections.<Map<String, Serializable>> emptyList().iterator();
+        exhausted = true;
+    }
+
+    /*
+     * Position format: for a query with a limit, 'r', the number of remaining rows and ':', then a type char, then for
+     * non-null keys the length of the key string, ':' and the key string, then the id.
+     */
+
+    protected String encodePosition() {
+        StringBuilder buf = new StringBuilder();
+        if (limited) {
+            buf.append('r').append(remaining).append(':');
+        }
+        String value;
+        if (lastKey == null) {
+            buf.append('n');
+            value = null;
+        } else if (lastKey instanceof String) {
+            buf.append('s');
+            value = (String) lastKey;
+        } else if (lastKey instanceof Long || lastKey instanceof Integer) {
+            buf.append('l');
+            value = String.valueOf(((Number) lastKey).longValue());
+        } else if (lastKey instanceof Double || lastKey instanceof Float) {
+            buf.append('d');
+            value = String.valueOf(((Number) lastKey).doubleValue());
+        } else if (lastKey instanceof Boolean) {
+            buf.append('b');
+            value = lastKey.toString();
+        } else if (lastKey instanceof Calendar) {
+            buf.append('c');
+            value = String.valueOf(((Calendar) lastKey).getTimeInMillis());
+        } else {
+            throw new ClientRuntimeException("Unsupported cursor key value: " + lastKey);
+        }
+        if (value != null) {
+            buf.append(value.length()).append(':').append(value);
+        }
+        buf.append(lastId);
+        return Base64.encodeBase64URLSafeString(buf.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    protected void decodePosition(String position) {
+        String string = new String(Base64.decodeBase64(position), StandardCharsets.UTF_8);
+        try {
+            if (string.charAt(0) == 'r') {
+                int colon = string.indexOf(':');
+                long r = Long.parseLong(string.substring(1, colon));
+                if (limited) {
+                    remaining = Math.min(r, remaining);
+                }
+                string = string.substring(colon + 1);
+            }
+            char type = string.charAt(0);
+            String value = null;
+            int idStart = 1;
+            if (type != 'n') {
+                int colon = string.indexOf(':');
+                int length = Integer.parseInt(string.substring(1, colon));
+                idStart = colon + 1 + length;
+                value = string.substring(colon + 1, idStart);
+            }
+            lastId = string.substring(idStart);
+            switch (type) {
+            case 'n':
+                lastKey = null;
+                break;
+            case 's':
+                lastKey = value;
+                break;
+            case 'l':
+                lastKey = Long.valueOf(value);
+                break;
+            case 'd':
+                lastKey = Double.valueOf(value);
+                break;
+            case 'b':
+                lastKey = Boolean.valueOf(value);
+                break;
+            case 'c':
+                Calendar cal = new GregorianCalendar();
+                cal.setTimeInMillis(Long.parseLong(value));
+                lastKey = cal;
+                break;
+            default:
+                throw new IllegalArgumentException("Invalid cursor position: " + position);
+            }
+        } catch (IndexOutOfBoundsException | NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid cursor position: " + position, e);
+        }
+        if (lastId.isEmpty() || (lastKey == null) != isIdKey()) {
+            throw new IllegalArgumentException("Invalid cursor position: " + position);
+        }
+    }
+
+}
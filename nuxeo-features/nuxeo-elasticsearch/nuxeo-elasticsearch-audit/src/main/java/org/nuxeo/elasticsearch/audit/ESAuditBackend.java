@@ -109,6 +109,7 @@ public class ESAuditBackend extends AbstractAuditBackend implements AuditBackend
 
     @Override
     public void deactivate() {
+        stopWriter();
         if (esClient != null) {
             esClient.close();
         }
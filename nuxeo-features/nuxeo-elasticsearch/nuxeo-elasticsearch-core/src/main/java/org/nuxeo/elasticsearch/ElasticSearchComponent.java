@@ -18,6 +18,7 @@
 package org.nuxeo.elasticsearch;
 
 import static org.nuxeo.elasticsearch.ElasticSearchConstants.ES_ENABLED_PROPERTY;
+import static org.nuxeo.elasticsearch.ElasticSearchConstants.REINDEX_PARTITIONS_PROPERTY;
 
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -27,6 +28,7 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.UUID;
 import java.util.concurrent.Callable;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ThreadFactory;
@@ -39,6 +41,7 @@ import org.elasticsearch.client.Client;
 import org.elasticsearch.index.query.QueryBuilder;
 import org.nuxeo.ecm.automation.jaxrs.io.documents.JsonESDocumentWriter;
 import org.nuxeo.ecm.core.api.ClientException;
+import org.nuxeo.ecm.core.api.CoreInstance;
 import org.nuxeo.ecm.core.api.CoreSession;
 import org.nuxeo.ecm.core.api.DocumentModelList;
 import org.nuxeo.ecm.core.api.SortInfo;
@@ -58,8 +61,11 @@ import org.nuxeo.elasticsearch.core.ElasticSearchAdminImpl;
 import org.nuxeo.elasticsearch.core.ElasticSearchIndexingImpl;
 import org.nuxeo.elasticsearch.core.ElasticSearchServiceImpl;
 import org.nuxeo.elasticsearch.core.IndexingMonitor;
+import org.nuxeo.elasticsearch.core.ReindexingJobStore;
+import org.nuxeo.elasticsearch.core.ReindexingPartition;
 import org.nuxeo.elasticsearch.query.NxQueryBuilder;
 import org.nuxeo.elasticsearch.work.IndexingWorker;
+import org.nuxeo.elasticsearch.work.PartitionIndexingWorker;
 import org.nuxeo.elasticsearch.work.ScrollingIndexingWorker;
 import org.nuxeo.runtime.api.Framework;
 import org.nuxeo.runtime.model.ComponentContext;
@@ -184,6 +190,9 @@ public class ElasticSearchComponent extends DefaultComponent implements ElasticS
 
     @Override
     public void deactivate(ComponentContext context) {
+        if (esi != null) {
+            esi.shutdown();
+        }
         if (esa != null) {
             esa.disconnect();
         }
@@ -279,6 +288,36 @@ public class ElasticSearchComponent extends DefaultComponent implements ElasticS
         return indexingMonitor.getTotalWorkerCount() > 0;
     }
 
+    @Override
+    public String createReindexingIndex(String repositoryName) {
+        return esa.createReindexingIndex(repositoryName);
+    }
+
+    @Override
+    public void switchRepositoryIndex(String repositoryName, String indexName) {
+        esa.switchRepositoryIndex(repositoryName, indexName);
+    }
+
+    @Override
+    public long getReindexingTotal() {
+        return indexingMonitor.getReindexingTotal();
+    }
+
+    @Override
+    public long getReindexingProcessed() {
+        return indexingMonitor.getReindexingProcessed();
+    }
+
+    @Override
+    public double getReindexingRate() {
+        return indexingMonitor.getReindexingRate();
+    }
+
+    @Override
+    public long getReindexingEta() {
+        return indexingMonitor.getReindexingEta();
+    }
+
     @Override
     public ListenableFuture<Boolean> prepareWaitForIndexing() {
         return waiterExecutorService.submit(new Callable<Boolean>() {
@@ -339,6 +378,11 @@ public class ElasticSearchComponent extends DefaultComponent implements ElasticS
         return scheduledCommands.contains(cmd.getSignature());
     }
 
+    @Override
+    public void reindexNonRecursive(String indexName, List<IndexingCommand> cmds) throws ClientException {
+        esi.reindexNonRecursive(indexName, cmds);
+    }
+
     @Override
     public void indexNonRecursive(IndexingCommand cmd) throws ClientException {
         List<IndexingCommand> cmds = new ArrayList<>(1);
@@ -436,6 +480,70 @@ public class ElasticSearchComponent extends DefaultComponent implements ElasticS
         wm.schedule(worker);
     }
 
+    @Override
+    public String runReindexingJob(String repositoryName, String nxql, boolean newIndex) {
+        if (nxql == null || nxql.isEmpty()) {
+            throw new IllegalArgumentException("Expecting an NXQL query");
+        }
+        int partitions = Math.min(ReindexingPartition.MAX_PARTITIONS,
+                Integer.parseInt(Framework.getProperty(REINDEX_PARTITIONS_PROPERTY, "16")));
+        List<String> bounds = computeReindexingBounds(repositoryName, nxql, partitions);
+        partitions = bounds.size() + 1;
+        String jobId = UUID.randomUUID().toString();
+        String indexName = newIndex ? esa.createReindexingIndex(repositoryName) : null;
+        log.warn(String.format("Re-indexing job: %s started with %d partitions, NXQL: %s on repository: %s%s", jobId,
+                partitions, nxql, repositoryName, indexName == null ? "" : " into index: " + indexName));
+        ReindexingJobStore store = new ReindexingJobStore(esa.getClient());
+        indexingMonitor.startReindexing();
+        WorkManager wm = Framework.getLocalService(WorkManager.class);
+        for (int i = 0; i < partitions; i++) {
+            String lower = i == 0 ? null : bounds.get(i - 1);
+            String upper = i == partitions - 1 ? null : bounds.get(i);
+            store.save(new ReindexingPartition(jobId, repositoryName, nxql, indexName, i, partitions, lower, upper));
+        }
+        for (int i = 0; i < partitions; i++) {
+            wm.schedule(new PartitionIndexingWorker(indexingMonitor, repositoryName, jobId, i));
+        }
+        return jobId;
+    }
+
+    /**
+     * Reads from the repository the ids splitting the documents of a reindexing job into partitions.
+     */
+    protected List<String> computeReindexingBounds(String repositoryName, String nxql, int partitions) {
+        boolean txCreated = false;
+        if (!TransactionHelper.isTransactionActive()) {
+            txCreated = TransactionHelper.startTransaction();
+        }
+        try (CoreSession session = CoreInstance.openCoreSessionSystem(repositoryName)) {
+            return ReindexingPartition.computeBounds(session, nxql, partitions);
+        } finally {
+            if (txCreated) {
+                TransactionHelper.commitOrRollbackTransaction();
+            }
+        }
+    }
+
+    @Override
+    public int resumeReindexingJobs() {
+        ReindexingJobStore store = new ReindexingJobStore(esa.getClient());
+        List<ReindexingPartition> partitions = store.getUnfinishedPartitions();
+        if (partitions.isEmpty()) {
+            return 0;
+        }
+        indexingMonitor.startReindexing();
+        WorkManager wm = Framework.getLocalService(WorkManager.class);
+        for (ReindexingPartition p : partitions) {
+            log.warn("Resuming re-indexing: " + p);
+            if (p.getIndexName() != null) {
+                esa.setReindexingIndexName(p.getRepositoryName(), p.getIndexName());
+            }
+            wm.schedule(new PartitionIndexingWorker(indexingMonitor, p.getRepositoryName(), p.getJobId(),
+                    p.getPartition()));
+        }
+        return partitions.size();
+    }
+
     // ES Search ===============================================================
     @Override
     public DocumentModelList query(NxQueryBuilder queryBuilder) throws ClientException {
@@ -96,6 +96,11 @@ final public class ElasticSearchConstants {
 
     public static final String REINDEX_BUCKET_WRITE_PROPERTY = "elasticsearch.reindex.bucketWriteSize";
 
+    /**
+     * @since 7.2
+     */
+    public static final String REINDEX_PARTITIONS_PROPERTY = "elasticsearch.reindex.partitions";
+
     public static final String DISABLE_AUTO_INDEXING = "disableAutoIndexing";
 
     public static final String ES_SYNC_INDEXING_FLAG = "ESSyncIndexing";
@@ -164,4 +164,52 @@ public interface ElasticSearchAdmin {
      * @since 7.2
      */
     boolean isEmbedded();
+
+    /**
+     * Creates a new index with the settings and mapping of the repository index, to be filled by a reindexing job.
+     * <p>
+     * Until the index is switched, documents indexed in the repository index are also indexed in the new one.
+     *
+     * @return the name of the new index
+     * @since 7.2
+     */
+    String createReindexingIndex(String repositoryName);
+
+    /**
+     * Makes the repository index name an alias of the given index, deleting the previously used index.
+     * <p>
+     * The alias is moved in a single request. A repository index created as a concrete index by a previous version
+     * must however be deleted before the alias can take its name, so searches fail for that short time.
+     *
+     * @since 7.2
+     */
+    void switchRepositoryIndex(String repositoryName, String indexName);
+
+    /**
+     * Returns the number of documents to reindex by the running reindexing jobs.
+     *
+     * @since 7.2
+     */
+    long getReindexingTotal();
+
+    /**
+     * Returns the number of documents already reindexed by the running reindexing jobs.
+     *
+     * @since 7.2
+     */
+    long getReindexingProcessed();
+
+    /**
+     * Returns the reindexing rate in documents per second.
+     *
+     * @since 7.2
+     */
+    double getReindexingRate();
+
+    /**
+     * Returns the estimated number of seconds before the end of the running reindexing jobs, or -1 if unknown.
+     *
+     * @since 7.2
+     */
+    long getReindexingEta();
 }
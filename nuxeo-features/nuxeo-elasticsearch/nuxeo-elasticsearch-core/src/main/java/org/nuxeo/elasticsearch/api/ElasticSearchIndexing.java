@@ -53,6 +53,25 @@ public interface ElasticSearchIndexing {
      */
     void runReindexingWorker(String repositoryName, String nxql);
 
+    /**
+     * Reindex documents matching the NXQL query with a job whose partitions run in parallel and can be resumed after
+     * a restart. This is asynchronous.
+     *
+     * @param newIndex if {@code true} the documents are indexed in a new index, which replaces the repository index
+     *            when the job is done
+     * @return the job id
+     * @since 7.2
+     */
+    String runReindexingJob(String repositoryName, String nxql, boolean newIndex);
+
+    /**
+     * Resumes the partitions of the reindexing jobs interrupted by a shutdown.
+     *
+     * @return the number of resumed partitions
+     * @since 7.2
+     */
+    int resumeReindexingJobs();
+
     /**
      * {true} if a command has already been submitted for indexing.
      *
@@ -80,4 +99,12 @@ public interface ElasticSearchIndexing {
      */
     void indexNonRecursive(List<IndexingCommand> cmds);
 
+    /**
+     * Same as {@link ElasticSearchIndexing#indexNonRecursive(List)} but writes to the given index instead of the
+     * repository index, and never refreshes.
+     *
+     * @since 7.2
+     */
+    void reindexNonRecursive(String indexName, List<IndexingCommand> cmds);
+
 }
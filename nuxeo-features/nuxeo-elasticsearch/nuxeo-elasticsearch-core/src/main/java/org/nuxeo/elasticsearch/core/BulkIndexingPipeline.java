@@ -0,0 +1,456 @@
+/*
+ * Copyright (c) 2015 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.elasticsearch.core;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.ActionRequest;
+import org.elasticsearch.action.bulk.BulkItemResponse;
+import org.elasticsearch.action.bulk.BulkRequestBuilder;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.action.delete.DeleteRequest;
+import org.elasticsearch.action.index.IndexRequest;
+import org.nuxeo.ecm.core.api.ClientException;
+import org.nuxeo.runtime.api.Framework;
+import org.nuxeo.runtime.metrics.MetricsService;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.SharedMetricRegistries;
+import com.codahale.metrics.Timer;
+import com.codahale.metrics.Timer.Context;
+
+/**
+ * Pipeline sending index and delete requests to Elasticsearch in bulks shared by all the indexing threads.
+ * <p>
+ * Requests are routed by document id to a fixed number of lanes, each with a bounded buffer and a sender thread. A
+ * lane has at most one bulk in flight, executed through the asynchronous bulk API; requests submitted while it is in
+ * flight accumulate and are sent together in the next bulk, up to a maximum size. As all the requests for a given
+ * document go through the same lane, they are applied in submission order.
+ * <p>
+ * A request that fails within a successful bulk is reported through its {@link Ticket} and counted in the
+ * {@code bulkFailures} metric.
+ * <p>
+ * Refreshes requested by synchronous commands are coalesced: a single refresh serves all the callers waiting when it
+ * starts, and refreshes are started at most once per configured interval.
+ *
+ * @since 7.2
+ */
+public class BulkIndexingPipeline {
+
+    private static final Log log = LogFactory.getLog(BulkIndexingPipeline.class);
+
+    public static final String BULK_SIZE_PROP = "elasticsearch.indexing.bulkSize";
+
+    public static final String DEFAULT_BULK_SIZE = "500";
+
+    /** Time during which a lane waits for more requests before sending a bulk that isn't full. */
+    public static final String BULK_DELAY_PROP = "elasticsearch.indexing.bulkDelayMillis";
+
+    public static final String DEFAULT_BULK_DELAY = "0";
+
+    public static final String LANES_PROP = "elasticsearch.indexing.lanes";
+
+    public static final String DEFAULT_LANES = "2";
+
+    /** Maximum number of requests buffered in a lane, submitters block when it is reached. */
+    public static final String BUFFER_SIZE_PROP = "elasticsearch.indexing.bufferSize";
+
+    public static final String DEFAULT_BUFFER_SIZE = "5000";
+
+    /** Minimum time between the start of two refreshes. */
+    public static final String REFRESH_INTERVAL_PROP = "elasticsearch.indexing.refreshIntervalMillis";
+
+    public static final String DEFAULT_REFRESH_INTERVAL = "0";
+
+    protected static final AtomicInteger THREAD_NUMBER = new AtomicInteger();
+
+    protected final ElasticSearchAdminImpl esa;
+
+    protected final int bulkSize;
+
+    protected final long bulkDelay;
+
+    protected final long refreshInterval;
+
+    protected final Lane[] lanes;
+
+    protected volatile boolean stopped;
+
+    protected final ReentrantLock refreshLock = new ReentrantLock();
+
+    protected final Condition refreshCondition = refreshLock.newCondition();
+
+    // number of refreshes started, protected by refreshLock
+    protected long refreshStarted;
+
+    // number of refreshes done, protected by refreshLock
+    protected long refreshDone;
+
+    // protected by refreshLock
+    protected boolean refreshing;
+
+    // protected by refreshLock
+    protected long lastRefreshStart;
+
+    protected final Timer bulkTimer;
+
+    protected final Histogram bulkSizeHistogram;
+
+    protected final Counter bulkFailureCount;
+
+    protected final Timer refreshTimer;
+
+    protected final Counter refreshCoalescedCount;
+
+    public BulkIndexingPipeline(ElasticSearchAdminImpl esa) {
+        this.esa = esa;
+        bulkSize = Math.max(1, Integer.parseInt(Framework.getProperty(BULK_SIZE_PROP, DEFAULT_BULK_SIZE)));
+        bulkDelay = Long.parseLong(Framework.getProperty(BULK_DELAY_PROP, DEFAULT_BULK_DELAY));
+        refreshInterval = Long.parseLong(Framework.getProperty(REFRESH_INTERVAL_PROP, DEFAULT_REFRESH_INTERVAL));
+        int bufferSize = Math.max(bulkSize, Integer.parseInt(Framework.getProperty(BUFFER_SIZE_PROP,
+                DEFAULT_BUFFER_SIZE)));
+        int nbLanes = Math.max(1, Integer.parseInt(Framework.getProperty(LANES_PROP, DEFAULT_LANES)));
+        MetricRegistry registry = SharedMetricRegistries.getOrCreate(MetricsService.class.getName());
+        bulkTimer = registry.timer(MetricRegistry.name("nuxeo", "elasticsearch", "service", "bulk"));
+        bulkSizeHistogram = registry.histogram(MetricRegistry.name("nuxeo", "elasticsearch", "service", "bulkSize"));
+        bulkFailureCount = registry.counter(MetricRegistry.name("nuxeo", "elasticsearch", "service", "bulkFailures"));
+        refreshTimer = registry.timer(MetricRegistry.name("nuxeo", "elasticsearch", "service", "refresh"));
+        refreshCoalescedCount = registry.counter(MetricRegistry.name("nuxeo", "elasticsearch", "service",
+                "refreshCoalesced"));
+        lanes = new Lane[nbLanes];
+        for (int i = 0; i < nbLanes; i++) {
+            lanes[i] = new Lane(bufferSize);
+            lanes[i].start();
+        }
+    }
+
+    /**
+     * Submits index or delete requests, which will be sent in the next bulks of their lanes.
+     * <p>
+     * Blocks if the buffer of a lane is full.
+     *
+     * @return a ticket to wait for the execution of the requests
+     */
+    public Ticket submit(List<ActionRequest<?>> requests) throws ClientException {
+        Ticket ticket = new Ticket(requests.size());
+        for (ActionRequest<?> request : requests) {
+            lanes[laneIndex(request)].put(new Action(request, ticket));
+        }
+        return ticket;
+    }
+
+    /**
+     * Waits until all the requests submitted before this call are executed.
+     */
+    public void flush() throws ClientException {
+        Ticket ticket = new Ticket(lanes.length);
+        for (Lane lane : lanes) {
+            lane.put(new Action(null, ticket));
+        }
+        ticket.await();
+    }
+
+    /**
+     * Refreshes the indexes so that all the requests executed before this call are visible to searches.
+     * <p>
+     * Callers waiting concurrently share the same refresh.
+     */
+    public void refresh() throws ClientException {
+        refreshLock.lock();
+        try {
+            // a refresh already in progress may have started before our requests were executed
+            long target = refreshStarted + 1;
+            boolean started = false;
+            while (refreshDone < target) {
+                if (refreshing) {
+                    refreshCondition.await();
+                    continue;
+                }
+                long wait = lastRefreshStart + refreshInterval - System.currentTimeMillis();
+                if (wait > 0) {
+                    refreshCondition.await(wait, TimeUnit.MILLISECONDS);
+                    continue;
+                }
+                refreshing = true;
+                refreshStarted++;
+                lastRefreshStart = System.currentTimeMillis();
+                started = true;
+                refreshLock.unlock();
+                Context stopWatch = refreshTimer.time();
+                try {
+                    esa.refresh();
+                } finally {
+                    stopWatch.stop();
+                    refreshLock.lock();
+                    refreshing = false;
+                    refreshDone++;
+                    refreshCondition.signalAll();
+                }
+            }
+            if (!started) {
+                refreshCoalescedCount.inc();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ClientException("Interrupted while waiting for refresh", e);
+        } finally {
+            refreshLock.unlock();
+        }
+    }
+
+    /**
+     * Stops the pipeline, after sending the requests already submitted.
+     */
+    public void shutdown() {
+        stopped = true;
+        for (Lane lane : lanes) {
+            try {
+                lane.join(TimeUnit.SECONDS.toMillis(10));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            if (lane.isAlive()) {
+                log.warn("Elasticsearch bulk lane still running after shutdown: " + lane.getName());
+                lane.interrupt();
+            }
+        }
+    }
+
+    protected int laneIndex(ActionRequest<?> request) {
+        String id;
+        if (request instanceof IndexRequest) {
+            id = ((IndexRequest) request).id();
+        } else if (request instanceof DeleteRequest) {
+            id = ((DeleteRequest) request).id();
+        } else {
+            throw new IllegalArgumentException("Unsupported request: " + request);
+        }
+        return (id.hashCode() & Integer.MAX_VALUE) % lanes.length;
+    }
+
+    /**
+     * Tracks the execution of a group of requests.
+     */
+    public static class Ticket {
+
+        protected final AtomicInteger remaining;
+
+        protected final CountDownLatch latch = new CountDownLatch(1);
+
+        protected volatile Throwable failure;
+
+        protected final Queue<String> itemFailures = new ConcurrentLinkedQueue<>();
+
+        protected Ticket(int size) {
+            remaining = new AtomicInteger(size);
+            if (size == 0) {
+                latch.countDown();
+            }
+        }
+
+        protected void done(Throwable t) {
+            if (t != null) {
+                failure = t;
+            }
+            if (remaining.decrementAndGet() == 0) {
+                latch.countDown();
+            }
+        }
+
+        protected void itemFailed(String message) {
+            itemFailures.add(message);
+        }
+
+        /**
+         * Waits until all the requests of this ticket are executed.
+         *
+         * @return the failure messages of the requests that failed individually, empty if none failed
+         * @throws ClientException if a bulk containing one of the requests could not be executed
+         */
+        public List<String> await() throws ClientException {
+            try {
+                latch.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new ClientException("Interrupted while waiting for bulk indexing", e);
+            }
+            Throwable t = failure;
+            if (t instanceof RuntimeException) {
+                throw (RuntimeException) t;
+            } else if (t != null) {
+                throw new ClientException(t);
+            }
+            return new ArrayList<>(itemFailures);
+        }
+    }
+
+    /**
+     * A request and its ticket. A {@code null} request is a barrier used to flush a lane.
+     */
+    protected static class Action {
+
+        protected final ActionRequest<?> request;
+
+        protected final Ticket ticket;
+
+        protected Action(ActionRequest<?> request, Ticket ticket) {
+            this.request = request;
+            this.ticket = ticket;
+        }
+    }
+
+    protected class Lane extends Thread {
+
+        protected final BlockingQueue<Action> buffer;
+
+        // a single bulk in flight, to keep the order of the requests
+        protected final Semaphore inFlight = new Semaphore(1);
+
+        protected Lane(int bufferSize) {
+            super("Nuxeo-ES-Bulk-" + THREAD_NUMBER.incrementAndGet());
+            setDaemon(true);
+            buffer = new LinkedBlockingQueue<>(bufferSize);
+        }
+
+        protected void put(Action action) throws ClientException {
+            try {
+                while (!buffer.offer(action, 1, TimeUnit.SECONDS)) {
+                    if (stopped) {
+                        throw new ClientException("Elasticsearch bulk indexing is stopped");
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new ClientException("Interrupted while buffering indexing request", e);
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (!stopped || !buffer.isEmpty()) {
+                    Action first = buffer.poll(1, TimeUnit.SECONDS);
+                    if (first == null) {
+                        continue;
+                    }
+                    // requests keep accumulating while the previous bulk is in flight
+                    inFlight.acquire();
+                    List<Action> actions = new ArrayList<>(bulkSize);
+                    actions.add(first);
+                    buffer.drainTo(actions, bulkSize - 1);
+                    if (bulkDelay > 0) {
+                        long deadline = System.currentTimeMillis() + bulkDelay;
+                        long wait;
+                        while (actions.size() < bulkSize && (wait = deadline - System.currentTimeMillis()) > 0) {
+                            Action action = buffer.poll(wait, TimeUnit.MILLISECONDS);
+                            if (action == null) {
+                                break;
+                            }
+                            actions.add(action);
+                            buffer.drainTo(actions, bulkSize - actions.size());
+                        }
+                    }
+                    send(actions);
+                }
+                // wait for the last bulk
+                inFlight.acquire();
+                inFlight.release();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        protected void send(final List<Action> actions) {
+            BulkRequestBuilder bulkRequest = esa.getClient().prepareBulk();
+            // actions by position in the bulk, to report item failures
+            final List<Action> items = new ArrayList<>(actions.size());
+            for (Action action : actions) {
+                if (action.request instanceof IndexRequest) {
+                    bulkRequest.add((IndexRequest) action.request);
+                    items.add(action);
+                } else if (action.request instanceof DeleteRequest) {
+                    bulkRequest.add((DeleteRequest) action.request);
+                    items.add(action);
+                }
+            }
+            int size = bulkRequest.numberOfActions();
+            if (size == 0) {
+                // only barriers, the previous bulk is done
+                done(actions, null);
+                return;
+            }
+            bulkSizeHistogram.update(size);
+            if (log.isDebugEnabled()) {
+                log.debug(String.format(
+                        "Send bulk of %d requests: curl -XPOST 'http://localhost:9200/_bulk' -d '%s'", size,
+                        bulkRequest.request().requests().toString()));
+            }
+            final Context stopWatch = bulkTimer.time();
+            try {
+                bulkRequest.execute(new ActionListener<BulkResponse>() {
+                    @Override
+                    public void onResponse(BulkResponse response) {
+                        stopWatch.stop();
+                        if (response.hasFailures()) {
+                            log.error(response.buildFailureMessage());
+                            for (BulkItemResponse item : response.getItems()) {
+                                if (item.isFailed()) {
+                                    bulkFailureCount.inc();
+                                    String message = "Fail to process document: " + item.getId() + ": "
+                                            + item.getFailureMessage();
+                                    items.get(item.getItemId()).ticket.itemFailed(message);
+                                }
+                            }
+                        }
+                        done(actions, null);
+                    }
+
+                    @Override
+                    public void onFailure(Throwable e) {
+                        stopWatch.stop();
+                        log.error("Fail to execute bulk of " + actions.size() + " requests", e);
+                        done(actions, e);
+                    }
+                });
+            } catch (RuntimeException e) {
+                stopWatch.stop();
+                log.error("Fail to send bulk of " + actions.size() + " requests", e);
+                done(actions, e);
+            }
+        }
+
+        protected void done(List<Action> actions, Throwable t) {
+            inFlight.release();
+            for (Action action : actions) {
+                action.ticket.done(t);
+            }
+        }
+    }
+
+}
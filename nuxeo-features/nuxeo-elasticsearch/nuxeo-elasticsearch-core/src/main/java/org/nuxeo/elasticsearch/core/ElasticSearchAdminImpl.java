@@ -28,20 +28,27 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.elasticsearch.ElasticsearchException;
 import org.elasticsearch.action.admin.cluster.health.ClusterHealthResponse;
+import org.elasticsearch.action.admin.indices.alias.IndicesAliasesRequestBuilder;
 import org.elasticsearch.action.admin.indices.delete.DeleteIndexRequest;
 import org.elasticsearch.client.Client;
+import org.elasticsearch.client.IndicesAdminClient;
 import org.elasticsearch.client.transport.NoNodeAvailableException;
 import org.elasticsearch.client.transport.TransportClient;
+import org.elasticsearch.cluster.metadata.MappingMetaData;
+import org.elasticsearch.common.collect.ImmutableOpenMap;
 import org.elasticsearch.common.settings.ImmutableSettings;
 import org.elasticsearch.common.settings.ImmutableSettings.Builder;
 import org.elasticsearch.common.settings.Settings;
@@ -70,6 +77,22 @@ public class ElasticSearchAdminImpl implements ElasticSearchAdmin {
 
     private final Map<String, String> repoNames = new HashMap<>();
 
+    /**
+     * Time during which the new index being built for a repository by a reindexing job, as persisted in the job store,
+     * is cached by a node.
+     *
+     * @since 7.2
+     */
+    public static final String REINDEXING_TARGET_CACHE_PROPERTY = "elasticsearch.reindex.targetCacheMillis";
+
+    public static final String DEFAULT_REINDEXING_TARGET_CACHE = "1000";
+
+    // new indexes being built by reindexing jobs, by repository, cached from the job store
+    private final Map<String, ReindexingTarget> reindexingTargets = new ConcurrentHashMap<>();
+
+    private final long reindexingTargetCacheMillis = Long.parseLong(Framework.getProperty(
+            REINDEXING_TARGET_CACHE_PROPERTY, DEFAULT_REINDEXING_TARGET_CACHE));
+
     private final Map<String, ElasticSearchIndexConfig> indexConfig;
 
     private Node localNode;
@@ -343,8 +366,12 @@ public class ElasticSearchAdminImpl implements ElasticSearchAdmin {
         if (indexExists) {
             if (!dropIfExists) {
                 log.debug("Index " + conf.getName() + " already exists");
-                mappingExists = getClient().admin().indices().prepareGetMappings(conf.getName()).execute().actionGet().getMappings().get(
-                        conf.getName()).containsKey(DOC_TYPE);
+                // keyed by concrete index, the name may be an alias after a reindexing
+                Iterator<ImmutableOpenMap<String, MappingMetaData>> it = getClient().admin().indices().prepareGetMappings(
+                        conf.getName()).execute().actionGet().getMappings().valuesIt();
+                while (it.hasNext()) {
+                    mappingExists |= it.next().containsKey(DOC_TYPE);
+                }
             } else {
                 if (!Framework.isTestModeSet()) {
                     log.warn(String.format("Initializing index: %s, type: %s with "
@@ -359,7 +386,15 @@ public class ElasticSearchAdminImpl implements ElasticSearchAdmin {
             if (log.isDebugEnabled()) {
                 log.debug("Using settings: " + conf.getSettings());
             }
-            getClient().admin().indices().prepareCreate(conf.getName()).setSettings(conf.getSettings()).execute().actionGet();
+            if (DOC_TYPE.equals(conf.getType())) {
+                // repository index behind an alias, so that a reindexing job can switch it atomically
+                String indexName = conf.getName() + "-" + System.currentTimeMillis();
+                IndicesAdminClient indices = getClient().admin().indices();
+                indices.prepareCreate(indexName).setSettings(conf.getSettings()).execute().actionGet();
+                indices.prepareAliases().addAlias(indexName, conf.getName()).execute().actionGet();
+            } else {
+                getClient().admin().indices().prepareCreate(conf.getName()).setSettings(conf.getSettings()).execute().actionGet();
+            }
         }
         if (!mappingExists) {
             log.info(String.format("Creating mapping type: %s on index: %s", conf.getType(), conf.getName()));
@@ -374,6 +409,116 @@ public class ElasticSearchAdminImpl implements ElasticSearchAdmin {
         checkClusterHealth(conf.getName());
     }
 
+    protected ElasticSearchIndexConfig getRepositoryIndexConfig(String repositoryName) {
+        for (ElasticSearchIndexConfig conf : indexConfig.values()) {
+            if (DOC_TYPE.equals(conf.getType()) && conf.getRepositoryName().equals(repositoryName)) {
+                return conf;
+            }
+        }
+        throw new NoSuchElementException("No index defined for repository: " + repositoryName);
+    }
+
+    @Override
+    public String createReindexingIndex(String repositoryName) {
+        ElasticSearchIndexConfig conf = getRepositoryIndexConfig(repositoryName);
+        String indexName = conf.getName() + "-" + System.currentTimeMillis();
+        log.warn(String.format("Creating index: %s to reindex repository: %s", indexName, repositoryName));
+        getClient().admin().indices().prepareCreate(indexName).setSettings(conf.getSettings()).execute().actionGet();
+        getClient().admin().indices().preparePutMapping(indexName).setType(conf.getType()).setSource(
+                conf.getMapping()).execute().actionGet();
+        checkClusterHealth(indexName);
+        setReindexingIndexName(repositoryName, indexName);
+        // let the other nodes see the new index before documents are read for it
+        try {
+            Thread.sleep(reindexingTargetCacheMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+        return indexName;
+    }
+
+    /**
+     * Gets the new index being built for the repository by a reindexing job, or {@code null} if none.
+     * <p>
+     * Documents indexed in the repository index are also indexed in this index. The index is shared by all the nodes
+     * through the job store, and cached for {@link #REINDEXING_TARGET_CACHE_PROPERTY}.
+     *
+     * @since 7.2
+     */
+    public String getReindexingIndexName(String repositoryName) {
+        long now = System.currentTimeMillis();
+        ReindexingTarget target = reindexingTargets.get(repositoryName);
+        if (target == null || now - target.time > reindexingTargetCacheMillis) {
+            String indexName = new ReindexingJobStore(getClient()).getTargetIndex(repositoryName);
+            target = new ReindexingTarget(indexName, now);
+            reindexingTargets.put(repositoryName, target);
+        }
+        return target.indexName;
+    }
+
+    /**
+     * Sets the new index being built for the repository by a reindexing job, for all the nodes.
+     *
+     * @param indexName the new index, or {@code null} when the job is completed
+     * @since 7.2
+     */
+    public void setReindexingIndexName(String repositoryName, String indexName) {
+        new ReindexingJobStore(getClient()).setTargetIndex(repositoryName, indexName);
+        reindexingTargets.put(repositoryName, new ReindexingTarget(indexName, System.currentTimeMillis()));
+    }
+
+    protected static class ReindexingTarget {
+
+        protected final String indexName;
+
+        protected final long time;
+
+        protected ReindexingTarget(String indexName, long time) {
+            this.indexName = indexName;
+            this.time = time;
+        }
+    }
+
+    @Override
+    public void switchRepositoryIndex(String repositoryName, String indexName) {
+        String alias = getIndexNameForRepository(repositoryName);
+        IndicesAdminClient indices = getClient().admin().indices();
+        indices.prepareRefresh(indexName).execute().actionGet();
+        List<String> previous = new ArrayList<>();
+        IndicesAliasesRequestBuilder request = indices.prepareAliases();
+        if (indices.prepareAliasesExist(alias).execute().actionGet().isExists()) {
+            Iterator<String> it = indices.prepareGetAliases(alias).execute().actionGet().getAliases().keysIt();
+            while (it.hasNext()) {
+                String index = it.next();
+                previous.add(index);
+                request.removeAlias(index, alias);
+            }
+        } else if (indices.prepareExists(alias).execute().actionGet().isExists()) {
+            // Repository index created as a concrete index, before repository indexes were created behind an alias.
+            // An alias cannot have the name of an existing index, and an aliases request cannot delete an index, so
+            // the old index has to be deleted first: searches fail until the alias is added just after.
+            log.warn(String.format("Deleting index: %s to replace it by an alias, searches on repository: %s fail "
+                    + "until the alias is added", alias, repositoryName));
+            indices.delete(new DeleteIndexRequest(alias)).actionGet();
+        }
+        try {
+            request.addAlias(indexName, alias).execute().actionGet();
+        } catch (ElasticsearchException e) {
+            log.error(String.format("Cannot add alias: %s to index: %s, add it manually to restore the search on "
+                    + "repository: %s", alias, indexName, repositoryName), e);
+            throw e;
+        }
+        // the other nodes may keep writing to the new index directly for a while, which is now harmless
+        setReindexingIndexName(repositoryName, null);
+        for (String index : previous) {
+            if (!index.equals(indexName)) {
+                indices.delete(new DeleteIndexRequest(index)).actionGet();
+            }
+        }
+        log.warn(String.format("Index: %s is now used for repository: %s", indexName, repositoryName));
+    }
+
     @Override
     public int getPendingCommandCount() {
         // impl of scheduling is left to the ESService
@@ -413,6 +558,30 @@ public class ElasticSearchAdminImpl implements ElasticSearchAdmin {
         throw new UnsupportedOperationException("Not implemented");
     }
 
+    @Override
+    public long getReindexingTotal() {
+        // impl of scheduling is left to the ESService
+        throw new UnsupportedOperationException("Not implemented");
+    }
+
+    @Override
+    public long getReindexingProcessed() {
+        // impl of scheduling is left to the ESService
+        throw new UnsupportedOperationException("Not implemented");
+    }
+
+    @Override
+    public double getReindexingRate() {
+        // impl of scheduling is left to the ESService
+        throw new UnsupportedOperationException("Not implemented");
+    }
+
+    @Override
+    public long getReindexingEta() {
+        // impl of scheduling is left to the ESService
+        throw new UnsupportedOperationException("Not implemented");
+    }
+
     /**
      * Get the elastic search indexes for searches
      */
@@ -24,20 +24,22 @@ import static org.nuxeo.elasticsearch.ElasticSearchConstants.DOC_TYPE;
 import static org.nuxeo.elasticsearch.ElasticSearchConstants.PATH_FIELD;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.codehaus.jackson.JsonFactory;
 import org.codehaus.jackson.JsonGenerator;
-import org.elasticsearch.action.bulk.BulkRequestBuilder;
-import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.action.ActionRequest;
+import org.elasticsearch.action.delete.DeleteRequest;
 import org.elasticsearch.action.delete.DeleteRequestBuilder;
 import org.elasticsearch.action.deletebyquery.DeleteByQueryRequestBuilder;
 import org.elasticsearch.action.deletebyquery.DeleteByQueryResponse;
 import org.elasticsearch.action.deletebyquery.IndexDeleteByQueryResponse;
 import org.elasticsearch.action.get.GetRequestBuilder;
 import org.elasticsearch.action.get.GetResponse;
+import org.elasticsearch.action.index.IndexRequest;
 import org.elasticsearch.action.index.IndexRequestBuilder;
 import org.elasticsearch.common.xcontent.XContentBuilder;
 import org.elasticsearch.index.query.FilterBuilders;
@@ -74,8 +76,11 @@ public class ElasticSearchIndexingImpl implements ElasticSearchIndexing {
 
     private JsonESDocumentWriter jsonESDocumentWriter;
 
+    private final BulkIndexingPipeline pipeline;
+
     public ElasticSearchIndexingImpl(ElasticSearchAdminImpl esa) {
         this.esa = esa;
+        pipeline = new BulkIndexingPipeline(esa);
         MetricRegistry registry = SharedMetricRegistries.getOrCreate(MetricsService.class.getName());
         indexTimer = registry.timer(MetricRegistry.name("nuxeo", "elasticsearch", "service", "index"));
         deleteTimer = registry.timer(MetricRegistry.name("nuxeo", "elasticsearch", "service", "delete"));
@@ -91,6 +96,15 @@ public class ElasticSearchIndexingImpl implements ElasticSearchIndexing {
         this.jsonESDocumentWriter = jsonESDocumentWriter;
     }
 
+    /**
+     * Stops the bulk indexing pipeline, after sending the requests already submitted.
+     *
+     * @since 7.2
+     */
+    public void shutdown() {
+        pipeline.shutdown();
+    }
+
     @Override
     public void runIndexingWorker(List<IndexingCommand> cmds) {
         throw new UnsupportedOperationException("Not implemented");
@@ -101,6 +115,42 @@ public class ElasticSearchIndexingImpl implements ElasticSearchIndexing {
         throw new UnsupportedOperationException("Not implemented");
     }
 
+    @Override
+    public String runReindexingJob(String repositoryName, String nxql, boolean newIndex) {
+        throw new UnsupportedOperationException("Not implemented");
+    }
+
+    @Override
+    public int resumeReindexingJobs() {
+        throw new UnsupportedOperationException("Not implemented");
+    }
+
+    @Override
+    public void reindexNonRecursive(String indexName, List<IndexingCommand> cmds) throws ClientException {
+        List<ActionRequest<?>> requests = new ArrayList<>(cmds.size());
+        Context stopWatch = bulkIndexTimer.time();
+        try {
+            for (IndexingCommand cmd : cmds) {
+                try {
+                    IndexRequestBuilder idxRequest = buildEsIndexingRequest(cmd, indexName);
+                    if (idxRequest != null) {
+                        requests.add(idxRequest.request());
+                    }
+                } catch (ClientException | IllegalArgumentException e) {
+                    if (e.getCause() instanceof NoSuchDocumentException) {
+                        log.info("Skip reindexing command, doc does not exists anymore: " + cmd);
+                    } else {
+                        log.error("Skip reindexing command, fail to create request: " + cmd, e);
+                    }
+                }
+            }
+            pipeline.submit(requests).await();
+        } finally {
+            stopWatch.stop();
+        }
+        esa.totalCommandProcessed.addAndGet(cmds.size());
+    }
+
     @Override
     public void indexNonRecursive(List<IndexingCommand> cmds) throws ClientException {
         int nbCommands = cmds.size();
@@ -111,10 +161,13 @@ public class ElasticSearchIndexingImpl implements ElasticSearchIndexing {
         // simulate long indexing
         // try {Thread.sleep(1000);} catch (InterruptedException e) { }
 
-        processBulkDeleteCommands(cmds);
+        List<ActionRequest<?>> requests = new ArrayList<>(nbCommands);
+        processBulkDeleteCommands(cmds, requests);
         Context stopWatch = bulkIndexTimer.time();
         try {
-            processBulkIndexCommands(cmds);
+            processBulkIndexCommands(cmds, requests);
+            // as before, a document failing in a bulk doesn't fail the others, it is logged and counted
+            pipeline.submit(requests).await();
         } finally {
             stopWatch.stop();
         }
@@ -122,22 +175,31 @@ public class ElasticSearchIndexingImpl implements ElasticSearchIndexing {
         refreshIfNeeded(cmds);
     }
 
-    void processBulkDeleteCommands(List<IndexingCommand> cmds) {
-        // Can be optimized with a single delete by query
+    /**
+     * Processes the recursive deletes, and adds requests for the non recursive ones.
+     */
+    void processBulkDeleteCommands(List<IndexingCommand> cmds, List<ActionRequest<?>> requests)
+            throws ClientException {
         for (IndexingCommand cmd : cmds) {
             if (cmd.getType() == Type.DELETE) {
-                Context stopWatch = deleteTimer.time();
-                try {
-                    processDeleteCommand(cmd);
-                } finally {
-                    stopWatch.stop();
+                if (cmd.isRecurse()) {
+                    Context stopWatch = deleteTimer.time();
+                    try {
+                        processDeleteCommandRecursive(cmd);
+                    } finally {
+                        stopWatch.stop();
+                    }
+                } else {
+                    addRequest(cmd, buildEsDeleteRequest(cmd).request(), requests);
                 }
             }
         }
     }
 
-    void processBulkIndexCommands(List<IndexingCommand> cmds) throws ClientException {
-        BulkRequestBuilder bulkRequest = esa.getClient().prepareBulk();
+    /**
+     * Adds the requests for the index commands, the documents are serialized by the calling thread.
+     */
+    void processBulkIndexCommands(List<IndexingCommand> cmds, List<ActionRequest<?>> requests) {
         for (IndexingCommand cmd : cmds) {
             if (cmd.getType() == Type.DELETE) {
                 continue;
@@ -145,7 +207,7 @@ public class ElasticSearchIndexingImpl implements ElasticSearchIndexing {
             try {
                 IndexRequestBuilder idxRequest = buildEsIndexingRequest(cmd);
                 if (idxRequest != null) {
-                    bulkRequest.add(idxRequest);
+                    addRequest(cmd, idxRequest.request(), requests);
                 }
             } catch (ClientException | IllegalArgumentException e) {
                 if (e.getCause() instanceof NoSuchDocumentException) {
@@ -155,29 +217,35 @@ public class ElasticSearchIndexingImpl implements ElasticSearchIndexing {
                 }
             }
         }
-        if (bulkRequest.numberOfActions() > 0) {
-            if (log.isDebugEnabled()) {
-                log.debug(String.format(
-                        "Index %d docs in bulk request: curl -XPOST 'http://localhost:9200/_bulk' -d '%s'",
-                        bulkRequest.numberOfActions(), bulkRequest.request().requests().toString()));
-            }
-            BulkResponse response = bulkRequest.execute().actionGet();
-            if (response.hasFailures()) {
-                log.error(response.buildFailureMessage());
-            }
+    }
+
+    /**
+     * Adds a request, and its copy for the new index being built by a reindexing job if any.
+     */
+    void addRequest(IndexingCommand cmd, ActionRequest<?> request, List<ActionRequest<?>> requests) {
+        requests.add(request);
+        String reindexingIndexName = esa.getReindexingIndexName(cmd.getRepositoryName());
+        if (reindexingIndexName == null) {
+            return;
+        }
+        if (request instanceof IndexRequest) {
+            requests.add(new IndexRequest(reindexingIndexName, DOC_TYPE, cmd.getTargetDocumentId()).source(
+                    ((IndexRequest) request).source(), false));
+        } else {
+            requests.add(new DeleteRequest(reindexingIndexName, DOC_TYPE, cmd.getTargetDocumentId()));
         }
     }
 
-    protected void refreshIfNeeded(List<IndexingCommand> cmds) {
+    protected void refreshIfNeeded(List<IndexingCommand> cmds) throws ClientException {
         for (IndexingCommand cmd : cmds) {
             if (refreshIfNeeded(cmd))
                 return;
         }
     }
 
-    private boolean refreshIfNeeded(IndexingCommand cmd) {
+    private boolean refreshIfNeeded(IndexingCommand cmd) throws ClientException {
         if (cmd.isSync()) {
-            esa.refresh();
+            pipeline.refresh();
             return true;
         }
         return false;
@@ -203,7 +271,7 @@ public class ElasticSearchIndexingImpl implements ElasticSearchIndexing {
         }
     }
 
-    void processIndexCommand(IndexingCommand cmd) {
+    void processIndexCommand(IndexingCommand cmd) throws ClientException {
         IndexRequestBuilder request;
         try {
             request = buildEsIndexingRequest(cmd);
@@ -224,10 +292,12 @@ public class ElasticSearchIndexingImpl implements ElasticSearchIndexing {
                     esa.getIndexNameForRepository(cmd.getRepositoryName()), DOC_TYPE, cmd.getTargetDocumentId(),
                     request.request().toString()));
         }
-        request.execute().actionGet();
+        List<ActionRequest<?>> requests = new ArrayList<>(2);
+        addRequest(cmd, request.request(), requests);
+        submitAndCheck(requests);
     }
 
-    void processDeleteCommand(IndexingCommand cmd) {
+    void processDeleteCommand(IndexingCommand cmd) throws ClientException {
         if (cmd.isRecurse()) {
             processDeleteCommandRecursive(cmd);
         } else {
@@ -235,17 +305,35 @@ public class ElasticSearchIndexingImpl implements ElasticSearchIndexing {
         }
     }
 
-    void processDeleteCommandNonRecursive(IndexingCommand cmd) {
+    void processDeleteCommandNonRecursive(IndexingCommand cmd) throws ClientException {
+        List<ActionRequest<?>> requests = new ArrayList<>(2);
+        addRequest(cmd, buildEsDeleteRequest(cmd).request(), requests);
+        submitAndCheck(requests);
+    }
+
+    /**
+     * Submits the requests of a single command and waits for their execution, failing like a direct request would
+     * if one of them failed.
+     */
+    void submitAndCheck(List<ActionRequest<?>> requests) throws ClientException {
+        List<String> failures = pipeline.submit(requests).await();
+        if (!failures.isEmpty()) {
+            throw new ClientException(failures.get(0));
+        }
+    }
+
+    DeleteRequestBuilder buildEsDeleteRequest(IndexingCommand cmd) {
         String indexName = esa.getIndexNameForRepository(cmd.getRepositoryName());
-        DeleteRequestBuilder request = esa.getClient().prepareDelete(indexName, DOC_TYPE, cmd.getTargetDocumentId());
         if (log.isDebugEnabled()) {
             log.debug(String.format("Delete request: curl -XDELETE 'http://localhost:9200/%s/%s/%s'", indexName,
                     DOC_TYPE, cmd.getTargetDocumentId()));
         }
-        request.execute().actionGet();
+        return esa.getClient().prepareDelete(indexName, DOC_TYPE, cmd.getTargetDocumentId());
     }
 
-    void processDeleteCommandRecursive(IndexingCommand cmd) {
+    void processDeleteCommandRecursive(IndexingCommand cmd) throws ClientException {
+        // pending requests for the children must be applied before the delete by query
+        pipeline.flush();
         String indexName = esa.getIndexNameForRepository(cmd.getRepositoryName());
         // we don't want to rely on target document because the document can be
         // already removed
@@ -257,7 +345,10 @@ public class ElasticSearchIndexingImpl implements ElasticSearchIndexing {
             return;
         }
         QueryBuilder query = QueryBuilders.constantScoreQuery(FilterBuilders.termFilter(CHILDREN_FIELD, docPath));
-        DeleteByQueryRequestBuilder deleteRequest = esa.getClient().prepareDeleteByQuery(indexName).setTypes(DOC_TYPE).setQuery(
+        String reindexingIndexName = esa.getReindexingIndexName(cmd.getRepositoryName());
+        String[] indexNames = reindexingIndexName == null ? new String[] { indexName } : new String[] { indexName,
+                reindexingIndexName };
+        DeleteByQueryRequestBuilder deleteRequest = esa.getClient().prepareDeleteByQuery(indexNames).setTypes(DOC_TYPE).setQuery(
                 query);
         if (log.isDebugEnabled()) {
             log.debug(String.format(
@@ -299,6 +390,10 @@ public class ElasticSearchIndexingImpl implements ElasticSearchIndexing {
      * @throws java.lang.IllegalStateException if the command is not attached to a session
      */
     IndexRequestBuilder buildEsIndexingRequest(IndexingCommand cmd) throws ClientException {
+        return buildEsIndexingRequest(cmd, esa.getIndexNameForRepository(cmd.getRepositoryName()));
+    }
+
+    IndexRequestBuilder buildEsIndexingRequest(IndexingCommand cmd, String indexName) throws ClientException {
         DocumentModel doc = cmd.getTargetDocument();
         if (doc == null) {
             return null;
@@ -308,8 +403,7 @@ public class ElasticSearchIndexingImpl implements ElasticSearchIndexing {
             XContentBuilder builder = jsonBuilder();
             JsonGenerator jsonGen = factory.createJsonGenerator(builder.stream());
             jsonESDocumentWriter.writeESDocument(jsonGen, doc, cmd.getSchemas(), null);
-            return esa.getClient().prepareIndex(esa.getIndexNameForRepository(cmd.getRepositoryName()), DOC_TYPE,
-                    cmd.getTargetDocumentId()).setSource(builder);
+            return esa.getClient().prepareIndex(indexName, DOC_TYPE, cmd.getTargetDocumentId()).setSource(builder);
         } catch (IOException e) {
             throw new ClientException("Unable to create index request for Document " + cmd.getTargetDocumentId(), e);
         }
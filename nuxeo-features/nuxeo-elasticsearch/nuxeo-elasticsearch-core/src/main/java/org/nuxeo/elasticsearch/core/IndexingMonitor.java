@@ -16,6 +16,7 @@ package org.nuxeo.elasticsearch.core;/*
  */
 
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.ReentrantLock;
 
@@ -34,6 +35,15 @@ public class IndexingMonitor {
 
     public static final Condition indexingDone = lock.newCondition();
 
+    private final AtomicLong reindexingTotal = new AtomicLong(0);
+
+    private final AtomicLong reindexingProcessed = new AtomicLong(0);
+
+    // documents already processed when the partitions were resumed, not counted in the rate
+    private final AtomicLong reindexingResumed = new AtomicLong(0);
+
+    private volatile long reindexingStartTime;
+
     public int getTotalWorkerCount() {
         return totalWorkerCounter.get();
     }
@@ -87,4 +97,79 @@ public class IndexingMonitor {
             lock.unlock();
         }
     }
+
+    /**
+     * Resets the reindexing progress if no reindexing is in progress.
+     *
+     * @since 7.2
+     */
+    public synchronized void startReindexing() {
+        if (reindexingProcessed.get() >= reindexingTotal.get()) {
+            reindexingTotal.set(0);
+            reindexingProcessed.set(0);
+            reindexingResumed.set(0);
+            reindexingStartTime = System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * Adds a started reindexing partition to the progress.
+     *
+     * @param total the number of documents of the partition
+     * @param alreadyProcessed the number of documents already processed, when the partition is resumed
+     * @since 7.2
+     */
+    public void addReindexingPartition(long total, long alreadyProcessed) {
+        reindexingTotal.addAndGet(total);
+        reindexingProcessed.addAndGet(alreadyProcessed);
+        reindexingResumed.addAndGet(alreadyProcessed);
+    }
+
+    /**
+     * @since 7.2
+     */
+    public void addReindexingProcessed(long count) {
+        reindexingProcessed.addAndGet(count);
+    }
+
+    /**
+     * @since 7.2
+     */
+    public long getReindexingTotal() {
+        return reindexingTotal.get();
+    }
+
+    /**
+     * @since 7.2
+     */
+    public long getReindexingProcessed() {
+        return reindexingProcessed.get();
+    }
+
+    /**
+     * Returns the reindexing rate in documents per second since the reindexing started.
+     *
+     * @since 7.2
+     */
+    public double getReindexingRate() {
+        long elapsed = System.currentTimeMillis() - reindexingStartTime;
+        if (reindexingStartTime == 0 || elapsed <= 0) {
+            return 0;
+        }
+        return (reindexingProcessed.get() - reindexingResumed.get()) * 1000.0 / elapsed;
+    }
+
+    /**
+     * Returns the estimated number of seconds before the end of the reindexing, or -1 if unknown.
+     *
+     * @since 7.2
+     */
+    public long getReindexingEta() {
+        long remaining = reindexingTotal.get() - reindexingProcessed.get();
+        if (remaining <= 0) {
+            return 0;
+        }
+        double rate = getReindexingRate();
+        return rate > 0 ? (long) (remaining / rate) : -1;
+    }
 }
@@ -0,0 +1,153 @@
+/*
+ * Copyright (c) 2015 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.elasticsearch.core;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.elasticsearch.action.get.GetResponse;
+import org.elasticsearch.action.get.MultiGetItemResponse;
+import org.elasticsearch.action.get.MultiGetRequestBuilder;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.index.engine.DocumentAlreadyExistsException;
+import org.elasticsearch.index.query.QueryBuilders;
+import org.elasticsearch.indices.IndexMissingException;
+import org.elasticsearch.search.SearchHit;
+import org.nuxeo.runtime.api.Framework;
+
+/**
+ * Persists the checkpoints of the reindexing jobs in an Elasticsearch index, so that they can be resumed from any node
+ * after a restart.
+ *
+ * @since 7.2
+ */
+public class ReindexingJobStore {
+
+    public static final String INDEX_PROPERTY = "elasticsearch.reindex.jobIndex";
+
+    public static final String DEFAULT_INDEX = "nuxeo-reindex";
+
+    protected static final String PARTITION_TYPE = "partition";
+
+    protected static final String COMPLETION_TYPE = "completion";
+
+    protected static final String TARGET_TYPE = "target";
+
+    protected static final int MAX_UNFINISHED = 10000;
+
+    protected final Client client;
+
+    protected final String index;
+
+    public ReindexingJobStore(Client client) {
+        this.client = client;
+        index = Framework.getProperty(INDEX_PROPERTY, DEFAULT_INDEX);
+    }
+
+    public void save(ReindexingPartition partition) {
+        client.prepareIndex(index, PARTITION_TYPE, partition.getId()).setSource(partition.toMap()).get();
+    }
+
+    /**
+     * Gets a partition, or {@code null} if unknown.
+     */
+    public ReindexingPartition getPartition(String jobId, int partition) {
+        try {
+            GetResponse response = client.prepareGet(index, PARTITION_TYPE,
+                    ReindexingPartition.getId(jobId, partition)).get();
+            return response.isExists() ? ReindexingPartition.fromMap(response.getSourceAsMap()) : null;
+        } catch (IndexMissingException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Gets the known partitions of a job.
+     */
+    public List<ReindexingPartition> getPartitions(String jobId, int partitions) {
+        List<ReindexingPartition> list = new ArrayList<>(partitions);
+        MultiGetRequestBuilder request = client.prepareMultiGet();
+        for (int i = 0; i < partitions; i++) {
+            request.add(index, PARTITION_TYPE, ReindexingPartition.getId(jobId, i));
+        }
+        for (MultiGetItemResponse item : request.get()) {
+            if (!item.isFailed() && item.getResponse().isExists()) {
+                list.add(ReindexingPartition.fromMap(item.getResponse().getSourceAsMap()));
+            }
+        }
+        return list;
+    }
+
+    /**
+     * Gets the partitions of all the jobs that are not done.
+     */
+    public List<ReindexingPartition> getUnfinishedPartitions() {
+        List<ReindexingPartition> list = new ArrayList<>();
+        try {
+            client.admin().indices().prepareRefresh(index).get();
+            SearchResponse response = client.prepareSearch(index).setTypes(PARTITION_TYPE).setQuery(
+                    QueryBuilders.termQuery("done", false)).setSize(MAX_UNFINISHED).get();
+            for (SearchHit hit : response.getHits()) {
+                list.add(ReindexingPartition.fromMap(hit.getSource()));
+            }
+        } catch (IndexMissingException e) {
+            // no job ever started
+        }
+        return list;
+    }
+
+    /**
+     * Records the new index being built for a repository by a reindexing job, so that all the nodes also index their
+     * documents in it.
+     *
+     * @param indexName the new index, or {@code null} when the job is completed
+     */
+    public void setTargetIndex(String repositoryName, String indexName) {
+        if (indexName == null) {
+            try {
+                client.prepareDelete(index, TARGET_TYPE, repositoryName).get();
+            } catch (IndexMissingException e) {
+                // no job ever started
+            }
+        } else {
+            client.prepareIndex(index, TARGET_TYPE, repositoryName).setSource("index", indexName).get();
+        }
+    }
+
+    /**
+     * Gets the new index being built for a repository by a reindexing job, or {@code null} if none.
+     */
+    public String getTargetIndex(String repositoryName) {
+        try {
+            GetResponse response = client.prepareGet(index, TARGET_TYPE, repositoryName).get();
+            return response.isExists() ? (String) response.getSourceAsMap().get("index") : null;
+        } catch (IndexMissingException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Records that the completion of a job is being processed.
+     *
+     * @return {@code true} if the caller is the first one to process the completion of the job
+     */
+    public boolean claimCompletion(String jobId) {
+        try {
+            client.prepareIndex(index, COMPLETION_TYPE, jobId).setSource("job", jobId).setCreate(true).get();
+            return true;
+        } catch (DocumentAlreadyExistsException e) {
+            return false;
+        }
+    }
+
+}
@@ -0,0 +1,306 @@
+/*
+ * Copyright (c) 2015 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.elasticsearch.core;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.commons.lang.StringUtils;
+import org.nuxeo.ecm.core.api.CoreSession;
+import org.nuxeo.ecm.core.api.IterableQueryResult;
+import org.nuxeo.ecm.core.query.sql.NXQL;
+
+/**
+ * State of a partition of a reindexing job.
+ * <p>
+ * The documents matching the job query are partitioned by ranges of {@code ecm:uuid}, and each partition is read in id
+ * order so that the id of the last indexed document is a checkpoint from which the partition can be resumed.
+ * <p>
+ * The bounds of the ranges are ids read from the repository when the job starts (see {@link #computeBounds}), so
+ * they follow the repository ordering of ids whatever their type (UUID strings, native UUIDs or sequence numbers).
+ *
+ * @since 7.2
+ */
+public class ReindexingPartition {
+
+    /** Maximum number of partitions. */
+    public static final int MAX_PARTITIONS = 256;
+
+    protected static final Pattern FROM = Pattern.compile("\\sFROM\\s", Pattern.CASE_INSENSITIVE);
+
+    protected static final Pattern WHERE = Pattern.compile("\\sWHERE\\s", Pattern.CASE_INSENSITIVE);
+
+    protected static final Pattern ORDER_BY = Pattern.compile("\\sORDER\\s+BY\\s", Pattern.CASE_INSENSITIVE);
+
+    protected final String jobId;
+
+    protected final String repositoryName;
+
+    protected final String nxql;
+
+    protected final String indexName;
+
+    protected final int partition;
+
+    protected final int partitions;
+
+    protected final String lowerBound;
+
+    protected final String upperBound;
+
+    protected String position;
+
+    protected long processed;
+
+    protected long total = -1;
+
+    protected boolean done;
+
+    /**
+     * @param indexName the index to write to, or {@code null} for the repository index
+     * @param lowerBound the lowest id of the partition, or {@code null} for the first partition
+     * @param upperBound the lowest id of the next partition, or {@code null} for the last partition
+     */
+    public ReindexingPartition(String jobId, String repositoryName, String nxql, String indexName, int partition,
+            int partitions, String lowerBound, String upperBound) {
+        if (partitions < 1 || partitions > MAX_PARTITIONS) {
+            throw new IllegalArgumentException("Invalid number of partitions: " + partitions);
+        }
+        this.jobId = jobId;
+        this.repositoryName = repositoryName;
+        this.nxql = nxql;
+        this.indexName = indexName;
+        this.partition = partition;
+        this.partitions = partitions;
+        this.lowerBound = lowerBound;
+        this.upperBound = upperBound;
+    }
+
+    public static String getId(String jobId, int partition) {
+        return jobId + "-" + partition;
+    }
+
+    public String getId() {
+        return getId(jobId, partition);
+    }
+
+    public String getJobId() {
+        return jobId;
+    }
+
+    public String getRepositoryName() {
+        return repositoryName;
+    }
+
+    public String getNxql() {
+        return nxql;
+    }
+
+    public String getIndexName() {
+        return indexName;
+    }
+
+    public int getPartition() {
+        return partition;
+    }
+
+    public int getPartitions() {
+        return partitions;
+    }
+
+    /**
+     * Gets the id of the last indexed document, or {@code null} if none.
+     */
+    public String getPosition() {
+        return position;
+    }
+
+    public void setPosition(String position) {
+        this.position = position;
+    }
+
+    public long getProcessed() {
+        return processed;
+    }
+
+    public void setProcessed(long processed) {
+        this.processed = processed;
+    }
+
+    /**
+     * Gets the number of documents of the partition when it was started, or {@code -1} if not yet counted.
+     */
+    public long getTotal() {
+        return total;
+    }
+
+    public void setTotal(long total) {
+        this.total = total;
+    }
+
+    public boolean isDone() {
+        return done;
+    }
+
+    public void setDone(boolean done) {
+        this.done = done;
+    }
+
+    /**
+     * Gets the lowest id of the partition, or {@code null} for the first partition.
+     */
+    public String getLowerBound() {
+        return lowerBound;
+    }
+
+    /**
+     * Gets the lowest id of the next partition, or {@code null} for the last partition.
+     */
+    public String getUpperBound() {
+        return upperBound;
+    }
+
+    /**
+     * Computes the bounds splitting the documents matching a query into partitions of about the same size.
+     * <p>
+     * The bounds are the ids found at regular intervals when reading the ids of the documents in order, partition
+     * {@code i} going from bound {@code i - 1} included to bound {@code i} excluded. There are fewer bounds than
+     * requested when there are not enough documents.
+     *
+     * @param session the session on the repository
+     * @param nxql the job query
+     * @param partitions the requested number of partitions
+     * @return the ordered bounds, at most {@code partitions - 1}
+     */
+    public static List<String> computeBounds(CoreSession session, String nxql, int partitions) {
+        List<String> bounds = new ArrayList<>();
+        if (partitions <= 1) {
+            return bounds;
+        }
+        IterableQueryResult res = session.queryAndFetch(buildQuery(nxql, null, null, null, true), NXQL.NXQL);
+        try {
+            long size = res.size();
+            for (int i = 1; i < partitions; i++) {
+                long pos = i * size / partitions;
+                if (pos == 0) {
+                    continue;
+                }
+                res.skipTo(pos);
+                if (!res.iterator().hasNext()) {
+                    break;
+                }
+                String id = (String) res.iterator().next().get(NXQL.ECM_UUID);
+                if (bounds.isEmpty() || !bounds.get(bounds.size() - 1).equals(id)) {
+                    bounds.add(id);
+                }
+            }
+        } finally {
+            res.close();
+        }
+        return bounds;
+    }
+
+    /**
+     * Gets the query returning the ids of all the documents of the partition.
+     */
+    public String getCountQuery() {
+        return buildQuery(false);
+    }
+
+    /**
+     * Gets the query returning, in order, the ids of the documents of the partition after the current position.
+     */
+    public String getQuery() {
+        return buildQuery(true);
+    }
+
+    protected String buildQuery(boolean resume) {
+        return buildQuery(nxql, lowerBound, upperBound, resume ? position : null, resume);
+    }
+
+    protected static String buildQuery(String nxql, String lower, String upper, String position, boolean ordered) {
+        String query = nxql.trim();
+        Matcher m = ORDER_BY.matcher(query);
+        if (m.find()) {
+            query = query.substring(0, m.start());
+        }
+        m = FROM.matcher(query);
+        if (!m.find()) {
+            throw new IllegalArgumentException("Invalid NXQL query: " + nxql);
+        }
+        query = query.substring(m.end());
+        List<String> clauses = new ArrayList<>();
+        m = WHERE.matcher(query);
+        if (m.find()) {
+            clauses.add("(" + query.substring(m.end()) + ")");
+            query = query.substring(0, m.start());
+        }
+        if (lower != null) {
+            clauses.add(NXQL.ECM_UUID + " >= " + NXQL.escapeString(lower));
+        }
+        if (upper != null) {
+            clauses.add(NXQL.ECM_UUID + " < " + NXQL.escapeString(upper));
+        }
+        if (position != null) {
+            clauses.add(NXQL.ECM_UUID + " > " + NXQL.escapeString(position));
+        }
+        StringBuilder sb = new StringBuilder();
+        sb.append("SELECT ").append(NXQL.ECM_UUID).append(" FROM ").append(query.trim());
+        if (!clauses.isEmpty()) {
+            sb.append(" WHERE ").append(StringUtils.join(clauses, " AND "));
+        }
+        if (ordered) {
+            sb.append(" ORDER BY ").append(NXQL.ECM_UUID);
+        }
+        return sb.toString();
+    }
+
+    public Map<String, Object> toMap() {
+        Map<String, Object> map = new HashMap<>();
+        map.put("job", jobId);
+        map.put("repository", repositoryName);
+        map.put("nxql", nxql);
+        map.put("index", indexName);
+        map.put("partition", Integer.valueOf(partition));
+        map.put("partitions", Integer.valueOf(partitions));
+        map.put("lowerBound", lowerBound);
+        map.put("upperBound", upperBound);
+        map.put("position", position);
+        map.put("processed", Long.valueOf(processed));
+        map.put("total", Long.valueOf(total));
+        map.put("done", Boolean.valueOf(done));
+        return map;
+    }
+
+    public static ReindexingPartition fromMap(Map<String, Object> map) {
+        ReindexingPartition p = new ReindexingPartition((String) map.get("job"), (String) map.get("repository"),
+                (String) map.get("nxql"), (String) map.get("index"), ((Number) map.get("partition")).intValue(),
+                ((Number) map.get("partitions")).intValue(), (String) map.get("lowerBound"),
+                (String) map.get("upperBound"));
+        p.position = (String) map.get("position");
+        p.processed = ((Number) map.get("processed")).longValue();
+        p.total = ((Number) map.get("total")).longValue();
+        p.done = Boolean.TRUE.equals(map.get("done"));
+        return p;
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "(" + getId() + ", " + repositoryName + ", " + processed + "/" + total
+                + (done ? ", done" : "") + ")";
+    }
+
+}
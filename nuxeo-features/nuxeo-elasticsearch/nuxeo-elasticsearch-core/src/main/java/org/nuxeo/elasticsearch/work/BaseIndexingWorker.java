@@ -17,7 +17,15 @@
 
 package org.nuxeo.elasticsearch.work;
 
+import java.util.ArrayList;
+import java.util.List;
+
+import org.nuxeo.ecm.core.api.CoreSession;
+import org.nuxeo.ecm.core.api.DocumentModel;
+import org.nuxeo.ecm.core.query.sql.NXQL;
 import org.nuxeo.ecm.core.work.AbstractWork;
+import org.nuxeo.elasticsearch.commands.IndexingCommand;
+import org.nuxeo.elasticsearch.commands.IndexingCommand.Type;
 import org.nuxeo.elasticsearch.core.IndexingMonitor;
 
 /**
@@ -49,4 +57,28 @@ public abstract class BaseIndexingWorker extends AbstractWork {
     }
 
     protected abstract void doWork();
+
+    protected List<IndexingCommand> getIndexingCommands(CoreSession session, List<String> ids) {
+        List<IndexingCommand> ret = new ArrayList<>(ids.size());
+        for (DocumentModel doc : fetchDocuments(session, ids)) {
+            IndexingCommand cmd = new IndexingCommand(doc, Type.INSERT, false, false);
+            ret.add(cmd);
+        }
+        return ret;
+    }
+
+    protected List<DocumentModel> fetchDocuments(CoreSession session, List<String> ids) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("SELECT * FROM Document, Relation WHERE ecm:uuid IN (");
+        for (int i = 0; i < ids.size(); i++) {
+            sb.append(NXQL.escapeString(ids.get(i)));
+            if (i < ids.size() - 1) {
+                sb.append(", ");
+            }
+        }
+        sb.append(")");
+        // read invalidation
+        session.save();
+        return session.query(sb.toString());
+    }
 }
@@ -26,12 +26,8 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.nuxeo.ecm.core.api.CoreSession;
 import org.nuxeo.ecm.core.api.DocumentLocation;
-import org.nuxeo.ecm.core.api.DocumentModel;
-import org.nuxeo.ecm.core.query.sql.NXQL;
 import org.nuxeo.ecm.core.work.api.Work;
 import org.nuxeo.elasticsearch.api.ElasticSearchIndexing;
-import org.nuxeo.elasticsearch.commands.IndexingCommand;
-import org.nuxeo.elasticsearch.commands.IndexingCommand.Type;
 import org.nuxeo.elasticsearch.core.IndexingMonitor;
 import org.nuxeo.runtime.api.Framework;
 
@@ -89,30 +85,6 @@ public class BucketIndexingWorker extends BaseIndexingWorker implements Work {
         }
     }
 
-    private List<IndexingCommand> getIndexingCommands(CoreSession session, List<String> ids) {
-        List<IndexingCommand> ret = new ArrayList<>(ids.size());
-        for (DocumentModel doc : fetchDocuments(session, ids)) {
-            IndexingCommand cmd = new IndexingCommand(doc, Type.INSERT, false, false);
-            ret.add(cmd);
-        }
-        return ret;
-    }
-
-    private List<DocumentModel> fetchDocuments(CoreSession session, List<String> ids) {
-        StringBuilder sb = new StringBuilder();
-        sb.append("SELECT * FROM Document, Relation WHERE ecm:uuid IN (");
-        for (int i = 0; i < ids.size(); i++) {
-            sb.append(NXQL.escapeString(ids.get(i)));
-            if (i < ids.size() - 1) {
-                sb.append(", ");
-            }
-        }
-        sb.append(")");
-        // read invalidation
-        session.save();
-        return session.query(sb.toString());
-    }
-
     protected int getBucketSize() {
         String value = Framework.getProperty(REINDEX_BUCKET_WRITE_PROPERTY, DEFAULT_BUCKET_SIZE);
         return Integer.parseInt(value);
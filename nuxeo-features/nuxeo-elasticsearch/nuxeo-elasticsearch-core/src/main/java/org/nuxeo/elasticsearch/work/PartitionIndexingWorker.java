@@ -0,0 +1,169 @@
+/*
+ * Copyright (c) 2015 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.elasticsearch.work;
+
+import static org.nuxeo.elasticsearch.ElasticSearchConstants.REINDEX_BUCKET_READ_PROPERTY;
+import static org.nuxeo.elasticsearch.ElasticSearchConstants.REINDEX_BUCKET_WRITE_PROPERTY;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.nuxeo.ecm.core.api.CoreSession;
+import org.nuxeo.ecm.core.api.IterableQueryResult;
+import org.nuxeo.ecm.core.api.QueryCursor;
+import org.nuxeo.ecm.core.query.sql.NXQL;
+import org.nuxeo.ecm.core.work.api.Work;
+import org.nuxeo.elasticsearch.api.ElasticSearchAdmin;
+import org.nuxeo.elasticsearch.api.ElasticSearchIndexing;
+import org.nuxeo.elasticsearch.core.IndexingMonitor;
+import org.nuxeo.elasticsearch.core.ReindexingJobStore;
+import org.nuxeo.elasticsearch.core.ReindexingPartition;
+import org.nuxeo.runtime.api.Framework;
+
+/**
+ * Worker reindexing a partition of a reindexing job, recording a checkpoint after each bucket.
+ * <p>
+ * The last partition to complete switches the repository index to the new index of the job, if any.
+ *
+ * @since 7.2
+ */
+public class PartitionIndexingWorker extends BaseIndexingWorker implements Work {
+
+    private static final Log log = LogFactory.getLog(PartitionIndexingWorker.class);
+
+    private static final long serialVersionUID = 1L;
+
+    private static final String DEFAULT_READ_BUCKET_SIZE = "500";
+
+    private static final String DEFAULT_WRITE_BUCKET_SIZE = "50";
+
+    protected final String jobId;
+
+    protected final int partition;
+
+    protected long documentCount;
+
+    public PartitionIndexingWorker(IndexingMonitor monitor, String repositoryName, String jobId, int partition) {
+        super(monitor);
+        this.repositoryName = repositoryName;
+        this.jobId = jobId;
+        this.partition = partition;
+    }
+
+    @Override
+    public String getTitle() {
+        return "Elasticsearch partition indexer: " + ReindexingPartition.getId(jobId, partition) + ", processed "
+                + documentCount;
+    }
+
+    @Override
+    protected void doWork() {
+        ElasticSearchAdmin esa = Framework.getLocalService(ElasticSearchAdmin.class);
+        ElasticSearchIndexing esi = Framework.getLocalService(ElasticSearchIndexing.class);
+        ReindexingJobStore store = new ReindexingJobStore(esa.getClient());
+        ReindexingPartition p = store.getPartition(jobId, partition);
+        if (p == null) {
+            log.error("Unknown reindexing partition: " + ReindexingPartition.getId(jobId, partition));
+            return;
+        }
+        if (p.isDone()) {
+            return;
+        }
+        CoreSession session = initSession(repositoryName);
+        if (p.getTotal() < 0) {
+            p.setTotal(count(session, p.getCountQuery()));
+            store.save(p);
+        }
+        monitor.addReindexingPartition(p.getTotal(), p.getProcessed());
+        int readSize = getBucketSize(REINDEX_BUCKET_READ_PROPERTY, DEFAULT_READ_BUCKET_SIZE);
+        int writeSize = getBucketSize(REINDEX_BUCKET_WRITE_PROPERTY, DEFAULT_WRITE_BUCKET_SIZE);
+        for (;;) {
+            List<String> ids = readIds(session, p.getQuery(), readSize);
+            if (ids.isEmpty()) {
+                break;
+            }
+            for (int i = 0; i < ids.size(); i += writeSize) {
+                List<String> bucket = ids.subList(i, Math.min(i + writeSize, ids.size()));
+                if (p.getIndexName() == null) {
+                    esi.indexNonRecursive(getIndexingCommands(session, bucket));
+                } else {
+                    esi.reindexNonRecursive(p.getIndexName(), getIndexingCommands(session, bucket));
+                }
+            }
+            documentCount += ids.size();
+            p.setPosition(ids.get(ids.size() - 1));
+            p.setProcessed(p.getProcessed() + ids.size());
+            store.save(p);
+            monitor.addReindexingProcessed(ids.size());
+            if (isSuspending()) {
+                // resumed from the checkpoint by ElasticSearchIndexing#resumeReindexingJobs
+                log.warn("Re-indexing interrupted: " + p);
+                return;
+            }
+        }
+        p.setDone(true);
+        store.save(p);
+        log.info("Re-indexing partition completed: " + p);
+        completeJob(esa, store, p);
+    }
+
+    protected void completeJob(ElasticSearchAdmin esa, ReindexingJobStore store, ReindexingPartition p) {
+        List<ReindexingPartition> partitions = store.getPartitions(jobId, p.getPartitions());
+        long processed = 0;
+        for (ReindexingPartition other : partitions) {
+            if (!other.isDone()) {
+                return;
+            }
+            processed += other.getProcessed();
+        }
+        if (partitions.size() != p.getPartitions() || !store.claimCompletion(jobId)) {
+            return;
+        }
+        if (p.getIndexName() != null) {
+            esa.switchRepositoryIndex(repositoryName, p.getIndexName());
+        }
+        log.warn(String.format("Re-indexing job: %s completed, %d documents processed", jobId, processed));
+    }
+
+    protected long count(CoreSession session, String query) {
+        IterableQueryResult res = session.queryAndFetch(query, NXQL.NXQL);
+        try {
+            return res.size();
+        } finally {
+            res.close();
+        }
+    }
+
+    /**
+     * Reads the next ids of the partition. The query is ordered by {@link NXQL#ECM_UUID}, and the cursor fetches only
+     * the first {@code max} rows from the backend.
+     */
+    protected List<String> readIds(CoreSession session, String query, int max) {
+        List<String> ids = new ArrayList<>(max);
+        QueryCursor cursor = session.queryCursor(query, null, max);
+        try {
+            while (ids.size() < max && cursor.hasNext()) {
+                ids.add((String) cursor.next().get(NXQL.ECM_UUID));
+            }
+        } finally {
+            cursor.close();
+        }
+        return ids;
+    }
+
+    protected int getBucketSize(String property, String defaultValue) {
+        return Integer.parseInt(Framework.getProperty(property, defaultValue));
+    }
+
+}
@@ -0,0 +1,179 @@
+/*
+ * Copyright (c) 2015 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.elasticsearch.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.nuxeo.elasticsearch.ElasticSearchConstants.DOC_TYPE;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import javax.inject.Inject;
+
+import org.elasticsearch.action.ActionRequest;
+import org.elasticsearch.action.delete.DeleteRequest;
+import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.index.query.QueryBuilders;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.nuxeo.elasticsearch.api.ElasticSearchAdmin;
+import org.nuxeo.elasticsearch.core.BulkIndexingPipeline;
+import org.nuxeo.elasticsearch.core.ElasticSearchAdminImpl;
+import org.nuxeo.runtime.api.Framework;
+import org.nuxeo.runtime.metrics.MetricsService;
+import org.nuxeo.runtime.test.runner.Features;
+import org.nuxeo.runtime.test.runner.FeaturesRunner;
+import org.nuxeo.runtime.test.runner.LocalDeploy;
+
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.SharedMetricRegistries;
+
+@RunWith(FeaturesRunner.class)
+@LocalDeploy("org.nuxeo.elasticsearch.core:elasticsearch-test-contrib.xml")
+@Features({ RepositoryElasticSearchFeature.class })
+public class TestBulkIndexingPipeline {
+
+    protected static final String IDX_NAME = "nxutest";
+
+    protected final MetricRegistry registry = SharedMetricRegistries.getOrCreate(MetricsService.class.getName());
+
+    @Inject
+    ElasticSearchAdmin esa;
+
+    protected BulkIndexingPipeline pipeline;
+
+    @After
+    public void tearDown() {
+        if (pipeline != null) {
+            pipeline.shutdown();
+        }
+        Framework.getProperties().remove(BulkIndexingPipeline.REFRESH_INTERVAL_PROP);
+    }
+
+    protected BulkIndexingPipeline newPipeline(String refreshInterval) {
+        Framework.getProperties().setProperty(BulkIndexingPipeline.REFRESH_INTERVAL_PROP, refreshInterval);
+        pipeline = new BulkIndexingPipeline((ElasticSearchAdminImpl) esa);
+        return pipeline;
+    }
+
+    protected static IndexRequest indexRequest(String id, String modified) {
+        return new IndexRequest(IDX_NAME, DOC_TYPE, id).source("dc:modified", modified);
+    }
+
+    protected long count(String... ids) {
+        return esa.getClient().prepareSearch(IDX_NAME).setTypes(DOC_TYPE).setQuery(
+                QueryBuilders.idsQuery(DOC_TYPE).addIds(ids)).setSize(0).execute().actionGet().getHits().getTotalHits();
+    }
+
+    protected static String[] ids(int n) {
+        String[] ids = new String[n];
+        for (int i = 0; i < n; i++) {
+            ids[i] = "pipe" + i;
+        }
+        return ids;
+    }
+
+    protected long getRefreshCount() {
+        return registry.timer(MetricRegistry.name("nuxeo", "elasticsearch", "service", "refresh")).getCount();
+    }
+
+    protected long getRefreshCoalescedCount() {
+        return registry.counter(MetricRegistry.name("nuxeo", "elasticsearch", "service", "refreshCoalesced"))
+                .getCount();
+    }
+
+    protected long getBulkFailureCount() {
+        return registry.counter(MetricRegistry.name("nuxeo", "elasticsearch", "service", "bulkFailures")).getCount();
+    }
+
+    @Test
+    public void testIndexAndDelete() throws Exception {
+        newPipeline("0");
+        List<ActionRequest<?>> requests = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            requests.add(indexRequest("pipe" + i, "2015-01-01T00:00:00.000Z"));
+        }
+        // in the same lane, applied in submission order
+        requests.add(indexRequest("pipegone", "2015-01-01T00:00:00.000Z"));
+        requests.add(new DeleteRequest(IDX_NAME, DOC_TYPE, "pipegone"));
+        assertEquals(Collections.emptyList(), pipeline.submit(requests).await());
+        pipeline.refresh();
+        assertEquals(20, count(ids(20)));
+        assertEquals(0, count("pipegone"));
+
+        requests.clear();
+        for (int i = 0; i < 10; i++) {
+            requests.add(new DeleteRequest(IDX_NAME, DOC_TYPE, "pipe" + i));
+        }
+        assertEquals(Collections.emptyList(), pipeline.submit(requests).await());
+        pipeline.refresh();
+        assertEquals(10, count(ids(20)));
+    }
+
+    @Test
+    public void testItemFailure() throws Exception {
+        newPipeline("0");
+        long failures = getBulkFailureCount();
+        List<ActionRequest<?>> requests = new ArrayList<>();
+        requests.add(indexRequest("okdoc", "2015-01-01T00:00:00.000Z"));
+        requests.add(indexRequest("baddoc", "not a date"));
+        List<String> messages = pipeline.submit(requests).await();
+        assertEquals(1, messages.size());
+        assertTrue(messages.get(0), messages.get(0).contains("baddoc"));
+        assertEquals(failures + 1, getBulkFailureCount());
+        // the other request of the bulk is applied
+        pipeline.refresh();
+        assertEquals(1, count("okdoc"));
+        assertEquals(0, count("baddoc"));
+    }
+
+    @Test
+    public void testRefreshCoalescing() throws Exception {
+        newPipeline("1000");
+        long refreshes = getRefreshCount();
+        long coalesced = getRefreshCoalescedCount();
+        pipeline.refresh();
+        assertEquals(refreshes + 1, getRefreshCount());
+
+        // callers arriving during the interval share the next refresh
+        int nbThreads = 5;
+        final CountDownLatch start = new CountDownLatch(1);
+        final List<Throwable> errors = Collections.synchronizedList(new ArrayList<Throwable>());
+        Thread[] threads = new Thread[nbThreads];
+        for (int i = 0; i < nbThreads; i++) {
+            threads[i] = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                        pipeline.refresh();
+                    } catch (Exception e) {
+                        errors.add(e);
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(Collections.emptyList(), errors);
+        assertEquals(refreshes + 2, getRefreshCount());
+        assertEquals(coalesced + nbThreads - 1, getRefreshCoalescedCount());
+    }
+
+}
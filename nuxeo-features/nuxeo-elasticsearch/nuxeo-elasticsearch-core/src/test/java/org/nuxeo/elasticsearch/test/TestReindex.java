@@ -17,7 +17,12 @@
 
 package org.nuxeo.elasticsearch.test;
 
+import java.io.Serializable;
 import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.TimeUnit;
 
 import javax.inject.Inject;
@@ -30,6 +35,7 @@ import org.junit.runner.RunWith;
 import org.nuxeo.ecm.core.api.CoreSession;
 import org.nuxeo.ecm.core.api.DocumentModel;
 import org.nuxeo.ecm.core.api.DocumentModelList;
+import org.nuxeo.ecm.core.api.IterableQueryResult;
 import org.nuxeo.ecm.core.api.PathRef;
 import org.nuxeo.ecm.core.api.blobholder.BlobHolder;
 import org.nuxeo.ecm.core.api.impl.blob.StringBlob;
@@ -40,6 +46,7 @@ import org.nuxeo.ecm.platform.tag.TagService;
 import org.nuxeo.elasticsearch.api.ElasticSearchAdmin;
 import org.nuxeo.elasticsearch.api.ElasticSearchIndexing;
 import org.nuxeo.elasticsearch.api.ElasticSearchService;
+import org.nuxeo.elasticsearch.core.ReindexingPartition;
 import org.nuxeo.elasticsearch.listener.ElasticSearchInlineListener;
 import org.nuxeo.elasticsearch.query.NxQueryBuilder;
 import org.nuxeo.runtime.api.Framework;
@@ -155,6 +162,64 @@ public class TestReindex {
 
     }
 
+    @Test
+    public void shouldReindexDocumentInNewIndex() throws Exception {
+        buildDocs();
+        startTransaction();
+
+        String nxql = "SELECT * FROM Document, Relation order by ecm:uuid";
+        DocumentModelList coreDocs = session.query(nxql);
+        String jobId = esi.runReindexingJob(session.getRepositoryName(), "SELECT * FROM Document", false);
+        Assert.assertNotNull(jobId);
+        waitForCompletion();
+        Assert.assertEquals(esa.getReindexingTotal(), esa.getReindexingProcessed());
+
+        esi.runReindexingJob(session.getRepositoryName(), "SELECT * FROM Document, Relation", true);
+        waitForCompletion();
+        DocumentModelList docs = ess.query(new NxQueryBuilder(session).nxql(nxql).limit(100));
+        Assert.assertEquals(getDigest(coreDocs), getDigest(docs));
+
+        // nothing left to resume
+        Assert.assertEquals(0, esi.resumeReindexingJobs());
+    }
+
+    @Test
+    public void shouldPartitionOnRepositoryIds() throws Exception {
+        buildDocs();
+        startTransaction();
+
+        String nxql = "SELECT * FROM Document";
+        IterableQueryResult res = session.queryAndFetch("SELECT ecm:uuid FROM Document", "NXQL");
+        Set<String> expected = new HashSet<>();
+        for (Map<String, Serializable> map : res) {
+            expected.add((String) map.get("ecm:uuid"));
+        }
+        res.close();
+
+        List<String> bounds = ReindexingPartition.computeBounds(session, nxql, 4);
+        Assert.assertEquals(3, bounds.size());
+        int partitions = bounds.size() + 1;
+        Set<String> ids = new HashSet<>();
+        for (int i = 0; i < partitions; i++) {
+            String lower = i == 0 ? null : bounds.get(i - 1);
+            String upper = i == partitions - 1 ? null : bounds.get(i);
+            ReindexingPartition p = new ReindexingPartition("job", session.getRepositoryName(), nxql, null, i,
+                    partitions, lower, upper);
+            res = session.queryAndFetch(p.getQuery(), "NXQL");
+            int n = 0;
+            for (Map<String, Serializable> map : res) {
+                // partitions are disjoint
+                Assert.assertTrue(ids.add((String) map.get("ecm:uuid")));
+                n++;
+            }
+            res.close();
+            // and none is empty
+            Assert.assertTrue(n > 0);
+        }
+        // and cover all the documents
+        Assert.assertEquals(expected, ids);
+    }
+
     private void buildDocs() throws Exception {
         startTransaction();
 
@@ -0,0 +1,60 @@
+/*
+ * Copyright (c) 2015 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.elasticsearch.test;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+import org.nuxeo.elasticsearch.core.ReindexingPartition;
+
+public class TestReindexingPartition {
+
+    @Test
+    public void testQueries() {
+        ReindexingPartition p = new ReindexingPartition("job", "test",
+                "SELECT * FROM File WHERE dc:title = 'foo' ORDER BY dc:title", null, 1, 4, "400", "800");
+        assertEquals("SELECT ecm:uuid FROM File WHERE (dc:title = 'foo') AND ecm:uuid >= '400' AND ecm:uuid < '800'",
+                p.getCountQuery());
+        assertEquals("SELECT ecm:uuid FROM File WHERE (dc:title = 'foo') AND ecm:uuid >= '400' AND ecm:uuid < '800'"
+                + " ORDER BY ecm:uuid", p.getQuery());
+        p.setPosition("4abc");
+        assertEquals("SELECT ecm:uuid FROM File WHERE (dc:title = 'foo') AND ecm:uuid >= '400' AND ecm:uuid < '800'"
+                + " AND ecm:uuid > '4abc' ORDER BY ecm:uuid", p.getQuery());
+
+        // first and last partitions are open
+        p = new ReindexingPartition("job", "test", "SELECT * FROM Document", null, 0, 2, null, "123");
+        assertEquals("SELECT ecm:uuid FROM Document WHERE ecm:uuid < '123' ORDER BY ecm:uuid", p.getQuery());
+        p = new ReindexingPartition("job", "test", "SELECT * FROM Document", null, 1, 2, "123", null);
+        assertEquals("SELECT ecm:uuid FROM Document WHERE ecm:uuid >= '123' ORDER BY ecm:uuid", p.getQuery());
+
+        p = new ReindexingPartition("job", "test", "select ecm:uuid from Document", null, 0, 1, null, null);
+        assertEquals("SELECT ecm:uuid FROM Document ORDER BY ecm:uuid", p.getQuery());
+    }
+
+    @Test
+    public void testMap() {
+        ReindexingPartition p = new ReindexingPartition("job", "test", "SELECT * FROM Document", "nuxeo-1", 2, 8, "123", "456");
+        p.setPosition("2abc");
+        p.setProcessed(12);
+        p.setTotal(34);
+        ReindexingPartition q = ReindexingPartition.fromMap(p.toMap());
+        assertEquals("job-2", q.getId());
+        assertEquals("nuxeo-1", q.getIndexName());
+        assertEquals(8, q.getPartitions());
+        assertEquals("123", q.getLowerBound());
+        assertEquals("456", q.getUpperBound());
+        assertEquals("2abc", q.getPosition());
+        assertEquals(12, q.getProcessed());
+        assertEquals(34, q.getTotal());
+    }
+
+}
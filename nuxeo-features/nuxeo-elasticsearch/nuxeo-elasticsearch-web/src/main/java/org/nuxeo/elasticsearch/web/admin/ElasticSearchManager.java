@@ -112,6 +112,16 @@ public class ElasticSearchManager {
         esi.runReindexingWorker(repositoryName, "SELECT ecm:uuid FROM Document");
     }
 
+    public void startReindexAllInNewIndex() {
+        log.warn("Re-indexing the entire repository into a new index: " + repositoryName);
+        esi.runReindexingJob(repositoryName, "SELECT ecm:uuid FROM Document", true);
+    }
+
+    public void resumeReindexing() {
+        int count = esi.resumeReindexingJobs();
+        log.warn(String.format("Resumed %d re-indexing partitions", count));
+    }
+
     public void startReindexNxql() {
         log.warn(String.format("Re-indexing from a NXQL query: %s on repository: %s", getNxql(), repositoryName));
         esi.runReindexingWorker(repositoryName, getNxql());
@@ -188,6 +198,17 @@ public class ElasticSearchManager {
         return Integer.valueOf(esa.getTotalCommandProcessed()).toString();
     }
 
+    public String getReindexingProgress() {
+        long total = esa.getReindexingTotal();
+        long processed = esa.getReindexingProcessed();
+        if (total == 0) {
+            return "No re-indexing job running";
+        }
+        long eta = esa.getReindexingEta();
+        return String.format("%d/%d documents, %.2f docs/s, ETA: %s", processed, total, esa.getReindexingRate(),
+                eta < 0 ? "unknown" : eta + "s");
+    }
+
     public String getNumberOfDocuments() {
         String[] indices = getIndexNames();
         CountResponse ret = esa.getClient().prepareCount(indices).setQuery(QueryBuilders.matchAllQuery()).get();
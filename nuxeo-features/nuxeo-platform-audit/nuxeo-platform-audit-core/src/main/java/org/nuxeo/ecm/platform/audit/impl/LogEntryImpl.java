@@ -318,6 +318,8 @@ public class LogEntryImpl implements LogEntry {
     @OneToMany(cascade = CascadeType.ALL, targetEntity = ExtendedInfoImpl.class)
     @JoinTable(name = "NXP_LOGS_MAPEXTINFOS", joinColumns = { @JoinColumn(name = "LOG_FK") }, inverseJoinColumns = { @JoinColumn(name = "INFO_FK") })
     @org.hibernate.annotations.MapKey(columns = { @Column(name = "mapkey", nullable = false) })
+    // no foreign key to NXP_LOGS, which cannot reference the entries stored in its partitions (since 7.2)
+    @org.hibernate.annotations.ForeignKey(name = "none")
     public Map<String, ExtendedInfo> getExtendedInfos() {
         return (Map) extendedInfos;
         // return (Map)getExtendedInfosImpl();
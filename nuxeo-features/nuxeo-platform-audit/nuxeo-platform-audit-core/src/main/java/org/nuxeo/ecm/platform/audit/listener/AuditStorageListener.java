@@ -0,0 +1,42 @@
+/*
+ * Copyright (c) 2015 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.ecm.platform.audit.listener;
+
+import java.util.Date;
+
+import org.nuxeo.ecm.core.event.Event;
+import org.nuxeo.ecm.core.event.EventListener;
+import org.nuxeo.ecm.platform.audit.api.AuditLogger;
+import org.nuxeo.ecm.platform.audit.service.DefaultAuditBackend;
+import org.nuxeo.runtime.api.Framework;
+
+/**
+ * Scheduled listener creating the upcoming audit partitions and removing the expired audit entries.
+ *
+ * @since 7.2
+ */
+public class AuditStorageListener implements EventListener {
+
+    public static final String EVENT_NAME = "auditStorageMaintenance";
+
+    @Override
+    public void handleEvent(Event event) {
+        if (!EVENT_NAME.equals(event.getName())) {
+            return;
+        }
+        AuditLogger logger = Framework.getLocalService(AuditLogger.class);
+        if (logger instanceof DefaultAuditBackend) {
+            ((DefaultAuditBackend) logger).maintainStorage(new Date());
+        }
+    }
+
+}
@@ -73,11 +73,40 @@ public abstract class AbstractAuditBackend implements AuditBackend {
 
     protected NXAuditEventsService component;
 
+    protected AuditLogWriter writer;
+
     @Override
     public void activate(NXAuditEventsService component) {
         this.component = component;
     }
 
+    /**
+     * Gets the asynchronous writer to which the entries are handed over, or {@code null} if they are written
+     * synchronously.
+     * <p>
+     * The writer is started on the first logged event, so that backends only used for reading never start one.
+     *
+     * @since 7.2
+     */
+    protected synchronized AuditLogWriter getWriter() {
+        if (writer == null && AuditLogWriter.isEnabled()) {
+            writer = new AuditLogWriter(this);
+        }
+        return writer;
+    }
+
+    /**
+     * Writes the entries still queued in the asynchronous writer, if any, and stops it.
+     *
+     * @since 7.2
+     */
+    protected synchronized void stopWriter() {
+        if (writer != null) {
+            writer.shutdown();
+            writer = null;
+        }
+    }
+
     protected final ExpressionEvaluator expressionEvaluator = new ExpressionEvaluator(new ExpressionFactoryImpl());
 
     protected DocumentModel guardedDocument(CoreSession session, DocumentRef reference) {
@@ -343,8 +372,39 @@ public abstract class AbstractAuditBackend implements AuditBackend {
     // these methods are actually overridden in the JPA implementation for
     // optimization purpose
 
+    /**
+     * Builds the entries for the auditable events of a bundle.
+     *
+     * @since 7.2
+     */
+    protected List<LogEntry> buildEntries(EventBundle eventBundle) {
+        List<LogEntry> entries = new ArrayList<>();
+        boolean processEvents = false;
+        for (String name : getAuditableEventNames()) {
+            if (eventBundle.containsEventName(name)) {
+                processEvents = true;
+                break;
+            }
+        }
+        if (!processEvents) {
+            return entries;
+        }
+        for (Event event : eventBundle) {
+            LogEntry entry = buildEntryFromEvent(event);
+            if (entry != null) {
+                entries.add(entry);
+            }
+        }
+        return entries;
+    }
+
     @Override
     public void logEvents(EventBundle eventBundle) {
+        AuditLogWriter writer = getWriter();
+        if (writer != null) {
+            writer.add(buildEntries(eventBundle));
+            return;
+        }
         boolean processEvents = false;
         for (String name : getAuditableEventNames()) {
             if (eventBundle.containsEventName(name)) {
@@ -366,7 +426,12 @@ public abstract class AbstractAuditBackend implements AuditBackend {
         if (entry != null) {
             List<LogEntry> entries = new ArrayList<>();
             entries.add(entry);
-            addLogEntries(entries);
+            AuditLogWriter writer = getWriter();
+            if (writer != null) {
+                writer.add(entries);
+            } else {
+                addLogEntries(entries);
+            }
         }
     }
 
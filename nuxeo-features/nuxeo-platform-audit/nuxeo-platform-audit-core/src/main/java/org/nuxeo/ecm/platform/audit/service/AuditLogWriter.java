@@ -0,0 +1,375 @@
+/*
+ * Copyright (c) 2015 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.ecm.platform.audit.service;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.nuxeo.common.Environment;
+import org.nuxeo.ecm.platform.audit.api.LogEntry;
+import org.nuxeo.runtime.api.Framework;
+import org.nuxeo.runtime.metrics.MetricsService;
+import org.nuxeo.runtime.transaction.TransactionHelper;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.SharedMetricRegistries;
+import com.codahale.metrics.Timer;
+import com.codahale.metrics.Timer.Context;
+
+/**
+ * Asynchronous writer of audit entries.
+ * <p>
+ * Entries are handed to a bounded queue and written by a dedicated thread in batches, a batch being written when it
+ * reaches the batch size or when the flush interval has elapsed since its first entry. When the queue is full, callers
+ * wait a bit then spill their entries to disk, and spilled entries are written back once the queue has drained. Batches
+ * that can't be written because the backend fails are spilled too, so entries survive a restart.
+ *
+ * @since 7.2
+ */
+public class AuditLogWriter {
+
+    private static final Log log = LogFactory.getLog(AuditLogWriter.class);
+
+    public static final String ENABLED_PROP = "nuxeo.audit.writer.enabled";
+
+    public static final String QUEUE_SIZE_PROP = "nuxeo.audit.writer.queueSize";
+
+    public static final String DEFAULT_QUEUE_SIZE = "10000";
+
+    public static final String BATCH_SIZE_PROP = "nuxeo.audit.writer.batchSize";
+
+    public static final String DEFAULT_BATCH_SIZE = "500";
+
+    public static final String FLUSH_INTERVAL_PROP = "nuxeo.audit.writer.flushIntervalMillis";
+
+    public static final String DEFAULT_FLUSH_INTERVAL = "1000";
+
+    /** Time a caller waits for room in the queue before spilling to disk. */
+    public static final String OFFER_TIMEOUT_PROP = "nuxeo.audit.writer.offerTimeoutMillis";
+
+    public static final String DEFAULT_OFFER_TIMEOUT = "100";
+
+    public static final String SPILL_DIR_PROP = "nuxeo.audit.writer.spillDir";
+
+    protected static final String SPILL_PREFIX = "audit-";
+
+    protected static final String SPILL_SUFFIX = ".ser";
+
+    protected static final long MAX_BACKOFF = 30000;
+
+    protected final AbstractAuditBackend backend;
+
+    protected final BlockingQueue<LogEntry> queue;
+
+    protected final int batchSize;
+
+    protected final long flushInterval;
+
+    protected final long offerTimeout;
+
+    protected final File spillDir;
+
+    protected final AtomicLong spillCounter = new AtomicLong();
+
+    protected final Thread thread;
+
+    protected volatile boolean stopped;
+
+    // entries queued and not yet written or spilled
+    protected final AtomicLong pending = new AtomicLong();
+
+    // consecutive write failures, used by the writer thread only
+    protected int failures;
+
+    protected final Timer flushTimer;
+
+    protected final Histogram batchSizeHistogram;
+
+    protected final Counter spilledCount;
+
+    protected final Counter recoveredCount;
+
+    public static boolean isEnabled() {
+        return Boolean.parseBoolean(Framework.getProperty(ENABLED_PROP, "false"));
+    }
+
+    public AuditLogWriter(AbstractAuditBackend backend) {
+        this.backend = backend;
+        queue = new ArrayBlockingQueue<>(Integer.parseInt(Framework.getProperty(QUEUE_SIZE_PROP, DEFAULT_QUEUE_SIZE)));
+        batchSize = Integer.parseInt(Framework.getProperty(BATCH_SIZE_PROP, DEFAULT_BATCH_SIZE));
+        flushInterval = Long.parseLong(Framework.getProperty(FLUSH_INTERVAL_PROP, DEFAULT_FLUSH_INTERVAL));
+        offerTimeout = Long.parseLong(Framework.getProperty(OFFER_TIMEOUT_PROP, DEFAULT_OFFER_TIMEOUT));
+        String dir = Framework.getProperty(SPILL_DIR_PROP);
+        spillDir = dir != null ? new File(dir) : new File(Environment.getDefault().getData(), "audit-spill");
+        spillDir.mkdirs();
+        MetricRegistry registry = SharedMetricRegistries.getOrCreate(MetricsService.class.getName());
+        String queueName = MetricRegistry.name("nuxeo", "audit", "writer", "queue");
+        registry.remove(queueName);
+        registry.register(queueName, new Gauge<Integer>() {
+            @Override
+            public Integer getValue() {
+                return Integer.valueOf(queue.size());
+            }
+        });
+        flushTimer = registry.timer(MetricRegistry.name("nuxeo", "audit", "writer", "flush"));
+        batchSizeHistogram = registry.histogram(MetricRegistry.name("nuxeo", "audit", "writer", "batch"));
+        spilledCount = registry.counter(MetricRegistry.name("nuxeo", "audit", "writer", "spilled"));
+        recoveredCount = registry.counter(MetricRegistry.name("nuxeo", "audit", "writer", "recovered"));
+        thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                AuditLogWriter.this.run();
+            }
+        }, "Nuxeo-AuditWriter");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Queues entries to be written.
+     * <p>
+     * Blocks a short time if the queue is full, then spills the remaining entries to disk.
+     */
+    public void add(List<LogEntry> entries) {
+        for (int i = 0; i < entries.size(); i++) {
+            boolean queued;
+            pending.incrementAndGet();
+            try {
+                queued = !stopped && queue.offer(entries.get(i), offerTimeout, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                queued = false;
+            }
+            if (!queued) {
+                pending.decrementAndGet();
+                spill(new ArrayList<>(entries.subList(i, entries.size())));
+                return;
+            }
+        }
+    }
+
+    /**
+     * Gets the number of entries waiting in the queue.
+     */
+    public int getQueueSize() {
+        return queue.size();
+    }
+
+    /**
+     * Waits until the entries queued before this call are written or spilled.
+     */
+    public void flush() throws InterruptedException {
+        while (pending.get() > 0) {
+            Thread.sleep(10);
+        }
+    }
+
+    /**
+     * Stops the writer, writing or spilling the queued entries.
+     */
+    public void shutdown() {
+        stopped = true;
+        try {
+            thread.join(TimeUnit.SECONDS.toMillis(30));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (thread.isAlive()) {
+            log.warn("Audit writer still running after shutdown");
+            thread.interrupt();
+        }
+        List<LogEntry> remaining = new ArrayList<>();
+        queue.drainTo(remaining);
+        if (!remaining.isEmpty()) {
+            spill(remaining);
+            pending.addAndGet(-remaining.size());
+        }
+    }
+
+    protected void run() {
+        try {
+            while (!stopped || !queue.isEmpty()) {
+                LogEntry first = queue.poll(flushInterval, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    recoverSpilled();
+                    continue;
+                }
+                List<LogEntry> batch = new ArrayList<>(batchSize);
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                long deadline = System.currentTimeMillis() + flushInterval;
+                long wait;
+                while (!stopped && batch.size() < batchSize && (wait = deadline - System.currentTimeMillis()) > 0) {
+                    LogEntry entry = queue.poll(wait, TimeUnit.MILLISECONDS);
+                    if (entry == null) {
+                        break;
+                    }
+                    batch.add(entry);
+                    queue.drainTo(batch, batchSize - batch.size());
+                }
+                boolean written = write(batch);
+                if (!written) {
+                    spill(batch);
+                }
+                pending.addAndGet(-batch.size());
+                if (!written) {
+                    backoff();
+                }
+                if (queue.size() < batchSize) {
+                    recoverSpilled();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Writes a batch to the backend.
+     *
+     * @return {@code false} if the batch could not be written
+     */
+    protected boolean write(List<LogEntry> batch) {
+        batchSizeHistogram.update(batch.size());
+        Context stopWatch = flushTimer.time();
+        boolean txStarted = TransactionHelper.startTransaction();
+        try {
+            backend.addLogEntries(batch);
+            failures = 0;
+            return true;
+        } catch (RuntimeException e) {
+            TransactionHelper.setTransactionRollbackOnly();
+            failures++;
+            log.error("Unable to write " + batch.size() + " audit entries, failure " + failures, e);
+            return false;
+        } finally {
+            try {
+                if (txStarted) {
+                    TransactionHelper.commitOrRollbackTransaction();
+                }
+            } finally {
+                stopWatch.stop();
+            }
+        }
+    }
+
+    /**
+     * Waits after a write failure, longer after each consecutive one.
+     */
+    protected void backoff() throws InterruptedException {
+        if (!stopped) {
+            Thread.sleep(Math.min(MAX_BACKOFF, 1000L * failures));
+        }
+    }
+
+    /**
+     * Durably writes entries to a new spill file.
+     */
+    protected void spill(List<LogEntry> entries) {
+        String name = String.format("%s%016x-%08x", SPILL_PREFIX, System.currentTimeMillis(),
+                spillCounter.incrementAndGet());
+        File tmp = new File(spillDir, name + ".tmp");
+        try {
+            try (FileOutputStream fos = new FileOutputStream(tmp);
+                    ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(fos))) {
+                out.writeObject(new ArrayList<>(entries));
+                out.flush();
+                fos.getFD().sync();
+            }
+            if (!tmp.renameTo(new File(spillDir, name + SPILL_SUFFIX))) {
+                throw new IOException("Cannot rename " + tmp);
+            }
+            spilledCount.inc(entries.size());
+        } catch (IOException e) {
+            log.error("Lost " + entries.size() + " audit entries, cannot spill them to: " + spillDir, e);
+            tmp.delete();
+        }
+    }
+
+    /**
+     * Writes back the spilled entries, stopping at the first failure.
+     */
+    protected void recoverSpilled() throws InterruptedException {
+        if (failures > 0 && stopped) {
+            return;
+        }
+        File[] files = spillDir.listFiles();
+        if (files == null) {
+            return;
+        }
+        Arrays.sort(files);
+        for (File file : files) {
+            String name = file.getName();
+            if (!name.startsWith(SPILL_PREFIX) || !name.endsWith(SPILL_SUFFIX)) {
+                continue;
+            }
+            if (queue.size() >= batchSize) {
+                // live entries first
+                return;
+            }
+            List<LogEntry> entries = readSpilled(file);
+            if (entries == null) {
+                continue;
+            }
+            if (!write(entries)) {
+                backoff();
+                return;
+            }
+            file.delete();
+            recoveredCount.inc(entries.size());
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    protected List<LogEntry> readSpilled(File file) {
+        try (InputStream in = new BufferedInputStream(new FileInputStream(file));
+                ObjectInputStream ois = new ObjectInputStream(in) {
+                    @Override
+                    protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException,
+                            ClassNotFoundException {
+                        // entries classes may not be visible from the default class loader
+                        try {
+                            return Class.forName(desc.getName(), false, AuditLogWriter.class.getClassLoader());
+                        } catch (ClassNotFoundException e) {
+                            return super.resolveClass(desc);
+                        }
+                    }
+                }) {
+            return (List<LogEntry>) ois.readObject();
+        } catch (IOException | ClassNotFoundException e) {
+            log.error("Cannot read spilled audit entries, renaming: " + file, e);
+            file.renameTo(new File(file.getPath() + ".bad"));
+            return null;
+        }
+    }
+
+}
@@ -33,6 +33,7 @@ import org.nuxeo.ecm.core.persistence.PersistenceProviderFactory;
 import org.nuxeo.ecm.platform.audit.api.FilterMapEntry;
 import org.nuxeo.ecm.platform.audit.api.LogEntry;
 import org.nuxeo.runtime.api.Framework;
+import org.nuxeo.runtime.transaction.TransactionHelper;
 
 /**
  * Contains the Hibernate based (legacy) implementation
@@ -73,6 +74,7 @@ public class DefaultAuditBackend extends AbstractAuditBackend implements AuditBa
 
     @Override
     public void deactivate() {
+        stopWriter();
         deactivatePersistenceProvider();
     }
 
@@ -276,6 +278,122 @@ public class DefaultAuditBackend extends AbstractAuditBackend implements AuditBa
         return syncLogCreationEntries(provider, repoId, path, recurs);
     }
 
+    /**
+     * Creates the upcoming partitions of the log entries if partitioning is enabled, then removes the entries older
+     * than the retention period if one is configured, each step in its own transaction.
+     *
+     * @return the number of entries removed row by row, not counting the ones of the dropped partitions
+     * @see LogEntryPartitioner
+     * @since 7.2
+     */
+    public long maintainStorage(final Date now) {
+        boolean txActive = TransactionHelper.isTransactionActive();
+        if (txActive) {
+            TransactionHelper.commitOrRollbackTransaction();
+        }
+        try {
+            doSetupPartitions(now);
+            int retention = LogEntryPartitioner.getRetentionMonths();
+            if (retention <= 0) {
+                return 0;
+            }
+            final Date limit = LogEntryPartitioner.getRetentionLimit(now, retention);
+            List<String> expired = runInTransaction(new RunCallback<List<String>>() {
+                public List<String> runWith(EntityManager em) {
+                    return LogEntryPartitioner.createPartitioner(em).getExpiredPartitions(limit);
+                }
+            });
+            for (final String name : expired) {
+                runInTransaction(new RunCallback<Void>() {
+                    public Void runWith(EntityManager em) {
+                        LogEntryPartitioner.createPartitioner(em).dropPartition(name);
+                        return null;
+                    }
+                });
+            }
+            // rows not stored in a partition
+            final int batchSize = LogEntryPartitioner.getPurgeBatchSize();
+            long removed = 0;
+            int n;
+            do {
+                n = runInTransaction(new RunCallback<Integer>() {
+                    public Integer runWith(EntityManager em) {
+                        return Integer.valueOf(LogEntryPartitioner.createPartitioner(em).removeEntriesBefore(limit,
+                                batchSize));
+                    }
+                }).intValue();
+                removed += n;
+            } while (n == batchSize);
+            if (removed > 0 || !expired.isEmpty()) {
+                log.info(String.format("Removed audit entries before %s: %d partitions dropped, %d entries deleted",
+                        limit, expired.size(), removed));
+            }
+            return removed;
+        } finally {
+            if (txActive) {
+                TransactionHelper.startTransaction();
+            }
+        }
+    }
+
+    /**
+     * Creates the partitions of the log entries up to the configured number of months ahead, if partitioning is
+     * enabled. Called at startup, so that the partitions exist before the first entries are written.
+     *
+     * @see LogEntryPartitioner
+     * @since 7.2
+     */
+    public void setupPartitions(Date now) {
+        boolean txActive = TransactionHelper.isTransactionActive();
+        if (txActive) {
+            TransactionHelper.commitOrRollbackTransaction();
+        }
+        try {
+            doSetupPartitions(now);
+        } finally {
+            if (txActive) {
+                TransactionHelper.startTransaction();
+            }
+        }
+    }
+
+    protected void doSetupPartitions(final Date now) {
+        if (!LogEntryPartitioner.isPartitioningEnabled()) {
+            return;
+        }
+        final int monthsAhead = Integer.parseInt(Framework.getProperty(LogEntryPartitioner.MONTHS_AHEAD_PROP,
+                LogEntryPartitioner.DEFAULT_MONTHS_AHEAD));
+        runInTransaction(new RunCallback<Void>() {
+            public Void runWith(EntityManager em) {
+                LogEntryPartitioner partitioner = LogEntryPartitioner.createPartitioner(em);
+                if (partitioner.isPartitioningSupported()) {
+                    partitioner.setupPartitions(now, monthsAhead);
+                } else {
+                    log.warn("Audit partitioning is not supported by this database, "
+                            + "expired entries are removed row by row");
+                }
+                return null;
+            }
+        });
+    }
+
+    protected <T> T runInTransaction(RunCallback<T> callback) {
+        TransactionHelper.startTransaction();
+        boolean completed = false;
+        try {
+            T result = getOrCreatePersistenceProvider().run(true, callback);
+            completed = true;
+            return result;
+        } catch (ClientException e) {
+            throw new ClientRuntimeException(e);
+        } finally {
+            if (!completed) {
+                TransactionHelper.setTransactionRollbackOnly();
+            }
+            TransactionHelper.commitOrRollbackTransaction();
+        }
+    }
+
     public void addLogEntry(final LogEntry entry) {
         try {
             getOrCreatePersistenceProvider().run(true, new RunCallback<Integer>() {
@@ -329,6 +447,10 @@ public class DefaultAuditBackend extends AbstractAuditBackend implements AuditBa
     }
 
     public void logEvent(final Event event) {
+        if (getWriter() != null) {
+            super.logEvent(event);
+            return;
+        }
         try {
             getOrCreatePersistenceProvider().run(true, new RunVoid() {
                 public void runWith(EntityManager em) {
@@ -341,6 +463,11 @@ public class DefaultAuditBackend extends AbstractAuditBackend implements AuditBa
     }
 
     public void logEvents(final EventBundle eventBundle) {
+        AuditLogWriter writer = getWriter();
+        if (writer != null) {
+            writer.add(buildEntries(eventBundle));
+            return;
+        }
         try {
             getOrCreatePersistenceProvider().run(true, new RunVoid() {
                 public void runWith(EntityManager em) {
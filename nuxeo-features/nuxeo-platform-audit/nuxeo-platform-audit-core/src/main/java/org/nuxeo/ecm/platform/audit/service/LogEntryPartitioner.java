@@ -0,0 +1,358 @@
+/*
+ * Copyright (c) 2015 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.ecm.platform.audit.service;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.persistence.EntityManager;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.hibernate.Session;
+import org.nuxeo.ecm.platform.audit.api.AuditRuntimeException;
+import org.nuxeo.runtime.api.Framework;
+
+/**
+ * Manages the time-partitioned storage of the log entries, and their removal after the retention period.
+ * <p>
+ * On PostgreSQL the {@code NXP_LOGS} table can be partitioned by month of event date: each month is stored in an
+ * inheriting table {@code NXP_LOGS_yyyyMM} with a check constraint on its date range, so that the queries restricted
+ * on the event date (as the ones built from a {@link org.nuxeo.ecm.platform.audit.api.query.DateRangeParser date
+ * range}) only scan the matching months, and expired months are removed by dropping their table. An insert trigger
+ * moves the new rows to the table of their month.
+ * <p>
+ * On other databases, or for the rows that are not in a partition, the expired entries are deleted by bounded
+ * batches.
+ *
+ * @since 7.2
+ */
+public class LogEntryPartitioner {
+
+    private static final Log log = LogFactory.getLog(LogEntryPartitioner.class);
+
+    public static final String PARTITIONING_PROP = "nuxeo.audit.partitioning.enabled";
+
+    public static final String MONTHS_AHEAD_PROP = "nuxeo.audit.partitioning.monthsAhead";
+
+    public static final String DEFAULT_MONTHS_AHEAD = "2";
+
+    /** Number of months of entries to keep, in addition to the current one. 0 keeps all the entries. */
+    public static final String RETENTION_PROP = "nuxeo.audit.retention.months";
+
+    public static final String DEFAULT_RETENTION = "0";
+
+    public static final String PURGE_BATCH_SIZE_PROP = "nuxeo.audit.retention.batchSize";
+
+    public static final String DEFAULT_PURGE_BATCH_SIZE = "1000";
+
+    protected static final String TABLE = "nxp_logs";
+
+    protected static final String MAP_TABLE = "nxp_logs_mapextinfos";
+
+    protected static final String EXTINFO_TABLE = "nxp_logs_extinfo";
+
+    protected static final String TRIGGER = "nxp_logs_partition_trigger";
+
+    protected static final String TRIGGER_FUNCTION = "nxp_logs_partition_insert";
+
+    protected static final Pattern PARTITION = Pattern.compile(TABLE + "_(\\d{6})");
+
+    /** Key of the advisory lock serializing the maintenance done by several nodes. */
+    protected static final long LOCK_KEY = 0x4e78704c6f6773L; // "NxpLogs"
+
+    protected final Connection connection;
+
+    protected final boolean postgresql;
+
+    protected LogEntryPartitioner(Connection connection) {
+        this.connection = connection;
+        try {
+            postgresql = "PostgreSQL".equals(connection.getMetaData().getDatabaseProductName());
+        } catch (SQLException e) {
+            throw new AuditRuntimeException("Cannot get database metadata", e);
+        }
+    }
+
+    @SuppressWarnings("deprecation")
+    public static LogEntryPartitioner createPartitioner(EntityManager em) {
+        // the JDBC connection of the current transaction
+        return new LogEntryPartitioner(((Session) em.getDelegate()).connection());
+    }
+
+    /**
+     * Creates a partitioner working on the given connection, which must not be in auto-commit mode for the
+     * maintenance to be serialized between nodes.
+     */
+    public static LogEntryPartitioner createPartitioner(Connection connection) {
+        return new LogEntryPartitioner(connection);
+    }
+
+    public static boolean isPartitioningEnabled() {
+        return Boolean.parseBoolean(Framework.getProperty(PARTITIONING_PROP, "false"));
+    }
+
+    public static int getRetentionMonths() {
+        return Integer.parseInt(Framework.getProperty(RETENTION_PROP, DEFAULT_RETENTION));
+    }
+
+    public static int getPurgeBatchSize() {
+        return Integer.parseInt(Framework.getProperty(PURGE_BATCH_SIZE_PROP, DEFAULT_PURGE_BATCH_SIZE));
+    }
+
+    /**
+     * Gets the date before which the entries are expired: the start of the month, {@code months} months before the
+     * month of {@code now}.
+     */
+    public static Date getRetentionLimit(Date now, int months) {
+        Calendar cal = getMonthStart(now);
+        cal.add(Calendar.MONTH, -months);
+        return cal.getTime();
+    }
+
+    protected static Calendar getMonthStart(Date date) {
+        Calendar cal = Calendar.getInstance();
+        cal.setTime(date);
+        cal.set(Calendar.DAY_OF_MONTH, 1);
+        cal.set(Calendar.HOUR_OF_DAY, 0);
+        cal.set(Calendar.MINUTE, 0);
+        cal.set(Calendar.SECOND, 0);
+        cal.set(Calendar.MILLISECOND, 0);
+        return cal;
+    }
+
+    /**
+     * Gets the name of the partition holding the entries of the month of a date.
+     */
+    public static String getPartitionName(Date date) {
+        return TABLE + "_" + new SimpleDateFormat("yyyyMM").format(date);
+    }
+
+    /**
+     * Checks if the database supports the partitioning of the log entries.
+     */
+    public boolean isPartitioningSupported() {
+        return postgresql;
+    }
+
+    /**
+     * Installs the insert trigger and creates the partitions from the current month to {@code monthsAhead} months
+     * ahead. Idempotent, and serialized with the maintenance done by other nodes until the end of the transaction.
+     */
+    public void setupPartitions(Date now, int monthsAhead) {
+        if (!postgresql) {
+            throw new UnsupportedOperationException("Audit partitioning is only available on PostgreSQL");
+        }
+        try {
+            lockMaintenance();
+            dropMapForeignKey();
+            execute("CREATE OR REPLACE FUNCTION " + TRIGGER_FUNCTION + "() RETURNS trigger AS $$\n" //
+                    + "BEGIN\n" //
+                    + "  IF NEW.log_event_date IS NULL THEN\n" //
+                    + "    RETURN NULL;\n" //
+                    + "  END IF;\n" //
+                    + "  BEGIN\n" //
+                    + "    EXECUTE 'INSERT INTO " + TABLE + "_' || to_char(NEW.log_event_date, 'YYYYMM')"
+                    + " || ' SELECT ($1).*' USING NEW;\n" //
+                    + "  EXCEPTION WHEN undefined_table THEN\n" //
+                    + "    -- no partition for this month, keep the row in the parent table\n" //
+                    + "    RETURN NULL;\n" //
+                    + "  END;\n" //
+                    + "  DELETE FROM ONLY " + TABLE + " WHERE log_id = NEW.log_id;\n" //
+                    + "  RETURN NULL;\n" //
+                    + "END $$ LANGUAGE plpgsql");
+            if (!exists("SELECT 1 FROM pg_trigger WHERE tgname = ?", TRIGGER)) {
+                // an AFTER trigger, as Hibernate checks that the insert into the parent table affected a row
+                execute("CREATE TRIGGER " + TRIGGER + " AFTER INSERT ON " + TABLE + " FOR EACH ROW EXECUTE PROCEDURE "
+                        + TRIGGER_FUNCTION + "()");
+            }
+            Calendar month = getMonthStart(now);
+            for (int i = 0; i <= monthsAhead; i++) {
+                createPartition(month.getTime());
+                month.add(Calendar.MONTH, 1);
+            }
+        } catch (SQLException e) {
+            throw new AuditRuntimeException("Cannot set up audit partitions", e);
+        }
+    }
+
+    /**
+     * Drops the foreign key from the extended infos map to the log entries, which cannot reference rows stored in
+     * inheriting tables. Only databases created before the mapping stopped generating it have one.
+     */
+    protected void dropMapForeignKey() throws SQLException {
+        List<String> names = new ArrayList<>();
+        try (PreparedStatement ps = connection.prepareStatement("SELECT conname FROM pg_constraint"
+                + " WHERE contype = 'f' AND conrelid = ?::regclass AND confrelid = ?::regclass")) {
+            ps.setString(1, MAP_TABLE);
+            ps.setString(2, TABLE);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    names.add(rs.getString(1));
+                }
+            }
+        }
+        for (String name : names) {
+            execute("ALTER TABLE " + MAP_TABLE + " DROP CONSTRAINT " + name);
+        }
+    }
+
+    protected void createPartition(Date date) throws SQLException {
+        String name = getPartitionName(date);
+        if (exists("SELECT 1 FROM pg_class WHERE relname = ? AND pg_table_is_visible(oid)", name)) {
+            return;
+        }
+        Calendar end = getMonthStart(date);
+        end.add(Calendar.MONTH, 1);
+        SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd");
+        execute("CREATE TABLE " + name + " (PRIMARY KEY (log_id), CHECK (log_event_date >= DATE '"
+                + format.format(date) + "' AND log_event_date < DATE '" + format.format(end.getTime())
+                + "')) INHERITS (" + TABLE + ")");
+        execute("CREATE INDEX " + name + "_event_date_idx ON " + name + " (log_event_date)");
+        execute("CREATE INDEX " + name + "_doc_uuid_idx ON " + name + " (log_doc_uuid)");
+        log.info("Created audit partition: " + name);
+    }
+
+    /**
+     * Gets the partitions holding only entries before a date.
+     */
+    public List<String> getExpiredPartitions(Date limit) {
+        List<String> expired = new ArrayList<>();
+        if (!postgresql) {
+            return expired;
+        }
+        String limitName = getPartitionName(limit);
+        try (PreparedStatement ps = connection.prepareStatement("SELECT c.relname FROM pg_inherits i"
+                + " JOIN pg_class c ON c.oid = i.inhrelid WHERE i.inhparent = ?::regclass")) {
+            ps.setString(1, TABLE);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    String name = rs.getString(1);
+                    Matcher m = PARTITION.matcher(name);
+                    // partition names sort chronologically, and the month of the limit is not expired
+                    if (m.matches() && name.compareTo(limitName) < 0) {
+                        expired.add(name);
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            throw new AuditRuntimeException("Cannot list audit partitions", e);
+        }
+        return expired;
+    }
+
+    /**
+     * Drops a partition, removing the extended infos of its entries.
+     */
+    public void dropPartition(String name) {
+        if (!PARTITION.matcher(name).matches()) {
+            throw new IllegalArgumentException("Not an audit partition: " + name);
+        }
+        try {
+            lockMaintenance();
+            if (!exists("SELECT 1 FROM pg_class WHERE relname = ? AND pg_table_is_visible(oid)", name)) {
+                // dropped by another node
+                return;
+            }
+            execute("WITH m AS (DELETE FROM " + MAP_TABLE + " WHERE log_fk IN (SELECT log_id FROM " + name
+                    + ") RETURNING info_fk) DELETE FROM " + EXTINFO_TABLE
+                    + " WHERE log_extinfo_id IN (SELECT info_fk FROM m)");
+            execute("DROP TABLE " + name);
+            log.info("Dropped audit partition: " + name);
+        } catch (SQLException e) {
+            throw new AuditRuntimeException("Cannot drop audit partition: " + name, e);
+        }
+    }
+
+    /**
+     * Removes at most {@code max} entries with an event date before a date, with their extended infos.
+     *
+     * @return the number of removed entries
+     */
+    public int removeEntriesBefore(Date limit, int max) {
+        try {
+            List<Long> ids = new ArrayList<>(max);
+            try (PreparedStatement ps = connection.prepareStatement("SELECT log_id FROM " + TABLE
+                    + " WHERE log_event_date < ?")) {
+                ps.setMaxRows(max);
+                ps.setTimestamp(1, new Timestamp(limit.getTime()));
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        ids.add(Long.valueOf(rs.getLong(1)));
+                    }
+                }
+            }
+            if (ids.isEmpty()) {
+                return 0;
+            }
+            String idList = StringUtils.join(ids, ",");
+            List<Long> infoIds = new ArrayList<>();
+            try (Statement st = connection.createStatement();
+                    ResultSet rs = st.executeQuery("SELECT info_fk FROM " + MAP_TABLE + " WHERE log_fk IN (" + idList
+                            + ")")) {
+                while (rs.next()) {
+                    infoIds.add(Long.valueOf(rs.getLong(1)));
+                }
+            }
+            if (!infoIds.isEmpty()) {
+                execute("DELETE FROM " + MAP_TABLE + " WHERE log_fk IN (" + idList + ")");
+                execute("DELETE FROM " + EXTINFO_TABLE + " WHERE log_extinfo_id IN (" + StringUtils.join(infoIds, ",")
+                        + ")");
+            }
+            execute("DELETE FROM " + TABLE + " WHERE log_id IN (" + idList + ")");
+            return ids.size();
+        } catch (SQLException e) {
+            throw new AuditRuntimeException("Cannot remove expired audit entries", e);
+        }
+    }
+
+    /**
+     * Waits for the maintenance done by other nodes, the lock is held until the end of the transaction.
+     */
+    protected void lockMaintenance() throws SQLException {
+        try (PreparedStatement ps = connection.prepareStatement("SELECT pg_advisory_xact_lock(?)")) {
+            ps.setLong(1, LOCK_KEY);
+            ps.execute();
+        }
+    }
+
+    protected boolean exists(String sql, String param) throws SQLException {
+        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+            ps.setString(1, param);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next();
+            }
+        }
+    }
+
+    protected void execute(String sql) throws SQLException {
+        if (log.isDebugEnabled()) {
+            log.debug(sql);
+        }
+        try (Statement st = connection.createStatement()) {
+            st.execute(sql);
+        }
+    }
+
+}
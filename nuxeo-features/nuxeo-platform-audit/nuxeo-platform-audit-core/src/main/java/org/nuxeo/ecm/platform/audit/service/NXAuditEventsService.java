@@ -19,6 +19,7 @@
 
 package org.nuxeo.ecm.platform.audit.service;
 
+import java.util.Date;
 import java.util.HashSet;
 import java.util.Set;
 
@@ -78,6 +79,18 @@ public class NXAuditEventsService extends DefaultComponent {
         super.deactivate(context);
     }
 
+    @Override
+    public void applicationStarted(ComponentContext context) {
+        if (backend instanceof DefaultAuditBackend && LogEntryPartitioner.isPartitioningEnabled()) {
+            // before the first entries are written, and not only at the next scheduled maintenance
+            try {
+                ((DefaultAuditBackend) backend).setupPartitions(new Date());
+            } catch (RuntimeException e) {
+                log.error("Cannot set up audit partitions", e);
+            }
+        }
+    }
+
     @Override
     public void registerContribution(Object contribution, String extensionPoint, ComponentInstance contributor) {
         if (extensionPoint.equals(EVENT_EXT_POINT)) {
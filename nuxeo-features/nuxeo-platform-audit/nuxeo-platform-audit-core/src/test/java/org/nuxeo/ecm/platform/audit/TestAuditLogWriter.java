@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2015 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.ecm.platform.audit;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.nuxeo.ecm.platform.audit.api.LogEntry;
+import org.nuxeo.ecm.platform.audit.api.Logs;
+import org.nuxeo.ecm.platform.audit.impl.LogEntryImpl;
+import org.nuxeo.ecm.platform.audit.service.AuditLogWriter;
+import org.nuxeo.ecm.platform.audit.service.DefaultAuditBackend;
+import org.nuxeo.runtime.api.Framework;
+import org.nuxeo.runtime.test.runner.Features;
+import org.nuxeo.runtime.test.runner.FeaturesRunner;
+
+@RunWith(FeaturesRunner.class)
+@Features(AuditFeature.class)
+public class TestAuditLogWriter {
+
+    protected File spillDir;
+
+    protected DefaultAuditBackend backend;
+
+    @Before
+    public void setUp() throws Exception {
+        spillDir = File.createTempFile("audit-spill-", "");
+        spillDir.delete();
+        Framework.getProperties().setProperty(AuditLogWriter.SPILL_DIR_PROP, spillDir.getPath());
+        Framework.getProperties().setProperty(AuditLogWriter.FLUSH_INTERVAL_PROP, "100");
+        backend = (DefaultAuditBackend) Framework.getLocalService(Logs.class);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        Framework.getProperties().remove(AuditLogWriter.SPILL_DIR_PROP);
+        Framework.getProperties().remove(AuditLogWriter.FLUSH_INTERVAL_PROP);
+        FileUtils.deleteQuietly(spillDir);
+    }
+
+    protected List<LogEntry> newEntries(String eventId, int n) {
+        List<LogEntry> entries = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            LogEntry entry = new LogEntryImpl();
+            entry.setEventId(eventId);
+            entry.setEventDate(new Date());
+            entry.setCategory("writerTest");
+            entries.add(entry);
+        }
+        return entries;
+    }
+
+    protected int count(String eventId) {
+        return backend.queryLogs(new String[] { eventId }, "1h").size();
+    }
+
+    @Test
+    public void testWriteQueuedEntries() throws Exception {
+        AuditLogWriter writer = new AuditLogWriter(backend);
+        try {
+            writer.add(newEntries("writerQueued", 1200));
+            writer.flush();
+            assertEquals(0, writer.getQueueSize());
+        } finally {
+            writer.shutdown();
+        }
+        assertEquals(1200, count("writerQueued"));
+    }
+
+    @Test
+    public void testRecoverSpilledEntries() throws Exception {
+        AuditLogWriter writer = new AuditLogWriter(backend) {
+            @Override
+            public void add(List<LogEntry> entries) {
+                // as if the queue was full
+                spill(entries);
+            }
+        };
+        try {
+            writer.add(newEntries("writerSpilled", 10));
+            for (int i = 0; i < 100 && spillDir.list().length > 0; i++) {
+                Thread.sleep(100);
+            }
+            assertEquals(0, spillDir.list().length);
+        } finally {
+            writer.shutdown();
+        }
+        assertEquals(10, count("writerSpilled"));
+    }
+
+}
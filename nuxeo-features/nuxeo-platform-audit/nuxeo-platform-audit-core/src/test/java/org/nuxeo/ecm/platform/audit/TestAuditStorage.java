@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) 2015 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.ecm.platform.audit;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.GregorianCalendar;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.nuxeo.ecm.platform.audit.api.ExtendedInfo;
+import org.nuxeo.ecm.platform.audit.api.LogEntry;
+import org.nuxeo.ecm.platform.audit.api.Logs;
+import org.nuxeo.ecm.platform.audit.impl.ExtendedInfoImpl;
+import org.nuxeo.ecm.platform.audit.impl.LogEntryImpl;
+import org.nuxeo.ecm.platform.audit.service.DefaultAuditBackend;
+import org.nuxeo.ecm.platform.audit.service.LogEntryPartitioner;
+import org.nuxeo.runtime.api.Framework;
+import org.nuxeo.runtime.test.runner.Features;
+import org.nuxeo.runtime.test.runner.FeaturesRunner;
+
+@RunWith(FeaturesRunner.class)
+@Features(AuditFeature.class)
+public class TestAuditStorage {
+
+    protected DefaultAuditBackend backend;
+
+    @Before
+    public void setUp() {
+        backend = (DefaultAuditBackend) Framework.getLocalService(Logs.class);
+    }
+
+    @After
+    public void tearDown() {
+        Framework.getProperties().remove(LogEntryPartitioner.RETENTION_PROP);
+        Framework.getProperties().remove(LogEntryPartitioner.PURGE_BATCH_SIZE_PROP);
+    }
+
+    protected static Date date(int year, int month, int day) {
+        return new GregorianCalendar(year, month - 1, day, 12, 0).getTime();
+    }
+
+    @Test
+    public void testPartitionNames() {
+        assertEquals("nxp_logs_201502", LogEntryPartitioner.getPartitionName(date(2015, 2, 28)));
+        assertEquals(new GregorianCalendar(2014, Calendar.DECEMBER, 1).getTime(),
+                LogEntryPartitioner.getRetentionLimit(date(2015, 3, 15), 3));
+        assertEquals(new GregorianCalendar(2015, Calendar.MARCH, 1).getTime(),
+                LogEntryPartitioner.getRetentionLimit(date(2015, 3, 15), 0));
+    }
+
+    protected List<LogEntry> newEntries(String eventId, Date eventDate, int n) {
+        List<LogEntry> entries = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            LogEntry entry = new LogEntryImpl();
+            entry.setEventId(eventId);
+            entry.setEventDate(eventDate);
+            entry.setCategory("storageTest");
+            Map<String, ExtendedInfo> infos = new HashMap<>();
+            infos.put("index", ExtendedInfoImpl.createExtendedInfo(Long.valueOf(i)));
+            entry.setExtendedInfos(infos);
+            entries.add(entry);
+        }
+        return entries;
+    }
+
+    protected long count(String eventId) {
+        return backend.getEventsCount(eventId).longValue();
+    }
+
+    @Test
+    public void testRetention() {
+        Date now = date(2015, 3, 15);
+        backend.addLogEntries(newEntries("storageExpired", date(2014, 11, 30), 25));
+        backend.addLogEntries(newEntries("storageKept", date(2014, 12, 1), 5));
+        backend.addLogEntries(newEntries("storageKept", date(2015, 3, 2), 5));
+
+        // no retention by default
+        assertEquals(0, backend.maintainStorage(now));
+        assertEquals(25, count("storageExpired"));
+
+        Framework.getProperties().setProperty(LogEntryPartitioner.RETENTION_PROP, "3");
+        Framework.getProperties().setProperty(LogEntryPartitioner.PURGE_BATCH_SIZE_PROP, "10");
+        assertEquals(25, backend.maintainStorage(now));
+        assertEquals(0, count("storageExpired"));
+        assertEquals(10, count("storageKept"));
+    }
+
+}
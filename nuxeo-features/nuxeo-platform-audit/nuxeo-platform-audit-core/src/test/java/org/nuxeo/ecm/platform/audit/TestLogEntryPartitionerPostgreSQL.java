@@ -0,0 +1,212 @@
+/*
+ * Copyright (c) 2015 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.ecm.platform.audit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.GregorianCalendar;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.nuxeo.ecm.platform.audit.service.LogEntryPartitioner;
+
+/**
+ * Tests the partitioning of the log entries on PostgreSQL, on tables shaped like the ones created by Hibernate.
+ * <p>
+ * Runs only when the tests are configured for PostgreSQL through the {@code nuxeo.test.vcs.*} system properties.
+ */
+public class TestLogEntryPartitionerPostgreSQL {
+
+    protected Connection connection;
+
+    protected Connection connection2;
+
+    protected static String getProperty(String name, String def) {
+        String value = System.getProperty(name);
+        return value == null || value.isEmpty() ? def : value;
+    }
+
+    protected static Connection newConnection() throws SQLException {
+        String url = String.format("jdbc:postgresql://%s:%s/%s", getProperty("nuxeo.test.vcs.server", "localhost"),
+                getProperty("nuxeo.test.vcs.port", "5432"),
+                getProperty("nuxeo.test.vcs.database", "nuxeojunittests"));
+        Connection connection = DriverManager.getConnection(url, getProperty("nuxeo.test.vcs.user", "nuxeo"),
+                getProperty("nuxeo.test.vcs.password", "nuxeo"));
+        connection.setAutoCommit(false);
+        return connection;
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        assumeTrue("PostgreSQL".equals(System.getProperty("nuxeo.test.vcs.db")));
+        Class.forName("org.postgresql.Driver");
+        connection = newConnection();
+        execute("DROP TABLE IF EXISTS nxp_logs_mapextinfos, nxp_logs_extinfo, nxp_logs CASCADE");
+        execute("DROP FUNCTION IF EXISTS nxp_logs_partition_insert() CASCADE");
+        execute("CREATE TABLE nxp_logs (log_id int8 NOT NULL PRIMARY KEY, log_event_id varchar(255),"
+                + " log_event_date timestamp, log_doc_uuid varchar(255))");
+        execute("CREATE TABLE nxp_logs_extinfo (log_extinfo_id int8 NOT NULL PRIMARY KEY)");
+        execute("CREATE TABLE nxp_logs_mapextinfos (log_fk int8 NOT NULL REFERENCES nxp_logs (log_id),"
+                + " info_fk int8 NOT NULL REFERENCES nxp_logs_extinfo (log_extinfo_id),"
+                + " mapkey varchar(255) NOT NULL, PRIMARY KEY (log_fk, mapkey))");
+        connection.commit();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (connection2 != null) {
+            connection2.rollback();
+            connection2.close();
+        }
+        if (connection != null) {
+            connection.rollback();
+            connection.close();
+        }
+    }
+
+    protected void execute(String sql) throws SQLException {
+        try (Statement st = connection.createStatement()) {
+            st.execute(sql);
+        }
+    }
+
+    protected long count(String sql) throws SQLException {
+        try (Statement st = connection.createStatement(); ResultSet rs = st.executeQuery(sql)) {
+            rs.next();
+            return rs.getLong(1);
+        }
+    }
+
+    protected void insertEntry(long id, Date eventDate) throws SQLException {
+        try (PreparedStatement ps = connection.prepareStatement("INSERT INTO nxp_logs"
+                + " (log_id, log_event_id, log_event_date) VALUES (?, 'test', ?)")) {
+            ps.setLong(1, id);
+            ps.setTimestamp(2, new Timestamp(eventDate.getTime()));
+            // the AFTER trigger keeps the row count of the insert into the parent table
+            assertEquals(1, ps.executeUpdate());
+        }
+        execute("INSERT INTO nxp_logs_extinfo VALUES (" + id + ")");
+        execute("INSERT INTO nxp_logs_mapextinfos VALUES (" + id + ", " + id + ", 'key')");
+    }
+
+    protected static Date date(int year, int month, int day) {
+        return new GregorianCalendar(year, month - 1, day, 12, 0).getTime();
+    }
+
+    protected boolean tableExists(String name) throws SQLException {
+        return count("SELECT count(*) FROM pg_class WHERE relname = '" + name + "'") > 0;
+    }
+
+    @Test
+    public void testSetupAndInsert() throws Exception {
+        LogEntryPartitioner partitioner = LogEntryPartitioner.createPartitioner(connection);
+        assertTrue(partitioner.isPartitioningSupported());
+        partitioner.setupPartitions(date(2015, 3, 15), 1);
+        connection.commit();
+        assertTrue(tableExists("nxp_logs_201503"));
+        assertTrue(tableExists("nxp_logs_201504"));
+        assertFalse(tableExists("nxp_logs_201505"));
+        assertEquals(0, count("SELECT count(*) FROM pg_constraint WHERE contype = 'f'"
+                + " AND conrelid = 'nxp_logs_mapextinfos'::regclass AND confrelid = 'nxp_logs'::regclass"));
+        // idempotent
+        partitioner.setupPartitions(date(2015, 3, 15), 1);
+        connection.commit();
+
+        insertEntry(1, date(2015, 3, 20));
+        insertEntry(2, date(2015, 4, 1));
+        // no partition for this month
+        insertEntry(3, date(2015, 1, 10));
+        connection.commit();
+        assertEquals(3, count("SELECT count(*) FROM nxp_logs"));
+        assertEquals(1, count("SELECT count(*) FROM ONLY nxp_logs"));
+        assertEquals(1, count("SELECT count(*) FROM nxp_logs_201503"));
+        assertEquals(1, count("SELECT count(*) FROM nxp_logs_201504"));
+        assertEquals(1, count("SELECT count(*) FROM nxp_logs WHERE log_event_date >= '2015-03-01'"
+                + " AND log_event_date < '2015-04-01'"));
+    }
+
+    @Test
+    public void testRetention() throws Exception {
+        LogEntryPartitioner partitioner = LogEntryPartitioner.createPartitioner(connection);
+        partitioner.setupPartitions(date(2015, 1, 15), 2);
+        connection.commit();
+        insertEntry(1, date(2015, 1, 20));
+        insertEntry(2, date(2015, 2, 20));
+        insertEntry(3, date(2015, 3, 20));
+        insertEntry(4, date(2014, 12, 20));
+        connection.commit();
+
+        Date limit = LogEntryPartitioner.getRetentionLimit(date(2015, 3, 15), 1);
+        List<String> expired = partitioner.getExpiredPartitions(limit);
+        Collections.sort(expired);
+        assertEquals(Arrays.asList("nxp_logs_201501"), expired);
+        partitioner.dropPartition("nxp_logs_201501");
+        // already dropped by another node
+        partitioner.dropPartition("nxp_logs_201501");
+        connection.commit();
+        assertFalse(tableExists("nxp_logs_201501"));
+        assertEquals(3, count("SELECT count(*) FROM nxp_logs_extinfo"));
+        assertEquals(3, count("SELECT count(*) FROM nxp_logs_mapextinfos"));
+
+        // rows of the parent table
+        assertEquals(1, partitioner.removeEntriesBefore(limit, 10));
+        connection.commit();
+        assertEquals(2, count("SELECT count(*) FROM nxp_logs"));
+        assertEquals(2, count("SELECT count(*) FROM nxp_logs_extinfo"));
+    }
+
+    @Test
+    public void testConcurrentSetup() throws Exception {
+        connection2 = newConnection();
+        final LogEntryPartitioner partitioner2 = LogEntryPartitioner.createPartitioner(connection2);
+        LogEntryPartitioner.createPartitioner(connection).setupPartitions(date(2015, 3, 15), 1);
+        // the other node waits until the first one commits
+        final Throwable[] error = new Throwable[1];
+        Thread thread = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    partitioner2.setupPartitions(date(2015, 3, 15), 2);
+                    connection2.commit();
+                } catch (Throwable t) {
+                    error[0] = t;
+                }
+            }
+        };
+        thread.start();
+        thread.join(500);
+        assertTrue(thread.isAlive());
+        connection.commit();
+        thread.join(10000);
+        assertFalse(thread.isAlive());
+        assertNull(error[0]);
+        assertTrue(tableExists("nxp_logs_201503"));
+        assertTrue(tableExists("nxp_logs_201505"));
+    }
+
+}
@@ -31,6 +31,7 @@ import org.nuxeo.ecm.core.api.ClientException;
 import org.nuxeo.ecm.core.api.impl.blob.FileBlob;
 import org.nuxeo.ecm.platform.picture.api.ImageInfo;
 import org.nuxeo.ecm.platform.pictures.tiles.helpers.StringMaker;
+import org.nuxeo.ecm.platform.pictures.tiles.service.PictureTilingComponent;
 import org.nuxeo.runtime.api.Framework;
 
 /**
@@ -109,6 +110,10 @@ public class PictureTilesImpl implements PictureTiles, Serializable {
 
     public Blob getTile(int x, int y) throws ClientException, IOException {
         String imageFilePath = getTileFilePath(x, y);
+        byte[] data = PictureTilingComponent.getTileCache().get(imageFilePath);
+        if (data != null) {
+            return Blobs.createBlob(data, "image/jpeg");
+        }
         File imageFile = new File(imageFilePath);
         if (imageFile.exists())
             return Blobs.createBlob(imageFile);
@@ -0,0 +1,88 @@
+/*
+ * (C) Copyright 2015 Nuxeo SA (http://nuxeo.com/) and contributors.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public License
+ * (LGPL) version 2.1 which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl-2.1.html
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.ecm.platform.pictures.tiles.helpers;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Memory cache bounded by the total weight in bytes of its values, evicting the least recently used ones.
+ *
+ * @since 7.2
+ */
+public abstract class WeightedLRUCache<V> {
+
+    protected final Map<String, V> map = new LinkedHashMap<String, V>(16, 0.75f, true);
+
+    protected long weight;
+
+    /**
+     * Gets the weight in bytes of a value.
+     */
+    protected abstract long getWeight(V value);
+
+    /**
+     * Gets the maximum total weight in bytes, 0 disabling the cache.
+     */
+    protected abstract long getMaxWeight();
+
+    public synchronized V get(String key) {
+        return map.get(key);
+    }
+
+    public synchronized void put(String key, V value) {
+        long maxWeight = getMaxWeight();
+        long valueWeight = getWeight(value);
+        V previous = map.remove(key);
+        if (previous != null) {
+            weight -= getWeight(previous);
+        }
+        if (valueWeight > maxWeight) {
+            // too big to be cached, or cache disabled
+            return;
+        }
+        Iterator<V> it = map.values().iterator();
+        while (weight + valueWeight > maxWeight && it.hasNext()) {
+            weight -= getWeight(it.next());
+            it.remove();
+        }
+        map.put(key, value);
+        weight += valueWeight;
+    }
+
+    public synchronized void remove(String key) {
+        V value = map.remove(key);
+        if (value != null) {
+            weight -= getWeight(value);
+        }
+    }
+
+    public synchronized void clear() {
+        map.clear();
+        weight = 0;
+    }
+
+    public synchronized long getWeight() {
+        return weight;
+    }
+
+    public synchronized int size() {
+        return map.size();
+    }
+
+}
@@ -0,0 +1,350 @@
+/*
+ * (C) Copyright 2015 Nuxeo SA (http://nuxeo.com/) and contributors.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public License
+ * (LGPL) version 2.1 which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl-2.1.html
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.ecm.platform.pictures.tiles.imageio.tiler;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.imageio.ImageIO;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.nuxeo.common.utils.Path;
+import org.nuxeo.ecm.core.api.ClientException;
+import org.nuxeo.ecm.platform.picture.api.ImageInfo;
+import org.nuxeo.ecm.platform.picture.core.imageio.ImageIOImageUtils;
+import org.nuxeo.ecm.platform.pictures.tiles.api.PictureTiles;
+import org.nuxeo.ecm.platform.pictures.tiles.api.PictureTilesImpl;
+import org.nuxeo.ecm.platform.pictures.tiles.helpers.StringMaker;
+import org.nuxeo.ecm.platform.pictures.tiles.helpers.WeightedLRUCache;
+import org.nuxeo.ecm.platform.pictures.tiles.magick.tiler.MagickTiler;
+import org.nuxeo.ecm.platform.pictures.tiles.service.PictureTilingComponent;
+import org.nuxeo.ecm.platform.pictures.tiles.tilers.BasePictureTiler;
+import org.nuxeo.ecm.platform.pictures.tiles.tilers.PictureTiler;
+
+/**
+ * ImageIO based Tiler rendering each tile on request, without starting an external process.
+ * <p>
+ * The source image (the original picture or a shrinked one) is decoded once and kept in a memory cache, so that each
+ * tile is only a crop and resize of the decoded image. Rendered tiles are written to the tiling directory and kept in
+ * the tile cache of the {@link PictureTilingComponent}, and the neighbours of a requested tile are rendered in the
+ * background.
+ * <p>
+ * Images that ImageIO cannot decode, or too big to fit in the decoded images cache, are tiled by the
+ * {@link MagickTiler}.
+ *
+ * @since 7.2
+ */
+public class ImageIOTiler extends BasePictureTiler {
+
+    private static final Log log = LogFactory.getLog(ImageIOTiler.class);
+
+    public static final String NAME = "ImageIOTiler";
+
+    public static final String MAX_DECODED_IMAGES_MEMORY_USAGE_KEY = "MaxMemoryUsageForDecodedImages";
+
+    /**
+     * Default size in KB of the decoded images cache. A decoded image takes 4 bytes per pixel, so the biggest source
+     * image rendered by this tiler is about 25 megapixels by default; bigger ones are tiled by the {@link MagickTiler}.
+     */
+    public static final long MAX_DECODED_IMAGES_MEMORY_USAGE_KB = 100000;
+
+    public static final String PREFETCH_THREADS_KEY = "TilesPrefetchThreads";
+
+    public static final int PREFETCH_THREADS = 2;
+
+    /** Beyond this number of pending prefetches, the oldest ones are dropped. */
+    protected static final int PREFETCH_QUEUE_SIZE = 64;
+
+    protected static final String TILE_FORMAT = "jpg";
+
+    protected final PictureTiler fallback = new MagickTiler();
+
+    protected final WeightedLRUCache<BufferedImage> decodedImages = new WeightedLRUCache<BufferedImage>() {
+
+        @Override
+        protected long getWeight(BufferedImage image) {
+            return getDecodedSize(image.getWidth(), image.getHeight());
+        }
+
+        @Override
+        protected long getMaxWeight() {
+            return getMaxDecodedImagesSize();
+        }
+    };
+
+    protected final Set<String> undecodableImages = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+    protected final ConcurrentMap<String, FutureTask<BufferedImage>> decoding = new ConcurrentHashMap<>();
+
+    protected final ConcurrentMap<String, FutureTask<byte[]>> rendering = new ConcurrentHashMap<>();
+
+    protected ThreadPoolExecutor prefetchExecutor;
+
+    public boolean needsSync() {
+        return false;
+    }
+
+    public String getName() {
+        return NAME;
+    }
+
+    public PictureTiles getTilesFromFile(ImageInfo input, String outputDirPath, int tileWidth, int tileHeight,
+            int maxTiles, int xCenter, int yCenter, long lastModificationTime, boolean fullGeneration)
+            throws ClientException {
+
+        BufferedImage image = getDecodedImage(input);
+        if (image == null) {
+            return fallback.getTilesFromFile(input, outputDirPath, tileWidth, tileHeight, maxTiles, xCenter, yCenter,
+                    lastModificationTime, fullGeneration);
+        }
+
+        int[] cropCoords = MagickTiler.computeCropCoords(input, maxTiles, tileWidth, tileHeight, xCenter, yCenter);
+        String outputFilePath = getTileFilePath(outputDirPath, xCenter, yCenter, lastModificationTime);
+        getTile(image, cropCoords, outputFilePath);
+
+        int ntx = cropCoords[4];
+        int nty = cropCoords[5];
+        int[][] neighbours = { { xCenter + 1, yCenter }, { xCenter - 1, yCenter }, { xCenter, yCenter + 1 },
+                { xCenter, yCenter - 1 } };
+        for (int[] n : neighbours) {
+            if (n[0] >= 0 && n[0] < ntx && n[1] >= 0 && n[1] < nty) {
+                prefetch(image, MagickTiler.computeCropCoords(input, maxTiles, tileWidth, tileHeight, n[0], n[1]),
+                        getTileFilePath(outputDirPath, n[0], n[1], lastModificationTime));
+            }
+        }
+
+        Map<String, String> infoMap = new HashMap<String, String>();
+        infoMap.put(PictureTilesImpl.TILE_OUTPUT_DIR_KEY, outputDirPath);
+        infoMap.put(PictureTilesImpl.X_TILES_KEY, Integer.toString(ntx));
+        infoMap.put(PictureTilesImpl.Y_TILES_KEY, Integer.toString(nty));
+
+        return new PictureTilesImpl(infoMap);
+    }
+
+    protected String getTileFilePath(String outputDirPath, int x, int y, long lastModificationTime) {
+        String fileName = StringMaker.getTileFileName(x, y, lastModificationTime);
+        return new Path(outputDirPath).append(fileName).toString();
+    }
+
+    protected static long getDecodedSize(int width, int height) {
+        // 4 bytes per pixel for TYPE_INT_RGB and TYPE_INT_ARGB
+        return 4L * width * height;
+    }
+
+    protected static long getMaxDecodedImagesSize() {
+        String maxStr = PictureTilingComponent.getEnvValue(MAX_DECODED_IMAGES_MEMORY_USAGE_KEY,
+                Long.toString(MAX_DECODED_IMAGES_MEMORY_USAGE_KB));
+        return Long.parseLong(maxStr) * 1024;
+    }
+
+    /**
+     * Gets the decoded source image from the cache, decoding it if needed.
+     *
+     * @return the decoded image, or {@code null} if it must be tiled by the fallback tiler
+     */
+    protected BufferedImage getDecodedImage(final ImageInfo input) throws ClientException {
+        final String path = input.getFilePath();
+        if (undecodableImages.contains(path)
+                || getDecodedSize(input.getWidth(), input.getHeight()) > getMaxDecodedImagesSize()) {
+            return null;
+        }
+        BufferedImage image = decodedImages.get(path);
+        if (image != null) {
+            return image;
+        }
+        // decode each source image only once even when its tiles are requested concurrently
+        FutureTask<BufferedImage> task = new FutureTask<>(new Callable<BufferedImage>() {
+            @Override
+            public BufferedImage call() throws IOException {
+                return decode(input);
+            }
+        });
+        FutureTask<BufferedImage> running = decoding.putIfAbsent(path, task);
+        if (running == null) {
+            running = task;
+            try {
+                task.run();
+            } finally {
+                decoding.remove(path, task);
+            }
+        }
+        return getResult(running);
+    }
+
+    protected BufferedImage decode(ImageInfo input) throws IOException {
+        String path = input.getFilePath();
+        BufferedImage image = ImageIO.read(new File(path));
+        if (image == null || image.getWidth() != input.getWidth() || image.getHeight() != input.getHeight()) {
+            // unsupported format or color space, or orientation not handled the same way
+            log.debug("Using fallback tiler for image: " + path);
+            undecodableImages.add(path);
+            return null;
+        }
+        decodedImages.put(path, image);
+        return image;
+    }
+
+    /**
+     * Gets the content of a tile, rendering and storing it if needed.
+     */
+    protected byte[] getTile(final BufferedImage image, final int[] cropCoords, final String outputFilePath)
+            throws ClientException {
+        byte[] data = PictureTilingComponent.getTileCache().get(outputFilePath);
+        if (data != null) {
+            return data;
+        }
+        // a tile requested while being prefetched is only rendered once
+        FutureTask<byte[]> task = new FutureTask<>(new Callable<byte[]>() {
+            @Override
+            public byte[] call() throws IOException {
+                return renderTile(image, cropCoords, outputFilePath);
+            }
+        });
+        FutureTask<byte[]> running = rendering.putIfAbsent(outputFilePath, task);
+        if (running == null) {
+            running = task;
+            try {
+                task.run();
+            } finally {
+                rendering.remove(outputFilePath, task);
+            }
+        }
+        return getResult(running);
+    }
+
+    protected byte[] renderTile(BufferedImage image, int[] cropCoords, String outputFilePath) throws IOException {
+        File file = new File(outputFilePath);
+        byte[] data;
+        if (file.exists()) {
+            data = FileUtils.readFileToByteArray(file);
+        } else {
+            int x = cropCoords[0];
+            int y = cropCoords[1];
+            if (x >= image.getWidth() || y >= image.getHeight()) {
+                throw new IOException("Tile out of the image: " + outputFilePath);
+            }
+            int width = Math.min(cropCoords[2], image.getWidth() - x);
+            int height = Math.min(cropCoords[3], image.getHeight() - y);
+            BufferedImage tile = ImageIOImageUtils.scale(image.getSubimage(x, y, width, height),
+                    Math.max(1, cropCoords[6]), Math.max(1, cropCoords[7]));
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            if (!ImageIOImageUtils.write(tile, TILE_FORMAT, out)) {
+                throw new IOException("No image writer for format " + TILE_FORMAT + ": " + outputFilePath);
+            }
+            data = out.toByteArray();
+            // write then rename, so that a tile file is never seen incomplete
+            File tmp = new File(outputFilePath + ".tmp" + Thread.currentThread().getId());
+            FileUtils.writeByteArrayToFile(tmp, data);
+            if (!tmp.renameTo(file)) {
+                tmp.delete();
+                throw new IOException("Unable to write tile: " + outputFilePath);
+            }
+        }
+        PictureTilingComponent.getTileCache().put(outputFilePath, data);
+        return data;
+    }
+
+    protected <T> T getResult(FutureTask<T> task) throws ClientException {
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ClientException("Interrupted while waiting for tile rendering", e);
+        } catch (ExecutionException e) {
+            throw new ClientException("Unable to render tile", e.getCause());
+        }
+    }
+
+    /**
+     * Renders a tile in the background, unless already rendered or being rendered.
+     */
+    protected void prefetch(final BufferedImage image, final int[] cropCoords, final String outputFilePath) {
+        if (rendering.containsKey(outputFilePath) || PictureTilingComponent.getTileCache().get(outputFilePath) != null
+                || new File(outputFilePath).exists()) {
+            return;
+        }
+        ThreadPoolExecutor executor = getPrefetchExecutor();
+        if (executor == null) {
+            return;
+        }
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    getTile(image, cropCoords, outputFilePath);
+                } catch (ClientException e) {
+                    log.debug("Unable to prefetch tile: " + outputFilePath, e);
+                }
+            }
+        });
+    }
+
+    protected synchronized ThreadPoolExecutor getPrefetchExecutor() {
+        if (prefetchExecutor == null) {
+            int nbThreads = Integer.parseInt(PictureTilingComponent.getEnvValue(PREFETCH_THREADS_KEY,
+                    Integer.toString(PREFETCH_THREADS)));
+            if (nbThreads <= 0) {
+                return null;
+            }
+            prefetchExecutor = new ThreadPoolExecutor(nbThreads, nbThreads, 60, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<Runnable>(PREFETCH_QUEUE_SIZE), new ThreadFactory() {
+
+                        protected final AtomicInteger count = new AtomicInteger();
+
+                        @Override
+                        public Thread newThread(Runnable r) {
+                            Thread thread = new Thread(r, "Nuxeo-Tiling-Prefetch-" + count.incrementAndGet());
+                            thread.setDaemon(true);
+                            return thread;
+                        }
+                    }, new ThreadPoolExecutor.DiscardOldestPolicy());
+            prefetchExecutor.allowCoreThreadTimeOut(true);
+        }
+        return prefetchExecutor;
+    }
+
+    /**
+     * Stops the background rendering and releases the decoded images.
+     */
+    public synchronized void shutdown() {
+        if (prefetchExecutor != null) {
+            prefetchExecutor.shutdownNow();
+            prefetchExecutor = null;
+        }
+        decodedImages.clear();
+        undecodableImages.clear();
+    }
+
+}
@@ -51,7 +51,7 @@ public class MagickTiler implements PictureTiler {
         return "MagicTiler";
     }
 
-    static int[] computeCropCoords(ImageInfo input, int maxTiles, int tileWidth, int tileHeight, int xCenter,
+    public static int[] computeCropCoords(ImageInfo input, int maxTiles, int tileWidth, int tileHeight, int xCenter,
             int yCenter) {
         int startX = 0;
         int startY = 0;
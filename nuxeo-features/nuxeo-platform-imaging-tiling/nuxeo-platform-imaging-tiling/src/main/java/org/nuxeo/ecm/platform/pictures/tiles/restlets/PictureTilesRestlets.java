@@ -27,6 +27,7 @@ import java.util.Calendar;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
+import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
 import org.apache.commons.io.IOUtils;
@@ -35,6 +36,7 @@ import org.nuxeo.ecm.core.api.Blob;
 import org.nuxeo.ecm.core.api.ClientException;
 import org.nuxeo.ecm.core.api.DocumentModel;
 import org.nuxeo.ecm.platform.pictures.tiles.api.PictureTiles;
+import org.nuxeo.ecm.platform.pictures.tiles.api.PictureTilesImpl;
 import org.nuxeo.ecm.platform.pictures.tiles.api.adapter.PictureTilesAdapter;
 import org.nuxeo.ecm.platform.pictures.tiles.serializer.JSONPictureTilesSerializer;
 import org.nuxeo.ecm.platform.pictures.tiles.serializer.PictureTilesSerializer;
@@ -45,6 +47,7 @@ import org.restlet.data.Form;
 import org.restlet.data.MediaType;
 import org.restlet.data.Request;
 import org.restlet.data.Response;
+import org.restlet.data.Status;
 import org.restlet.resource.OutputRepresentation;
 
 /**
@@ -125,12 +128,13 @@ public class PictureTilesRestlets extends BaseStatelessNuxeoRestlet {
             tiles = adapter.getTiles(tileWidth, tileHeight, maxTiles);
         } catch (ClientException e) {
             handleError(res, e);
+            return;
         }
 
         if ((x == null) || (y == null)) {
             handleSendInfo(res, tiles, format);
         } else {
-            handleSendImage(res, tiles, Integer.decode(x), Integer.decode(y));
+            handleSendImage(req, res, tiles, Integer.decode(x), Integer.decode(y));
         }
     }
 
@@ -174,7 +178,15 @@ public class PictureTilesRestlets extends BaseStatelessNuxeoRestlet {
         response.setHeader("Pragma", "no-cache");
     }
 
-    protected void handleSendImage(Response res, PictureTiles tiles, Integer x, Integer y) {
+    protected void handleSendImage(Request req, Response res, PictureTiles tiles, Integer x, Integer y) {
+
+        // tiles never change for a given picture and tiling, let browsers revalidate them cheaply
+        String etag = getTileETag(tiles, x, y);
+        HttpServletRequest request = getHttpRequest(req);
+        if (request != null && isETagMatching(request.getHeader("If-None-Match"), etag)) {
+            res.setStatus(Status.REDIRECTION_NOT_MODIFIED);
+            return;
+        }
 
         final Blob image;
         try {
@@ -193,6 +205,34 @@ public class PictureTilesRestlets extends BaseStatelessNuxeoRestlet {
                 }
             }
         });
+        HttpServletResponse response = getHttpResponse(res);
+        response.setHeader("ETag", etag);
+        response.setHeader("Cache-Control", "private, max-age=" + MAX_CACHE_LIFE);
+    }
+
+    /**
+     * @since 7.2
+     */
+    protected String getTileETag(PictureTiles tiles, int x, int y) {
+        String lastModificationDate = tiles.getInfo().get(PictureTilesImpl.LAST_MODIFICATION_DATE_KEY);
+        return '"' + tiles.getCacheKey() + '-' + tiles.getTileFormatCacheKey() + '-' + x + '-' + y + '-'
+                + lastModificationDate + '"';
+    }
+
+    /**
+     * @since 7.2
+     */
+    protected boolean isETagMatching(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String tag : ifNoneMatch.split(",")) {
+            tag = tag.trim();
+            if (tag.equals(etag) || tag.equals("*")) {
+                return true;
+            }
+        }
+        return false;
     }
 
     protected void handleNoTiles(Response res, Exception e) {
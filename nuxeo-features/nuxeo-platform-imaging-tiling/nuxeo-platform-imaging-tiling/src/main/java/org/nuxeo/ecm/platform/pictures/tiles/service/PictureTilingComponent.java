@@ -43,6 +43,8 @@ import org.nuxeo.ecm.platform.pictures.tiles.api.PictureTilingService;
 import org.nuxeo.ecm.platform.pictures.tiles.api.imageresource.BlobResource;
 import org.nuxeo.ecm.platform.pictures.tiles.api.imageresource.ImageResource;
 import org.nuxeo.ecm.platform.pictures.tiles.gimp.tiler.GimpTiler;
+import org.nuxeo.ecm.platform.pictures.tiles.helpers.WeightedLRUCache;
+import org.nuxeo.ecm.platform.pictures.tiles.imageio.tiler.ImageIOTiler;
 import org.nuxeo.ecm.platform.pictures.tiles.magick.tiler.MagickTiler;
 import org.nuxeo.ecm.platform.pictures.tiles.tilers.PictureTiler;
 import org.nuxeo.runtime.model.ComponentContext;
@@ -62,6 +64,15 @@ public class PictureTilingComponent extends DefaultComponent implements PictureT
 
     public static final String IMAGES_TO_CONVERT_EP = "imagesToConvert";
 
+    /** @since 7.2 */
+    public static final String DEFAULT_TILER_KEY = "DefaultTiler";
+
+    /** @since 7.2 */
+    public static final String MAX_TILE_CACHE_MEMORY_USAGE_KEY = "MaxMemoryUsageForTileCache";
+
+    /** @since 7.2 */
+    public static final long MAX_TILE_CACHE_MEMORY_USAGE_KB = 20000;
+
     protected static Map<String, PictureTilingCacheInfo> cache = new HashMap<String, PictureTilingCacheInfo>();
 
     protected static List<String> inprocessTiles = Collections.synchronizedList(new ArrayList<String>());
@@ -70,6 +81,25 @@ public class PictureTilingComponent extends DefaultComponent implements PictureT
 
     protected static List<PictureTiler> availableTilers = new ArrayList<PictureTiler>();
 
+    /**
+     * Content of the recently served tiles, by tile file path.
+     *
+     * @since 7.2
+     */
+    protected static WeightedLRUCache<byte[]> tileCache = new WeightedLRUCache<byte[]>() {
+
+        @Override
+        protected long getWeight(byte[] value) {
+            return value.length;
+        }
+
+        @Override
+        protected long getMaxWeight() {
+            String maxStr = getEnvValue(MAX_TILE_CACHE_MEMORY_USAGE_KEY, Long.toString(MAX_TILE_CACHE_MEMORY_USAGE_KB));
+            return Long.parseLong(maxStr) * 1024;
+        }
+    };
+
     protected static Map<String, String> envParameters = new HashMap<String, String>();
 
     protected Map<String, String> blobProperties = new HashMap<String, String>();
@@ -87,6 +117,7 @@ public class PictureTilingComponent extends DefaultComponent implements PictureT
         defaultTiler = new MagickTiler();
         availableTilers.add(defaultTiler);
         availableTilers.add(new GimpTiler());
+        availableTilers.add(new ImageIOTiler());
         startGC();
     }
 
@@ -115,12 +146,25 @@ public class PictureTilingComponent extends DefaultComponent implements PictureT
 
     public void deactivate(ComponentContext context) {
         endGC();
+        for (PictureTiler tiler : availableTilers) {
+            if (tiler instanceof ImageIOTiler) {
+                ((ImageIOTiler) tiler).shutdown();
+            }
+        }
+        tileCache.clear();
     }
 
     public static Map<String, PictureTilingCacheInfo> getCache() {
         return cache;
     }
 
+    /**
+     * @since 7.2
+     */
+    public static WeightedLRUCache<byte[]> getTileCache() {
+        return tileCache;
+    }
+
     protected String getWorkingDirPath() {
         return workingDirPath;
     }
@@ -382,6 +426,20 @@ public class PictureTilingComponent extends DefaultComponent implements PictureT
         defaultTiler = tiler;
     }
 
+    protected void updateDefaultTiler() {
+        String name = getEnvValue(DEFAULT_TILER_KEY);
+        if (name == null) {
+            return;
+        }
+        for (PictureTiler tiler : availableTilers) {
+            if (name.equals(tiler.getName())) {
+                defaultTiler = tiler;
+                return;
+            }
+        }
+        log.error("Unknown tiler: " + name + ", using: " + defaultTiler.getName());
+    }
+
     // ****************************************
     // Env setting management
 
@@ -434,6 +492,7 @@ public class PictureTilingComponent extends DefaultComponent implements PictureT
             TilingConfigurationDescriptor desc = (TilingConfigurationDescriptor) contribution;
             envParameters.putAll(desc.getParameters());
             workingDirPath = defaultWorkingDirPath();
+            updateDefaultTiler();
         } else if (BLOB_PROPERTY_EP.equals(extensionPoint)) {
             TilingBlobPropertyDescriptor desc = (TilingBlobPropertyDescriptor) contribution;
             blobProperties.putAll(desc.getBlobProperties());
@@ -39,6 +39,7 @@ import org.nuxeo.ecm.platform.pictures.tiles.api.PictureTiles;
 import org.nuxeo.ecm.platform.pictures.tiles.api.PictureTilesImpl;
 import org.nuxeo.ecm.platform.pictures.tiles.api.PictureTilingService;
 import org.nuxeo.ecm.platform.pictures.tiles.gimp.GimpExecutor;
+import org.nuxeo.ecm.platform.pictures.tiles.imageio.tiler.ImageIOTiler;
 import org.nuxeo.ecm.platform.pictures.tiles.magick.tiler.MagickTiler;
 import org.nuxeo.ecm.platform.pictures.tiles.service.GCTask;
 import org.nuxeo.ecm.platform.pictures.tiles.service.PictureTilingCacheGCManager;
@@ -405,4 +406,42 @@ public class TestService extends NXRuntimeTestCase {
         assertEquals(64, width);
         assertEquals(16, height);
     }
+
+    @Test
+    public void testImageIOTiler() throws Exception {
+        PictureTilingService pts = Framework.getLocalService(PictureTilingService.class);
+        assertNotNull(pts);
+        PictureTilingComponent.getTileCache().clear();
+        ImageIOTiler tiler = new ImageIOTiler();
+        PictureTilingComponent.setDefaultTiler(tiler);
+        try {
+            File file = FileUtils.getResourceFileFromContext("chutes.jpg");
+            Blob image = Blobs.createBlob(file);
+            PictureTiles tiles = pts.getTilesFromBlob(image, 64, 64, 3);
+            assertNotNull(tiles);
+
+            // only the requested tile and its neighbours are rendered
+            String tilePath = ((PictureTilesImpl) tiles).getTileFilePath(0, 0);
+            assertTrue(new File(tilePath).exists());
+            assertNotNull(PictureTilingComponent.getTileCache().get(tilePath));
+            assertFalse(new File(((PictureTilesImpl) tiles).getTileFilePath(2, 2)).exists());
+
+            tiles.getTile(2, 1);
+            tilePath = ((PictureTilesImpl) tiles).getTileFilePath(2, 1);
+            ImageInfo info = ImageIdentifier.getInfo(tilePath);
+            assertEquals(64, info.getWidth());
+            assertEquals(64, info.getHeight());
+
+            // neighbour rendered in the background
+            String neighbourPath = ((PictureTilesImpl) tiles).getTileFilePath(2, 2);
+            for (int i = 0; i < 50 && PictureTilingComponent.getTileCache().get(neighbourPath) == null; i++) {
+                Thread.sleep(100);
+            }
+            assertTrue(new File(neighbourPath).exists());
+            assertNotNull(tiles.getTile(2, 2));
+        } finally {
+            tiler.shutdown();
+        }
+    }
+
 }
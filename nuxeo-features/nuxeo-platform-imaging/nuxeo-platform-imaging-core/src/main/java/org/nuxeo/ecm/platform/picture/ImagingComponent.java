@@ -29,10 +29,22 @@ import java.io.File;
 import java.io.IOException;
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.io.FilenameUtils;
 import org.apache.commons.lang.StringUtils;
@@ -84,6 +96,28 @@ public class ImagingComponent extends DefaultComponent implements ImagingService
 
     public static final String PICTURE_CONVERSIONS_EP = "pictureConversions";
 
+    /**
+     * Configuration parameter holding the number of threads computing picture views in parallel. With 1, the default,
+     * views are computed in the calling thread.
+     *
+     * @since 7.2
+     */
+    public static final String VIEWS_THREADS_PARAMETER = "viewsGenerationThreads";
+
+    /**
+     * Configuration parameter telling whether a view resized by the {@link #RESIZE_CHAIN} is computed from the
+     * smallest larger view rather than from the original picture. Default is {@code false}, as the small views are
+     * then resampled from an already resampled and compressed view, which is faster but may lower their quality.
+     *
+     * @since 7.2
+     */
+    public static final String VIEWS_CASCADE_PARAMETER = "viewsGenerationCascade";
+
+    /**
+     * @since 7.2
+     */
+    public static final String RESIZE_CHAIN = "Image.Blob.Resize";
+
     protected Map<String, String> configurationParameters = new HashMap<>();
 
     protected PictureConversionRegistry pictureConversionRegistry = new PictureConversionRegistry();
@@ -92,6 +126,35 @@ public class ImagingComponent extends DefaultComponent implements ImagingService
 
     protected final PictureMigrationHandler pictureMigrationHandler = new PictureMigrationHandler();
 
+    protected ExecutorService viewsExecutor;
+
+    /**
+     * Creates non-daemon threads at normal priority.
+     */
+    private static class NamedThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger threadNumber = new AtomicInteger();
+
+        private final ThreadGroup group;
+
+        private final String prefix;
+
+        public NamedThreadFactory(String prefix) {
+            SecurityManager sm = System.getSecurityManager();
+            group = sm == null ? Thread.currentThread().getThreadGroup() : sm.getThreadGroup();
+            this.prefix = prefix;
+        }
+
+        @Override
+        public Thread newThread(Runnable r) {
+            String name = prefix + threadNumber.incrementAndGet();
+            Thread thread = new Thread(group, r, name);
+            // do not set daemon
+            thread.setPriority(Thread.NORM_PRIORITY);
+            return thread;
+        }
+    }
+
     @Override
     public List<PictureConversion> getPictureConversions() {
         return pictureConversionRegistry.getPictureConversions();
@@ -278,6 +341,9 @@ public class ImagingComponent extends DefaultComponent implements ImagingService
         if (imageInfo == null) {
             imageInfo = getImageInfo(blob);
         }
+        if (convert) {
+            return computeViews(null, blob, pictureConversions, imageInfo);
+        }
         List<PictureView> views = new ArrayList<PictureView>();
         for (PictureConversion pictureConversion : pictureConversions) {
             views.add(computeView(blob, pictureConversion, imageInfo, convert));
@@ -390,13 +456,22 @@ public class ImagingComponent extends DefaultComponent implements ImagingService
     protected PictureView computeView(DocumentModel doc, Blob blob, PictureConversion pictureConversion,
             ImageInfo imageInfo) {
 
-        String title = pictureConversion.getId();
+        Point size = getViewSize(pictureConversion, imageInfo);
 
-        Map<String, Serializable> pictureViewMap = new HashMap<String, Serializable>();
-        pictureViewMap.put(PictureView.FIELD_TITLE, title);
-        pictureViewMap.put(PictureView.FIELD_DESCRIPTION, pictureConversion.getDescription());
-        pictureViewMap.put(PictureView.FIELD_TAG, pictureConversion.getTag());
+        // Use the registered conversion format
+        String conversionFormat = getConfigurationValue(CONVERSION_FORMAT, JPEG_CONVERSATION_FORMAT);
+
+        Blob viewBlob = callPictureConversionChain(doc, blob, pictureConversion, imageInfo, size, conversionFormat);
+
+        return createPictureView(blob, pictureConversion, size, viewBlob);
+    }
 
+    /**
+     * Computes the size of a view: the size of the picture, bounded by the max size of the picture conversion if any.
+     *
+     * @since 7.2
+     */
+    protected Point getViewSize(PictureConversion pictureConversion, ImageInfo imageInfo) {
         Point size = new Point(imageInfo.getWidth(), imageInfo.getHeight());
 
         /*
@@ -406,15 +481,23 @@ public class ImagingComponent extends DefaultComponent implements ImagingService
         if (pictureConversion.getMaxSize() != null) {
             size = getSize(size, pictureConversion.getMaxSize());
         }
+        return size;
+    }
 
+    /**
+     * @since 7.2
+     */
+    protected PictureView createPictureView(Blob blob, PictureConversion pictureConversion, Point size,
+            Blob viewBlob) {
+        String title = pictureConversion.getId();
+
+        Map<String, Serializable> pictureViewMap = new HashMap<String, Serializable>();
+        pictureViewMap.put(PictureView.FIELD_TITLE, title);
+        pictureViewMap.put(PictureView.FIELD_DESCRIPTION, pictureConversion.getDescription());
+        pictureViewMap.put(PictureView.FIELD_TAG, pictureConversion.getTag());
         pictureViewMap.put(PictureView.FIELD_WIDTH, size.x);
         pictureViewMap.put(PictureView.FIELD_HEIGHT, size.y);
 
-        // Use the registered conversion format
-        String conversionFormat = getConfigurationValue(CONVERSION_FORMAT, JPEG_CONVERSATION_FORMAT);
-
-        Blob viewBlob = callPictureConversionChain(doc, blob, pictureConversion, imageInfo, size, conversionFormat);
-
         String viewFilename = String.format("%s_%s.%s", title, FilenameUtils.getBaseName(blob.getFilename()),
                 FilenameUtils.getExtension(viewBlob.getFilename()));
         viewBlob.setFilename(viewFilename);
@@ -434,6 +517,47 @@ public class ImagingComponent extends DefaultComponent implements ImagingService
             return wrapBlob(blob);
         }
 
+        DocumentModel pictureDocument = getPictureDocument(doc);
+        boolean txWasActive = false;
+        try {
+            if (TransactionHelper.isTransactionActive()) {
+                txWasActive = true;
+                TransactionHelper.commitOrRollbackTransaction();
+            }
+            return runPictureConversionChain(pictureDocument, blob, pictureConversion, imageInfo, size,
+                    conversionFormat);
+        } finally {
+            if (txWasActive && !TransactionHelper.isTransactionActiveOrMarkedRollback()) {
+                TransactionHelper.startTransaction();
+            }
+        }
+    }
+
+    /**
+     * @since 7.2
+     */
+    protected DocumentModel getPictureDocument(DocumentModel doc) {
+        if (doc == null) {
+            return null;
+        }
+        DocumentModel pictureDocument = doc.getCoreSession().getDocument(doc.getRef());
+        pictureDocument.detach(true);
+        return pictureDocument;
+    }
+
+    /**
+     * Runs the chain of a picture conversion, outside of any transaction and session.
+     *
+     * @param pictureDocument the detached picture document, or {@code null}
+     * @since 7.2
+     */
+    protected Blob runPictureConversionChain(DocumentModel pictureDocument, Blob blob,
+            PictureConversion pictureConversion, ImageInfo imageInfo, Point size, String conversionFormat) {
+        String chainId = pictureConversion.getChainId();
+        if (StringUtils.isBlank(chainId)) {
+            return wrapBlob(blob);
+        }
+
         Properties parameters = new Properties();
         parameters.put(OPTION_RESIZE_WIDTH, String.valueOf(size.x));
         parameters.put(OPTION_RESIZE_HEIGHT, String.valueOf(size.y));
@@ -444,20 +568,12 @@ public class ImagingComponent extends DefaultComponent implements ImagingService
         chainParameters.put("parameters", parameters);
 
         OperationContext context = new OperationContext();
-        if (doc != null) {
-            DocumentModel pictureDocument = doc.getCoreSession().getDocument(doc.getRef());
-            pictureDocument.detach(true);
+        if (pictureDocument != null) {
             context.put("pictureDocument", pictureDocument);
         }
         context.setInput(blob);
 
-        boolean txWasActive = false;
         try {
-            if (TransactionHelper.isTransactionActive()) {
-                txWasActive = true;
-                TransactionHelper.commitOrRollbackTransaction();
-            }
-
             Blob viewBlob = (Blob) Framework.getService(AutomationService.class).run(context, chainId, chainParameters);
             if (viewBlob == null) {
                 viewBlob = wrapBlob(blob);
@@ -465,26 +581,173 @@ public class ImagingComponent extends DefaultComponent implements ImagingService
             return viewBlob;
         } catch (OperationException e) {
             throw new ClientRuntimeException(e);
+        }
+    }
+
+    /**
+     * Computes the views of a picture for the given conversions.
+     * <p>
+     * The views are computed from the largest to the smallest. When cascading is enabled, a view resized by the
+     * {@link #RESIZE_CHAIN} is computed from the smallest view already resized by that chain that is larger than it
+     * but smaller than the original picture, so that the full original picture is only decoded for the largest views.
+     * Views are computed in parallel if several threads are configured, each view waiting for the one it is computed
+     * from. The first view failing cancels the others.
+     *
+     * @param doc the picture document, or {@code null}
+     * @since 7.2
+     */
+    protected List<PictureView> computeViews(DocumentModel doc, final Blob blob,
+            final List<PictureConversion> pictureConversions, final ImageInfo imageInfo) {
+        int n = pictureConversions.size();
+        final String conversionFormat = getConfigurationValue(CONVERSION_FORMAT, JPEG_CONVERSATION_FORMAT);
+        final Point[] sizes = new Point[n];
+        Integer[] order = new Integer[n];
+        boolean hasChain = false;
+        for (int i = 0; i < n; i++) {
+            sizes[i] = getViewSize(pictureConversions.get(i), imageInfo);
+            order[i] = Integer.valueOf(i);
+            hasChain = hasChain || StringUtils.isNotBlank(pictureConversions.get(i).getChainId());
+        }
+        // largest views first
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer i1, Integer i2) {
+                long a1 = (long) sizes[i1.intValue()].x * sizes[i1.intValue()].y;
+                long a2 = (long) sizes[i2.intValue()].x * sizes[i2.intValue()].y;
+                return Long.compare(a2, a1);
+            }
+        });
+        final int[] sources = getViewSources(pictureConversions, sizes, order, imageInfo);
+
+        final DocumentModel pictureDocument = hasChain ? getPictureDocument(doc) : null;
+        ExecutorService executor = getViewsExecutor();
+        CompletionService<PictureView> completionService = executor == null ? null
+                : new ExecutorCompletionService<PictureView>(executor);
+        final List<Future<PictureView>> futures = new ArrayList<>(Collections.<Future<PictureView>> nCopies(n, null));
+        boolean txWasActive = false;
+        try {
+            if (hasChain && TransactionHelper.isTransactionActive()) {
+                txWasActive = true;
+                TransactionHelper.commitOrRollbackTransaction();
+            }
+            for (Integer index : order) {
+                final int i = index.intValue();
+                Callable<PictureView> task = new Callable<PictureView>() {
+                    @Override
+                    public PictureView call() throws Exception {
+                        Blob source = sources[i] < 0 ? blob : futures.get(sources[i]).get().getBlob();
+                        PictureConversion pictureConversion = pictureConversions.get(i);
+                        Blob viewBlob = runPictureConversionChain(pictureDocument, source, pictureConversion,
+                                imageInfo, sizes[i], conversionFormat);
+                        return createPictureView(blob, pictureConversion, sizes[i], viewBlob);
+                    }
+                };
+                if (executor == null) {
+                    FutureTask<PictureView> future = new FutureTask<>(task);
+                    future.run();
+                    futures.set(i, future);
+                } else {
+                    // sources are submitted before the views computed from them, no thread waits for a queued task
+                    futures.set(i, completionService.submit(task));
+                }
+            }
+            if (completionService != null) {
+                // wait in completion order to fail on the first error
+                for (int k = 0; k < n; k++) {
+                    completionService.take().get();
+                }
+            }
+            List<PictureView> views = new ArrayList<>(n);
+            for (Future<PictureView> future : futures) {
+                views.add(future.get());
+            }
+            return views;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ClientRuntimeException(e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new ClientRuntimeException(cause);
         } finally {
+            for (Future<PictureView> future : futures) {
+                if (future != null) {
+                    future.cancel(true);
+                }
+            }
             if (txWasActive && !TransactionHelper.isTransactionActiveOrMarkedRollback()) {
                 TransactionHelper.startTransaction();
             }
         }
     }
 
+    /**
+     * Chooses the view each view is computed from, or -1 to compute it from the original picture.
+     *
+     * @param order the indexes of the views, largest first
+     * @since 7.2
+     */
+    protected int[] getViewSources(List<PictureConversion> pictureConversions, Point[] sizes, Integer[] order,
+            ImageInfo imageInfo) {
+        int[] sources = new int[sizes.length];
+        Arrays.fill(sources, -1);
+        if (!Boolean.parseBoolean(getConfigurationValue(VIEWS_CASCADE_PARAMETER, "false"))) {
+            return sources;
+        }
+        for (int k = 0; k < order.length; k++) {
+            int i = order[k].intValue();
+            if (!RESIZE_CHAIN.equals(pictureConversions.get(i).getChainId())) {
+                continue;
+            }
+            // smallest larger view first
+            for (int m = k - 1; m >= 0; m--) {
+                int j = order[m].intValue();
+                if (RESIZE_CHAIN.equals(pictureConversions.get(j).getChainId())
+                        && sizes[j].x < imageInfo.getWidth() && sizes[j].x >= sizes[i].x
+                        && sizes[j].y >= sizes[i].y) {
+                    sources[i] = j;
+                    break;
+                }
+            }
+        }
+        return sources;
+    }
+
+    /**
+     * Gets the executor computing picture views, or {@code null} if they are computed in the calling thread.
+     *
+     * @since 7.2
+     */
+    protected synchronized ExecutorService getViewsExecutor() {
+        if (viewsExecutor == null) {
+            int threads = Integer.parseInt(getConfigurationValue(VIEWS_THREADS_PARAMETER, "1"));
+            if (threads <= 1) {
+                return null;
+            }
+            viewsExecutor = Executors.newFixedThreadPool(threads, new NamedThreadFactory("Nuxeo-PictureViews-"));
+        }
+        return viewsExecutor;
+    }
+
     @Override
     public List<PictureView> computeViewsFor(DocumentModel doc, Blob blob, ImageInfo imageInfo, boolean convert)
             throws ClientException, IOException {
-        List<PictureConversion> pictureConversions = getPictureConversions();
-        List<PictureView> pictureViews = new ArrayList<>(pictureConversions.size());
-
-        for (PictureConversion pictureConversion : pictureConversions) {
+        List<PictureConversion> pictureConversions = new ArrayList<>();
+        for (PictureConversion pictureConversion : getPictureConversions()) {
             if (canApplyPictureConversion(pictureConversion, doc)) {
-                PictureView pictureView = computeView(doc, blob, pictureConversion, imageInfo, convert);
-                pictureViews.add(pictureView);
+                pictureConversions.add(pictureConversion);
             }
         }
 
+        if (convert) {
+            return computeViews(doc, blob, pictureConversions, imageInfo);
+        }
+        List<PictureView> pictureViews = new ArrayList<>(pictureConversions.size());
+        for (PictureConversion pictureConversion : pictureConversions) {
+            pictureViews.add(computeView(doc, blob, pictureConversion, imageInfo, convert));
+        }
         return pictureViews;
     }
 
@@ -559,5 +822,11 @@ public class ImagingComponent extends DefaultComponent implements ImagingService
     @Override
     public void deactivate(ComponentContext context) {
         pictureMigrationHandler.uninstall();
+        synchronized (this) {
+            if (viewsExecutor != null) {
+                viewsExecutor.shutdownNow();
+                viewsExecutor = null;
+            }
+        }
     }
 }
@@ -0,0 +1,257 @@
+/*
+ * (C) Copyright 2015 Nuxeo SA (http://nuxeo.com/) and contributors.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public License
+ * (LGPL) version 2.1 which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl-2.1.html
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.ecm.platform.picture.core.imageio;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Iterator;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+
+import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.nuxeo.ecm.core.api.Blob;
+import org.nuxeo.ecm.core.api.Blobs;
+import org.nuxeo.ecm.platform.picture.core.ImageUtils;
+import org.nuxeo.ecm.platform.picture.core.im.IMImageUtils;
+import org.nuxeo.runtime.api.Framework;
+
+/**
+ * Pure Java {@link ImageUtils} based on ImageIO and Java2D, avoiding the start of an external process for each
+ * operation.
+ * <p>
+ * Images that ImageIO cannot read or write (CMYK JPEG, TIFF, PSD, RAW...) and rotations that are not a multiple of 90
+ * degrees are delegated to ImageMagick. Output images are written with 8 bits per channel, whatever the requested
+ * depth.
+ * <p>
+ * To use it, contribute it to the LibrarySelector extension point:
+ *
+ * <pre>
+ * &lt;ImageUtils class="org.nuxeo.ecm.platform.picture.core.imageio.ImageIOImageUtils" name="ImageIO"/&gt;
+ * </pre>
+ *
+ * @since 7.2
+ */
+public class ImageIOImageUtils implements ImageUtils {
+
+    private static final Log log = LogFactory.getLog(ImageIOImageUtils.class);
+
+    public static final float JPEG_QUALITY = 0.9f;
+
+    protected final ImageUtils fallback = new IMImageUtils();
+
+    @Override
+    public Blob crop(Blob blob, int x, int y, int width, int height) {
+        BufferedImage image = read(blob);
+        if (image != null) {
+            int x0 = Math.max(0, Math.min(x, image.getWidth() - 1));
+            int y0 = Math.max(0, Math.min(y, image.getHeight() - 1));
+            int w = Math.max(1, Math.min(width, image.getWidth() - x0));
+            int h = Math.max(1, Math.min(height, image.getHeight() - y0));
+            BufferedImage cropped = new BufferedImage(w, h, getType(image));
+            Graphics2D g = cropped.createGraphics();
+            try {
+                g.drawImage(image, -x0, -y0, null);
+            } finally {
+                g.dispose();
+            }
+            Blob result = write(cropped, getFormat(blob, null));
+            if (result != null) {
+                return result;
+            }
+        }
+        return fallback.crop(blob, x, y, width, height);
+    }
+
+    @Override
+    public Blob resize(Blob blob, String finalFormat, int width, int height, int depth) {
+        BufferedImage image = read(blob);
+        if (image != null) {
+            // fit into the box keeping the aspect ratio, like ImageMagick -resize
+            double ratio = Math.min((double) width / image.getWidth(), (double) height / image.getHeight());
+            int w = Math.max(1, (int) Math.round(image.getWidth() * ratio));
+            int h = Math.max(1, (int) Math.round(image.getHeight() * ratio));
+            Blob result = write(scale(image, w, h), getFormat(blob, finalFormat));
+            if (result != null) {
+                return result;
+            }
+        }
+        return fallback.resize(blob, finalFormat, width, height, depth);
+    }
+
+    @Override
+    public Blob rotate(Blob blob, int angle) {
+        int quarters = ((angle % 360) + 360) % 360 / 90;
+        BufferedImage image = angle % 90 == 0 ? read(blob) : null;
+        if (image != null) {
+            int w = image.getWidth();
+            int h = image.getHeight();
+            boolean swap = quarters % 2 == 1;
+            BufferedImage rotated = new BufferedImage(swap ? h : w, swap ? w : h, getType(image));
+            Graphics2D g = rotated.createGraphics();
+            try {
+                g.translate(rotated.getWidth() / 2.0, rotated.getHeight() / 2.0);
+                g.rotate(Math.toRadians(quarters * 90));
+                g.translate(-w / 2.0, -h / 2.0);
+                g.drawImage(image, 0, 0, null);
+            } finally {
+                g.dispose();
+            }
+            Blob result = write(rotated, getFormat(blob, null));
+            if (result != null) {
+                return result;
+            }
+        }
+        return fallback.rotate(blob, angle);
+    }
+
+    @Override
+    public boolean isAvailable() {
+        return true;
+    }
+
+    /**
+     * Scales an image, halving its size in several steps when reducing it a lot, for quality.
+     */
+    public static BufferedImage scale(BufferedImage image, int width, int height) {
+        int type = getType(image);
+        BufferedImage current = image;
+        int w = image.getWidth();
+        int h = image.getHeight();
+        do {
+            if (w > width) {
+                w = Math.max(width, w / 2);
+            } else {
+                w = width;
+            }
+            if (h > height) {
+                h = Math.max(height, h / 2);
+            } else {
+                h = height;
+            }
+            BufferedImage scaled = new BufferedImage(w, h, type);
+            Graphics2D g = scaled.createGraphics();
+            try {
+                g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+                g.drawImage(current, 0, 0, w, h, null);
+            } finally {
+                g.dispose();
+            }
+            current = scaled;
+        } while (w != width || h != height);
+        return current;
+    }
+
+    protected static int getType(BufferedImage image) {
+        return image.getTransparency() == Transparency.OPAQUE ? BufferedImage.TYPE_INT_RGB
+                : BufferedImage.TYPE_INT_ARGB;
+    }
+
+    protected static String getFormat(Blob blob, String format) {
+        if (format == null) {
+            format = FilenameUtils.getExtension(blob.getFilename());
+        }
+        return format == null ? null : format.toLowerCase();
+    }
+
+    /**
+     * Decodes an image, or returns {@code null} if ImageIO cannot decode it.
+     */
+    public static BufferedImage read(Blob blob) {
+        try (InputStream in = blob.getStream()) {
+            return ImageIO.read(in);
+        } catch (IOException e) {
+            // unsupported color space, corrupted image...
+            log.debug("ImageIO cannot read image: " + blob.getFilename() + ", " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Encodes an image, or returns {@code null} if ImageIO has no writer for the format.
+     */
+    public static Blob write(BufferedImage image, String format) {
+        if (format == null || format.isEmpty() || !ImageIO.getImageWritersBySuffix(format).hasNext()) {
+            return null;
+        }
+        try {
+            File file = File.createTempFile("nuxeoImageTarget", "." + format);
+            try (OutputStream out = new FileOutputStream(file)) {
+                write(image, format, out);
+            }
+            Blob blob = Blobs.createBlob(file);
+            Framework.trackFile(file, blob);
+            return blob;
+        } catch (IOException e) {
+            log.error("ImageIO failed to write image in format: " + format, e);
+            return null;
+        }
+    }
+
+    /**
+     * Encodes an image to a stream, or returns {@code false} if ImageIO has no writer for the format.
+     */
+    public static boolean write(BufferedImage image, String format, OutputStream stream) throws IOException {
+        if (format == null || format.isEmpty()) {
+            return false;
+        }
+        Iterator<ImageWriter> writers = ImageIO.getImageWritersBySuffix(format);
+        if (!writers.hasNext()) {
+            return false;
+        }
+        ImageWriter writer = writers.next();
+        boolean jpeg = "jpg".equals(format) || "jpeg".equals(format);
+        if (jpeg && image.getTransparency() != Transparency.OPAQUE) {
+            // JPEG has no alpha channel
+            BufferedImage rgb = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_RGB);
+            Graphics2D g = rgb.createGraphics();
+            try {
+                g.drawImage(image, 0, 0, Color.WHITE, null);
+            } finally {
+                g.dispose();
+            }
+            image = rgb;
+        }
+        try (ImageOutputStream out = ImageIO.createImageOutputStream(stream)) {
+            writer.setOutput(out);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            if (jpeg) {
+                param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                param.setCompressionQuality(JPEG_QUALITY);
+            }
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return true;
+    }
+
+}
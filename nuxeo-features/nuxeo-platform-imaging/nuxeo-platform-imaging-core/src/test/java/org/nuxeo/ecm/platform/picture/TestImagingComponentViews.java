@@ -0,0 +1,229 @@
+/*
+ * (C) Copyright 2015 Nuxeo SA (http://nuxeo.com/) and contributors.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public License
+ * (LGPL) version 2.1 which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl-2.1.html
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.ecm.platform.picture;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.awt.Point;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.nuxeo.ecm.core.api.Blob;
+import org.nuxeo.ecm.core.api.Blobs;
+import org.nuxeo.ecm.core.api.ClientRuntimeException;
+import org.nuxeo.ecm.core.api.DocumentModel;
+import org.nuxeo.ecm.platform.picture.api.ImageInfo;
+import org.nuxeo.ecm.platform.picture.api.PictureConversion;
+import org.nuxeo.ecm.platform.picture.api.PictureView;
+import org.nuxeo.ecm.platform.picture.api.PictureViewImpl;
+
+/**
+ * Checks the order and sources of the views computed by {@link ImagingComponent}, without running the conversion
+ * chains.
+ */
+public class TestImagingComponentViews {
+
+    protected static final String OTHER_CHAIN = "Other";
+
+    protected static final ImageInfo IMAGE_INFO = new ImageInfo("2000", "1000", "jpg", "original.jpg");
+
+    protected RecordingImagingComponent component;
+
+    protected Blob original;
+
+    /**
+     * Records the blob each view is computed from and the completion order of the views.
+     */
+    protected static class RecordingImagingComponent extends ImagingComponent {
+
+        protected final Map<String, String> sources = new ConcurrentHashMap<>();
+
+        protected final List<String> completed = Collections.synchronizedList(new ArrayList<String>());
+
+        @Override
+        protected Blob runPictureConversionChain(DocumentModel pictureDocument, Blob blob,
+                PictureConversion pictureConversion, ImageInfo imageInfo, Point size, String conversionFormat) {
+            String id = pictureConversion.getId();
+            sources.put(id, blob.getFilename());
+            convert(id);
+            completed.add(id);
+            return Blobs.createBlob(size.x + "x" + size.y, "text/plain", null, id);
+        }
+
+        protected void convert(String id) {
+        }
+
+        @Override
+        protected PictureView createPictureView(Blob blob, PictureConversion pictureConversion, Point size,
+                Blob viewBlob) {
+            Map<String, Serializable> map = new HashMap<>();
+            map.put(PictureView.FIELD_TITLE, pictureConversion.getId());
+            map.put(PictureView.FIELD_WIDTH, Integer.valueOf(size.x));
+            map.put(PictureView.FIELD_HEIGHT, Integer.valueOf(size.y));
+            map.put(PictureView.FIELD_CONTENT, (Serializable) viewBlob);
+            return new PictureViewImpl(map);
+        }
+    }
+
+    @Before
+    public void setUp() {
+        component = new RecordingImagingComponent();
+        original = Blobs.createBlob("original", "image/jpeg", null, "original.jpg");
+    }
+
+    @After
+    public void tearDown() {
+        if (component.viewsExecutor != null) {
+            component.viewsExecutor.shutdownNow();
+        }
+    }
+
+    protected static PictureConversion conversion(String id, Integer maxSize, String chainId) {
+        PictureConversion pictureConversion = new PictureConversion(id, id, id, maxSize);
+        pictureConversion.setChainId(chainId);
+        return pictureConversion;
+    }
+
+    protected static List<PictureConversion> getConversions() {
+        return Arrays.asList( //
+                conversion("Medium", Integer.valueOf(1000), ImagingComponent.RESIZE_CHAIN), //
+                conversion("OriginalJpeg", null, ImagingComponent.RESIZE_CHAIN), //
+                conversion("Small", Integer.valueOf(350), ImagingComponent.RESIZE_CHAIN), //
+                conversion("Thumbnail", Integer.valueOf(100), ImagingComponent.RESIZE_CHAIN), //
+                conversion("Custom", Integer.valueOf(500), OTHER_CHAIN));
+    }
+
+    protected void checkViews(List<PictureView> views) {
+        assertEquals(5, views.size());
+        checkView(views.get(0), "Medium", 1000, 500);
+        checkView(views.get(1), "OriginalJpeg", 2000, 1000);
+        checkView(views.get(2), "Small", 350, 175);
+        checkView(views.get(3), "Thumbnail", 100, 50);
+        checkView(views.get(4), "Custom", 500, 250);
+    }
+
+    protected void checkView(PictureView view, String title, int width, int height) {
+        assertEquals(title, view.getTitle());
+        assertEquals(width, view.getWidth());
+        assertEquals(height, view.getHeight());
+        assertEquals(title, view.getBlob().getFilename());
+    }
+
+    protected void checkBefore(String first, String second) {
+        List<String> completed = new ArrayList<>(component.completed);
+        assertTrue(completed.toString(), completed.indexOf(first) < completed.indexOf(second));
+    }
+
+    @Test
+    public void testViewsWithoutCascade() {
+        List<PictureView> views = component.computeViews(null, original, getConversions(), IMAGE_INFO);
+        checkViews(views);
+        for (String source : component.sources.values()) {
+            assertEquals("original.jpg", source);
+        }
+        assertEquals(Arrays.asList("OriginalJpeg", "Medium", "Custom", "Small", "Thumbnail"), component.completed);
+    }
+
+    @Test
+    public void testViewsWithCascade() {
+        component.setConfigurationValue(ImagingComponent.VIEWS_CASCADE_PARAMETER, "true");
+        checkViewsWithCascade();
+        assertEquals(Arrays.asList("OriginalJpeg", "Medium", "Custom", "Small", "Thumbnail"), component.completed);
+    }
+
+    @Test
+    public void testViewsWithCascadeAndThreads() {
+        component.setConfigurationValue(ImagingComponent.VIEWS_CASCADE_PARAMETER, "true");
+        component.setConfigurationValue(ImagingComponent.VIEWS_THREADS_PARAMETER, "3");
+        for (int i = 0; i < 10; i++) {
+            component.completed.clear();
+            checkViewsWithCascade();
+            checkBefore("Medium", "Small");
+            checkBefore("Small", "Thumbnail");
+        }
+    }
+
+    protected void checkViewsWithCascade() {
+        List<PictureView> views = component.computeViews(null, original, getConversions(), IMAGE_INFO);
+        checkViews(views);
+        // the original is as large as the picture, so Medium is the largest source
+        assertEquals("original.jpg", component.sources.get("OriginalJpeg"));
+        assertEquals("original.jpg", component.sources.get("Medium"));
+        assertEquals("Medium", component.sources.get("Small"));
+        assertEquals("Small", component.sources.get("Thumbnail"));
+        // other chains get the original
+        assertEquals("original.jpg", component.sources.get("Custom"));
+    }
+
+    @Test
+    public void testErrorCancelsOtherViews() throws Exception {
+        final CountDownLatch blockingStarted = new CountDownLatch(1);
+        final CountDownLatch blockingInterrupted = new CountDownLatch(1);
+        component = new RecordingImagingComponent() {
+            @Override
+            protected void convert(String id) {
+                try {
+                    if ("Medium".equals(id)) {
+                        blockingStarted.await(5, TimeUnit.SECONDS);
+                        throw new ClientRuntimeException("failed view");
+                    } else if ("Custom".equals(id)) {
+                        blockingStarted.countDown();
+                        Thread.sleep(TimeUnit.SECONDS.toMillis(30));
+                    }
+                } catch (InterruptedException e) {
+                    blockingInterrupted.countDown();
+                    Thread.currentThread().interrupt();
+                    throw new ClientRuntimeException(e);
+                }
+            }
+        };
+        component.setConfigurationValue(ImagingComponent.VIEWS_CASCADE_PARAMETER, "true");
+        component.setConfigurationValue(ImagingComponent.VIEWS_THREADS_PARAMETER, "3");
+        List<PictureConversion> conversions = Arrays.asList( //
+                conversion("Medium", Integer.valueOf(1000), ImagingComponent.RESIZE_CHAIN), //
+                conversion("Custom", Integer.valueOf(500), OTHER_CHAIN), //
+                conversion("Small", Integer.valueOf(350), ImagingComponent.RESIZE_CHAIN));
+        long start = System.currentTimeMillis();
+        try {
+            component.computeViews(null, original, conversions, IMAGE_INFO);
+            fail("should fail");
+        } catch (ClientRuntimeException e) {
+            // ok
+        }
+        // the failure doesn't wait for the blocking view, which is interrupted
+        assertTrue(System.currentTimeMillis() - start < TimeUnit.SECONDS.toMillis(10));
+        assertTrue(blockingInterrupted.await(5, TimeUnit.SECONDS));
+        // the view resized from the failed one isn't computed
+        assertEquals(Collections.emptyList(), component.completed);
+        assertNull(component.sources.get("Small"));
+    }
+
+}
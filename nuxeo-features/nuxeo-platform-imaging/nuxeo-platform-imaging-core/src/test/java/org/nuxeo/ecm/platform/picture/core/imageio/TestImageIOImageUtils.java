@@ -0,0 +1,130 @@
+/*
+ * (C) Copyright 2015 Nuxeo SA (http://nuxeo.com/) and contributors.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public License
+ * (LGPL) version 2.1 which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl-2.1.html
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.ecm.platform.picture.core.imageio;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.junit.Before;
+import org.junit.Test;
+import org.nuxeo.common.utils.FileUtils;
+import org.nuxeo.ecm.core.api.Blob;
+import org.nuxeo.ecm.core.api.Blobs;
+import org.nuxeo.ecm.platform.picture.core.ImageUtils;
+import org.nuxeo.ecm.platform.picture.core.im.IMImageUtils;
+import org.nuxeo.runtime.test.NXRuntimeTestCase;
+
+public class TestImageIOImageUtils extends NXRuntimeTestCase {
+
+    private static final Log log = LogFactory.getLog(TestImageIOImageUtils.class);
+
+    // Thumbnail, Small, Medium and a FullHD-like view
+    protected static final int[] VIEW_SIZES = { 100, 280, 550, 1920 };
+
+    @Override
+    @Before
+    public void setUp() throws Exception {
+        super.setUp();
+        deployBundle("org.nuxeo.ecm.platform.commandline.executor");
+        deployContrib("org.nuxeo.ecm.platform.picture.core", "OSGI-INF/commandline-imagemagick-contrib.xml");
+    }
+
+    protected Blob getBlob(String filename) throws Exception {
+        File file = FileUtils.getResourceFileFromContext(filename);
+        Blob blob = Blobs.createBlob(file);
+        blob.setFilename(new File(filename).getName());
+        return blob;
+    }
+
+    protected BufferedImage read(Blob blob) {
+        assertNotNull(blob);
+        BufferedImage image = ImageIOImageUtils.read(blob);
+        assertNotNull(image);
+        return image;
+    }
+
+    @Test
+    public void testResize() throws Exception {
+        ImageUtils utils = new ImageIOImageUtils();
+        // 3872x2592
+        BufferedImage image = read(utils.resize(getBlob("images/test.jpg"), "jpg", 550, 550, 8));
+        assertEquals(550, image.getWidth());
+        assertEquals(368, image.getHeight());
+        // 344x486, with transparency
+        image = read(utils.resize(getBlob("images/cat.gif"), "jpg", 100, 100, 8));
+        assertEquals(71, image.getWidth());
+        assertEquals(100, image.getHeight());
+    }
+
+    @Test
+    public void testRotateAndCrop() throws Exception {
+        ImageUtils utils = new ImageIOImageUtils();
+        BufferedImage image = read(utils.rotate(getBlob("images/exif_sample.jpg"), 90));
+        assertEquals(328, image.getWidth());
+        assertEquals(512, image.getHeight());
+        image = read(utils.crop(getBlob("images/exif_sample.jpg"), 500, 300, 100, 100));
+        assertEquals(12, image.getWidth());
+        assertEquals(28, image.getHeight());
+    }
+
+    /**
+     * Compares the time needed to generate the default views of a picture with ImageMagick, with ImageIO from the
+     * original picture, and with ImageIO decoding the original picture once and cascading the sizes.
+     */
+    @Test
+    public void testBenchmarkAgainstImageMagick() throws Exception {
+        Blob blob = getBlob("images/test.jpg");
+        ImageUtils imageIO = new ImageIOImageUtils();
+        // warm up
+        imageIO.resize(blob, "jpg", 100, 100, 8);
+
+        long t0 = System.currentTimeMillis();
+        for (int size : VIEW_SIZES) {
+            assertNotNull(imageIO.resize(blob, "jpg", size, size, 8));
+        }
+        long imageIOTime = System.currentTimeMillis() - t0;
+
+        t0 = System.currentTimeMillis();
+        BufferedImage image = ImageIOImageUtils.read(blob);
+        for (int i = VIEW_SIZES.length - 1; i >= 0; i--) {
+            int size = VIEW_SIZES[i];
+            double ratio = Math.min((double) size / image.getWidth(), (double) size / image.getHeight());
+            image = ImageIOImageUtils.scale(image, (int) Math.round(image.getWidth() * ratio),
+                    (int) Math.round(image.getHeight() * ratio));
+            assertNotNull(ImageIOImageUtils.write(image, "jpg"));
+        }
+        long cascadeTime = System.currentTimeMillis() - t0;
+
+        String imageMagickTime = "not available";
+        ImageUtils imageMagick = new IMImageUtils();
+        if (imageMagick.isAvailable()) {
+            t0 = System.currentTimeMillis();
+            for (int size : VIEW_SIZES) {
+                assertNotNull(imageMagick.resize(blob, "jpg", size, size, 8));
+            }
+            imageMagickTime = (System.currentTimeMillis() - t0) + "ms";
+        }
+        log.info(String.format("Views generation for a 3872x2592 picture: ImageMagick %s, ImageIO %sms, "
+                + "ImageIO with cascade %sms", imageMagickTime, imageIOTime, cascadeTime));
+    }
+
+}
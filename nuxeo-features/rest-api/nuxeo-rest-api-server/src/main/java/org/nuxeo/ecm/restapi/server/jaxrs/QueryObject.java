@@ -16,6 +16,8 @@
  */
 package org.nuxeo.ecm.restapi.server.jaxrs;
 
+import static org.nuxeo.ecm.core.query.sql.NXQL.ECM_UUID;
+
 import java.io.IOException;
 import java.io.Serializable;
 import java.util.ArrayList;
@@ -30,6 +32,8 @@ import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.core.Context;
 import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.ResponseBuilder;
 import javax.ws.rs.core.UriInfo;
 
 import org.apache.commons.lang.StringUtils;
@@ -39,9 +43,13 @@ import org.nuxeo.ecm.automation.core.util.DocumentHelper;
 import org.nuxeo.ecm.automation.core.util.Properties;
 import org.nuxeo.ecm.automation.jaxrs.io.documents.PaginableDocumentModelListImpl;
 import org.nuxeo.ecm.automation.server.jaxrs.RestOperationException;
+import org.nuxeo.ecm.core.api.ClientException;
 import org.nuxeo.ecm.core.api.CoreSession;
 import org.nuxeo.ecm.core.api.DocumentModel;
 import org.nuxeo.ecm.core.api.DocumentModelList;
+import org.nuxeo.ecm.core.api.DocumentRef;
+import org.nuxeo.ecm.core.api.IdRef;
+import org.nuxeo.ecm.core.api.QueryCursor;
 import org.nuxeo.ecm.core.api.SortInfo;
 import org.nuxeo.ecm.core.api.impl.SimpleDocumentModel;
 import org.nuxeo.ecm.core.api.model.PropertyNotFoundException;
@@ -49,6 +57,7 @@ import org.nuxeo.ecm.platform.query.api.PageProvider;
 import org.nuxeo.ecm.platform.query.api.PageProviderDefinition;
 import org.nuxeo.ecm.platform.query.api.PageProviderService;
 import org.nuxeo.ecm.platform.query.nxql.CoreQueryDocumentPageProvider;
+import org.nuxeo.ecm.platform.query.nxql.NXQLQueryBuilder;
 import org.nuxeo.ecm.restapi.server.jaxrs.adapters.SearchAdapter;
 import org.nuxeo.ecm.webengine.model.WebObject;
 import org.nuxeo.ecm.webengine.model.impl.AbstractResource;
@@ -79,6 +88,27 @@ public class QueryObject extends AbstractResource<ResourceTypeImpl> {
 
     public static final String ORDERED_PARAMS = "queryParams";
 
+    /**
+     * Query parameter holding the position of a keyset cursor, empty for the first page.
+     *
+     * @since 7.2
+     */
+    public static final String CURSOR = "cursor";
+
+    /**
+     * Response header holding the cursor position of the next page, absent on the last page.
+     *
+     * @since 7.2
+     */
+    public static final String NEXT_CURSOR_HEADER = "X-NXCursor";
+
+    /**
+     * Page size used by cursor queries when none is requested.
+     *
+     * @since 7.2
+     */
+    public static final int DEFAULT_CURSOR_PAGE_SIZE = 50;
+
     public static final String CURRENT_USERID_PATTERN = "$currentUser";
 
     public static final String CURRENT_REPO_PATTERN = "$currentRepository";
@@ -103,6 +133,7 @@ public class QueryObject extends AbstractResource<ResourceTypeImpl> {
         queryParametersMap.put(QueryParams.SORT_ORDER, SORT_ORDER);
         queryParametersMap.put(QueryParams.QUERY, QUERY);
         queryParametersMap.put(QueryParams.ORDERED_PARAMS, ORDERED_PARAMS);
+        queryParametersMap.put(QueryParams.CURSOR, CURSOR);
         // Lang Path Enum Map
         langPathMap = new EnumMap<>(LangParams.class);
         langPathMap.put(LangParams.NXQL, NXQL);
@@ -213,6 +244,81 @@ public class QueryObject extends AbstractResource<ResourceTypeImpl> {
         return res;
     }
 
+    /**
+     * Performs an NXQL query paginated with a keyset cursor, returning the next cursor position in the
+     * {@link #NEXT_CURSOR_HEADER} header.
+     *
+     * @since 7.2
+     */
+    protected Response getQueryWithCursor(UriInfo uriInfo) throws RestOperationException {
+        MultivaluedMap<String, String> queryParams = uriInfo.getQueryParameters();
+        String query = queryParams.getFirst(QUERY);
+        String pageSize = queryParams.getFirst(PAGE_SIZE);
+        String cursor = queryParams.getFirst(CURSOR);
+        List<String> orderedParams = queryParams.get(ORDERED_PARAMS);
+        if (query == null) {
+            query = "SELECT * from Document";
+        }
+        if (StringUtils.isEmpty(cursor)) {
+            cursor = null;
+        }
+        int targetPageSize = DEFAULT_CURSOR_PAGE_SIZE;
+        if (pageSize != null) {
+            try {
+                targetPageSize = Integer.parseInt(pageSize);
+            } catch (NumberFormatException e) {
+                targetPageSize = 0;
+            }
+            if (targetPageSize <= 0) {
+                RestOperationException err = new RestOperationException("Invalid page size: " + pageSize);
+                err.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+                throw err;
+            }
+        }
+        CoreSession session = ctx.getCoreSession();
+        if (orderedParams != null && !orderedParams.isEmpty()) {
+            Object[] parameters = orderedParams.toArray(new String[orderedParams.size()]);
+            for (int idx = 0; idx < parameters.length; idx++) {
+                String value = (String) parameters[idx];
+                if (value.equals(CURRENT_USERID_PATTERN)) {
+                    parameters[idx] = session.getPrincipal().getName();
+                } else if (value.equals(CURRENT_REPO_PATTERN)) {
+                    parameters[idx] = session.getRepositoryName();
+                }
+            }
+            query = NXQLQueryBuilder.getQuery(query, parameters, true, true, null);
+        }
+
+        DocumentModelList docs;
+        String nextCursor = null;
+        QueryCursor queryCursor = null;
+        try {
+            queryCursor = session.queryCursor(query, cursor, targetPageSize);
+            List<DocumentRef> refs = new ArrayList<DocumentRef>(targetPageSize);
+            while (refs.size() < targetPageSize && queryCursor.hasNext()) {
+                refs.add(new IdRef((String) queryCursor.next().get(ECM_UUID)));
+            }
+            if (refs.size() == targetPageSize) {
+                nextCursor = queryCursor.getPosition();
+            }
+            // fetch the page at once
+            docs = session.getDocuments(refs.toArray(new DocumentRef[refs.size()]));
+        } catch (ClientException e) {
+            RestOperationException err = new RestOperationException(e.getMessage());
+            err.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            throw err;
+        } finally {
+            if (queryCursor != null) {
+                queryCursor.close();
+            }
+        }
+        ResponseBuilder builder = Response.ok(docs);
+        if (nextCursor != null) {
+            builder.header(NEXT_CURSOR_HEADER, nextCursor);
+        }
+        return builder.build();
+    }
+
     protected DocumentModel getSearchDocumentModel(CoreSession session, PageProviderService pps, String providerName,
             Properties namedParameters) {
         // generate search document model if type specified on the definition
@@ -255,12 +361,17 @@ public class QueryObject extends AbstractResource<ResourceTypeImpl> {
 
     /**
      * Perform query on the repository. By default in NXQL.
+     * <p>
+     * Since 7.2, if a {@value #CURSOR} parameter is present the query is paginated with a keyset cursor.
      *
      * @param uriInfo Query parameters
      * @return Document Listing
      */
     @GET
     public Object doQuery(@Context UriInfo uriInfo) throws RestOperationException {
+        if (uriInfo.getQueryParameters().containsKey(CURSOR)) {
+            return getQueryWithCursor(uriInfo);
+        }
         return getQuery(uriInfo, NXQL);
     }
 
@@ -275,11 +386,14 @@ public class QueryObject extends AbstractResource<ResourceTypeImpl> {
     @Path("{langOrProviderName}")
     public Object doSpecificQuery(@Context UriInfo uriInfo, @PathParam("langOrProviderName") String langOrProviderName)
             throws RestOperationException {
+        if (NXQL.equals(langOrProviderName) && uriInfo.getQueryParameters().containsKey(CURSOR)) {
+            return getQueryWithCursor(uriInfo);
+        }
         return getQuery(uriInfo, langOrProviderName);
     }
 
     public enum QueryParams {
-        PAGE_SIZE, CURRENT_PAGE_INDEX, MAX_RESULTS, SORT_BY, SORT_ORDER, ORDERED_PARAMS, QUERY
+        PAGE_SIZE, CURRENT_PAGE_INDEX, MAX_RESULTS, SORT_BY, SORT_ORDER, ORDERED_PARAMS, QUERY, CURSOR
     }
 
     public enum LangParams {
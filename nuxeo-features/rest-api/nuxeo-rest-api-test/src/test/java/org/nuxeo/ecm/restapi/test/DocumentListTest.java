@@ -18,9 +18,14 @@ package org.nuxeo.ecm.restapi.test;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
 import java.io.IOException;
 import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 
 import javax.ws.rs.core.MultivaluedMap;
 import javax.ws.rs.core.Response;
@@ -136,6 +141,57 @@ public class DocumentListTest extends BaseTest {
         assertEquals(2, getLogEntries(node).size());
     }
 
+    @Test
+    public void iCanResumeACursorQueryFromTheReturnedHeader() throws IOException {
+        // Given a repository, when I perform an NXQL query with an empty cursor
+        MultivaluedMap<String, String> queryParams = new MultivaluedMapImpl();
+        queryParams.putSingle("query", "SELECT * FROM Document");
+        queryParams.putSingle("pageSize", "4");
+        queryParams.putSingle(QueryObject.CURSOR, "");
+        Set<String> uids = new HashSet<>();
+        int pages = 0;
+        String cursor;
+        do {
+            ClientResponse response = getResponse(RequestType.GET, QueryObject.PATH + "/" + QueryObject.NXQL,
+                    queryParams);
+            assertEquals(Response.Status.OK.getStatusCode(), response.getStatus());
+            cursor = response.getHeaders().getFirst(QueryObject.NEXT_CURSOR_HEADER);
+            JsonNode node = mapper.readTree(response.getEntityInputStream());
+            List<JsonNode> entries = getLogEntries(node);
+            for (JsonNode entry : entries) {
+                // Then no document is returned twice
+                assertTrue(uids.add(entry.get("uid").getValueAsText()));
+            }
+            pages++;
+            if (cursor == null) {
+                // Then the last page is not full
+                assertTrue(entries.size() < 4);
+            } else {
+                assertEquals(4, entries.size());
+                // And I can resume from the returned position
+                queryParams.putSingle(QueryObject.CURSOR, cursor);
+            }
+        } while (cursor != null && pages < 100);
+        assertNull(cursor);
+        // Then I get all the documents of the query
+        Set<String> expected = new HashSet<>();
+        for (DocumentModel doc : session.query("SELECT * FROM Document")) {
+            expected.add(doc.getId());
+        }
+        assertEquals(expected, uids);
+        assertEquals(expected.size() / 4 + 1, pages);
+    }
+
+    @Test
+    public void iCanRejectAnInvalidCursorPageSize() throws IOException {
+        MultivaluedMap<String, String> queryParams = new MultivaluedMapImpl();
+        queryParams.putSingle("query", "SELECT * FROM Document");
+        queryParams.putSingle("pageSize", "0");
+        queryParams.putSingle(QueryObject.CURSOR, "");
+        ClientResponse response = getResponse(RequestType.GET, QueryObject.PATH + "/" + QueryObject.NXQL, queryParams);
+        assertEquals(Response.Status.BAD_REQUEST.getStatusCode(), response.getStatus());
+    }
+
     @Test
     public void iCanPerformQueriesWithNamedParametersOnRepository() throws IOException {
         // Given a repository and named parameters, when I perform a query in
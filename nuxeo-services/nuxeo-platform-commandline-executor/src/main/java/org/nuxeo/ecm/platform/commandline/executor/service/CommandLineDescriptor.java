@@ -64,6 +64,28 @@ public class CommandLineDescriptor implements Serializable {
     @XNode("installationDirective")
     protected String installationDirective;
 
+    /**
+     * @since 7.2
+     */
+    @XNode("executor")
+    protected String executor;
+
+    /**
+     * Maximum number of concurrent executions with the pooled executor, 0 for the default.
+     *
+     * @since 7.2
+     */
+    @XNode("maxConcurrency")
+    protected int maxConcurrency;
+
+    /**
+     * Maximum time in seconds to wait for an execution slot with the pooled executor, 0 for the default.
+     *
+     * @since 7.2
+     */
+    @XNode("queueTimeout")
+    protected int queueTimeout;
+
     protected String installErrorMessage;
 
     public String getInstallErrorMessage() {
@@ -130,7 +152,24 @@ public class CommandLineDescriptor implements Serializable {
     }
 
     public String getExecutor() {
-        return CommandLineExecutorComponent.DEFAULT_EXECUTOR;
+        if (executor == null) {
+            return CommandLineExecutorComponent.DEFAULT_EXECUTOR;
+        }
+        return executor;
+    }
+
+    /**
+     * @since 7.2
+     */
+    public int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+    /**
+     * @since 7.2
+     */
+    public int getQueueTimeout() {
+        return queueTimeout;
     }
 
 }
@@ -34,6 +34,7 @@ import org.nuxeo.ecm.platform.commandline.executor.api.ExecResult;
 import org.nuxeo.ecm.platform.commandline.executor.service.cmdtesters.CommandTestResult;
 import org.nuxeo.ecm.platform.commandline.executor.service.cmdtesters.CommandTester;
 import org.nuxeo.ecm.platform.commandline.executor.service.executors.Executor;
+import org.nuxeo.ecm.platform.commandline.executor.service.executors.PooledShellExecutor;
 import org.nuxeo.ecm.platform.commandline.executor.service.executors.ShellExecutor;
 import org.nuxeo.runtime.model.ComponentContext;
 import org.nuxeo.runtime.model.ComponentInstance;
@@ -56,6 +57,11 @@ public class CommandLineExecutorComponent extends DefaultComponent implements Co
 
     public static final String DEFAULT_EXECUTOR = "ShellExecutor";
 
+    /**
+     * @since 7.2
+     */
+    public static final String POOLED_EXECUTOR = "PooledShellExecutor";
+
     protected static Map<String, CommandLineDescriptor> commandDescriptors = new HashMap<String, CommandLineDescriptor>();
 
     protected static EnvironmentDescriptor env = new EnvironmentDescriptor();
@@ -73,10 +79,16 @@ public class CommandLineExecutorComponent extends DefaultComponent implements Co
         testers = new HashMap<String, CommandTester>();
         executors = new HashMap<String, Executor>();
         executors.put(DEFAULT_EXECUTOR, new ShellExecutor());
+        executors.put(POOLED_EXECUTOR, new PooledShellExecutor());
     }
 
     @Override
     public void deactivate(ComponentContext context) {
+        for (Executor executor : executors.values()) {
+            if (executor instanceof PooledShellExecutor) {
+                ((PooledShellExecutor) executor).shutdown();
+            }
+        }
         commandDescriptors = null;
         env = null;
         testers = null;
@@ -152,6 +164,11 @@ public class CommandLineExecutorComponent extends DefaultComponent implements Co
 
         CommandLineDescriptor cmdDesc = commandDescriptors.get(commandName);
         Executor executor = executors.get(cmdDesc.getExecutor());
+        if (executor == null) {
+            log.error("Unknown executor '" + cmdDesc.getExecutor() + "' for command: " + commandName
+                    + ", using the default one");
+            executor = executors.get(DEFAULT_EXECUTOR);
+        }
         return executor.exec(cmdDesc, params);
     }
 
@@ -0,0 +1,361 @@
+/*
+ * (C) Copyright 2015 Nuxeo SA (http://nuxeo.com/) and contributors.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public License
+ * (LGPL) version 2.1 which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl-2.1.html
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+
+package org.nuxeo.ecm.platform.commandline.executor.service.executors;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.commons.logging.impl.SimpleLog;
+import org.nuxeo.ecm.platform.commandline.executor.api.CmdParameters;
+import org.nuxeo.ecm.platform.commandline.executor.api.ExecResult;
+import org.nuxeo.ecm.platform.commandline.executor.service.CommandLineDescriptor;
+import org.nuxeo.log4j.ThreadedStreamGobbler;
+import org.nuxeo.runtime.api.Framework;
+import org.nuxeo.runtime.metrics.MetricsService;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.SharedMetricRegistries;
+import com.codahale.metrics.Timer;
+
+/**
+ * {@link Executor} running commands from a pool of long-lived helper shells.
+ * <p>
+ * Starting a process from the server JVM is costly, and dominates the execution time of short commands. The helper
+ * shells are started once, then receive command lines on their input and report the output and exit code of each
+ * command.
+ * <p>
+ * The number of concurrent executions of each command is bounded, and so is the total number of helper shells, idle or
+ * in use; executions exceeding either bound wait in a queue for at most the command queue timeout. The execution time
+ * and the queue depth of each command are reported as metrics.
+ * <p>
+ * On Windows, commands are run as with the {@link ShellExecutor}.
+ *
+ * @since 7.2
+ */
+public class PooledShellExecutor extends AbstractExecutor {
+
+    private static final Log log = LogFactory.getLog(PooledShellExecutor.class);
+
+    /** Maximum number of helper shells, which is also the maximum number of concurrent executions of all commands. */
+    public static final String POOL_SIZE_PROP = "org.nuxeo.ecm.platform.commandline.executor.pool.size";
+
+    public static final String DEFAULT_POOL_SIZE = "4";
+
+    /** Default queue timeout, in seconds. */
+    public static final int DEFAULT_QUEUE_TIMEOUT = 60;
+
+    protected final MetricRegistry registry = SharedMetricRegistries.getOrCreate(MetricsService.class.getName());
+
+    protected final int poolSize;
+
+    protected final LinkedBlockingDeque<ShellWorker> idleWorkers;
+
+    /** Bounds the number of helper shells in use. */
+    protected final Semaphore workerPermits;
+
+    protected final ConcurrentMap<String, CommandQueue> queues = new ConcurrentHashMap<>();
+
+    protected volatile boolean shutdown;
+
+    public PooledShellExecutor() {
+        poolSize = Integer.parseInt(Framework.getProperty(POOL_SIZE_PROP, DEFAULT_POOL_SIZE));
+        idleWorkers = new LinkedBlockingDeque<>(poolSize);
+        workerPermits = new Semaphore(poolSize, true);
+    }
+
+    @Override
+    public ExecResult exec(CommandLineDescriptor cmdDesc, CmdParameters params) {
+        if (isWindows()) {
+            return new ShellExecutor().exec(cmdDesc, params);
+        }
+        String commandLine = cmdDesc.getCommand() + " " + getParametersString(cmdDesc, params);
+        CommandQueue queue = getQueue(cmdDesc);
+        int timeout = cmdDesc.getQueueTimeout() > 0 ? cmdDesc.getQueueTimeout() : DEFAULT_QUEUE_TIMEOUT;
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(timeout);
+        try {
+            if (!queue.acquire(timeout)) {
+                return newTimeoutResult(cmdDesc, commandLine, timeout);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return new ExecResult(commandLine, e);
+        }
+        try {
+            // the pool is shared by all commands, wait for the rest of the queue timeout
+            if (!queue.acquireWorker(Math.max(0, deadline - System.currentTimeMillis()))) {
+                return newTimeoutResult(cmdDesc, commandLine, timeout);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return new ExecResult(commandLine, e);
+        }
+        Timer.Context context = queue.timer.time();
+        try {
+            return doExec(cmdDesc, commandLine);
+        } finally {
+            context.stop();
+            workerPermits.release();
+            queue.release();
+        }
+    }
+
+    protected ExecResult newTimeoutResult(CommandLineDescriptor cmdDesc, String commandLine, int timeout) {
+        return new ExecResult(commandLine, new TimeoutException("No execution slot available for command: "
+                + cmdDesc.getName() + " after " + timeout + "s"));
+    }
+
+    protected ExecResult doExec(CommandLineDescriptor cmdDesc, String commandLine) {
+        long t0 = System.currentTimeMillis();
+        if (log.isDebugEnabled()) {
+            log.debug("Running pooled system command: " + commandLine);
+        }
+        List<String> output = new ArrayList<String>();
+        int exitCode;
+        ShellWorker worker = null;
+        boolean ok = false;
+        try {
+            worker = borrowWorker();
+            exitCode = worker.run(commandLine, cmdDesc.getReadOutput() ? output : null);
+            ok = true;
+        } catch (IOException e) {
+            return new ExecResult(commandLine, e);
+        } finally {
+            if (worker != null) {
+                if (ok) {
+                    releaseWorker(worker);
+                } else {
+                    // the state of the helper is unknown
+                    worker.close();
+                }
+            }
+        }
+        long t1 = System.currentTimeMillis();
+        return new ExecResult(commandLine, output, t1 - t0, exitCode);
+    }
+
+    protected CommandQueue getQueue(CommandLineDescriptor cmdDesc) {
+        String name = cmdDesc.getName();
+        CommandQueue queue = queues.get(name);
+        if (queue == null) {
+            int maxConcurrency = cmdDesc.getMaxConcurrency() > 0 ? cmdDesc.getMaxConcurrency() : poolSize;
+            CommandQueue newQueue = new CommandQueue(name, maxConcurrency);
+            queue = queues.putIfAbsent(name, newQueue);
+            if (queue == null) {
+                queue = newQueue;
+                queue.registerGauge();
+            }
+        }
+        return queue;
+    }
+
+    protected ShellWorker borrowWorker() throws IOException {
+        ShellWorker worker;
+        while ((worker = idleWorkers.pollFirst()) != null) {
+            if (worker.isAlive()) {
+                return worker;
+            }
+            worker.close();
+        }
+        return new ShellWorker();
+    }
+
+    protected void releaseWorker(ShellWorker worker) {
+        // most recently used first, so that extra workers are the ones to be closed
+        if (shutdown || !idleWorkers.offerFirst(worker)) {
+            worker.close();
+        }
+    }
+
+    /**
+     * Closes the idle helper shells. Shells in use are closed when released.
+     */
+    public void shutdown() {
+        shutdown = true;
+        ShellWorker worker;
+        while ((worker = idleWorkers.pollFirst()) != null) {
+            worker.close();
+        }
+    }
+
+    /**
+     * Bounds and measures the executions of a command.
+     */
+    protected class CommandQueue {
+
+        protected final String name;
+
+        protected final Semaphore permits;
+
+        protected final AtomicInteger waiting = new AtomicInteger();
+
+        protected final Timer timer;
+
+        protected CommandQueue(String name, int maxConcurrency) {
+            this.name = name;
+            permits = new Semaphore(maxConcurrency, true);
+            timer = registry.timer(MetricRegistry.name("nuxeo", "commandline", name, "exec"));
+        }
+
+        protected void registerGauge() {
+            String queueName = MetricRegistry.name("nuxeo", "commandline", name, "queue");
+            registry.remove(queueName);
+            registry.register(queueName, new Gauge<Integer>() {
+                @Override
+                public Integer getValue() {
+                    return Integer.valueOf(waiting.get());
+                }
+            });
+        }
+
+        protected boolean acquire(int timeout) throws InterruptedException {
+            if (permits.tryAcquire()) {
+                return true;
+            }
+            waiting.incrementAndGet();
+            try {
+                return permits.tryAcquire(timeout, TimeUnit.SECONDS);
+            } finally {
+                waiting.decrementAndGet();
+            }
+        }
+
+        /**
+         * Acquires a helper shell permit, the caller being counted as waiting in this queue. The execution slot of the
+         * command is released if no permit is acquired.
+         */
+        protected boolean acquireWorker(long timeoutMillis) throws InterruptedException {
+            if (workerPermits.tryAcquire()) {
+                return true;
+            }
+            waiting.incrementAndGet();
+            boolean acquired = false;
+            try {
+                acquired = workerPermits.tryAcquire(timeoutMillis, TimeUnit.MILLISECONDS);
+                return acquired;
+            } finally {
+                waiting.decrementAndGet();
+                if (!acquired) {
+                    permits.release();
+                }
+            }
+        }
+
+        protected void release() {
+            permits.release();
+        }
+
+    }
+
+    /**
+     * Long-lived shell running one command line at a time.
+     * <p>
+     * Each command line is evaluated in a subshell so that it cannot change the state of the helper or read its input,
+     * and so that a syntax error only fails the command. The end of the output is signaled by a line holding a marker
+     * and the exit code.
+     * <p>
+     * When the output of a command is read, its error stream is merged into it. Otherwise the error stream of the
+     * helper is logged at error level, as with the {@link ShellExecutor}.
+     */
+    protected static class ShellWorker {
+
+        protected final String marker = "__nuxeo_exec_" + UUID.randomUUID() + "__";
+
+        protected final Process process;
+
+        protected final Writer in;
+
+        protected final BufferedReader out;
+
+        protected ShellWorker() throws IOException {
+            process = new ProcessBuilder("/bin/sh").start();
+            in = new OutputStreamWriter(process.getOutputStream());
+            out = new BufferedReader(new InputStreamReader(process.getInputStream()));
+            new ThreadedStreamGobbler("Nuxeo-shell-worker-err-", process.getErrorStream(), SimpleLog.LOG_LEVEL_ERROR)
+                    .start();
+        }
+
+        /**
+         * Runs a command line and returns its exit code.
+         *
+         * @param output the list receiving the output lines, or {@code null} to log them
+         */
+        protected int run(String commandLine, List<String> output) throws IOException {
+            String redirect = output != null ? " 2>&1" : "";
+            in.write("( eval '" + commandLine.replace("'", "'\\''") + "' ) < /dev/null" + redirect + "; echo \""
+                    + marker + " $?\"\n");
+            in.flush();
+            for (;;) {
+                String line = out.readLine();
+                if (line == null) {
+                    throw new IOException("Helper shell exited");
+                }
+                int i = line.indexOf(marker);
+                if (i >= 0) {
+                    if (i > 0) {
+                        // last line of output without end of line
+                        addOutput(line.substring(0, i), output);
+                    }
+                    return Integer.parseInt(line.substring(i + marker.length()).trim());
+                }
+                addOutput(line, output);
+            }
+        }
+
+        protected void addOutput(String line, List<String> output) {
+            if (output != null) {
+                output.add(line);
+            } else if (log.isDebugEnabled()) {
+                log.debug(line);
+            }
+        }
+
+        protected boolean isAlive() {
+            try {
+                process.exitValue();
+                return false;
+            } catch (IllegalThreadStateException e) {
+                return true;
+            }
+        }
+
+        protected void close() {
+            IOUtils.closeQuietly(in);
+            IOUtils.closeQuietly(out);
+            process.destroy();
+        }
+
+    }
+
+}
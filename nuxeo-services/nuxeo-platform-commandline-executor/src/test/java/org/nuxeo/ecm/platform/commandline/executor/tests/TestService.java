@@ -20,14 +20,21 @@
 
 package org.nuxeo.ecm.platform.commandline.executor.tests;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.junit.Before;
 import org.junit.Test;
 import static org.junit.Assert.*;
 
+import org.nuxeo.ecm.platform.commandline.executor.api.CmdParameters;
 import org.nuxeo.ecm.platform.commandline.executor.api.CommandLineExecutorService;
 import org.nuxeo.ecm.platform.commandline.executor.api.CommandNotAvailable;
+import org.nuxeo.ecm.platform.commandline.executor.api.ExecResult;
 import org.nuxeo.ecm.platform.commandline.executor.service.executors.AbstractExecutor;
 import org.nuxeo.runtime.api.Framework;
 import org.nuxeo.runtime.test.NXRuntimeTestCase;
@@ -129,4 +136,44 @@ public class TestService extends NXRuntimeTestCase {
         assertFalse(cles.isValidParameter("exclamation marks! are invalid characters"));
     }
 
+    @Test
+    public void testPooledExecutor() throws Exception {
+        if (AbstractExecutor.isWindows()) {
+            return;
+        }
+        final CommandLineExecutorService cles = Framework.getLocalService(CommandLineExecutorService.class);
+        deployContrib("org.nuxeo.ecm.platform.commandline.executor", "OSGI-INF/commandline-pooled-test-contrib.xml");
+
+        CmdParameters params = new CmdParameters();
+        params.addNamedParameter("path", "/nuxeoPathThatDoesNotExist");
+        ExecResult result = cles.execCommand("pooledLs", params);
+        assertFalse(result.isSuccessful());
+        assertTrue(result.getReturnCode() != 0);
+        assertFalse(result.getOutput().isEmpty());
+
+        ExecutorService executor = Executors.newFixedThreadPool(6);
+        try {
+            List<Future<ExecResult>> futures = new ArrayList<Future<ExecResult>>();
+            for (int i = 0; i < 20; i++) {
+                final String text = "hello" + i;
+                futures.add(executor.submit(new Callable<ExecResult>() {
+                    @Override
+                    public ExecResult call() throws Exception {
+                        CmdParameters params = new CmdParameters();
+                        params.addNamedParameter("text", text);
+                        return cles.execCommand("pooledEcho", params);
+                    }
+                }));
+            }
+            for (int i = 0; i < futures.size(); i++) {
+                result = futures.get(i).get();
+                assertTrue(result.isSuccessful());
+                assertEquals(1, result.getOutput().size());
+                assertEquals("hello" + i, result.getOutput().get(0));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
 }
@@ -37,7 +37,6 @@ import net.sf.jmimemagic.MagicParseException;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
-import org.nuxeo.common.utils.FileUtils;
 import org.nuxeo.ecm.core.api.Blob;
 import org.nuxeo.ecm.platform.mimetype.MimetypeDetectionException;
 import org.nuxeo.ecm.platform.mimetype.MimetypeNotFoundException;
@@ -75,6 +74,8 @@ public class MimetypeRegistryService extends DefaultComponent implements Mimetyp
 
     private RuntimeContext bundle;
 
+    private volatile PrefixMimetypeDetector detector;
+
     public MimetypeRegistryService() {
         initializeRegistries();
     }
@@ -96,6 +97,19 @@ public class MimetypeRegistryService extends DefaultComponent implements Mimetyp
         mimetypeByNormalisedRegistry = null;
         mimetypeByExtensionRegistry = null;
         extensionRegistry = null;
+        detector = null;
+    }
+
+    /**
+     * @since 7.2
+     */
+    protected PrefixMimetypeDetector getDetector() {
+        PrefixMimetypeDetector d = detector;
+        if (d == null) {
+            // racing threads may create several detectors, only one is kept
+            d = detector = new PrefixMimetypeDetector(this);
+        }
+        return d;
     }
 
     @Override
@@ -199,44 +213,16 @@ public class MimetypeRegistryService extends DefaultComponent implements Mimetyp
         }
         try {
             MagicMatch match = Magic.getMagicMatch(file, true, false);
-            String mimeType;
-
-            if (match.getSubMatches().isEmpty()) {
-                mimeType = match.getMimeType();
-            } else {
-                // Submatches found
-                // TODO: we only take the first here
-                // what to do with other possible responses ?
-                // b.t.w., multiple responses denotes a non-accuracy problem in
-                // magic.xml but be careful to nested possible
-                // sub-sub-...-submatches make this as recursive ?
-                Collection<MagicMatch> possibilities = match.getSubMatches();
-                Iterator<MagicMatch> iter = possibilities.iterator();
-                MagicMatch m = iter.next();
-                mimeType = m.getMimeType();
-                // need to clean for subsequent calls
-                possibilities.clear();
-                match.setSubMatches(possibilities);
-            }
-            if ("text/plain".equals(mimeType)) {
-                // check we didn't mis-detect files with zeroes
-                // check first 16 bytes
-                byte[] bytes = new byte[16];
-                FileInputStream is = new FileInputStream(file);
-                int n = 0;
-                try {
-                    n = is.read(bytes);
-                } finally {
-                    is.close();
-                }
-                for (int i = 0; i < n; i++) {
-                    if (bytes[i] == 0) {
-                        mimeType = "application/octet-stream";
-                        break;
-                    }
-                }
+            // check first 16 bytes for zeroes
+            byte[] bytes = new byte[16];
+            int n;
+            FileInputStream is = new FileInputStream(file);
+            try {
+                n = is.read(bytes);
+            } finally {
+                is.close();
             }
-            return mimeType;
+            return getMimetypeFromMatch(match, bytes, n);
         } catch (MagicMatchNotFoundException e) {
             if (file.getAbsolutePath() != null) {
                 return getMimetypeFromFilename(file.getAbsolutePath());
@@ -247,6 +233,46 @@ public class MimetypeRegistryService extends DefaultComponent implements Mimetyp
         }
     }
 
+    /**
+     * Gets the mimetype of a magic match.
+     *
+     * @param bytes the first bytes of the content
+     * @param n the number of first bytes
+     * @since 7.2
+     */
+    @SuppressWarnings({ "unchecked" })
+    protected String getMimetypeFromMatch(MagicMatch match, byte[] bytes, int n) {
+        String mimeType;
+
+        if (match.getSubMatches().isEmpty()) {
+            mimeType = match.getMimeType();
+        } else {
+            // Submatches found
+            // TODO: we only take the first here
+            // what to do with other possible responses ?
+            // b.t.w., multiple responses denotes a non-accuracy problem in
+            // magic.xml but be careful to nested possible
+            // sub-sub-...-submatches make this as recursive ?
+            Collection<MagicMatch> possibilities = match.getSubMatches();
+            Iterator<MagicMatch> iter = possibilities.iterator();
+            MagicMatch m = iter.next();
+            mimeType = m.getMimeType();
+            // need to clean for subsequent calls
+            possibilities.clear();
+            match.setSubMatches(possibilities);
+        }
+        if ("text/plain".equals(mimeType)) {
+            // check we didn't mis-detect files with zeroes
+            for (int i = 0; i < Math.min(n, 16); i++) {
+                if (bytes[i] == 0) {
+                    mimeType = "application/octet-stream";
+                    break;
+                }
+            }
+        }
+        return mimeType;
+    }
+
     public String getMimetypeFromExtension(String extension) throws MimetypeNotFoundException {
         String lowerCaseExtension = extension.toLowerCase();
         ExtensionDescriptor extensionDescriptor = extensionRegistry.get(lowerCaseExtension);
@@ -286,18 +312,7 @@ public class MimetypeRegistryService extends DefaultComponent implements Mimetyp
     @Deprecated
     public String getMimetypeFromStream(InputStream stream) throws MimetypeNotFoundException,
             MimetypeDetectionException {
-        File file = null;
-        try {
-            file = File.createTempFile("NXMimetypeBean", ".bin");
-            try {
-                FileUtils.copyToFile(stream, file);
-                return getMimetypeFromFile(file);
-            } finally {
-                file.delete();
-            }
-        } catch (IOException e) {
-            throw new MimetypeDetectionException(e.getMessage(), e);
-        }
+        return getDetector().getMimetype(stream);
     }
 
     /**
@@ -321,23 +336,7 @@ public class MimetypeRegistryService extends DefaultComponent implements Mimetyp
     }
 
     public String getMimetypeFromBlob(Blob blob) throws MimetypeNotFoundException, MimetypeDetectionException {
-        File file = null;
-        try {
-            file = File.createTempFile("NXMimetypeBean", ".bin");
-            try {
-                InputStream is = blob.getStream();
-                try {
-                    FileUtils.copyToFile(is, file);
-                } finally {
-                    is.close();
-                }
-                return getMimetypeFromFile(file);
-            } finally {
-                file.delete();
-            }
-        } catch (IOException e) {
-            throw new MimetypeDetectionException(e.getMessage(), e);
-        }
+        return getDetector().getMimetype(blob);
     }
 
     public MimetypeEntry getMimetypeEntryByMimeType(String mimetype) {
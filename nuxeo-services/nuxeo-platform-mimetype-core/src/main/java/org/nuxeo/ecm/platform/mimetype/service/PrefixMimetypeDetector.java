@@ -0,0 +1,224 @@
+/*
+ * (C) Copyright 2015 Nuxeo SA (http://nuxeo.com/) and contributors.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public License
+ * (LGPL) version 2.1 which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl-2.1.html
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.ecm.platform.mimetype.service;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.util.Arrays;
+
+import net.sf.jmimemagic.Magic;
+import net.sf.jmimemagic.MagicException;
+import net.sf.jmimemagic.MagicMatchNotFoundException;
+import net.sf.jmimemagic.MagicParseException;
+
+import org.nuxeo.common.utils.FileUtils;
+import org.nuxeo.ecm.core.api.Blob;
+import org.nuxeo.ecm.platform.mimetype.MimetypeDetectionException;
+import org.nuxeo.ecm.platform.mimetype.MimetypeNotFoundException;
+import org.nuxeo.runtime.api.Framework;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * Mimetype detection from the first bytes of a content, without copying it to a temporary file.
+ * <p>
+ * The magic rules are applied to a prefix of the content read in memory. Only the contents whose type is refined by a
+ * detector needing the whole content (ZIP based and OLE2 documents, XML) and that are bigger than the prefix are
+ * scanned entirely, from the file of the blob when there is one.
+ * <p>
+ * Results for blobs are cached by digest. The cache is concurrent, detection of different blobs never waits for each
+ * other.
+ *
+ * @since 7.2
+ */
+public class PrefixMimetypeDetector {
+
+    public static final String PREFIX_SIZE_PROP = "org.nuxeo.ecm.platform.mimetype.detection.prefixSize";
+
+    public static final String DEFAULT_PREFIX_SIZE = "65536";
+
+    public static final String CACHE_SIZE_PROP = "org.nuxeo.ecm.platform.mimetype.detection.cacheSize";
+
+    public static final String DEFAULT_CACHE_SIZE = "1000";
+
+    /** Cached result for contents with no detected mimetype. */
+    protected static final String NOT_FOUND = "";
+
+    protected static final byte[] ZIP_SIGNATURE = { 'P', 'K', 3, 4 };
+
+    protected static final byte[] OLE2_SIGNATURE = { (byte) 0xd0, (byte) 0xcf, 0x11, (byte) 0xe0, (byte) 0xa1,
+            (byte) 0xb1 };
+
+    protected static final byte[] XML_SIGNATURE = "<?xml".getBytes();
+
+    protected final MimetypeRegistryService registry;
+
+    protected final int prefixSize;
+
+    protected final Cache<String, String> cache;
+
+    public PrefixMimetypeDetector(MimetypeRegistryService registry) {
+        this.registry = registry;
+        prefixSize = Integer.parseInt(getProperty(PREFIX_SIZE_PROP, DEFAULT_PREFIX_SIZE));
+        int cacheSize = Integer.parseInt(getProperty(CACHE_SIZE_PROP, DEFAULT_CACHE_SIZE));
+        cache = CacheBuilder.newBuilder().maximumSize(cacheSize).build();
+    }
+
+    protected static String getProperty(String key, String defaultValue) {
+        return Framework.isInitialized() ? Framework.getProperty(key, defaultValue) : defaultValue;
+    }
+
+    /**
+     * Detects the mimetype of a blob, reading only its first bytes when possible.
+     */
+    public String getMimetype(Blob blob) throws MimetypeNotFoundException, MimetypeDetectionException {
+        String digest = blob.getDigest();
+        String mimetype = digest == null ? null : cache.getIfPresent(digest);
+        if (mimetype == null) {
+            try {
+                mimetype = detect(blob);
+            } catch (MimetypeNotFoundException e) {
+                mimetype = NOT_FOUND;
+            }
+            if (digest != null) {
+                cache.put(digest, mimetype);
+            }
+        }
+        if (NOT_FOUND.equals(mimetype)) {
+            throw new MimetypeNotFoundException("No mimetype detected for blob: " + blob.getFilename());
+        }
+        return mimetype;
+    }
+
+    /**
+     * Detects the mimetype of a stream, reading only its first bytes when possible. The stream is not closed.
+     */
+    public String getMimetype(InputStream stream) throws MimetypeNotFoundException, MimetypeDetectionException {
+        try {
+            byte[] prefix = readPrefix(stream);
+            if (!needsFullContent(prefix)) {
+                return getMimetypeFromPrefix(prefix);
+            }
+            // read ahead was not enough, put the prefix back in front of the rest of the stream
+            return getMimetypeFromStream(new SequenceInputStream(new ByteArrayInputStream(prefix), stream));
+        } catch (IOException e) {
+            throw new MimetypeDetectionException(e.getMessage(), e);
+        }
+    }
+
+    protected String detect(Blob blob) throws MimetypeNotFoundException, MimetypeDetectionException {
+        byte[] prefix;
+        try (InputStream stream = blob.getStream()) {
+            prefix = readPrefix(stream);
+        } catch (IOException e) {
+            throw new MimetypeDetectionException(e.getMessage(), e);
+        }
+        if (!needsFullContent(prefix)) {
+            return getMimetypeFromPrefix(prefix);
+        }
+        File file = blob.getFile();
+        if (file != null) {
+            return registry.getMimetypeFromFile(file);
+        }
+        try (InputStream stream = blob.getStream()) {
+            return getMimetypeFromStream(stream);
+        } catch (IOException e) {
+            throw new MimetypeDetectionException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Reads up to the prefix size bytes, and one more byte to know if the whole content was read.
+     */
+    protected byte[] readPrefix(InputStream stream) throws IOException {
+        byte[] buffer = new byte[prefixSize + 1];
+        int n = 0;
+        int r;
+        while (n < buffer.length && (r = stream.read(buffer, n, buffer.length - n)) != -1) {
+            n += r;
+        }
+        return n == buffer.length ? buffer : Arrays.copyOf(buffer, n);
+    }
+
+    /**
+     * Checks if the mimetype of a content may depend on bytes beyond its prefix.
+     */
+    protected boolean needsFullContent(byte[] prefix) {
+        if (prefix.length <= prefixSize) {
+            // whole content
+            return false;
+        }
+        return startsWith(prefix, ZIP_SIGNATURE) || startsWith(prefix, OLE2_SIGNATURE)
+                || startsWith(prefix, XML_SIGNATURE);
+    }
+
+    protected static boolean startsWith(byte[] bytes, byte[] signature) {
+        if (bytes.length < signature.length) {
+            return false;
+        }
+        for (int i = 0; i < signature.length; i++) {
+            if (bytes[i] != signature[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    protected String getMimetypeFromPrefix(byte[] prefix) throws MimetypeNotFoundException,
+            MimetypeDetectionException {
+        if (prefix.length > prefixSize) {
+            prefix = Arrays.copyOf(prefix, prefixSize);
+        }
+        if (prefix.length == 0) {
+            throw new MimetypeNotFoundException("Empty content");
+        }
+        try {
+            return registry.getMimetypeFromMatch(Magic.getMagicMatch(prefix, false), prefix, prefix.length);
+        } catch (MagicMatchNotFoundException e) {
+            throw new MimetypeNotFoundException(e.getMessage(), e);
+        } catch (MagicException | MagicParseException e) {
+            throw new MimetypeDetectionException(e.getMessage(), e);
+        }
+    }
+
+    protected String getMimetypeFromStream(InputStream stream) throws MimetypeNotFoundException,
+            MimetypeDetectionException {
+        try {
+            File file = File.createTempFile("NXMimetypeBean", ".bin");
+            try {
+                FileUtils.copyToFile(stream, file);
+                return registry.getMimetypeFromFile(file);
+            } finally {
+                file.delete();
+            }
+        } catch (IOException e) {
+            throw new MimetypeDetectionException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Forgets the cached results.
+     */
+    public void clearCache() {
+        cache.invalidateAll();
+    }
+
+}
@@ -0,0 +1,173 @@
+/*
+ * (C) Copyright 2015 Nuxeo SA (http://nuxeo.com/) and contributors.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public License
+ * (LGPL) version 2.1 which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl-2.1.html
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.ecm.platform.mimetype;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.junit.Before;
+import org.junit.Test;
+import org.nuxeo.common.utils.FileUtils;
+import org.nuxeo.ecm.core.api.Blob;
+import org.nuxeo.ecm.core.api.Blobs;
+import org.nuxeo.ecm.platform.mimetype.service.MimetypeRegistryService;
+import org.nuxeo.ecm.platform.mimetype.service.PrefixMimetypeDetector;
+import org.nuxeo.runtime.api.Framework;
+import org.nuxeo.runtime.test.NXRuntimeTestCase;
+
+public class TestPrefixMimetypeDetector extends NXRuntimeTestCase {
+
+    private static final Log log = LogFactory.getLog(TestPrefixMimetypeDetector.class);
+
+    private MimetypeRegistryService mimetypeRegistry;
+
+    @Override
+    @Before
+    public void setUp() throws Exception {
+        super.setUp();
+        deployContrib("org.nuxeo.ecm.platform.mimetype.core.tests", "nxmimetype-service.xml");
+        mimetypeRegistry = NXMimeType.getMimetypeRegistryService();
+    }
+
+    /**
+     * Mixed files: office documents, archives, text, XML, images, and a big picture.
+     */
+    protected List<byte[]> getCorpus() throws IOException {
+        List<byte[]> corpus = new ArrayList<>();
+        File dir = FileUtils.getResourceFileFromContext("test-data");
+        File[] files = dir.listFiles();
+        Arrays.sort(files);
+        for (File file : files) {
+            corpus.add(FileUtils.readBytes(file));
+        }
+        corpus.add(FileUtils.readBytes(FileUtils.getResourceFileFromContext("pdf.png")));
+        // 4MB picture, only its header is useful for detection
+        byte[] png = FileUtils.readBytes(FileUtils.getResourceFileFromContext("word.png"));
+        corpus.add(Arrays.copyOf(png, 4 * 1024 * 1024));
+        return corpus;
+    }
+
+    /**
+     * Detection as done before, from a full copy of the content.
+     */
+    protected String getMimetypeFromCopy(byte[] content) throws Exception {
+        File file = File.createTempFile("NXMimetypeBean", ".bin");
+        try {
+            FileUtils.writeFile(file, content);
+            return mimetypeRegistry.getMimetypeFromFile(file);
+        } catch (MimetypeNotFoundException e) {
+            return null;
+        } finally {
+            file.delete();
+        }
+    }
+
+    protected String getMimetype(PrefixMimetypeDetector detector, byte[] content) throws Exception {
+        try {
+            return detector.getMimetype(Blobs.createBlob(content));
+        } catch (MimetypeNotFoundException e) {
+            return null;
+        }
+    }
+
+    @Test
+    public void testSameResultsAsFullScan() throws Exception {
+        PrefixMimetypeDetector detector = new PrefixMimetypeDetector(mimetypeRegistry);
+        for (byte[] content : getCorpus()) {
+            assertEquals(getMimetypeFromCopy(content), getMimetype(detector, content));
+        }
+        // prefix smaller than the office documents, which need a full scan
+        Framework.getProperties().setProperty(PrefixMimetypeDetector.PREFIX_SIZE_PROP, "512");
+        try {
+            detector = new PrefixMimetypeDetector(mimetypeRegistry);
+            for (byte[] content : getCorpus()) {
+                String expected = getMimetypeFromCopy(content);
+                assertEquals(expected, getMimetype(detector, content));
+                InputStream stream = new ByteArrayInputStream(content);
+                try {
+                    assertEquals(expected, detector.getMimetype(stream));
+                } catch (MimetypeNotFoundException e) {
+                    assertNull(expected);
+                }
+            }
+        } finally {
+            Framework.getProperties().remove(PrefixMimetypeDetector.PREFIX_SIZE_PROP);
+        }
+    }
+
+    @Test
+    public void testCacheByDigest() throws Exception {
+        PrefixMimetypeDetector detector = new PrefixMimetypeDetector(mimetypeRegistry);
+        byte[] png = FileUtils.readBytes(FileUtils.getResourceFileFromContext("pdf.png"));
+        Blob blob = Blobs.createBlob(png);
+        blob.setDigest("1234");
+        assertEquals("image/png", detector.getMimetype(blob));
+        // same digest, result from the cache
+        Blob other = Blobs.createBlob(FileUtils.getResourceFileFromContext("test-data/hello.txt"));
+        other.setDigest("1234");
+        assertEquals("image/png", detector.getMimetype(other));
+        detector.clearCache();
+        assertEquals("text/plain", detector.getMimetype(other));
+    }
+
+    /**
+     * Compares the time needed to detect the mimetype of a mixed corpus with a full copy of each content, and with
+     * the prefix detection.
+     */
+    @Test
+    public void testBenchmark() throws Exception {
+        List<byte[]> corpus = getCorpus();
+        PrefixMimetypeDetector detector = new PrefixMimetypeDetector(mimetypeRegistry);
+        int runs = 5;
+        // warm up
+        for (byte[] content : corpus) {
+            getMimetypeFromCopy(content);
+            getMimetype(detector, content);
+        }
+
+        long t0 = System.currentTimeMillis();
+        for (int i = 0; i < runs; i++) {
+            for (byte[] content : corpus) {
+                getMimetypeFromCopy(content);
+            }
+        }
+        long copyTime = System.currentTimeMillis() - t0;
+
+        // blobs without digest, to measure the detection and not the cache
+        t0 = System.currentTimeMillis();
+        for (int i = 0; i < runs; i++) {
+            for (byte[] content : corpus) {
+                getMimetype(detector, content);
+            }
+        }
+        long prefixTime = System.currentTimeMillis() - t0;
+
+        log.info(String.format("Mimetype detection of %s contents: full copy %sms, prefix %sms", runs * corpus.size(),
+                copyTime, prefixTime));
+    }
+
+}
@@ -94,6 +94,20 @@ public abstract class AbstractPageProvider<T> implements PageProvider<T> {
 
     protected PageProviderChangedListener pageProviderChangedListener;
 
+    /**
+     * Cursor position of the current page, for providers doing cursor-based pagination.
+     *
+     * @since 7.2
+     */
+    protected String currentPageCursor;
+
+    /**
+     * Cursor position of the page following the current one, or {@code null} if there is none.
+     *
+     * @since 7.2
+     */
+    protected String nextPageCursor;
+
     /**
      * Returns the list of current page items.
      * <p>
@@ -749,6 +763,40 @@ public abstract class AbstractPageProvider<T> implements PageProvider<T> {
         this.definition = providerDefinition;
     }
 
+    /**
+     * Gets the cursor position of the current page, {@code null} for the first page.
+     *
+     * @since 7.2
+     */
+    public String getCurrentPageCursor() {
+        return currentPageCursor;
+    }
+
+    /**
+     * Sets the cursor position of the current page, as returned by {@link #getNextPageCursor} for a previous page.
+     * <p>
+     * Only taken into account by providers supporting cursor-based pagination.
+     *
+     * @since 7.2
+     */
+    public void setCurrentPageCursor(String cursor) {
+        if (cursor == null ? currentPageCursor != null : !cursor.equals(currentPageCursor)) {
+            currentPageCursor = cursor;
+            nextPageCursor = null;
+            pageChanged();
+        }
+    }
+
+    /**
+     * Gets the cursor position of the page following the current one, or {@code null} if the current page is the last
+     * one or if the provider does not do cursor-based pagination.
+     *
+     * @since 7.2
+     */
+    public String getNextPageCursor() {
+        return nextPageCursor;
+    }
+
     @Override
     public long getMaxPageSize() {
         return maxPageSize;
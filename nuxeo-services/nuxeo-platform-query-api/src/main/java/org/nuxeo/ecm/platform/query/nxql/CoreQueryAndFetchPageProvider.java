@@ -28,6 +28,7 @@ import org.nuxeo.ecm.core.api.ClientException;
 import org.nuxeo.ecm.core.api.ClientRuntimeException;
 import org.nuxeo.ecm.core.api.CoreSession;
 import org.nuxeo.ecm.core.api.IterableQueryResult;
+import org.nuxeo.ecm.core.api.QueryCursor;
 import org.nuxeo.ecm.core.api.SortInfo;
 import org.nuxeo.ecm.core.query.sql.NXQL;
 import org.nuxeo.ecm.platform.query.api.AbstractPageProvider;
@@ -49,6 +50,10 @@ import org.nuxeo.ecm.platform.query.api.PageSelections;
  * <p>
  * Also since 6.0, the page provider property named {@link #USE_UNRESTRICTED_SESSION_PROPERTY} allows specifying whether
  * the query should be run as unrestricted.
+ * <p>
+ * Since 7.2, the page provider property named {@link #USE_CURSOR_PROPERTY} allows paginating an NXQL query with a
+ * keyset cursor (see {@link CoreSession#queryCursor}) instead of an offset: pages are then navigated using
+ * {@link #getNextPageCursor()} and {@link #setCurrentPageCursor(String)}, and the results count is unknown.
  *
  * @author Anahide Tchertchian
  * @since 5.4
@@ -71,6 +76,20 @@ public class CoreQueryAndFetchPageProvider extends AbstractPageProvider<Map<Stri
      */
     public static final String LANGUAGE_PROPERTY = "language";
 
+    /**
+     * Boolean property stating that pagination should use a keyset cursor instead of an offset.
+     *
+     * @since 7.2
+     */
+    public static final String USE_CURSOR_PROPERTY = "useCursor";
+
+    /**
+     * Batch size used by cursors when the page size is unlimited.
+     *
+     * @since 7.2
+     */
+    protected static final int DEFAULT_CURSOR_BATCH_SIZE = 1000;
+
     private static final long serialVersionUID = 1L;
 
     private static final Log log = LogFactory.getLog(CoreQueryDocumentPageProvider.class);
@@ -102,6 +121,11 @@ public class CoreQueryAndFetchPageProvider extends AbstractPageProvider<Map<Stri
                 throw new ClientRuntimeException("cannot find core session");
             }
 
+            if (useCursor()) {
+                getCurrentPageWithCursor(coreSession);
+                return currentItems;
+            }
+
             IterableQueryResult result = null;
             try {
 
@@ -184,6 +208,42 @@ public class CoreQueryAndFetchPageProvider extends AbstractPageProvider<Map<Stri
         return currentItems;
     }
 
+    /**
+     * Fills the current page using a keyset cursor.
+     *
+     * @since 7.2
+     */
+    protected void getCurrentPageWithCursor(CoreSession coreSession) {
+        long minMaxPageSize = getMinMaxPageSize();
+        int batchSize = (int) (minMaxPageSize > 0 ? minMaxPageSize : DEFAULT_CURSOR_BATCH_SIZE);
+        if (log.isDebugEnabled()) {
+            log.debug(String.format("Perform query for provider '%s': '%s' with pageSize=%s, cursor=%s", getName(),
+                    query, Long.valueOf(minMaxPageSize), currentPageCursor));
+        }
+        QueryCursor cursor = null;
+        try {
+            cursor = coreSession.queryCursor(query, currentPageCursor, batchSize);
+            while ((minMaxPageSize == 0 || currentItems.size() < minMaxPageSize) && cursor.hasNext()) {
+                currentItems.add(cursor.next());
+            }
+            nextPageCursor = minMaxPageSize > 0 && currentItems.size() == minMaxPageSize ? cursor.getPosition() : null;
+            setResultsCount(UNKNOWN_SIZE_AFTER_QUERY);
+        } catch (ClientException e) {
+            errorMessage = e.getMessage();
+            error = e;
+            log.warn(e.getMessage(), e);
+        } finally {
+            if (cursor != null) {
+                cursor.close();
+            }
+        }
+    }
+
+    protected boolean useCursor() {
+        return getBooleanProperty(USE_CURSOR_PROPERTY, false) && NXQL.NXQL.equals(getQueryLanguage())
+                && !useUnrestrictedSession();
+    }
+
     protected void buildQuery() {
         try {
             PageProviderDefinition def = getDefinition();
@@ -245,6 +305,8 @@ public class CoreQueryAndFetchPageProvider extends AbstractPageProvider<Map<Stri
     @Override
     public void refresh() {
         query = null;
+        currentPageCursor = null;
+        nextPageCursor = null;
         currentItems = null;
         super.refresh();
     }
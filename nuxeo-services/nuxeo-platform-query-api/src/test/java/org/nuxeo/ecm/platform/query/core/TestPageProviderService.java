@@ -23,6 +23,8 @@ import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -33,10 +35,12 @@ import org.junit.Before;
 import org.junit.Test;
 import org.nuxeo.ecm.core.api.AbstractSession;
 import org.nuxeo.ecm.core.api.DocumentModel;
+import org.nuxeo.ecm.core.api.SortInfo;
 import org.nuxeo.ecm.core.storage.sql.SQLRepositoryTestCase;
 import org.nuxeo.ecm.platform.query.api.PageProvider;
 import org.nuxeo.ecm.platform.query.api.PageProviderDefinition;
 import org.nuxeo.ecm.platform.query.api.PageProviderService;
+import org.nuxeo.ecm.platform.query.nxql.CoreQueryAndFetchPageProvider;
 import org.nuxeo.ecm.platform.query.nxql.CoreQueryDocumentPageProvider;
 import org.nuxeo.runtime.api.Framework;
 
@@ -48,6 +52,8 @@ public class TestPageProviderService extends SQLRepositoryTestCase {
 
     private static final String CURRENT_DOCUMENT_CHILDREN = "CURRENT_DOCUMENT_CHILDREN";
 
+    private static final String CURRENT_DOCUMENT_CHILDREN_FETCH = "CURRENT_DOCUMENT_CHILDREN_FETCH";
+
     private static final String FOO = "foo";
 
     @Override
@@ -174,6 +180,66 @@ public class TestPageProviderService extends SQLRepositoryTestCase {
         assertEquals(0, p.size());
     }
 
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testQueryAndFetchWithCursor() throws Exception {
+        DocumentModel folder = session.createDocument(session.createDocumentModel("/", "folder", "Folder"));
+        // several documents with the same sort key
+        String[] titles = { "b", "a", "c", "a", "b" };
+        for (int i = 0; i < titles.length; i++) {
+            DocumentModel doc = session.createDocumentModel("/folder", "doc" + i, "File");
+            doc.setPropertyValue("dc:title", titles[i]);
+            session.createDocument(doc);
+        }
+        session.save();
+
+        PageProviderService pps = Framework.getService(PageProviderService.class);
+        PageProviderDefinition ppd = pps.getPageProviderDefinition(CURRENT_DOCUMENT_CHILDREN_FETCH);
+        ppd.setPattern("SELECT ecm:uuid, dc:title FROM Document WHERE ecm:parentId = ?");
+        List<SortInfo> sortInfos = Arrays.asList(new SortInfo("dc:title", true), new SortInfo("ecm:uuid", true));
+
+        // offset paging
+        HashMap<String, Serializable> props = new HashMap<String, Serializable>();
+        props.put(CoreQueryDocumentPageProvider.CORE_SESSION_PROPERTY, (AbstractSession) session);
+        List<Serializable> expected = new ArrayList<Serializable>();
+        for (long page = 0;; page++) {
+            PageProvider<Map<String, Serializable>> pp = (PageProvider<Map<String, Serializable>>) pps.getPageProvider(
+                    CURRENT_DOCUMENT_CHILDREN_FETCH, ppd, sortInfos, Long.valueOf(2), Long.valueOf(page), props,
+                    folder.getId());
+            List<Map<String, Serializable>> items = pp.getCurrentPage();
+            for (Map<String, Serializable> item : items) {
+                expected.add(item.get("ecm:uuid"));
+            }
+            if (!pp.isNextPageAvailable()) {
+                break;
+            }
+        }
+        assertEquals(titles.length, expected.size());
+
+        // cursor paging
+        props.put(CoreQueryAndFetchPageProvider.USE_CURSOR_PROPERTY, "true");
+        CoreQueryAndFetchPageProvider pp = (CoreQueryAndFetchPageProvider) pps.getPageProvider(
+                CURRENT_DOCUMENT_CHILDREN_FETCH, ppd, sortInfos, Long.valueOf(2), Long.valueOf(0), props,
+                folder.getId());
+        List<Serializable> ids = new ArrayList<Serializable>();
+        int pages = 0;
+        for (;;) {
+            List<Map<String, Serializable>> items = pp.getCurrentPage();
+            assertTrue(items.size() <= 2);
+            for (Map<String, Serializable> item : items) {
+                ids.add(item.get("ecm:uuid"));
+            }
+            pages++;
+            String cursor = pp.getNextPageCursor();
+            if (cursor == null) {
+                break;
+            }
+            pp.setCurrentPageCursor(cursor);
+        }
+        assertEquals(3, pages);
+        assertEquals(expected, ids);
+    }
+
     @Test
     @SuppressWarnings("unchecked")
     public void testMergedProperties() throws Exception {